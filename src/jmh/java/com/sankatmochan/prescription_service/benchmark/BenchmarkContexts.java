@@ -0,0 +1,34 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.sankatmochan.prescription_service.SankatMochanPrescriptionServiceApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Boots the application without the web server against a private in-memory H2 database
+ * and an in-memory search index.
+ */
+final class BenchmarkContexts {
+
+    private BenchmarkContexts() {
+    }
+
+    static ConfigurableApplicationContext start(String databaseName, String... extraProperties) {
+        return new SpringApplicationBuilder(SankatMochanPrescriptionServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        // The test application.properties shadows the main one, so mirror its batching settings
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=100",
+                        "spring.jpa.properties.hibernate.order_inserts=true",
+                        // Background renders would compete with whatever a benchmark measures
+                        "prescription.pdf.prerender.enabled=false",
+                        "logging.level.root=WARN")
+                .properties(extraProperties)
+                // An argument rather than a default property, so it wins over the main application.properties
+                // (data/search-index) and PRESCRIPTION_SEARCH_INDEX_DIR: benchmarks must not touch a real index
+                .run("--prescription.search.index.directory=");
+    }
+}
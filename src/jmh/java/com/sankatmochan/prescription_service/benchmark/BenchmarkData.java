@@ -0,0 +1,53 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.sankatmochan.prescription_service.model.Medication;
+import com.sankatmochan.prescription_service.model.Prescription;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic prescriptions shared by the benchmarks, shaped like the samples in the unit tests.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static Prescription prescription(String id, String patientName, int medications) {
+        Prescription p = new Prescription();
+        p.setId(id);
+        p.setPatientName(patientName);
+        p.setPatientAddress("123 Main St, Springfield");
+        p.setPatientPhone("555-1234");
+        p.setAge(30);
+        p.setGender("Male");
+        p.setBp("120/80");
+        p.setPulse("72");
+        p.setSpo2("98");
+        p.setTemp("98.6");
+        p.setWeight("70");
+        p.setHeight("175");
+        p.setBmi("22.9");
+        p.setClinicalNotes("Fever and cough for three days, no breathlessness.");
+        p.setDiagnosis("Viral Fever");
+        p.setAdvice("Drink plenty of water. Rest.");
+        p.setNextVisitDate(LocalDateTime.now().plusDays(7));
+
+        List<Medication> meds = new ArrayList<>(medications);
+        for (int i = 0; i < medications; i++) {
+            meds.add(new Medication("Paracetamol " + (i + 1), "500mg", "5 days"));
+        }
+        p.setMedicationData(meds);
+
+        p.setDoctorName("Dr. Smith");
+        p.setDoctorRegNo("MD12345");
+        p.setDoctorQualification("MBBS, MD");
+        p.setDoctorSpecialization("General Physician");
+        p.setClinicName("Sankat Mochan Health Clinic");
+        p.setClinicAddress("123 Temple Road, Varanasi");
+        p.setCreatedAt(LocalDateTime.now());
+        return p;
+    }
+}
@@ -0,0 +1,66 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.sankatmochan.prescription_service.dto.BulkIngestResponse;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.service.PrescriptionBulkService;
+import com.sankatmochan.prescription_service.service.PrescriptionService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storing a burst of AI-generated prescriptions: one {@code createPrescription}
+ * transaction per item against the chunked, JDBC-batched bulk path. Both report
+ * the time for the whole burst, so throughput per item is burst / score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkIngestBenchmark {
+
+    @Param({ "1000" })
+    public int burst;
+
+    private ConfigurableApplicationContext context;
+    private PrescriptionService service;
+    private PrescriptionBulkService bulkService;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = BenchmarkContexts.start("bench_bulk");
+        service = context.getBean(PrescriptionService.class);
+        bulkService = context.getBean(PrescriptionBulkService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public void singleInserts(Blackhole bh) {
+        for (Prescription p : newBurst()) {
+            bh.consume(service.createPrescription(p));
+        }
+    }
+
+    @Benchmark
+    public BulkIngestResponse bulkInsert() {
+        return bulkService.createPrescriptions(newBurst());
+    }
+
+    private List<Prescription> newBurst() {
+        List<Prescription> prescriptions = new ArrayList<>(burst);
+        for (int i = 0; i < burst; i++) {
+            prescriptions.add(BenchmarkData.prescription(null, "Patient " + i, 3));
+        }
+        return prescriptions;
+    }
+}
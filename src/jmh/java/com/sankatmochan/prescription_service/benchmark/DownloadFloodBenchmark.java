@@ -0,0 +1,118 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.sankatmochan.prescription_service.pdf.RenderCapacityExceededException;
+import com.sankatmochan.prescription_service.ratelimit.DownloadRateLimitInterceptor;
+import com.sankatmochan.prescription_service.ratelimit.DownloadRateLimitedException;
+import com.sankatmochan.prescription_service.ratelimit.DownloadRateLimiter;
+import com.sankatmochan.prescription_service.service.PrescriptionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render latency for a well-behaved client while a buggy integration downloads one
+ * prescription in a tight loop from {@value #FLOOD_CLIENTS} connections, with the download
+ * rate limits off and at their defaults. The render cache is off, as for a prescription
+ * that keeps changing, so every download the flood gets through is a full render.
+ *
+ * The flood goes through the rate limits as a download request would: the client limit in
+ * the interceptor, then the prescription limit before the render. A 429 costs it a
+ * {@value #ROUND_TRIP_MILLIS} ms round trip before it tries again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadFloodBenchmark {
+
+    private static final int FLOOD_CLIENTS = 8;
+    private static final int ROUND_TRIP_MILLIS = 1;
+
+    @Param({ "off", "on" })
+    public String limits;
+
+    private ConfigurableApplicationContext context;
+    private PrescriptionService service;
+    private DownloadRateLimitInterceptor rateLimit;
+    private DownloadRateLimiter rateLimiter;
+    private ExecutorService flood;
+    private volatile boolean running;
+    private String floodedId;
+    private String otherId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        String[] properties = limits.equals("on")
+                ? new String[] { "prescription.pdf.cache.enabled=false" }
+                : new String[] { "prescription.pdf.cache.enabled=false",
+                        "prescription.download.rate-limit.client.per-minute=0",
+                        "prescription.download.rate-limit.prescription.per-minute=0" };
+        context = BenchmarkContexts.start("bench_flood_" + limits, properties);
+        service = context.getBean(PrescriptionService.class);
+        rateLimit = context.getBean(DownloadRateLimitInterceptor.class);
+        rateLimiter = context.getBean(DownloadRateLimiter.class);
+        floodedId = service.createPrescription(BenchmarkData.prescription(null, "Flooded", 10)).getId();
+        otherId = service.createPrescription(BenchmarkData.prescription(null, "Other", 10)).getId();
+
+        flood = Executors.newVirtualThreadPerTaskExecutor();
+        running = true;
+        for (int i = 0; i < FLOOD_CLIENTS; i++) {
+            flood.submit(this::floodLoop);
+        }
+    }
+
+    private void floodLoop() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET",
+                "/api/v1/prescriptions/" + floodedId + "/download");
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("id", floodedId));
+        while (running) {
+            try {
+                if (rateLimit.preHandle(request, new MockHttpServletResponse(), new Object()) && renderAllowed(request)) {
+                    service.writePrescriptionPdf(floodedId, OutputStream.nullOutputStream());
+                } else {
+                    Thread.sleep(ROUND_TRIP_MILLIS);
+                }
+            } catch (RenderCapacityExceededException e) {
+                // Shed or timed out; the buggy client retries straight away
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // The render cache is off, so every download renders and is charged to the prescription
+    private boolean renderAllowed(MockHttpServletRequest request) {
+        try {
+            rateLimiter.takeRender(request, floodedId);
+            return true;
+        } catch (DownloadRateLimitedException e) {
+            return false;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+        running = false;
+        flood.shutdown();
+        flood.awaitTermination(1, TimeUnit.MINUTES);
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] otherClientDownload() {
+        return service.generatePrescriptionPdf(otherId);
+    }
+}
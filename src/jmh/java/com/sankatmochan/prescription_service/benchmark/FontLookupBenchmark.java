@@ -0,0 +1,51 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.lowagie.text.FontFactory;
+import com.sankatmochan.prescription_service.pdf.PdfTheme;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Styling cost of the cells in a 20-medication prescription: the per-cell
+ * {@link FontFactory} lookups and {@link Color} allocations the renderer used to do,
+ * against reading the shared {@link PdfTheme}. Threads contend on the factory's lock
+ * just as concurrent downloads did.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class FontLookupBenchmark {
+
+    // Roughly 4 cells per medication row plus the fixed header, patient, vitals and footer cells
+    private static final int CELLS = 20 * 4 + 40;
+
+    private PdfTheme theme;
+
+    @Setup
+    public void setUp() {
+        theme = new PdfTheme();
+    }
+
+    @Benchmark
+    public void fontFactoryPerCell(Blackhole bh) {
+        for (int i = 0; i < CELLS; i++) {
+            bh.consume(FontFactory.getFont(FontFactory.HELVETICA, 11));
+            bh.consume(new Color(230, 230, 230));
+        }
+    }
+
+    @Benchmark
+    public void sharedTheme(Blackhole bh) {
+        for (int i = 0; i < CELLS; i++) {
+            bh.consume(theme.getBody());
+            bh.consume(theme.getCellBorder());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.sankatmochan.prescription_service.dto.PrescriptionSummary;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Patient history lookup as the table grows: the original unindexed
+ * {@code findByPatientNameIgnoreCase} entity query against the first page of the
+ * keyset-paginated summary query backed by idx_prescriptions_patient_history.
+ * Every patient has {@value #VISITS_PER_PATIENT} prescriptions, so each call returns
+ * the same amount of data and only the table size changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryLookupBenchmark {
+
+    private static final int VISITS_PER_PATIENT = 10;
+    private static final int INSERT_BATCH = 5_000;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({ "10000", "1000000" })
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private PrescriptionRepository repository;
+    private int patients;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        context = BenchmarkContexts.start("bench_history_" + rows);
+        repository = context.getBean(PrescriptionRepository.class);
+        patients = rows / VISITS_PER_PATIENT;
+
+        // Plain JDBC batches: seeding a million rows through JPA would take longer than the benchmark
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        String sql = "insert into prescriptions (id, patient_name, patient_name_key, diagnosis, doctor_name, "
+                + "doctor_reg_no, approved_by_doctor, is_ai_generated, created_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        LocalDateTime start = LocalDateTime.now().minusDays(rows);
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < rows; i++) {
+            String name = patientName(i % patients);
+            batch.add(new Object[] { String.format("SNKTMOCH%08d", i), name, Prescription.patientNameKey(name),
+                    "Viral Fever", "Dr. Smith", "MD12345", false, true, Timestamp.valueOf(start.plusMinutes(i)) });
+            if (batch.size() == INSERT_BATCH) {
+                jdbc.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate(sql, batch);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Prescription> findByPatientNameIgnoreCase() {
+        int patient = ThreadLocalRandom.current().nextInt(patients);
+        return repository.findByPatientNameIgnoreCase(patientName(patient).toLowerCase());
+    }
+
+    @Benchmark
+    public List<PrescriptionSummary> findHistoryPage() {
+        int patient = ThreadLocalRandom.current().nextInt(patients);
+        return repository.findHistory(Prescription.patientNameKey(patientName(patient)), Limit.of(PAGE_SIZE + 1));
+    }
+
+    private static String patientName(int patient) {
+        return "Patient " + patient;
+    }
+}
@@ -0,0 +1,83 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.sankatmochan.prescription_service.dto.PrescriptionResponse;
+import com.sankatmochan.prescription_service.dto.PrescriptionSummary;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one patient's full history as a JSON list: every entity with its medications,
+ * serialized as the API used to, against the summary projection that only selects the four
+ * columns the history list shows. Each call loads and serializes; the payload sizes are
+ * printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryPayloadBenchmark {
+
+    private static final String PATIENT = "Asha Devi";
+    private static final int MEDICATIONS = 4;
+
+    @Param({ "100", "500" })
+    public int visits;
+
+    private ConfigurableApplicationContext context;
+    private PrescriptionRepository repository;
+    private TransactionTemplate readOnly;
+    private JsonMapper jsonMapper;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        context = BenchmarkContexts.start("bench_payload_" + visits);
+        repository = context.getBean(PrescriptionRepository.class);
+        jsonMapper = context.getBean(JsonMapper.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+
+        List<Prescription> history = new ArrayList<>(visits);
+        for (int i = 0; i < visits; i++) {
+            Prescription p = BenchmarkData.prescription(String.format("SNKTMOCH%08d", i), PATIENT, MEDICATIONS);
+            p.setCreatedAt(p.getCreatedAt().minusDays(visits - i));
+            history.add(p);
+        }
+        repository.saveAll(history);
+
+        System.out.printf("%n%d visits: entities %d bytes, summaries %d bytes%n",
+                visits, entityHistory().length, summaryHistory().length);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] entityHistory() {
+        // The medications are lazy, so loading and serializing share a transaction as they did under open-in-view
+        return readOnly.execute(status -> jsonMapper.writeValueAsBytes(
+                repository.findByPatientNameIgnoreCase(PATIENT.toLowerCase()).stream()
+                        .map(PrescriptionResponse::from)
+                        .toList()));
+    }
+
+    @Benchmark
+    public byte[] summaryHistory() {
+        List<PrescriptionSummary> page = repository.findHistory(Prescription.patientNameKey(PATIENT),
+                Limit.of(visits));
+        return jsonMapper.writeValueAsBytes(page);
+    }
+}
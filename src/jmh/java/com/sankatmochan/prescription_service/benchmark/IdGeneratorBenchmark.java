@@ -0,0 +1,34 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.sankatmochan.prescription_service.service.impl.SnowflakePrescriptionIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Id generation under contention from many threads, against the previous
+ * {@code new Random()} + {@code String.format} scheme. With {@code -prof gc} the
+ * generator should allocate only the resulting String per id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class IdGeneratorBenchmark {
+
+    private final SnowflakePrescriptionIdGenerator generator = new SnowflakePrescriptionIdGenerator(1);
+
+    @Benchmark
+    public String snowflake() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    public String legacyRandomFormat() {
+        return "SNKTMOCH" + String.format("%08d", new Random().nextInt(100000000));
+    }
+}
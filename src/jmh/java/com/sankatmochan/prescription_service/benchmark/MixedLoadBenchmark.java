@@ -0,0 +1,95 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.pdf.RenderCapacityExceededException;
+import com.sankatmochan.prescription_service.service.PrescriptionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Latency of a cheap database lookup while {@value #RENDER_CLIENTS} clients download
+ * uncached PDFs back to back, as a stand-in for a load test of the two request modes.
+ *
+ * {@code executor} is the request execution model: "platform" is a fixed pool the size
+ * of Tomcat's default (200 threads), "virtual" a virtual thread per request.
+ * {@code renderSlots} is prescription.pdf.render.max-concurrent: 0 is one render per
+ * processor, 1024 effectively removes the gate.
+ *
+ * Virtual threads are not time-sliced: with the gate removed and fewer cores than
+ * render clients, a lookup can wait for a carrier indefinitely. The lookup gives up
+ * after {@value #LOOKUP_TIMEOUT_SECONDS}s, which fails that combination instead of hanging.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MixedLoadBenchmark {
+
+    private static final int RENDER_CLIENTS = 64;
+    private static final int TOMCAT_DEFAULT_MAX_THREADS = 200;
+    private static final int LOOKUP_TIMEOUT_SECONDS = 30;
+
+    @Param({ "platform", "virtual" })
+    public String executor;
+
+    @Param({ "1024", "0" })
+    public int renderSlots;
+
+    private ConfigurableApplicationContext context;
+    private PrescriptionService service;
+    private ExecutorService requests;
+    private volatile boolean running;
+    private String prescriptionId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkContexts.start("bench_mixed_" + executor + "_" + renderSlots,
+                // Every download renders, so the renders are what compete with the lookups
+                "prescription.pdf.cache.enabled=false",
+                "prescription.pdf.render.max-concurrent=" + renderSlots,
+                "prescription.pdf.render.acquire-timeout=30s");
+        service = context.getBean(PrescriptionService.class);
+        Prescription saved = service.createPrescription(BenchmarkData.prescription(null, "Mixed Load", 10));
+        prescriptionId = saved.getId();
+
+        requests = executor.equals("virtual")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_DEFAULT_MAX_THREADS);
+        running = true;
+        for (int i = 0; i < RENDER_CLIENTS; i++) {
+            requests.submit(this::renderLoop);
+        }
+    }
+
+    private void renderLoop() {
+        while (running) {
+            try {
+                service.generatePrescriptionPdf(prescriptionId);
+            } catch (RenderCapacityExceededException e) {
+                // Rejected downloads retry straight away, like an impatient client
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+        running = false;
+        requests.shutdown();
+        requests.awaitTermination(1, TimeUnit.MINUTES);
+        context.close();
+    }
+
+    @Benchmark
+    public Prescription lookupUnderRenderLoad() throws ExecutionException, InterruptedException, TimeoutException {
+        return requests.submit(() -> service.getPrescriptionById(prescriptionId))
+                .get(LOOKUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
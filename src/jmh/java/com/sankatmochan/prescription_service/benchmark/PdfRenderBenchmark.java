@@ -0,0 +1,39 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.pdf.PdfTheme;
+import com.sankatmochan.prescription_service.pdf.PrescriptionPdfRenderer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full PDF render of one prescription, without the cache or the database.
+ * Sample mode reports the latency percentiles; run with {@code -prof gc} for bytes allocated per render.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfRenderBenchmark {
+
+    @Param({ "0", "10", "50", "200" })
+    public int medications;
+
+    private PrescriptionPdfRenderer renderer;
+    private Prescription prescription;
+
+    @Setup
+    public void setUp() {
+        renderer = new PrescriptionPdfRenderer(new PdfTheme());
+        prescription = BenchmarkData.prescription("SNKTMOCH12345678", "John Doe", medications);
+    }
+
+    @Benchmark
+    public void render() {
+        renderer.render(prescription, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,40 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.service.PrescriptionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code createPrescription} through the real service, repository and transaction
+ * manager against an in-memory H2 database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private PrescriptionService service;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = BenchmarkContexts.start("bench_create");
+        service = context.getBean(PrescriptionService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public Prescription createPrescription() {
+        return service.createPrescription(BenchmarkData.prescription(null, "John Doe", 3));
+    }
+}
@@ -0,0 +1,91 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.sankatmochan.prescription_service.dto.BulkItemResult;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.service.PrescriptionBulkService;
+import com.sankatmochan.prescription_service.service.PrescriptionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 32 clients against the service with the shipped persistence defaults and with the prod
+ * profile: 75% lookups by id (entity cache off, so every one reaches the database), 20%
+ * history pages, 5% creates.
+ *
+ * On H2 only the pool and Hibernate settings differ. For the statement caching to count, run
+ * against MySQL, e.g. {@code docker run -d -p 3306:3306 -e MYSQL_ROOT_PASSWORD=bench
+ * -e MYSQL_DATABASE=bench mysql:8} and {@code -Djmh.args="-jvmArgsAppend
+ * -Dspring.datasource.url=jdbc:mysql://localhost:3306/bench -Dspring.datasource.username=root
+ * -Dspring.datasource.password=bench -Dspring.datasource.driver-class-name=com.mysql.cj.jdbc.Driver"}.
+ * Use a fresh database per run. SQL echo is off in both variants so the output stays readable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(32)
+@Fork(1)
+public class PersistenceProfileBenchmark {
+
+    private static final int SEED_ROWS = 2_000;
+    private static final int PATIENTS = 200;
+
+    @Param({ "defaults", "prod" })
+    public String profile;
+
+    private ConfigurableApplicationContext context;
+    private PrescriptionService service;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        List<String> properties = new ArrayList<>(List.of(
+                // Every lookup should reach the database
+                "prescription.cache.entity.enabled=false",
+                "prescription.cache.entity.invalidation=local",
+                "spring.jpa.hibernate.ddl-auto=update",
+                // As in application.properties, which the test one shadows
+                "spring.datasource.hikari.data-source-properties.rewriteBatchedStatements=true"));
+        if (profile.equals("prod")) {
+            properties.add("spring.profiles.active=prod");
+            properties.add("PRESCRIPTION_DDL_AUTO=update");
+        }
+        context = BenchmarkContexts.start("bench_profile_" + profile, properties.toArray(String[]::new));
+        service = context.getBean(PrescriptionService.class);
+
+        PrescriptionBulkService bulkService = context.getBean(PrescriptionBulkService.class);
+        List<Prescription> batch = new ArrayList<>(SEED_ROWS);
+        for (int i = 0; i < SEED_ROWS; i++) {
+            batch.add(BenchmarkData.prescription(null, patientName(i % PATIENTS), 3));
+        }
+        ids = bulkService.createPrescriptions(batch).items().stream().map(BulkItemResult::id).toArray(String[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object mixedLoad() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int roll = random.nextInt(100);
+        if (roll < 5) {
+            return service.createPrescription(BenchmarkData.prescription(null, patientName(random.nextInt(PATIENTS)), 3));
+        }
+        if (roll < 25) {
+            return service.getHistoryByPatient(patientName(random.nextInt(PATIENTS)), null, 20);
+        }
+        return service.getPrescriptionById(ids[random.nextInt(ids.length)]);
+    }
+
+    private static String patientName(int patient) {
+        return "Patient " + patient;
+    }
+}
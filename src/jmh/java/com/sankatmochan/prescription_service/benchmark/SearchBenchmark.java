@@ -0,0 +1,99 @@
+package com.sankatmochan.prescription_service.benchmark;
+
+import com.sankatmochan.prescription_service.dto.SearchPage;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import com.sankatmochan.prescription_service.search.PrescriptionSearchIndexer;
+import com.sankatmochan.prescription_service.search.PrescriptionSearchQuery;
+import com.sankatmochan.prescription_service.service.PrescriptionSearchService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diagnosis search as the table grows: the leading-wildcard
+ * {@code findByDiagnosisContainingIgnoreCase} scan against the first page of the
+ * Lucene-backed full-text search. Each diagnosis appears in 1/{@value #DIAGNOSES_COUNT}
+ * of the rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final String[] DIAGNOSES = {
+            "Viral Fever", "Pulmonary Tuberculosis", "Type 2 Diabetes", "Essential Hypertension", "Migraine",
+            "Acute Bronchitis", "Iron Deficiency Anaemia", "Urinary Tract Infection", "Allergic Rhinitis",
+            "Gastroesophageal Reflux", "Lumbar Spondylosis", "Hypothyroidism", "Dengue Fever", "Typhoid Fever",
+            "Acute Gastroenteritis", "Bronchial Asthma", "Osteoarthritis", "Conjunctivitis", "Sinusitis", "Psoriasis"
+    };
+    private static final String[] TERMS = {
+            "tuberculosis", "diabetes", "hypertension", "migraine", "bronchitis", "anaemia", "rhinitis",
+            "hypothyroidism", "typhoid", "asthma", "osteoarthritis", "psoriasis"
+    };
+    private static final int DIAGNOSES_COUNT = 20;
+    private static final int INSERT_BATCH = 5_000;
+
+    @Param({ "10000", "100000" })
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private PrescriptionRepository repository;
+    private PrescriptionSearchService searchService;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        context = BenchmarkContexts.start("bench_search_" + rows);
+        repository = context.getBean(PrescriptionRepository.class);
+        searchService = context.getBean(PrescriptionSearchService.class);
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        String sql = "insert into prescriptions (id, patient_name, diagnosis, clinical_notes, advice, doctor_name, "
+                + "doctor_reg_no, approved_by_doctor, is_ai_generated, created_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        LocalDateTime start = LocalDateTime.now().minusDays(rows);
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[] { String.format("SNKTMOCH%08d", i), "Patient " + i, DIAGNOSES[i % DIAGNOSES_COUNT],
+                    "Presented with symptoms for three days. Vitals stable.", "Plenty of fluids and rest.",
+                    "Dr. Smith", "MD" + (i % 50), false, true, Timestamp.valueOf(start.plusMinutes(i)) });
+            if (batch.size() == INSERT_BATCH) {
+                jdbc.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate(sql, batch);
+        }
+        // Rows were inserted behind the application's back, so index them explicitly
+        context.getBean(PrescriptionSearchIndexer.class).rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Prescription> findByDiagnosisContainingIgnoreCase() {
+        return repository.findByDiagnosisContainingIgnoreCase(randomTerm());
+    }
+
+    @Benchmark
+    public SearchPage fullTextSearch() {
+        return searchService.search(new PrescriptionSearchQuery(randomTerm(), null, null, null, 0, 20));
+    }
+
+    private static String randomTerm() {
+        return TERMS[ThreadLocalRandom.current().nextInt(TERMS.length)];
+    }
+}
@@ -0,0 +1,11 @@
+package com.sankatmochan.prescription_service.analytics;
+
+import java.time.LocalDate;
+
+/**
+ * Selects the rollups of a dashboard: a doctor (by registration number) and/or a clinic,
+ * null meaning every one, between from and to (both inclusive).
+ */
+public record PrescriptionDashboardQuery(String doctorRegNo, String clinicName, LocalDate from, LocalDate to,
+                                         int topDiagnoses) {
+}
@@ -0,0 +1,387 @@
+package com.sankatmochan.prescription_service.analytics;
+
+import com.sankatmochan.prescription_service.dto.DailyPrescriptionCount;
+import com.sankatmochan.prescription_service.dto.DiagnosisCount;
+import com.sankatmochan.prescription_service.dto.PrescriptionRollupSource;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Pre-computed dashboard counts, kept in tables next to the prescriptions:
+ *
+ * <pre>
+ * prescription_daily_rollups      (doctor, day, clinic, approved, AI generated) -> prescriptions
+ * prescription_diagnosis_rollups  (doctor, day, clinic, diagnosis)              -> prescriptions
+ * prescription_rollup_state       (prescription) -> keys it is counted under, row version
+ * </pre>
+ *
+ * The state table makes updates idempotent: applying a prescription again only moves its
+ * counts when one of its keys changed. The recorded version shows which prescriptions
+ * changed since they were last applied, so changes that never got here can be caught up
+ * on. Dashboards read one row per key and day and never touch the prescriptions table, so
+ * they cost the same however large it grows. A missing doctor or clinic is stored as an
+ * empty string, as key columns cannot be null.
+ *
+ * The tables are created when the context starts rather than in the constructor, so the
+ * context can be refreshed without a database (the training run for the image's AOT cache).
+ */
+@Component
+public class PrescriptionRollupStore implements SmartLifecycle {
+
+    static final int DIAGNOSIS_KEY_LENGTH = 100;
+    private static final int LABEL_LENGTH = 255;
+    private static final String NONE = "";
+
+    private final JdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate namedJdbc;
+    private final TransactionTemplate transactionTemplate;
+    private volatile boolean running;
+
+    public PrescriptionRollupStore(JdbcTemplate jdbc, PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        this.namedJdbc = new NamedParameterJdbcTemplate(jdbc);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void start() {
+        createTablesIfMissing();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Before the web server starts taking dashboard requests
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void createTablesIfMissing() {
+        jdbc.execute("create table if not exists prescription_daily_rollups ("
+                + "doctor_reg_no varchar(255) not null, "
+                + "rollup_date date not null, "
+                + "clinic_name varchar(255) not null, "
+                + "approved boolean not null, "
+                + "ai_generated boolean not null, "
+                + "prescriptions bigint not null, "
+                + "primary key (doctor_reg_no, rollup_date, clinic_name, approved, ai_generated))");
+        jdbc.execute("create table if not exists prescription_diagnosis_rollups ("
+                + "doctor_reg_no varchar(255) not null, "
+                + "rollup_date date not null, "
+                + "clinic_name varchar(255) not null, "
+                + "diagnosis_key varchar(" + DIAGNOSIS_KEY_LENGTH + ") not null, "
+                + "diagnosis varchar(" + LABEL_LENGTH + ") not null, "
+                + "prescriptions bigint not null, "
+                + "primary key (doctor_reg_no, rollup_date, clinic_name, diagnosis_key))");
+        jdbc.execute("create table if not exists prescription_rollup_state ("
+                + "prescription_id varchar(50) not null primary key, "
+                + "doctor_reg_no varchar(255) not null, "
+                + "rollup_date date not null, "
+                + "clinic_name varchar(255) not null, "
+                + "approved boolean not null, "
+                + "ai_generated boolean not null, "
+                + "diagnosis_key varchar(" + DIAGNOSIS_KEY_LENGTH + ") not null, "
+                + "diagnosis varchar(" + LABEL_LENGTH + ") not null, "
+                + "source_version bigint)");
+        // Tables created before the version was recorded
+        addColumnIfMissing("prescription_rollup_state", "source_version", "bigint");
+        // Clinic dashboards; doctor dashboards use the primary key
+        createIndexIfMissing("prescription_daily_rollups", "idx_daily_rollups_clinic", "clinic_name, rollup_date");
+        createIndexIfMissing("prescription_diagnosis_rollups", "idx_diagnosis_rollups_clinic",
+                "clinic_name, rollup_date");
+    }
+
+    private void addColumnIfMissing(String table, String column, String definition) {
+        Boolean exists = jdbc.execute((ConnectionCallback<Boolean>) connection -> {
+            for (String name : List.of(table, table.toUpperCase(Locale.ROOT))) {
+                try (ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), null, name, null)) {
+                    while (rs.next()) {
+                        if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        });
+        if (!Boolean.TRUE.equals(exists)) {
+            jdbc.execute("alter table " + table + " add column " + column + " " + definition);
+        }
+    }
+
+    // "create index if not exists" is not portable to MySQL, so ask the catalog first
+    private void createIndexIfMissing(String table, String index, String columns) {
+        Boolean exists = jdbc.execute((ConnectionCallback<Boolean>) connection -> {
+            for (String name : List.of(table, table.toUpperCase(Locale.ROOT))) {
+                try (ResultSet rs = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, name, false,
+                        false)) {
+                    while (rs.next()) {
+                        if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        });
+        if (!Boolean.TRUE.equals(exists)) {
+            jdbc.execute("create index " + index + " on " + table + " (" + columns + ")");
+        }
+    }
+
+    /**
+     * Moves the counts of the given prescriptions to their current keys, in one transaction.
+     * Returns how many of them were counted differently before.
+     */
+    public int apply(Collection<PrescriptionRollupSource> sources) {
+        if (sources.isEmpty()) {
+            return 0;
+        }
+        Integer moved = transactionTemplate.execute(status -> {
+            Map<String, State> previous = lockState(sources.stream().map(PrescriptionRollupSource::id).toList());
+            Map<List<Object>, Long> daily = new HashMap<>();
+            Map<List<Object>, Long> diagnoses = new HashMap<>();
+            Map<List<Object>, String> labels = new HashMap<>();
+            int changed = 0;
+            for (PrescriptionRollupSource source : sources) {
+                Contribution now = Contribution.of(source);
+                State state = previous.get(source.id());
+                Contribution before = state != null ? state.contribution() : null;
+                if (Objects.equals(now, before)) {
+                    if (state != null && !Objects.equals(state.version(), source.version())) {
+                        // Counted right already; only remember that this version has been seen
+                        jdbc.update("update prescription_rollup_state set source_version = ? where prescription_id = ?",
+                                source.version(), source.id());
+                    }
+                    continue;
+                }
+                if (before != null) {
+                    before.addTo(daily, diagnoses, labels, -1);
+                }
+                if (now != null) {
+                    now.addTo(daily, diagnoses, labels, 1);
+                }
+                saveState(source.id(), before, now, source.version());
+                changed++;
+            }
+            daily.forEach((key, delta) -> add("prescription_daily_rollups",
+                    "doctor_reg_no, rollup_date, clinic_name, approved, ai_generated", key, delta, null));
+            diagnoses.forEach((key, delta) -> add("prescription_diagnosis_rollups",
+                    "doctor_reg_no, rollup_date, clinic_name, diagnosis_key", key, delta, labels.get(key)));
+            return changed;
+        });
+        return moved != null ? moved : 0;
+    }
+
+    private Map<String, State> lockState(List<String> ids) {
+        Map<String, State> state = new HashMap<>();
+        namedJdbc.query("select prescription_id, doctor_reg_no, rollup_date, clinic_name, approved, ai_generated, "
+                        + "diagnosis_key, diagnosis, source_version from prescription_rollup_state "
+                        + "where prescription_id in (:ids) for update",
+                Map.of("ids", ids),
+                rs -> {
+                    state.put(rs.getString(1), new State(new Contribution(rs.getString(2),
+                            rs.getObject(3, LocalDate.class), rs.getString(4), rs.getBoolean(5), rs.getBoolean(6),
+                            rs.getString(7), rs.getString(8)), rs.getObject(9, Long.class)));
+                });
+        return state;
+    }
+
+    private void saveState(String id, Contribution before, Contribution now, Long version) {
+        if (now == null) {
+            jdbc.update("delete from prescription_rollup_state where prescription_id = ?", id);
+        } else if (before == null) {
+            jdbc.update("insert into prescription_rollup_state (prescription_id, doctor_reg_no, rollup_date, "
+                            + "clinic_name, approved, ai_generated, diagnosis_key, diagnosis, source_version) "
+                            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    id, now.doctorRegNo(), now.day(), now.clinicName(), now.approved(), now.aiGenerated(),
+                    now.diagnosisKey(), now.diagnosis(), version);
+        } else {
+            jdbc.update("update prescription_rollup_state set doctor_reg_no = ?, rollup_date = ?, clinic_name = ?, "
+                            + "approved = ?, ai_generated = ?, diagnosis_key = ?, diagnosis = ?, source_version = ? "
+                            + "where prescription_id = ?",
+                    now.doctorRegNo(), now.day(), now.clinicName(), now.approved(), now.aiGenerated(),
+                    now.diagnosisKey(), now.diagnosis(), version, id);
+        }
+    }
+
+    // Adds delta to one rollup row, creating it on first use
+    private void add(String table, String keyColumns, List<Object> key, long delta, String label) {
+        if (delta == 0) {
+            return;
+        }
+        String[] columns = keyColumns.split(", ");
+        List<Object> args = new ArrayList<>(key.size() + 1);
+        args.add(delta);
+        args.addAll(key);
+        String where = String.join(" = ? and ", columns) + " = ?";
+        int updated = jdbc.update("update " + table + " set prescriptions = prescriptions + ? where " + where,
+                args.toArray());
+        if (updated > 0) {
+            return;
+        }
+        List<Object> values = new ArrayList<>(key);
+        String insertColumns = keyColumns;
+        if (label != null) {
+            insertColumns += ", diagnosis";
+            values.add(label);
+        }
+        values.add(delta);
+        jdbc.update("insert into " + table + " (" + insertColumns + ", prescriptions) values ("
+                + "?, ".repeat(values.size() - 1) + "?)", values.toArray());
+    }
+
+    /**
+     * Prescriptions per day between from and to (inclusive), oldest day first. Days without any are left out.
+     */
+    public List<DailyPrescriptionCount> daily(String doctorRegNo, String clinicName, LocalDate from, LocalDate to) {
+        List<Object> args = new ArrayList<>();
+        String where = filter(doctorRegNo, clinicName, from, to, args);
+        Map<LocalDate, long[]> days = new TreeMap<>();
+        jdbc.query("select rollup_date, approved, ai_generated, sum(prescriptions) from prescription_daily_rollups "
+                        + "where " + where + " group by rollup_date, approved, ai_generated",
+                rs -> {
+                    long count = rs.getLong(4);
+                    // total, approved, AI generated
+                    long[] counts = days.computeIfAbsent(rs.getObject(1, LocalDate.class), d -> new long[3]);
+                    counts[0] += count;
+                    if (rs.getBoolean(2)) {
+                        counts[1] += count;
+                    }
+                    if (rs.getBoolean(3)) {
+                        counts[2] += count;
+                    }
+                },
+                args.toArray());
+        List<DailyPrescriptionCount> result = new ArrayList<>(days.size());
+        days.forEach((day, counts) -> {
+            if (counts[0] > 0) {
+                result.add(new DailyPrescriptionCount(day, counts[0], counts[1], counts[0] - counts[1], counts[2]));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * The most frequent diagnoses between from and to (inclusive), most frequent first.
+     */
+    public List<DiagnosisCount> topDiagnoses(String doctorRegNo, String clinicName, LocalDate from, LocalDate to,
+                                             int limit) {
+        List<Object> args = new ArrayList<>();
+        String where = filter(doctorRegNo, clinicName, from, to, args);
+        return jdbc.query("select diagnosis_key, max(diagnosis), sum(prescriptions) as total "
+                        + "from prescription_diagnosis_rollups where " + where
+                        + " group by diagnosis_key having sum(prescriptions) > 0"
+                        + " order by total desc, diagnosis_key limit " + limit,
+                (rs, i) -> new DiagnosisCount(rs.getString(2), rs.getLong(3)),
+                args.toArray());
+    }
+
+    /**
+     * Number of prescriptions the rollups count.
+     */
+    public long countedPrescriptions() {
+        Long count = jdbc.queryForObject("select count(*) from prescription_rollup_state", Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Ids after {@code afterId}, in id order, of prescriptions the rollups do not count yet or
+     * last saw at an older version: changes that were committed but never applied, such as
+     * those still queued when a replica stopped. This one reads the prescriptions table.
+     */
+    public List<String> findUnapplied(String afterId, int limit) {
+        return jdbc.queryForList("select p.id from prescriptions p "
+                        + "left join prescription_rollup_state s on s.prescription_id = p.id "
+                        + "where p.id > ? and p.created_at is not null "
+                        + "and (s.prescription_id is null or coalesce(s.source_version, -1) <> coalesce(p.version, -1)) "
+                        + "order by p.id limit " + limit,
+                String.class, afterId);
+    }
+
+    private static String filter(String doctorRegNo, String clinicName, LocalDate from, LocalDate to,
+                                 List<Object> args) {
+        StringBuilder where = new StringBuilder("rollup_date between ? and ?");
+        args.add(from);
+        args.add(to);
+        if (doctorRegNo != null) {
+            where.append(" and doctor_reg_no = ?");
+            args.add(doctorRegNo);
+        }
+        if (clinicName != null) {
+            where.append(" and clinic_name = ?");
+            args.add(clinicName);
+        }
+        return where.toString();
+    }
+
+    static String diagnosisKey(String diagnosis) {
+        if (diagnosis == null || diagnosis.isBlank()) {
+            return NONE;
+        }
+        String key = diagnosis.trim().toLowerCase(Locale.ROOT);
+        return key.length() <= DIAGNOSIS_KEY_LENGTH ? key : key.substring(0, DIAGNOSIS_KEY_LENGTH);
+    }
+
+    private record State(Contribution contribution, Long version) {
+    }
+
+    /**
+     * The rollup rows one prescription is counted in.
+     */
+    private record Contribution(String doctorRegNo, LocalDate day, String clinicName, boolean approved,
+                                boolean aiGenerated, String diagnosisKey, String diagnosis) {
+
+        // Null for a prescription without a creation time: it belongs to no day
+        static Contribution of(PrescriptionRollupSource source) {
+            if (source.createdAt() == null) {
+                return null;
+            }
+            String key = PrescriptionRollupStore.diagnosisKey(source.diagnosis());
+            String label = key.isEmpty() ? NONE : source.diagnosis().trim();
+            return new Contribution(
+                    source.doctorRegNo() != null ? source.doctorRegNo() : NONE,
+                    source.createdAt().toLocalDate(),
+                    source.clinicName() != null ? source.clinicName() : NONE,
+                    Boolean.TRUE.equals(source.approvedByDoctor()),
+                    Boolean.TRUE.equals(source.isAiGenerated()),
+                    key,
+                    label.length() <= LABEL_LENGTH ? label : label.substring(0, LABEL_LENGTH));
+        }
+
+        void addTo(Map<List<Object>, Long> daily, Map<List<Object>, Long> diagnoses, Map<List<Object>, String> labels,
+                   long delta) {
+            daily.merge(List.of(doctorRegNo, day, clinicName, approved, aiGenerated), delta, Long::sum);
+            if (!diagnosisKey.isEmpty()) {
+                List<Object> key = List.of(doctorRegNo, day, clinicName, diagnosisKey);
+                diagnoses.merge(key, delta, Long::sum);
+                labels.putIfAbsent(key, diagnosis);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.sankatmochan.prescription_service.analytics;
+
+import com.sankatmochan.prescription_service.dto.PrescriptionRollupSource;
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link PrescriptionRollupStore} in step with the database. Committed changes are
+ * queued and applied in batches every flush interval, so a bulk ingest costs a few rollup
+ * transactions rather than one per prescription, and requests never wait on them. The queue
+ * is in memory, so whatever it held when a replica stopped is gone. At startup, every
+ * prescription the rollups do not count yet, or counted at an older row version, is applied
+ * again in the background: rows written before the rollups existed, creates and approvals
+ * that were still queued, and the like.
+ *
+ * Archived prescriptions stay counted: a prescription missing from the table keeps its counts.
+ */
+@Component
+public class PrescriptionRollupUpdater implements ApplicationRunner, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PrescriptionRollupUpdater.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final PrescriptionRepository repository;
+    private final PrescriptionRollupStore store;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final Counter moved;
+    private final ScheduledExecutorService flusher;
+
+    public PrescriptionRollupUpdater(PrescriptionRepository repository, PrescriptionRollupStore store,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${prescription.analytics.flush-interval:1s}") Duration flushInterval) {
+        this.repository = repository;
+        this.store = store;
+        this.moved = Counter.builder("prescription.analytics.rollup.updates")
+                .description("Prescriptions whose dashboard counts were added or moved")
+                .register(meterRegistry);
+        Gauge.builder("prescription.analytics.rollup.pending", pending, Set::size)
+                .description("Changed prescriptions waiting to be applied to the rollups")
+                .register(meterRegistry);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "prescription-rollups");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrescriptionChanged(PrescriptionChangedEvent event) {
+        // Only the id is kept: the flush re-reads the committed row, so repeated changes collapse into one update
+        pending.add(event.prescriptionId());
+    }
+
+    /**
+     * Applies every queued change. Changes that fail stay queued for the next flush.
+     */
+    void flush() {
+        while (!pending.isEmpty()) {
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            Iterator<String> it = pending.iterator();
+            while (it.hasNext() && batch.size() < BATCH_SIZE) {
+                batch.add(it.next());
+                it.remove();
+            }
+            try {
+                apply(repository.findRollupSources(batch));
+            } catch (RuntimeException e) {
+                pending.addAll(batch);
+                throw e;
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Could not update dashboard rollups: {}", e.getMessage());
+        }
+    }
+
+    private void apply(List<PrescriptionRollupSource> sources) {
+        int changed = store.apply(sources);
+        if (changed > 0) {
+            moved.increment(changed);
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Thread catchUp = new Thread(this::catchUp, "prescription-rollups-catch-up");
+        catchUp.setDaemon(true);
+        catchUp.start();
+    }
+
+    /**
+     * Applies, on the calling thread, every prescription whose committed version the rollups
+     * have not seen. Returns how many there were.
+     */
+    public long catchUp() {
+        long started = System.nanoTime();
+        long seen = 0;
+        String lastId = "";
+        try {
+            while (true) {
+                List<String> batch = store.findUnapplied(lastId, BATCH_SIZE);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                apply(repository.findRollupSources(batch));
+                seen += batch.size();
+                lastId = batch.get(batch.size() - 1);
+            }
+            if (seen > 0) {
+                log.info("Dashboard rollups caught up on {} prescriptions in {} ms", seen,
+                        (System.nanoTime() - started) / 1_000_000);
+            }
+            return seen;
+        } catch (RuntimeException e) {
+            log.error("Dashboard rollup catch-up failed", e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        // Runs before the data source is closed; what is still queued is not lost
+        flushQuietly();
+    }
+}
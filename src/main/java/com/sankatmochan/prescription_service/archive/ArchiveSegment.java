@@ -0,0 +1,348 @@
+package com.sankatmochan.prescription_service.archive;
+
+import com.sankatmochan.prescription_service.dto.PrescriptionSummary;
+import com.sankatmochan.prescription_service.model.Prescription;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * One immutable, memory-mapped archive file holding a batch of old prescriptions.
+ *
+ * <pre>
+ * header   magic, format, id width, name width, record count, index offsets
+ * blocks   raw length, compressed length, deflated bytes of up to {@value #BLOCK_RECORDS}
+ *          {@link PrescriptionCodec} records (record count, record starts, records)
+ * id index       sorted by id:                         id, block offset, slot
+ * history index  sorted by (patient key, created, id): patient key, created (epoch nanos), id, block offset, slot
+ * </pre>
+ *
+ * Records are compressed a block at a time: neighbouring prescriptions share most of
+ * their text (doctor, clinic, common advice), which a single record is too small to
+ * exploit. Index entries have a fixed width (keys are zero-padded to the longest in the
+ * file), so both lookups are binary searches over the mapped file and need no heap.
+ */
+final class ArchiveSegment implements AutoCloseable {
+
+    private static final int MAGIC = 0x534D5041; // "SMPA"
+    private static final short FORMAT = 1;
+    private static final int HEADER_BYTES = 32;
+    static final int BLOCK_RECORDS = 32;
+    private static final int POINTER_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int idWidth;
+    private final int nameWidth;
+    private final int count;
+    private final int idIndexOffset;
+    private final int historyIndexOffset;
+
+    private ArchiveSegment(Path file, FileChannel channel, MappedByteBuffer map) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.map = map;
+        if (map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a prescription archive segment");
+        }
+        if (map.getShort(4) != FORMAT) {
+            throw new IOException(file + " has unsupported format " + map.getShort(4));
+        }
+        this.idWidth = map.getShort(6);
+        this.nameWidth = map.getShort(8);
+        this.count = map.getInt(12);
+        this.idIndexOffset = Math.toIntExact(map.getLong(16));
+        this.historyIndexOffset = Math.toIntExact(map.getLong(24));
+    }
+
+    static ArchiveSegment open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            // Segments are bounded by the archiver's segment size, far below the 2 GB a single mapping allows
+            return new ArchiveSegment(file, channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int size() {
+        return count;
+    }
+
+    Optional<Prescription> find(String id) {
+        byte[] key = padded(id, idWidth);
+        if (key == null) {
+            return Optional.empty();
+        }
+        int entryBytes = idWidth + POINTER_BYTES;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = idIndexOffset + mid * entryBytes;
+            int cmp = compare(entry, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return Optional.of(read(entry + idWidth));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Up to {@code limit} of the patient's prescriptions, newest first, that sort before
+     * (createdAt, id) when those are given.
+     */
+    List<PrescriptionSummary> history(String patientNameKey, LocalDateTime beforeCreatedAt, String beforeId, int limit) {
+        byte[] name = padded(patientNameKey, nameWidth);
+        if (name == null || count == 0) {
+            return List.of();
+        }
+        long beforeNanos = beforeCreatedAt != null ? PrescriptionCodec.epochNanos(beforeCreatedAt) : Long.MAX_VALUE;
+        byte[] before = beforeId != null ? padded(beforeId, idWidth) : null;
+
+        // First entry at or after the probe; the page is the entries just below it
+        int entryBytes = historyEntryBytes();
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareHistory(historyIndexOffset + mid * entryBytes, name, beforeNanos, before) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        List<PrescriptionSummary> page = new ArrayList<>(Math.min(limit, 32));
+        for (int i = low - 1; i >= 0 && page.size() < limit; i--) {
+            int entry = historyIndexOffset + i * entryBytes;
+            if (compare(entry, name) != 0) {
+                break;
+            }
+            Prescription p = read(entry + nameWidth + Long.BYTES + idWidth);
+            page.add(new PrescriptionSummary(p.getId(), p.getCreatedAt(), p.getDiagnosis(), p.getDoctorName()));
+        }
+        return page;
+    }
+
+    private int historyEntryBytes() {
+        return nameWidth + Long.BYTES + idWidth + POINTER_BYTES;
+    }
+
+    private int compareHistory(int entry, byte[] name, long createdNanos, byte[] id) {
+        int cmp = compare(entry, name);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = Long.compare(map.getLong(entry + nameWidth), createdNanos);
+        if (cmp != 0) {
+            return cmp;
+        }
+        // No id means "after every id at this instant"
+        return id == null ? -1 : compare(entry + nameWidth + Long.BYTES, id);
+    }
+
+    // Unsigned byte order over a zero-padded key, the order the indexes were sorted in
+    private int compare(int position, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            int cmp = Integer.compare(map.get(position + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    // Reads the record a pointer (block offset, slot) in an index entry refers to
+    private Prescription read(int pointer) {
+        long offset = map.getLong(pointer);
+        int slot = map.getInt(pointer + Long.BYTES);
+        int position = Math.toIntExact(offset);
+        int rawLength = map.getInt(position);
+        int compressedLength = map.getInt(position + Integer.BYTES);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(map.slice(position + 2 * Integer.BYTES, compressedLength));
+            byte[] raw = new byte[rawLength];
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, inflated, rawLength - inflated);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("truncated block");
+                }
+                inflated += n;
+            }
+            ByteBuffer block = ByteBuffer.wrap(raw, 0, inflated);
+            int records = block.getInt(0);
+            if (slot >= records) {
+                throw new DataFormatException("no record " + slot + " in a block of " + records);
+            }
+            int start = block.getInt(Integer.BYTES * (1 + slot));
+            int end = slot + 1 < records ? block.getInt(Integer.BYTES * (2 + slot)) : inflated;
+            return PrescriptionCodec.decode(new DataInputStream(new ByteArrayInputStream(raw, start, end - start)));
+        } catch (DataFormatException | IOException | IndexOutOfBoundsException e) {
+            throw new UncheckedIOException(new IOException("Corrupt block at " + offset + " in " + file, e));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mapping itself is released once the buffer is unreachable
+        channel.close();
+    }
+
+    private static byte[] padded(String value, int width) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        return bytes.length <= width ? Arrays.copyOf(bytes, width) : null;
+    }
+
+    /**
+     * Writes a new segment. Records go to the file a block at a time as they are added; only
+     * the index keys and the current block are held in memory until {@link #finish()}.
+     */
+    static final class Writer implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final List<IndexEntry> entries = new ArrayList<>();
+        private final List<byte[]> block = new ArrayList<>(BLOCK_RECORDS);
+        private byte[] buffer = new byte[16 * 1024];
+        private long position = HEADER_BYTES;
+
+        Writer(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            channel.position(HEADER_BYTES);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        }
+
+        void add(Prescription p) throws IOException {
+            String nameKey = Prescription.patientNameKey(p.getPatientName());
+            // The block is written at the current position once it is full
+            entries.add(new IndexEntry(p.getId().getBytes(StandardCharsets.UTF_8),
+                    nameKey != null ? nameKey.getBytes(StandardCharsets.UTF_8) : new byte[0],
+                    PrescriptionCodec.epochNanos(p.getCreatedAt()), position, block.size()));
+            block.add(PrescriptionCodec.encode(p));
+            if (block.size() == BLOCK_RECORDS) {
+                flushBlock();
+            }
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        private void flushBlock() throws IOException {
+            if (block.isEmpty()) {
+                return;
+            }
+            int starts = Integer.BYTES * (1 + block.size());
+            ByteBuffer raw = ByteBuffer.allocate(starts + block.stream().mapToInt(r -> r.length).sum());
+            raw.putInt(block.size());
+            int start = starts;
+            for (byte[] record : block) {
+                raw.putInt(start);
+                start += record.length;
+            }
+            block.forEach(raw::put);
+            block.clear();
+
+            deflater.reset();
+            deflater.setInput(raw.array());
+            deflater.finish();
+            int compressed = 0;
+            while (!deflater.finished()) {
+                if (compressed == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                compressed += deflater.deflate(buffer, compressed, buffer.length - compressed);
+            }
+            out.writeInt(raw.capacity());
+            out.writeInt(compressed);
+            out.write(buffer, 0, compressed);
+            position += 2L * Integer.BYTES + compressed;
+        }
+
+        /**
+         * Writes both indexes and the header and forces the file to disk.
+         */
+        void finish() throws IOException {
+            flushBlock();
+            int idWidth = entries.stream().mapToInt(e -> e.id().length).max().orElse(0);
+            int nameWidth = entries.stream().mapToInt(e -> e.name().length).max().orElse(0);
+
+            long idIndexOffset = position;
+            List<IndexEntry> byId = new ArrayList<>(entries);
+            byId.sort((a, b) -> Arrays.compareUnsigned(Arrays.copyOf(a.id(), idWidth), Arrays.copyOf(b.id(), idWidth)));
+            for (IndexEntry e : byId) {
+                out.write(Arrays.copyOf(e.id(), idWidth));
+                out.writeLong(e.blockOffset());
+                out.writeInt(e.slot());
+            }
+
+            long historyIndexOffset = idIndexOffset + (long) byId.size() * (idWidth + POINTER_BYTES);
+            List<IndexEntry> byHistory = new ArrayList<>(entries);
+            byHistory.sort(Comparator
+                    .<IndexEntry, byte[]>comparing(e -> Arrays.copyOf(e.name(), nameWidth), Arrays::compareUnsigned)
+                    .thenComparingLong(IndexEntry::createdNanos)
+                    .thenComparing(e -> Arrays.copyOf(e.id(), idWidth), Arrays::compareUnsigned));
+            for (IndexEntry e : byHistory) {
+                out.write(Arrays.copyOf(e.name(), nameWidth));
+                out.writeLong(e.createdNanos());
+                out.write(Arrays.copyOf(e.id(), idWidth));
+                out.writeLong(e.blockOffset());
+                out.writeInt(e.slot());
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putShort(FORMAT).putShort((short) idWidth).putShort((short) nameWidth)
+                    .putShort((short) 0).putInt(entries.size()).putLong(idIndexOffset).putLong(historyIndexOffset);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            out.close();
+        }
+
+        private record IndexEntry(byte[] id, byte[] name, long createdNanos, long blockOffset, int slot) {
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.sankatmochan.prescription_service.archive;
+
+import com.sankatmochan.prescription_service.dto.HistoryCursor;
+import com.sankatmochan.prescription_service.dto.PrescriptionSummary;
+import com.sankatmochan.prescription_service.model.Prescription;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Read side of the prescription archive: old prescriptions moved out of the
+ * prescriptions table into immutable segment files (see {@link ArchiveSegment}).
+ *
+ * Lookups by id and patient history fall back to the archive, so archived
+ * prescriptions stay readable and downloadable. The directory may be shared by
+ * several replicas; a lookup that misses rescans it (at most once per refresh
+ * interval) to pick up segments another replica has written.
+ */
+@Component
+public class PrescriptionArchive implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PrescriptionArchive.class);
+
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * Order of history pages: createdAt, then id, both descending.
+     */
+    public static final Comparator<PrescriptionSummary> NEWEST_FIRST = Comparator
+            .comparing(PrescriptionSummary::createdAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(PrescriptionSummary::id)
+            .reversed();
+
+    private final Path directory;
+    private final long refreshIntervalNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Newest first: a prescription archived twice (after an interrupted run) resolves to its latest copy
+    private volatile List<ArchiveSegment> segments = List.of();
+    private volatile long lastRefresh;
+
+    private final Counter hits;
+
+    public PrescriptionArchive(MeterRegistry meterRegistry,
+                               @Value("${prescription.archive.directory:}") String directory,
+                               @Value("${prescription.archive.refresh-interval:5s}") Duration refreshInterval) {
+        this.directory = directory.isBlank() ? null : Path.of(directory);
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+        this.hits = Counter.builder("prescription.archive.reads")
+                .description("Lookups answered from the archive")
+                .register(meterRegistry);
+        Gauge.builder("prescription.archive.segments", this, a -> a.segments.size()).register(meterRegistry);
+        Gauge.builder("prescription.archive.prescriptions", this, PrescriptionArchive::size).register(meterRegistry);
+
+        if (this.directory != null) {
+            try {
+                Files.createDirectories(this.directory);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot use archive directory " + this.directory, e);
+            }
+            refresh();
+            log.info("Prescription archive loaded {} segments ({} prescriptions) from {}", segments.size(), size(),
+                    this.directory);
+        }
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    public long size() {
+        return segments.stream().mapToLong(ArchiveSegment::size).sum();
+    }
+
+    public Optional<Prescription> findById(String id) {
+        if (directory == null) {
+            return Optional.empty();
+        }
+        Optional<Prescription> found = find(id);
+        if (found.isEmpty() && refreshIfDue()) {
+            found = find(id);
+        }
+        found.ifPresent(p -> hits.increment());
+        return found;
+    }
+
+    private Optional<Prescription> find(String id) {
+        for (ArchiveSegment segment : segments) {
+            Optional<Prescription> found = segment.find(id);
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Up to {@code limit} archived prescriptions of the patient, newest first, after the cursor if given.
+     */
+    public List<PrescriptionSummary> findHistory(String patientNameKey, HistoryCursor cursor, int limit) {
+        if (directory == null) {
+            return List.of();
+        }
+        refreshIfDue();
+        List<PrescriptionSummary> merged = new ArrayList<>();
+        for (ArchiveSegment segment : segments) {
+            merged.addAll(segment.history(patientNameKey, cursor != null ? cursor.createdAt() : null,
+                    cursor != null ? cursor.id() : null, limit));
+        }
+        merged.sort(NEWEST_FIRST);
+        Set<String> seen = new HashSet<>();
+        List<PrescriptionSummary> page = new ArrayList<>(Math.min(limit, merged.size()));
+        for (PrescriptionSummary summary : merged) {
+            if (page.size() == limit) {
+                break;
+            }
+            if (seen.add(summary.id())) {
+                page.add(summary);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * A file to write a new segment into. It is invisible to lookups until {@link #publish}.
+     */
+    Path newSegmentFile() throws IOException {
+        return Files.createTempFile(directory, "segment-", ".tmp");
+    }
+
+    /**
+     * Moves a finished segment into place and opens it for lookups.
+     */
+    void publish(Path segmentFile) throws IOException {
+        // Creation time first, so name order is age order
+        Path target = directory.resolve(String.format("segment-%013d-%s%s", System.currentTimeMillis(),
+                UUID.randomUUID(), SEGMENT_SUFFIX));
+        Files.move(segmentFile, target, StandardCopyOption.ATOMIC_MOVE);
+        ArchiveSegment opened = ArchiveSegment.open(target);
+        lock.lock();
+        try {
+            List<ArchiveSegment> updated = new ArrayList<>(segments.size() + 1);
+            updated.add(opened);
+            updated.addAll(segments);
+            segments = List.copyOf(updated);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean refreshIfDue() {
+        if (System.nanoTime() - lastRefresh < refreshIntervalNanos) {
+            return false;
+        }
+        return refresh();
+    }
+
+    /**
+     * Opens segments that appeared in the directory since the last scan.
+     * Returns whether any were added.
+     */
+    boolean refresh() {
+        lock.lock();
+        try {
+            lastRefresh = System.nanoTime();
+            Set<Path> known = new HashSet<>();
+            segments.forEach(s -> known.add(s.file()));
+            List<Path> added;
+            try (Stream<Path> listing = Files.list(directory)) {
+                added = listing.filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .filter(f -> !known.contains(f))
+                        .toList();
+            }
+            if (added.isEmpty()) {
+                return false;
+            }
+            List<ArchiveSegment> updated = new ArrayList<>(segments);
+            for (Path file : added) {
+                updated.add(ArchiveSegment.open(file));
+            }
+            updated.sort(Comparator.comparing((ArchiveSegment s) -> s.file().getFileName().toString()).reversed());
+            segments = List.copyOf(updated);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read archive directory " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ArchiveSegment segment : segments) {
+            segment.close();
+        }
+    }
+}
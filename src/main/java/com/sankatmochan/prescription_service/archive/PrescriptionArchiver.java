@@ -0,0 +1,209 @@
+package com.sankatmochan.prescription_service.archive;
+
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import com.sankatmochan.prescription_service.search.PrescriptionSearchIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves prescriptions older than the configured age out of the database into archive
+ * segments. Each run writes the old rows into a new segment, publishes it, and only
+ * then deletes the rows, so a prescription is readable at every point; an interrupted
+ * run leaves at most a duplicate, which the next run or the lookup order resolves.
+ * A row that changed after it was copied keeps its place in the table.
+ *
+ * Enable it on one replica: runs on several are safe but write duplicate segments.
+ */
+@Component
+public class PrescriptionArchiver implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PrescriptionArchiver.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final PrescriptionArchive archive;
+    private final PrescriptionRepository repository;
+    private final PrescriptionSearchIndex searchIndex;
+    private final JdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate namedJdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readTemplate;
+    private final Duration minAge;
+    private final int segmentSize;
+    private final Counter archived;
+    private final ScheduledExecutorService scheduler;
+
+    public PrescriptionArchiver(PrescriptionArchive archive, PrescriptionRepository repository,
+                                PrescriptionSearchIndex searchIndex, JdbcTemplate jdbc,
+                                PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                @Value("${prescription.archive.enabled:false}") boolean enabled,
+                                @Value("${prescription.archive.min-age:365d}") Duration minAge,
+                                @Value("${prescription.archive.interval:1h}") Duration interval,
+                                @Value("${prescription.archive.segment-size:50000}") int segmentSize) {
+        if (enabled && !archive.isEnabled()) {
+            throw new IllegalStateException("prescription.archive.enabled needs prescription.archive.directory");
+        }
+        this.archive = archive;
+        this.repository = repository;
+        this.searchIndex = searchIndex;
+        this.jdbc = jdbc;
+        this.namedJdbc = new NamedParameterJdbcTemplate(jdbc);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        readTemplate.setReadOnly(true);
+        this.minAge = minAge;
+        this.segmentSize = segmentSize;
+        this.archived = Counter.builder("prescription.archive.archived")
+                .description("Prescriptions moved from the database into the archive")
+                .register(meterRegistry);
+
+        if (enabled) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "prescription-archiver");
+                t.setDaemon(true);
+                return t;
+            });
+            long intervalMillis = interval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::runQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    private void runQuietly() {
+        try {
+            archive(LocalDateTime.now().minus(minAge));
+        } catch (IOException | RuntimeException e) {
+            // Rows are only deleted once their segment is published; the next run retries the rest
+            log.warn("Archiving prescriptions failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Archives every prescription created before the cutoff. Returns how many rows were removed from the database.
+     */
+    int archive(LocalDateTime cutoff) throws IOException {
+        long started = System.nanoTime();
+        int removed = 0;
+        Prescription last = null;
+        boolean exhausted = false;
+        while (!exhausted) {
+            List<ArchivedRow> copied = new ArrayList<>();
+            Path file = archive.newSegmentFile();
+            boolean published = false;
+            try {
+                try (ArchiveSegment.Writer writer = new ArchiveSegment.Writer(file)) {
+                    while (copied.size() < segmentSize) {
+                        Prescription after = last;
+                        Limit limit = Limit.of(Math.min(BATCH_SIZE, segmentSize - copied.size()));
+                        // Encoded inside the transaction, while the medications can still be loaded
+                        List<Prescription> batch = readTemplate.execute(status -> {
+                            List<Prescription> rows = after == null
+                                    ? repository.findForArchive(cutoff, limit)
+                                    : repository.findForArchiveAfter(cutoff, after.getCreatedAt(), after.getId(), limit);
+                            try {
+                                for (Prescription p : rows) {
+                                    writer.add(p);
+                                }
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            return rows;
+                        });
+                        batch.forEach(p -> copied.add(new ArchivedRow(p.getId(), version(p.getVersion()))));
+                        if (batch.size() < limit.max()) {
+                            exhausted = true;
+                            break;
+                        }
+                        last = batch.get(batch.size() - 1);
+                    }
+                    if (copied.isEmpty()) {
+                        break;
+                    }
+                    writer.finish();
+                }
+                archive.publish(file);
+                published = true;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                if (!published) {
+                    Files.deleteIfExists(file);
+                }
+            }
+
+            for (int from = 0; from < copied.size(); from += BATCH_SIZE) {
+                List<String> deleted = delete(copied.subList(from, Math.min(from + BATCH_SIZE, copied.size())));
+                // Search covers the live table only
+                deleted.forEach(searchIndex::delete);
+                removed += deleted.size();
+            }
+        }
+        if (removed > 0) {
+            archived.increment(removed);
+            log.info("Archived {} prescriptions created before {} in {} ms", removed, cutoff,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+        return removed;
+    }
+
+    /**
+     * Deletes the rows that are still at the version that was archived. Returns their ids.
+     */
+    private List<String> delete(List<ArchivedRow> rows) {
+        return transactionTemplate.execute(status -> {
+            Map<String, Long> current = new HashMap<>();
+            namedJdbc.query("select id, version from prescriptions where id in (:ids) for update",
+                    Map.of("ids", rows.stream().map(ArchivedRow::id).toList()),
+                    rs -> {
+                        current.put(rs.getString(1), rs.getLong(2));
+                    });
+            List<String> unchanged = rows.stream()
+                    .filter(row -> current.containsKey(row.id()) && current.get(row.id()) == row.version())
+                    .map(ArchivedRow::id)
+                    .toList();
+            List<Object[]> args = unchanged.stream().map(id -> new Object[] { id }).toList();
+            jdbc.batchUpdate("delete from prescription_medications where prescription_id = ?", args);
+            jdbc.batchUpdate("delete from prescriptions where id = ?", args);
+            return unchanged;
+        });
+    }
+
+    private static long version(Long version) {
+        return version != null ? version : 0L;
+    }
+
+    private record ArchivedRow(String id, long version) {
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.sankatmochan.prescription_service.archive;
+
+import com.sankatmochan.prescription_service.model.Medication;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.model.ReviewStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary form of one prescription inside an archive segment: every field in
+ * declaration order, strings as length-prefixed UTF-8 and timestamps as epoch nanos.
+ * Only what the API and the PDF need is kept; derived keys are recomputed on read.
+ */
+final class PrescriptionCodec {
+
+    // Bump when the field list changes; readers reject records they do not understand
+    static final int RECORD_VERSION = 2;
+
+    private static final int NULL = -1;
+
+    private PrescriptionCodec() {
+    }
+
+    static byte[] encode(Prescription p) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(RECORD_VERSION);
+            writeString(out, p.getId());
+            writeString(out, p.getPatientName());
+            writeString(out, p.getPatientAddress());
+            writeString(out, p.getPatientPhone());
+            out.writeInt(p.getAge() != null ? p.getAge() : Integer.MIN_VALUE);
+            writeString(out, p.getGender());
+            writeString(out, p.getBp());
+            writeString(out, p.getPulse());
+            writeString(out, p.getSpo2());
+            writeString(out, p.getTemp());
+            writeString(out, p.getWeight());
+            writeString(out, p.getHeight());
+            writeString(out, p.getBmi());
+            writeString(out, p.getClinicalNotes());
+            writeString(out, p.getDiagnosis());
+            List<Medication> medications = p.getMedicationData();
+            out.writeInt(medications != null ? medications.size() : NULL);
+            if (medications != null) {
+                for (Medication med : medications) {
+                    writeString(out, med.getName());
+                    writeString(out, med.getDosage());
+                    writeString(out, med.getDuration());
+                }
+            }
+            out.writeByte(flag(p.getApprovedByDoctor()));
+            out.writeByte(flag(p.getIsAiGenerated()));
+            writeString(out, p.getDoctorName());
+            writeString(out, p.getDoctorRegNo());
+            writeString(out, p.getDoctorQualification());
+            writeString(out, p.getDoctorSpecialization());
+            writeString(out, p.getClinicName());
+            writeString(out, p.getClinicAddress());
+            writeTime(out, p.getNextVisitDate());
+            writeString(out, p.getAdvice());
+            writeTime(out, p.getCreatedAt());
+            writeTime(out, p.getUpdatedAt());
+            out.writeLong(p.getVersion() != null ? p.getVersion() : 0L);
+            writeString(out, p.getReviewStatus() != null ? p.getReviewStatus().name() : null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Prescription decode(DataInputStream in) throws IOException {
+        int recordVersion = in.readUnsignedByte();
+        if (recordVersion < 1 || recordVersion > RECORD_VERSION) {
+            throw new IOException("Unsupported archive record version " + recordVersion);
+        }
+        Prescription p = new Prescription();
+        p.setId(readString(in));
+        p.setPatientName(readString(in));
+        p.setPatientNameKey(Prescription.patientNameKey(p.getPatientName()));
+        p.setPatientAddress(readString(in));
+        p.setPatientPhone(readString(in));
+        int age = in.readInt();
+        p.setAge(age != Integer.MIN_VALUE ? age : null);
+        p.setGender(readString(in));
+        p.setBp(readString(in));
+        p.setPulse(readString(in));
+        p.setSpo2(readString(in));
+        p.setTemp(readString(in));
+        p.setWeight(readString(in));
+        p.setHeight(readString(in));
+        p.setBmi(readString(in));
+        p.setClinicalNotes(readString(in));
+        p.setDiagnosis(readString(in));
+        int medicationCount = in.readInt();
+        if (medicationCount == NULL) {
+            p.setMedicationData(null);
+        } else {
+            List<Medication> medications = new ArrayList<>(medicationCount);
+            for (int i = 0; i < medicationCount; i++) {
+                medications.add(new Medication(readString(in), readString(in), readString(in)));
+            }
+            p.setMedicationData(medications);
+        }
+        p.setApprovedByDoctor(readFlag(in));
+        p.setIsAiGenerated(readFlag(in));
+        p.setDoctorName(readString(in));
+        p.setDoctorRegNo(readString(in));
+        p.setDoctorQualification(readString(in));
+        p.setDoctorSpecialization(readString(in));
+        p.setClinicName(readString(in));
+        p.setClinicAddress(readString(in));
+        p.setNextVisitDate(readTime(in));
+        p.setAdvice(readString(in));
+        p.setCreatedAt(readTime(in));
+        p.setUpdatedAt(readTime(in));
+        p.setVersion(in.readLong());
+        if (recordVersion >= 2) {
+            String reviewStatus = readString(in);
+            p.setReviewStatus(reviewStatus != null ? ReviewStatus.valueOf(reviewStatus) : null);
+        } else {
+            // Written before review statuses existed
+            p.setReviewStatus(Boolean.TRUE.equals(p.getApprovedByDoctor()) ? ReviewStatus.APPROVED : ReviewStatus.PENDING);
+        }
+        return p;
+    }
+
+    /**
+     * Timestamps as nanoseconds since the epoch, reading the local date-time as UTC.
+     * Exact for every value a DATETIME column holds, and ordered like the date-times themselves.
+     */
+    static long epochNanos(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + time.getNano();
+    }
+
+    private static LocalDateTime fromEpochNanos(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeBoolean(time != null);
+        if (time != null) {
+            out.writeLong(epochNanos(time));
+        }
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        return in.readBoolean() ? fromEpochNanos(in.readLong()) : null;
+    }
+
+    private static int flag(Boolean value) {
+        return value == null ? 2 : value ? 1 : 0;
+    }
+
+    private static Boolean readFlag(DataInputStream in) throws IOException {
+        int value = in.readUnsignedByte();
+        return value == 2 ? null : value == 1;
+    }
+}
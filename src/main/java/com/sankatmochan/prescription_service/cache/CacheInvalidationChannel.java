@@ -0,0 +1,16 @@
+package com.sankatmochan.prescription_service.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries "prescription changed" notices between replicas so each can drop its own
+ * cached copy and re-index the prescription. {@link #publish} is called by the replica that wrote the row; every
+ * subscriber on every other replica is then called with the prescription id.
+ * Delivery is at-least-once and may lag; the cache TTL bounds staleness if a notice is lost.
+ */
+public interface CacheInvalidationChannel {
+
+    void publish(String prescriptionId);
+
+    void subscribe(Consumer<String> listener);
+}
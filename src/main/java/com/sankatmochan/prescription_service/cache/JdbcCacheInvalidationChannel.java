@@ -0,0 +1,237 @@
+package com.sankatmochan.prescription_service.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Invalidation channel over the shared database, so replicas need no extra
+ * infrastructure. Each notice is a row in prescription_cache_invalidations; every
+ * replica polls for rows newer than the last one it saw and skips its own.
+ *
+ * Ids are handed out when a row is inserted, not when it commits, so two replicas can
+ * commit out of id order and a poll can see id 11 before id 10 exists. Ids skipped that
+ * way are remembered and looked for again on every poll for the grace period; after that
+ * they are given up on (a rolled-back insert, or a sequence that skips ids never fills
+ * them in).
+ *
+ * Rows older than the retention are pruned every quarter of the retention, by whichever
+ * replica claims that turn in prescription_cache_invalidation_prunes.
+ *
+ * Nothing touches the database until {@link #start()}, which the context calls once it is
+ * refreshed.
+ */
+public class JdbcCacheInvalidationChannel implements CacheInvalidationChannel, SmartLifecycle, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcCacheInvalidationChannel.class);
+
+    private static final int MAX_ROWS_PER_POLL = 1000;
+    // A sequence that jumps (MySQL reserves ids in blocks after a restart) must not fill memory
+    private static final int MAX_TRACKED_GAPS = 10_000;
+
+    private final JdbcTemplate jdbc;
+    private final Duration pollInterval;
+    private final Duration retention;
+    private final Duration grace;
+    private final String origin = UUID.randomUUID().toString();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService poller;
+    private long lastSeenId;
+    // Ids below lastSeenId not seen yet, and when they were first missed (System.nanoTime)
+    private final NavigableMap<Long, Long> gaps = new TreeMap<>();
+    private volatile boolean running;
+
+    public JdbcCacheInvalidationChannel(JdbcTemplate jdbc, Duration pollInterval, Duration retention,
+                                        Duration grace) {
+        this.jdbc = jdbc;
+        this.pollInterval = pollInterval;
+        this.retention = retention;
+        this.grace = grace;
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "prescription-cache-invalidation");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void start() {
+        createTableIfMissing();
+        Long maxId = jdbc.queryForObject("select max(id) from prescription_cache_invalidations", Long.class);
+        // Only changes made from now on matter: this replica's cache starts empty
+        this.lastSeenId = maxId != null ? maxId : 0;
+
+        long intervalMillis = pollInterval.toMillis();
+        poller.scheduleWithFixedDelay(this::pollQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        long pruneMillis = Math.max(retention.toMillis() / 4, intervalMillis);
+        poller.scheduleWithFixedDelay(this::pruneQuietly, pruneMillis, pruneMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        close();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Before the web server starts taking requests that publish notices
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void createTableIfMissing() {
+        jdbc.execute("create table if not exists prescription_cache_invalidations ("
+                + "id bigint auto_increment primary key, "
+                + "prescription_id varchar(50) not null, "
+                + "origin varchar(36) not null, "
+                + "created_at timestamp not null)");
+        // For pruning
+        createIndexIfMissing("prescription_cache_invalidations", "idx_cache_invalidations_created", "created_at");
+        jdbc.execute("create table if not exists prescription_cache_invalidation_prunes ("
+                + "id int primary key, "
+                + "next_prune_at timestamp not null)");
+        Integer prunes = jdbc.queryForObject("select count(*) from prescription_cache_invalidation_prunes",
+                Integer.class);
+        if (prunes == null || prunes == 0) {
+            try {
+                jdbc.update("insert into prescription_cache_invalidation_prunes (id, next_prune_at) values (1, ?)",
+                        Timestamp.from(Instant.now()));
+            } catch (DuplicateKeyException e) {
+                // Another replica created the row at the same moment
+            }
+        }
+    }
+
+    // "create index if not exists" is not portable to MySQL, so ask the catalog first
+    private void createIndexIfMissing(String table, String index, String columns) {
+        Boolean exists = jdbc.execute((ConnectionCallback<Boolean>) connection -> {
+            for (String name : List.of(table, table.toUpperCase(Locale.ROOT))) {
+                try (ResultSet rs = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, name, false,
+                        false)) {
+                    while (rs.next()) {
+                        if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        });
+        if (!Boolean.TRUE.equals(exists)) {
+            jdbc.execute("create index " + index + " on " + table + " (" + columns + ")");
+        }
+    }
+
+    @Override
+    public void publish(String prescriptionId) {
+        jdbc.update("insert into prescription_cache_invalidations (prescription_id, origin, created_at) "
+                + "values (?, ?, ?)", prescriptionId, origin, Timestamp.from(Instant.now()));
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Delivers every notice from other replicas since the previous poll, and those that
+     * committed late into ids an earlier poll skipped.
+     */
+    void poll() {
+        long now = System.nanoTime();
+        gaps.values().removeIf(missedAt -> now - missedAt >= grace.toNanos());
+        long from = gaps.isEmpty() ? lastSeenId : gaps.firstKey() - 1;
+        List<Notice> notices;
+        do {
+            notices = jdbc.query("select id, prescription_id, origin from prescription_cache_invalidations "
+                            + "where id > ? order by id limit " + MAX_ROWS_PER_POLL,
+                    (rs, i) -> new Notice(rs.getLong(1), rs.getString(2), rs.getString(3)), from);
+            for (Notice notice : notices) {
+                from = notice.id();
+                if (notice.id() <= lastSeenId) {
+                    if (gaps.remove(notice.id()) == null) {
+                        // Delivered by an earlier poll
+                        continue;
+                    }
+                } else {
+                    for (long missing = lastSeenId + 1; missing < notice.id() && gaps.size() < MAX_TRACKED_GAPS;
+                         missing++) {
+                        gaps.put(missing, now);
+                    }
+                    lastSeenId = notice.id();
+                }
+                if (!origin.equals(notice.origin())) {
+                    listeners.forEach(listener -> listener.accept(notice.prescriptionId()));
+                }
+            }
+        } while (notices.size() == MAX_ROWS_PER_POLL);
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (DataAccessException e) {
+            // The next poll picks up where this one stopped
+            log.warn("Could not poll cache invalidations: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes notices past the retention, if no other replica has done so within the last
+     * quarter of it. Returns whether this replica took the turn.
+     */
+    boolean prune() {
+        Instant now = Instant.now();
+        int claimed = jdbc.update("update prescription_cache_invalidation_prunes set next_prune_at = ? "
+                        + "where id = 1 and next_prune_at <= ?",
+                Timestamp.from(now.plus(retention.dividedBy(4))), Timestamp.from(now));
+        if (claimed == 0) {
+            return false;
+        }
+        jdbc.update("delete from prescription_cache_invalidations where created_at < ?",
+                Timestamp.from(now.minus(retention)));
+        return true;
+    }
+
+    private void pruneQuietly() {
+        try {
+            prune();
+        } catch (DataAccessException e) {
+            log.warn("Could not prune cache invalidations: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        poller.shutdownNow();
+    }
+
+    private record Notice(long id, String prescriptionId, String origin) {
+    }
+}
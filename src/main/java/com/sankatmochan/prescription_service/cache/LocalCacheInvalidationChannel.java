@@ -0,0 +1,18 @@
+package com.sankatmochan.prescription_service.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Single-replica channel: there is nobody else to tell, so publishing does nothing.
+ * The publishing replica always invalidates its own cache directly.
+ */
+public class LocalCacheInvalidationChannel implements CacheInvalidationChannel {
+
+    @Override
+    public void publish(String prescriptionId) {
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+    }
+}
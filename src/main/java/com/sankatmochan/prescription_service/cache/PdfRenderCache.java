@@ -0,0 +1,496 @@
+package com.sankatmochan.prescription_service.cache;
+
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bounded cache of rendered prescription PDFs.
+ *
+ * Entries are keyed by prescription id and validated against the content
+ * fingerprint of the row they were rendered from, so a changed prescription is
+ * never served a stale document. A memory tier holds the hottest documents and an
+ * optional disk tier keeps a larger working set across restarts. Both tiers are
+ * bounded by total size and evict the least recently used entry first.
+ */
+@Component
+public class PdfRenderCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfRenderCache.class);
+
+    // Only plain ids are turned into file names; anything else skips the disk tier
+    private static final Pattern SAFE_ID = Pattern.compile("[A-Za-z0-9_-]{1,50}");
+    private static final String FILE_SUFFIX = ".pdf";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final boolean enabled;
+    private final long maxMemoryBytes;
+    private final long maxEntryBytes;
+    private final Path diskDirectory;
+    private final long maxDiskBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, MemoryEntry> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<String, DiskEntry> disk = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter memoryEvictions;
+    private final Counter diskEvictions;
+
+    public PdfRenderCache(MeterRegistry meterRegistry,
+                          @Value("${prescription.pdf.cache.enabled:true}") boolean enabled,
+                          @Value("${prescription.pdf.cache.max-memory-size:64MB}") DataSize maxMemorySize,
+                          @Value("${prescription.pdf.cache.max-entry-size:2MB}") DataSize maxEntrySize,
+                          @Value("${prescription.pdf.cache.disk.directory:}") String diskDirectory,
+                          @Value("${prescription.pdf.cache.disk.max-size:1GB}") DataSize maxDiskSize) {
+        this.enabled = enabled;
+        this.maxMemoryBytes = maxMemorySize.toBytes();
+        this.maxEntryBytes = maxEntrySize.toBytes();
+        this.diskDirectory = enabled && !diskDirectory.isBlank() ? Path.of(diskDirectory) : null;
+        this.maxDiskBytes = maxDiskSize.toBytes();
+
+        this.memoryHits = hitCounter(meterRegistry, "memory");
+        this.diskHits = hitCounter(meterRegistry, "disk");
+        this.misses = Counter.builder("prescription.pdf.cache.misses")
+                .description("PDF downloads that had to be rendered")
+                .register(meterRegistry);
+        this.memoryEvictions = evictionCounter(meterRegistry, "memory");
+        this.diskEvictions = evictionCounter(meterRegistry, "disk");
+        Gauge.builder("prescription.pdf.cache.size", this, c -> c.memoryBytes)
+                .tag("tier", "memory").baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("prescription.pdf.cache.size", this, c -> c.diskBytes)
+                .tag("tier", "disk").baseUnit("bytes").register(meterRegistry);
+
+        if (this.diskDirectory != null) {
+            loadDiskIndex();
+        }
+    }
+
+    /**
+     * Returns the cached PDF for the given prescription if it was rendered from
+     * content with the same fingerprint, or {@code null} on a miss.
+     */
+    public byte[] get(String prescriptionId, String fingerprint) {
+        if (!enabled) {
+            return null;
+        }
+        lock.lock();
+        try {
+            MemoryEntry entry = memory.get(prescriptionId);
+            if (entry != null) {
+                if (entry.fingerprint().equals(fingerprint)) {
+                    memoryHits.increment();
+                    return entry.pdf();
+                }
+                removeMemory(prescriptionId);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        byte[] fromDisk = readDisk(prescriptionId, fingerprint);
+        if (fromDisk != null) {
+            diskHits.increment();
+            putMemory(prescriptionId, fingerprint, fromDisk);
+            return fromDisk;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Like {@link #get}, but as a {@link Resource} for serving byte ranges. A document
+     * in the disk tier is read from its file rather than loaded into memory, so a
+     * resumed download of a large document costs only the part of the file it reads.
+     */
+    public Resource getResource(String prescriptionId, String fingerprint) {
+        if (!enabled) {
+            return null;
+        }
+        lock.lock();
+        try {
+            MemoryEntry inMemory = memory.get(prescriptionId);
+            if (inMemory != null && inMemory.fingerprint().equals(fingerprint)) {
+                memoryHits.increment();
+                return new ByteArrayResource(inMemory.pdf());
+            }
+            DiskEntry onDisk = diskDirectory != null ? disk.get(prescriptionId) : null;
+            if (onDisk != null && onDisk.fingerprint().equals(fingerprint)) {
+                // Still racing an eviction between here and the read; that read fails like any lost file would
+                diskHits.increment();
+                return new FileSystemResource(diskFile(prescriptionId, fingerprint));
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a freshly rendered PDF in every enabled tier.
+     */
+    public void put(String prescriptionId, String fingerprint, byte[] pdf) {
+        if (!enabled) {
+            return;
+        }
+        putMemory(prescriptionId, fingerprint, pdf);
+        writeDisk(prescriptionId, fingerprint, pdf);
+    }
+
+    /**
+     * Wraps a response stream so a document rendered into it is also cached.
+     * The copy is kept only while it stays within the per-entry limit, and is
+     * stored when the returned stream is closed. Closing it does not close the
+     * target stream.
+     *
+     * When the target fails (typically a client that dropped the connection), the
+     * render still runs to completion into the copy and the failure is rethrown
+     * from {@code close()}, so the client's resumed range request finds the document cached.
+     */
+    public OutputStream writeThrough(String prescriptionId, String fingerprint, OutputStream target) {
+        return new WriteThroughStream(prescriptionId, fingerprint, target, enabled ? maxEntryBytes : 0);
+    }
+
+    /**
+     * Whether a rendering of this exact content is already stored in any tier.
+     * Unlike {@link #get}, this loads nothing from disk and does not count as a hit or miss.
+     */
+    public boolean contains(String prescriptionId, String fingerprint) {
+        if (!enabled) {
+            return false;
+        }
+        lock.lock();
+        try {
+            MemoryEntry inMemory = memory.get(prescriptionId);
+            DiskEntry onDisk = disk.get(prescriptionId);
+            return (inMemory != null && inMemory.fingerprint().equals(fingerprint))
+                    || (onDisk != null && onDisk.fingerprint().equals(fingerprint));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Drops every cached rendering of the given prescription.
+     */
+    public void invalidate(String prescriptionId) {
+        if (!enabled) {
+            return;
+        }
+        DiskEntry stale;
+        lock.lock();
+        try {
+            removeMemory(prescriptionId);
+            stale = disk.remove(prescriptionId);
+            if (stale != null) {
+                diskBytes -= stale.size();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (stale != null) {
+            deleteQuietly(diskFile(prescriptionId, stale.fingerprint()));
+        }
+    }
+
+    // Runs before the other listeners, so a pre-render started by them is never dropped by this invalidation
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrescriptionChanged(PrescriptionChangedEvent event) {
+        invalidate(event.prescriptionId());
+    }
+
+    // --- Memory tier ---
+
+    private void putMemory(String prescriptionId, String fingerprint, byte[] pdf) {
+        if (pdf.length > maxEntryBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            removeMemory(prescriptionId);
+            memory.put(prescriptionId, new MemoryEntry(fingerprint, pdf));
+            memoryBytes += pdf.length;
+            Iterator<Map.Entry<String, MemoryEntry>> eldest = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= eldest.next().getValue().pdf().length;
+                eldest.remove();
+                memoryEvictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeMemory(String prescriptionId) {
+        MemoryEntry removed = memory.remove(prescriptionId);
+        if (removed != null) {
+            memoryBytes -= removed.pdf().length;
+        }
+    }
+
+    // --- Disk tier ---
+
+    private byte[] readDisk(String prescriptionId, String fingerprint) {
+        if (diskDirectory == null) {
+            return null;
+        }
+        lock.lock();
+        try {
+            DiskEntry entry = disk.get(prescriptionId);
+            if (entry == null || !entry.fingerprint().equals(fingerprint)) {
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return Files.readAllBytes(diskFile(prescriptionId, fingerprint));
+        } catch (IOException e) {
+            log.warn("Could not read cached PDF for {}: {}", prescriptionId, e.getMessage());
+            invalidate(prescriptionId);
+            return null;
+        }
+    }
+
+    private void writeDisk(String prescriptionId, String fingerprint, byte[] pdf) {
+        if (diskDirectory == null || pdf.length > maxDiskBytes || !SAFE_ID.matcher(prescriptionId).matches()) {
+            return;
+        }
+        Path target = diskFile(prescriptionId, fingerprint);
+        Path tmp = null;
+        try {
+            // Write to a temp file first so readers never observe a half-written document
+            tmp = Files.createTempFile(diskDirectory, prescriptionId, TEMP_SUFFIX);
+            Files.write(tmp, pdf);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write cached PDF for {}: {}", prescriptionId, e.getMessage());
+            if (tmp != null) {
+                deleteQuietly(tmp);
+            }
+            return;
+        }
+
+        List<Path> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            DiskEntry previous = disk.put(prescriptionId, new DiskEntry(fingerprint, pdf.length));
+            if (previous != null) {
+                diskBytes -= previous.size();
+                if (!previous.fingerprint().equals(fingerprint)) {
+                    evicted.add(diskFile(prescriptionId, previous.fingerprint()));
+                }
+            }
+            diskBytes += pdf.length;
+            Iterator<Map.Entry<String, DiskEntry>> eldest = disk.entrySet().iterator();
+            while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+                Map.Entry<String, DiskEntry> e = eldest.next();
+                diskBytes -= e.getValue().size();
+                evicted.add(diskFile(e.getKey(), e.getValue().fingerprint()));
+                eldest.remove();
+                diskEvictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(this::deleteQuietly);
+    }
+
+    private void loadDiskIndex() {
+        try {
+            Files.createDirectories(diskDirectory);
+            List<Path> files;
+            List<Path> unfinished;
+            try (Stream<Path> listing = Files.list(diskDirectory)) {
+                Map<Boolean, List<Path>> byKind = listing
+                        .filter(f -> f.getFileName().toString().endsWith(FILE_SUFFIX)
+                                || f.getFileName().toString().endsWith(TEMP_SUFFIX))
+                        .collect(Collectors.partitioningBy(f -> f.getFileName().toString().endsWith(FILE_SUFFIX)));
+                files = byKind.get(true).stream().sorted(Comparator.comparingLong(this::lastModified)).toList();
+                unfinished = byKind.get(false);
+            }
+            // Left by a write the process did not live to finish; nothing accounts for them
+            unfinished.forEach(this::deleteQuietly);
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int dash = name.lastIndexOf('-');
+                if (dash <= 0) {
+                    continue;
+                }
+                String id = name.substring(0, dash);
+                String fingerprint = name.substring(dash + 1, name.length() - FILE_SUFFIX.length());
+                long size = Files.size(file);
+                DiskEntry previous = disk.put(id, new DiskEntry(fingerprint, size));
+                if (previous != null) {
+                    diskBytes -= previous.size();
+                    deleteQuietly(diskFile(id, previous.fingerprint()));
+                }
+                diskBytes += size;
+            }
+            log.info("PDF render cache loaded {} documents ({} bytes) from {}", disk.size(), diskBytes, diskDirectory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot use PDF cache directory " + diskDirectory, e);
+        }
+    }
+
+    private Path diskFile(String prescriptionId, String fingerprint) {
+        return diskDirectory.resolve(prescriptionId + "-" + fingerprint + FILE_SUFFIX);
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete cached PDF {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static Counter hitCounter(MeterRegistry registry, String tier) {
+        return Counter.builder("prescription.pdf.cache.hits")
+                .description("PDF downloads served from the render cache")
+                .tag("tier", tier)
+                .register(registry);
+    }
+
+    private static Counter evictionCounter(MeterRegistry registry, String tier) {
+        return Counter.builder("prescription.pdf.cache.evictions")
+                .description("Rendered PDFs evicted to stay within the size budget")
+                .tag("tier", tier)
+                .register(registry);
+    }
+
+    private final class WriteThroughStream extends OutputStream {
+
+        private final String prescriptionId;
+        private final String fingerprint;
+        private final OutputStream target;
+        private final long limit;
+        private ByteArrayOutputStream copy;
+        private IOException targetFailure;
+
+        WriteThroughStream(String prescriptionId, String fingerprint, OutputStream target, long limit) {
+            this.prescriptionId = prescriptionId;
+            this.fingerprint = fingerprint;
+            this.target = target;
+            this.limit = limit;
+            this.copy = limit > 0 ? new ByteArrayOutputStream(8192) : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (targetFailure == null) {
+                try {
+                    target.write(b);
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+            if (copy != null) {
+                capture(1);
+                if (copy != null) {
+                    copy.write(b);
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (targetFailure == null) {
+                try {
+                    target.write(b, off, len);
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+            if (copy != null) {
+                capture(len);
+                if (copy != null) {
+                    copy.write(b, off, len);
+                }
+            }
+        }
+
+        private void failed(IOException e) throws IOException {
+            if (copy == null) {
+                // Nothing would be kept, so stop the render right away
+                throw e;
+            }
+            targetFailure = e;
+        }
+
+        private void capture(int len) throws IOException {
+            // Too large to cache: stop copying so heap use stays bounded
+            if (copy.size() + (long) len > limit) {
+                copy = null;
+                if (targetFailure != null) {
+                    throw targetFailure;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (targetFailure == null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (copy != null) {
+                put(prescriptionId, fingerprint, copy.toByteArray());
+                copy = null;
+            }
+            if (targetFailure != null) {
+                throw targetFailure;
+            }
+            target.flush();
+        }
+    }
+
+    private record MemoryEntry(String fingerprint, byte[] pdf) {
+    }
+
+    private record DiskEntry(String fingerprint, long size) {
+    }
+}
@@ -0,0 +1,159 @@
+package com.sankatmochan.prescription_service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.model.Prescription;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of prescriptions by SNKTMOCH id.
+ *
+ * An entry is fresh for the TTL and then reloaded on the next read. If that reload
+ * fails because the database is unavailable, the stale entry keeps being served for
+ * up to the max-stale period, so short outages do not fail downloads of known
+ * prescriptions. "Unavailable" covers both a failing query and a transaction that
+ * cannot begin because no connection can be had; the latter is what a real outage
+ * looks like, and it is a {@link TransactionException}, not a
+ * {@link DataAccessException}. Writes on this replica invalidate immediately; writes
+ * on other replicas arrive through the {@link CacheInvalidationChannel}. A load that
+ * was already running when its id was invalidated is returned but not cached.
+ *
+ * Cached prescriptions are detached and shared between requests: treat them as read-only.
+ */
+public class PrescriptionEntityCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PrescriptionEntityCache.class);
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final Ticker ticker;
+    private final Cache<String, Entry> cache;
+    private final CacheInvalidationChannel channel;
+    private final Counter staleServed;
+    // Invalidations per stripe of ids: a load that started before one must not be cached after it
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public PrescriptionEntityCache(MeterRegistry meterRegistry, CacheInvalidationChannel channel, boolean enabled,
+                                   long maximumSize, Duration ttl, Duration maxStale) {
+        this(meterRegistry, channel, enabled, maximumSize, ttl, maxStale, Ticker.systemTicker());
+    }
+
+    PrescriptionEntityCache(MeterRegistry meterRegistry, CacheInvalidationChannel channel, boolean enabled,
+                            long maximumSize, Duration ttl, Duration maxStale, Ticker ticker) {
+        this.enabled = enabled;
+        this.ttlNanos = ttl.toNanos();
+        this.ticker = ticker;
+        this.channel = channel;
+        // Entries outlive the TTL by the max-stale period so they can cover a database outage
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl.plus(maxStale))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "prescriptions");
+        this.staleServed = Counter.builder("prescription.entity.cache.stale")
+                .description("Reads answered from an expired entry because the database was unavailable")
+                .register(meterRegistry);
+
+        channel.subscribe(this::invalidate);
+    }
+
+    /**
+     * Returns the prescription from the cache, or from {@code loader} when it is absent
+     * or past its TTL. Prescriptions that do not exist are not cached.
+     */
+    public Optional<Prescription> get(String prescriptionId, Function<String, Optional<Prescription>> loader) {
+        if (!enabled) {
+            return loader.apply(prescriptionId);
+        }
+        Entry entry = cache.getIfPresent(prescriptionId);
+        if (entry != null && ticker.read() - entry.loadedAt() < ttlNanos) {
+            return Optional.of(entry.prescription());
+        }
+        int stripe = stripe(prescriptionId);
+        long generation = generations.get(stripe);
+        try {
+            Optional<Prescription> loaded = loader.apply(prescriptionId);
+            loaded.ifPresentOrElse(p -> store(prescriptionId, p, stripe, generation),
+                    () -> cache.invalidate(prescriptionId));
+            return loaded;
+        } catch (DataAccessException | TransactionException e) {
+            if (entry == null) {
+                throw e;
+            }
+            staleServed.increment();
+            log.warn("Serving cached prescription {} after a failed reload: {}", prescriptionId, e.getMessage());
+            return Optional.of(entry.prescription());
+        }
+    }
+
+    // Skipped when the id was invalidated while loading (the copy may predate that change) or a newer version is cached
+    private void store(String prescriptionId, Prescription loaded, int stripe, long generation) {
+        cache.asMap().compute(prescriptionId, (id, existing) -> {
+            if (generations.get(stripe) != generation) {
+                return existing;
+            }
+            if (existing != null && existing.prescription().getVersion() != null && loaded.getVersion() != null
+                    && existing.prescription().getVersion() > loaded.getVersion()) {
+                return existing;
+            }
+            return new Entry(loaded, ticker.read());
+        });
+    }
+
+    private static int stripe(String prescriptionId) {
+        return Math.floorMod(prescriptionId.hashCode(), GENERATION_STRIPES);
+    }
+
+    /**
+     * The cached prescription regardless of its TTL, for answering from while the database
+     * is unavailable. Empty when nothing within the max-stale period is cached.
+     */
+    public Optional<Prescription> getIfCached(String prescriptionId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.getIfPresent(prescriptionId)).map(Entry::prescription);
+    }
+
+    public void invalidate(String prescriptionId) {
+        // Generation first: a load finishing after this sees it and does not cache what it read
+        generations.incrementAndGet(stripe(prescriptionId));
+        cache.invalidate(prescriptionId);
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrescriptionChanged(PrescriptionChangedEvent event) {
+        invalidate(event.prescriptionId());
+        // Creates too: a new id is in no cache yet, but the other replicas' search indexes need it
+        try {
+            channel.publish(event.prescriptionId());
+        } catch (DataAccessException e) {
+            log.warn("Could not tell other replicas about the change to {}: {}", event.prescriptionId(),
+                    e.getMessage());
+        }
+    }
+
+    private record Entry(Prescription prescription, long loadedAt) {
+    }
+}
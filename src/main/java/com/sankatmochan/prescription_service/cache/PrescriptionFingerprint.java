@@ -0,0 +1,113 @@
+package com.sankatmochan.prescription_service.cache;
+
+import com.sankatmochan.prescription_service.model.Medication;
+import com.sankatmochan.prescription_service.model.Prescription;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Computes a content hash over every field that ends up in the rendered PDF.
+ * Two prescriptions with the same fingerprint produce the same document, so the
+ * hash can be used as a cache key that changes automatically when the row does.
+ */
+public final class PrescriptionFingerprint {
+
+    private PrescriptionFingerprint() {
+    }
+
+    /**
+     * @param layoutTag the renderer's {@code getLayoutTag()}, so a layout or branding change
+     *                  never serves documents rendered by the previous one
+     */
+    public static String of(Prescription p, String layoutTag) {
+        MessageDigest digest = sha256();
+        update(digest, layoutTag);
+        update(digest, p.getId());
+        update(digest, p.getPatientName());
+        update(digest, p.getPatientAddress());
+        update(digest, p.getPatientPhone());
+        update(digest, p.getAge());
+        update(digest, p.getGender());
+        update(digest, p.getBp());
+        update(digest, p.getPulse());
+        update(digest, p.getSpo2());
+        update(digest, p.getTemp());
+        update(digest, p.getWeight());
+        update(digest, p.getHeight());
+        update(digest, p.getBmi());
+        update(digest, p.getClinicalNotes());
+        update(digest, p.getDiagnosis());
+        updateMedications(digest, p.getMedicationData());
+        update(digest, p.getApprovedByDoctor());
+        update(digest, p.getIsAiGenerated());
+        update(digest, p.getDoctorName());
+        update(digest, p.getDoctorRegNo());
+        update(digest, p.getDoctorQualification());
+        update(digest, p.getDoctorSpecialization());
+        update(digest, p.getClinicName());
+        update(digest, p.getClinicAddress());
+        update(digest, p.getNextVisitDate());
+        update(digest, p.getAdvice());
+        update(digest, p.getCreatedAt());
+        // Stamped into the document info, see PrescriptionPdfRenderer
+        update(digest, p.getUpdatedAt());
+        update(digest, p.getVersion());
+        // 128 bits is plenty for a cache key and keeps file names short
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+
+    private static void updateMedications(MessageDigest digest, List<Medication> medications) {
+        if (medications == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        update(digest, medications.size());
+        for (Medication med : medications) {
+            if (med == null) {
+                digest.update((byte) 0);
+                continue;
+            }
+            update(digest, med.getName());
+            update(digest, med.getDosage());
+            update(digest, med.getDuration());
+        }
+    }
+
+    private static void update(MessageDigest digest, Object value) {
+        if (value == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        // Length-prefix every value so adjacent fields can never run into each other
+        byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    /**
+     * Short hex digest of the given values, for tags that only need to change when any of them does.
+     */
+    public static String hash(Object... values) {
+        MessageDigest digest = sha256();
+        for (Object value : values) {
+            update(digest, value);
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 8);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.sankatmochan.prescription_service.config;
+
+import com.sankatmochan.prescription_service.cache.CacheInvalidationChannel;
+import com.sankatmochan.prescription_service.cache.JdbcCacheInvalidationChannel;
+import com.sankatmochan.prescription_service.cache.LocalCacheInvalidationChannel;
+import com.sankatmochan.prescription_service.cache.PrescriptionEntityCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+@Configuration
+public class EntityCacheConfig {
+
+    @Bean
+    public PrescriptionEntityCache prescriptionEntityCache(
+            MeterRegistry meterRegistry, CacheInvalidationChannel channel,
+            @Value("${prescription.cache.entity.enabled:true}") boolean enabled,
+            @Value("${prescription.cache.entity.maximum-size:10000}") long maximumSize,
+            @Value("${prescription.cache.entity.ttl:10m}") Duration ttl,
+            @Value("${prescription.cache.entity.max-stale:1h}") Duration maxStale) {
+        return new PrescriptionEntityCache(meterRegistry, channel, enabled, maximumSize, ttl, maxStale);
+    }
+
+    /**
+     * Replicas share the database, so by default they also share invalidations through it.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "prescription.cache.entity.invalidation", havingValue = "jdbc", matchIfMissing = true)
+    public CacheInvalidationChannel jdbcCacheInvalidationChannel(
+            JdbcTemplate jdbc,
+            @Value("${prescription.cache.entity.invalidation-poll-interval:2s}") Duration pollInterval,
+            @Value("${prescription.cache.entity.invalidation-retention:1h}") Duration retention,
+            @Value("${prescription.cache.entity.invalidation-grace:30s}") Duration grace) {
+        return new JdbcCacheInvalidationChannel(jdbc, pollInterval, retention, grace);
+    }
+
+    /**
+     * For a single replica, or when another channel implementation is provided.
+     */
+    @Bean
+    @ConditionalOnMissingBean(CacheInvalidationChannel.class)
+    public CacheInvalidationChannel localCacheInvalidationChannel() {
+        return new LocalCacheInvalidationChannel();
+    }
+}
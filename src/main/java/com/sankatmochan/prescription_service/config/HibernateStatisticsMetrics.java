@@ -0,0 +1,50 @@
+package com.sankatmochan.prescription_service.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.stat.Statistics;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes Hibernate's session factory statistics: JDBC statements prepared, connections
+ * obtained, and hits and misses of the query plan cache (the HQL-to-SQL translations). A
+ * steady miss rate after warm-up means statements are being generated per call, for example
+ * IN lists of every length, and also defeat the driver's prepared statement cache.
+ */
+public class HibernateStatisticsMetrics implements MeterBinder {
+
+    private final Statistics statistics;
+
+    public HibernateStatisticsMetrics(Statistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "hibernate.statements", "JDBC statements prepared", Statistics::getPrepareStatementCount,
+                "status", "prepared");
+        counter(registry, "hibernate.statements", "JDBC statements closed", Statistics::getCloseStatementCount,
+                "status", "closed");
+        counter(registry, "hibernate.connections.obtained", "JDBC connections obtained by Hibernate sessions",
+                Statistics::getConnectCount);
+        counter(registry, "hibernate.query.executions", "HQL and native queries executed",
+                Statistics::getQueryExecutionCount);
+        counter(registry, "hibernate.query.plan.cache", "Query plan cache lookups",
+                Statistics::getQueryPlanCacheHitCount, "result", "hit");
+        counter(registry, "hibernate.query.plan.cache", "Query plan cache lookups",
+                Statistics::getQueryPlanCacheMissCount, "result", "miss");
+        counter(registry, "hibernate.flushes", "Session flushes", Statistics::getFlushCount);
+        counter(registry, "hibernate.optimistic.failures", "Updates refused by a @Version check",
+                Statistics::getOptimisticFailureCount);
+    }
+
+    private void counter(MeterRegistry registry, String name, String description,
+                         ToDoubleFunction<Statistics> value, String... tags) {
+        FunctionCounter.builder(name, statistics, value)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+    }
+}
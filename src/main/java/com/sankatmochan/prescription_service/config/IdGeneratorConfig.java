@@ -0,0 +1,51 @@
+package com.sankatmochan.prescription_service.config;
+
+import com.sankatmochan.prescription_service.service.PrescriptionIdGenerator;
+import com.sankatmochan.prescription_service.service.impl.SnowflakePrescriptionIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(IdGeneratorConfig.class);
+
+    /**
+     * Default id generator. Every replica must run with its own
+     * {@code prescription.id.node-id}. Without one the node id is derived from the host name,
+     * which is only unique with high probability, so that fallback is refused where
+     * {@code prescription.id.require-node-id} is set (the prod profile).
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public PrescriptionIdGenerator prescriptionIdGenerator(
+            @Value("${prescription.id.node-id:-1}") int nodeId,
+            @Value("${prescription.id.require-node-id:false}") boolean requireNodeId) {
+        if (nodeId < 0) {
+            if (requireNodeId) {
+                throw new IllegalStateException("prescription.id.node-id (PRESCRIPTION_ID_NODE_ID) is not set. "
+                        + "Give each replica a distinct node id from 0 to "
+                        + SnowflakePrescriptionIdGenerator.MAX_NODE_ID + " so prescription ids cannot collide.");
+            }
+            nodeId = nodeIdFromHostName();
+            log.warn("prescription.id.node-id is not set, using node id {} derived from the host name. "
+                    + "Set a distinct node id per replica to guarantee unique prescription ids.", nodeId);
+        }
+        return new SnowflakePrescriptionIdGenerator(nodeId);
+    }
+
+    private static int nodeIdFromHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName().hashCode() & SnowflakePrescriptionIdGenerator.MAX_NODE_ID;
+        } catch (UnknownHostException e) {
+            return 0;
+        }
+    }
+}
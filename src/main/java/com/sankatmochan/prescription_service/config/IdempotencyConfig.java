@@ -0,0 +1,50 @@
+package com.sankatmochan.prescription_service.config;
+
+import com.sankatmochan.prescription_service.idempotency.IdempotencyKeys;
+import com.sankatmochan.prescription_service.idempotency.IdempotencyRecords;
+import com.sankatmochan.prescription_service.idempotency.JdbcIdempotencyRecords;
+import com.sankatmochan.prescription_service.idempotency.LocalIdempotencyRecords;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+@Configuration
+public class IdempotencyConfig {
+
+    @Bean
+    public IdempotencyKeys idempotencyKeys(
+            MeterRegistry meterRegistry, IdempotencyRecords records,
+            @Value("${prescription.idempotency.maximum-size:100000}") long maximumSize,
+            @Value("${prescription.idempotency.ttl:24h}") Duration ttl,
+            @Value("${prescription.idempotency.in-flight-wait:10s}") Duration inFlightWait) {
+        return new IdempotencyKeys(meterRegistry, records, maximumSize, ttl, inFlightWait);
+    }
+
+    /**
+     * Lets a retry that lands on another replica, or comes after a restart, find the original.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "prescription.idempotency.store", havingValue = "jdbc")
+    public IdempotencyRecords jdbcIdempotencyRecords(
+            JdbcTemplate jdbc,
+            @Value("${prescription.idempotency.ttl:24h}") Duration ttl,
+            @Value("${prescription.idempotency.in-flight-wait:10s}") Duration inFlightWait,
+            @Value("${prescription.idempotency.claim-timeout:1m}") Duration claimTimeout) {
+        return new JdbcIdempotencyRecords(jdbc, ttl, inFlightWait, claimTimeout);
+    }
+
+    /**
+     * Keys stay on the replica that saw them, for as long as they fit in memory.
+     */
+    @Bean
+    @ConditionalOnMissingBean(IdempotencyRecords.class)
+    public IdempotencyRecords localIdempotencyRecords() {
+        return new LocalIdempotencyRecords();
+    }
+}
@@ -0,0 +1,38 @@
+package com.sankatmochan.prescription_service.config;
+
+import com.sankatmochan.prescription_service.pdf.PdfBranding;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.awt.Color;
+
+@Configuration
+public class PdfBrandingConfig {
+
+    /**
+     * Clinic branding for the prescription PDF. Every property falls back to the
+     * Sankat Mochan defaults, so only what differs needs to be set.
+     */
+    @Bean
+    public PdfBranding pdfBranding(
+            @Value("${prescription.pdf.branding.clinic-name:}") String clinicName,
+            @Value("${prescription.pdf.branding.clinic-address:}") String clinicAddress,
+            @Value("${prescription.pdf.branding.contact-email:}") String contactEmail,
+            @Value("${prescription.pdf.branding.accent-color:}") String accentColor,
+            @Value("${prescription.pdf.branding.footer-title:}") String footerTitle,
+            @Value("${prescription.pdf.branding.footer-note:}") String footerNote) {
+        PdfBranding defaults = PdfBranding.DEFAULT;
+        return new PdfBranding(
+                orDefault(clinicName, defaults.clinicName()),
+                orDefault(clinicAddress, defaults.clinicAddress()),
+                orDefault(contactEmail, defaults.contactEmail()),
+                accentColor.isBlank() ? defaults.accentColor() : Color.decode(accentColor.trim()),
+                orDefault(footerTitle, defaults.footerTitle()),
+                orDefault(footerNote, defaults.footerNote()));
+    }
+
+    private static String orDefault(String value, String defaultValue) {
+        return value.isBlank() ? defaultValue : value.trim();
+    }
+}
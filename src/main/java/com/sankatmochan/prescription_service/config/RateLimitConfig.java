@@ -0,0 +1,51 @@
+package com.sankatmochan.prescription_service.config;
+
+import com.sankatmochan.prescription_service.ratelimit.DownloadRateLimitInterceptor;
+import com.sankatmochan.prescription_service.ratelimit.DownloadRateLimiter;
+import com.sankatmochan.prescription_service.ratelimit.TokenBuckets;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class RateLimitConfig implements WebMvcConfigurer {
+
+    static final String DOWNLOAD_PATH = "/api/v1/prescriptions/{id}/download";
+
+    private final DownloadRateLimitInterceptor downloadRateLimit;
+
+    public RateLimitConfig(DownloadRateLimitInterceptor downloadRateLimit) {
+        this.downloadRateLimit = downloadRateLimit;
+    }
+
+    /**
+     * A limit of 0 per minute turns that limit off.
+     */
+    @Bean
+    public static DownloadRateLimiter downloadRateLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${prescription.download.rate-limit.client.per-minute:120}") int clientPerMinute,
+            @Value("${prescription.download.rate-limit.client.burst:30}") int clientBurst,
+            @Value("${prescription.download.rate-limit.prescription.per-minute:20}") int prescriptionPerMinute,
+            @Value("${prescription.download.rate-limit.prescription.burst:5}") int prescriptionBurst,
+            @Value("${prescription.download.rate-limit.maximum-size:100000}") long maximumSize,
+            @Value("${prescription.download.rate-limit.client-header:}") String clientHeader) {
+        return new DownloadRateLimiter(meterRegistry,
+                clientPerMinute > 0 ? new TokenBuckets(clientPerMinute, clientBurst, maximumSize) : null,
+                prescriptionPerMinute > 0 ? new TokenBuckets(prescriptionPerMinute, prescriptionBurst, maximumSize) : null,
+                clientHeader);
+    }
+
+    @Bean
+    public static DownloadRateLimitInterceptor downloadRateLimitInterceptor(DownloadRateLimiter downloadRateLimiter) {
+        return new DownloadRateLimitInterceptor(downloadRateLimiter);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(downloadRateLimit).addPathPatterns(DOWNLOAD_PATH);
+    }
+}
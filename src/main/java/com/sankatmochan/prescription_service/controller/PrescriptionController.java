@@ -1,54 +1,498 @@
 package com.sankatmochan.prescription_service.controller;
 
+import com.sankatmochan.prescription_service.analytics.PrescriptionDashboardQuery;
+import com.sankatmochan.prescription_service.cache.PrescriptionFingerprint;
+import com.sankatmochan.prescription_service.dto.BulkIngestResponse;
+import com.sankatmochan.prescription_service.dto.ExportFormat;
+import com.sankatmochan.prescription_service.dto.HistoryCursor;
+import com.sankatmochan.prescription_service.dto.HistoryPage;
+import com.sankatmochan.prescription_service.dto.MedicationUsage;
+import com.sankatmochan.prescription_service.dto.PrescriptionDashboard;
+import com.sankatmochan.prescription_service.dto.PrescriptionExportQuery;
+import com.sankatmochan.prescription_service.dto.PrescriptionRequest;
+import com.sankatmochan.prescription_service.dto.PrescriptionResponse;
+import com.sankatmochan.prescription_service.dto.PrescriptionSummary;
+import com.sankatmochan.prescription_service.dto.PrescriptionValidator;
+import com.sankatmochan.prescription_service.dto.ReviewQueuePage;
+import com.sankatmochan.prescription_service.dto.ReviewRequest;
+import com.sankatmochan.prescription_service.dto.ReviewResponse;
+import com.sankatmochan.prescription_service.dto.SearchPage;
+import com.sankatmochan.prescription_service.idempotency.IdempotencyKeyInProgressException;
+import com.sankatmochan.prescription_service.idempotency.IdempotencyKeyReusedException;
+import com.sankatmochan.prescription_service.idempotency.IdempotencyKeys;
 import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.model.ReviewStatus;
+import com.sankatmochan.prescription_service.pdf.RenderCapacityExceededException;
+import com.sankatmochan.prescription_service.ratelimit.DownloadRateLimitedException;
+import com.sankatmochan.prescription_service.ratelimit.DownloadRateLimiter;
+import com.sankatmochan.prescription_service.search.PrescriptionSearchIndex;
+import com.sankatmochan.prescription_service.search.PrescriptionSearchQuery;
+import com.sankatmochan.prescription_service.service.PrescriptionAnalyticsService;
+import com.sankatmochan.prescription_service.service.PrescriptionBulkService;
+import com.sankatmochan.prescription_service.service.PrescriptionExportService;
+import com.sankatmochan.prescription_service.service.PrescriptionReviewService;
+import com.sankatmochan.prescription_service.service.PrescriptionSearchService;
 import com.sankatmochan.prescription_service.service.PrescriptionService;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api/v1/prescriptions")
 @CrossOrigin(origins = "*")
 public class PrescriptionController {
 
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final int MAX_DASHBOARD_DAYS = 366;
+    private static final int MAX_TOP_DIAGNOSES = 100;
+    private static final int MAX_REVIEW_ITEMS = 1000;
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final PrescriptionService prescriptionService;
+    private final PrescriptionBulkService bulkService;
+    private final PrescriptionSearchService searchService;
+    private final PrescriptionExportService exportService;
+    private final PrescriptionAnalyticsService analyticsService;
+    private final PrescriptionReviewService reviewService;
+    private final IdempotencyKeys idempotencyKeys;
+    private final DownloadRateLimiter downloadRateLimiter;
+    private final long maxExportDocuments;
+    private final CacheControl approvedCacheControl;
 
-    public PrescriptionController(PrescriptionService prescriptionService) {
+    public PrescriptionController(PrescriptionService prescriptionService, PrescriptionBulkService bulkService,
+                                  PrescriptionSearchService searchService, PrescriptionExportService exportService,
+                                  PrescriptionAnalyticsService analyticsService,
+                                  PrescriptionReviewService reviewService, IdempotencyKeys idempotencyKeys,
+                                  DownloadRateLimiter downloadRateLimiter,
+                                  @Value("${prescription.export.max-documents:5000}") long maxExportDocuments,
+                                  @Value("${prescription.http.approved-max-age:1d}") Duration approvedMaxAge) {
         this.prescriptionService = prescriptionService;
+        this.bulkService = bulkService;
+        this.searchService = searchService;
+        this.exportService = exportService;
+        this.analyticsService = analyticsService;
+        this.reviewService = reviewService;
+        this.idempotencyKeys = idempotencyKeys;
+        this.downloadRateLimiter = downloadRateLimiter;
+        this.maxExportDocuments = maxExportDocuments;
+        // Patient data: browsers and the pharmacy app may keep it, shared caches may not
+        this.approvedCacheControl = CacheControl.maxAge(approvedMaxAge).cachePrivate().immutable();
     }
 
     /**
      * Endpoint to create a prescription and generate a unique SNKTMOCH ID.
+     * With an Idempotency-Key header, a retry of the same request returns the prescription the
+     * first one created (marked with Idempotent-Replayed: true) instead of creating another;
+     * reusing the key for a different request is refused with 422.
      */
     @PostMapping
-    public ResponseEntity<Prescription> createPrescription(@RequestBody Prescription prescription) {
-        Prescription savedPrescription = prescriptionService.createPrescription(prescription);
-        return new ResponseEntity<>(savedPrescription, HttpStatus.CREATED);
+    public ResponseEntity<PrescriptionResponse> createPrescription(
+            @RequestBody PrescriptionRequest prescription,
+            @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            Prescription savedPrescription = prescriptionService.createPrescription(prescription.toPrescription());
+            return new ResponseEntity<>(PrescriptionResponse.from(savedPrescription), HttpStatus.CREATED);
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    IDEMPOTENCY_KEY_HEADER + " must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        IdempotencyKeys.Result result = idempotencyKeys.createOnce(idempotencyKey, prescription.fingerprint(),
+                () -> prescriptionService.createPrescription(prescription.toPrescription()),
+                prescriptionService::getPrescriptionById);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header("Idempotent-Replayed", String.valueOf(result.replayed()))
+                .body(PrescriptionResponse.from(result.prescription()));
+    }
+
+    /**
+     * Endpoint to create many prescriptions at once from a JSON array.
+     * Returns 201 when every item was stored, otherwise 207 with the error of each failed item.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkIngestResponse> createPrescriptions(@RequestBody List<PrescriptionRequest> prescriptions) {
+        // Null items are passed on so they are reported at their index
+        List<Prescription> entities = new ArrayList<>(prescriptions.size());
+        for (PrescriptionRequest p : prescriptions) {
+            entities.add(p != null ? p.toPrescription() : null);
+        }
+        return bulkResponse(bulkService.createPrescriptions(entities));
+    }
+
+    /**
+     * Endpoint to create prescriptions from an NDJSON stream (one prescription per line).
+     * The stream is persisted as it is read, so it can be arbitrarily long.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkIngestResponse> createPrescriptionsFromNdjson(InputStream body) throws IOException {
+        return bulkResponse(bulkService.createPrescriptionsFromNdjson(body));
+    }
+
+    private ResponseEntity<BulkIngestResponse> bulkResponse(BulkIngestResponse response) {
+        HttpStatus status = response.failed() == 0 ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return new ResponseEntity<>(response, status);
     }
 
     /**
      * Endpoint to download the styled PDF using the unique ID.
+     * The document is written straight into the response (chunked), so no full copy is held per request.
+     * Carries a strong ETag and Last-Modified; a matching If-None-Match / If-Modified-Since gets a 304
+     * from the version columns alone, without loading or rendering the prescription.
+     * Only a download that has to render counts against the prescription's rate limit.
      */
     @GetMapping(value = "/{id}/download", produces = MediaType.APPLICATION_PDF_VALUE)
-    public ResponseEntity<byte[]> downloadPrescription(@PathVariable String id) {
-        byte[] pdfContent = prescriptionService.generatePrescriptionPdf(id);
+    public ResponseEntity<StreamingResponseBody> downloadPrescription(@PathVariable String id, WebRequest request,
+                                                                      HttpServletRequest servletRequest) {
+        PrescriptionValidator validator = prescriptionService.getPrescriptionValidator(id);
+        // Also adds ETag and Last-Modified to the response when the client's copy is out of date
+        if (request.checkNotModified(validator.etag(prescriptionService.getPdfLayoutTag()), validator.lastModified())) {
+            return null;
+        }
+
+        // A cached copy older than the validator is reloaded, so the body matches the ETag just sent
+        Prescription prescription = prescriptionService.getPrescriptionById(id, validator.version());
+        if (!prescriptionService.isPdfRendered(prescription)) {
+            downloadRateLimiter.takeRender(servletRequest, id);
+        }
+        StreamingResponseBody pdfContent = out -> prescriptionService.writePrescriptionPdf(prescription, out);
+        return new ResponseEntity<>(pdfContent, pdfHeaders(id, validator), HttpStatus.OK);
+    }
+
+    /**
+     * Same endpoint for requests with a Range header, i.e. resumed downloads: answers 206 with the
+     * requested bytes of the stored rendering, so resuming costs a read instead of a new render.
+     * An If-Range that no longer matches (the prescription changed) gets the whole current document.
+     */
+    @GetMapping(value = "/{id}/download", headers = HttpHeaders.RANGE, produces = MediaType.APPLICATION_PDF_VALUE)
+    public ResponseEntity<Resource> downloadPrescriptionRange(@PathVariable String id, WebRequest request,
+                                                              HttpServletRequest servletRequest) throws IOException {
+        PrescriptionValidator validator = prescriptionService.getPrescriptionValidator(id);
+        String etag = validator.etag(prescriptionService.getPdfLayoutTag());
+        if (request.checkNotModified(etag, validator.lastModified())) {
+            return null;
+        }
+
+        Prescription prescription = prescriptionService.getPrescriptionById(id, validator.version());
+        if (!prescriptionService.isPdfRendered(prescription)) {
+            downloadRateLimiter.takeRender(servletRequest, id);
+        }
+        Resource pdf = prescriptionService.getPrescriptionPdfResource(prescription);
+        if (!ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, validator.lastModified())) {
+            // Ranges are only applied to resources with a known length, so this sends the full body with 200
+            pdf = new InputStreamResource(pdf.getInputStream());
+        }
+        return new ResponseEntity<>(pdf, pdfHeaders(id, validator), HttpStatus.OK);
+    }
 
+    private HttpHeaders pdfHeaders(String id, PrescriptionValidator validator) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_PDF);
         // This makes the browser download the file as 'SNKTMOCHXXXXXXXX.pdf'
         headers.setContentDisposition(ContentDisposition.attachment()
                 .filename(id + ".pdf")
                 .build());
+        // Tells clients an interrupted download can be resumed (see downloadPrescriptionRange)
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // An approved prescription is final; anything else must be revalidated on every use
+        headers.setCacheControl(validator.isApproved() ? approvedCacheControl : CacheControl.noCache().cachePrivate());
+        return headers;
+    }
+
+    // RFC 9110 13.1.5: a strong ETag or an exact Last-Modified date
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return lastModified >= 0 && date == lastModified / 1000 * 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Endpoint to export every prescription of a doctor or clinic issued in a date range
+     * (e.g., /export?doctorRegNo=MD12345&from=2026-03-01&to=2026-03-01&format=zip), oldest first.
+     * format=zip gives one SNKTMOCHXXXXXXXX.pdf per prescription, format=pdf one merged document.
+     * The archive is streamed while it is rendered; 204 when nothing matches. Ranges starting
+     * before the prescription archive's cutoff are refused, as those rows may have been archived.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportPrescriptions(@RequestParam(required = false) String doctorRegNo,
+                                                                     @RequestParam(required = false) String clinicName,
+                                                                     @RequestParam
+                                                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                     @RequestParam
+                                                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                     @RequestParam(defaultValue = "zip") String format) {
+        if (isBlank(doctorRegNo) && isBlank(clinicName)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "doctorRegNo or clinicName is required");
+        }
+        if (from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+        }
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be zip or pdf", e);
+        }
+        LocalDate earliest = exportService.getEarliestExportableDate().orElse(null);
+        if (earliest != null && from.isBefore(earliest)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Prescriptions created before " + earliest
+                    + " may have been archived and cannot be exported; start the range on or after " + earliest);
+        }
+        PrescriptionExportQuery query = new PrescriptionExportQuery(
+                isBlank(doctorRegNo) ? null : doctorRegNo.trim(), isBlank(clinicName) ? null : clinicName.trim(),
+                from, to);
+
+        long count = exportService.countPrescriptions(query);
+        if (count == 0) {
+            return ResponseEntity.noContent().build();
+        }
+        if (count > maxExportDocuments) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Export would contain " + count
+                    + " prescriptions, the limit is " + maxExportDocuments + "; narrow the date range");
+        }
+
+        StreamingResponseBody body = out -> exportService.export(query, exportFormat, out);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(exportFormat == ExportFormat.ZIP
+                ? MediaType.parseMediaType("application/zip") : MediaType.APPLICATION_PDF);
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename("prescriptions-" + from + "-" + to + "." + exportFormat.name().toLowerCase(Locale.ROOT))
+                .build());
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint for a doctor's or clinic's dashboard (e.g., /analytics?doctorRegNo=MD12345&from=2026-03-01&to=2026-03-31):
+     * prescriptions per day, approved versus pending, AI-generated, and the top diagnoses. Dates are inclusive.
+     * Answered from pre-computed rollups, which trail new prescriptions by up to a second.
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<PrescriptionDashboard> getDashboard(@RequestParam(required = false) String doctorRegNo,
+                                                              @RequestParam(required = false) String clinicName,
+                                                              @RequestParam
+                                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                              @RequestParam
+                                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                              @RequestParam(defaultValue = "10") int topDiagnoses) {
+        if (from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_DASHBOARD_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "The date range may span at most " + MAX_DASHBOARD_DAYS + " days");
+        }
+        if (topDiagnoses < 0 || topDiagnoses > MAX_TOP_DIAGNOSES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "topDiagnoses must be between 0 and " + MAX_TOP_DIAGNOSES);
+        }
+        return ResponseEntity.ok(analyticsService.getDashboard(new PrescriptionDashboardQuery(
+                isBlank(doctorRegNo) ? null : doctorRegNo.trim(), isBlank(clinicName) ? null : clinicName.trim(),
+                from, to, topDiagnoses)));
+    }
 
-        return new ResponseEntity<>(pdfContent, headers, HttpStatus.OK);
+    /**
+     * Endpoint to list a doctor's prescriptions waiting for review (e.g., /review-queue?doctorRegNo=MD12345), oldest first.
+     * Each item carries the version to send back with the decision; follow nextCursor (?cursor=...) for later entries.
+     */
+    @GetMapping("/review-queue")
+    public ResponseEntity<ReviewQueuePage> getReviewQueue(@RequestParam String doctorRegNo,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(defaultValue = "50") int size) {
+        if (size < 1 || size > MAX_HISTORY_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "size must be between 1 and " + MAX_HISTORY_PAGE_SIZE);
+        }
+        HistoryCursor position;
+        try {
+            position = cursor != null ? HistoryCursor.decode(cursor) : null;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e);
+        }
+        return ResponseEntity.ok(reviewService.getReviewQueue(doctorRegNo, position, size));
     }
 
     /**
-     * Endpoint to search history by patient name (e.g., /patient/Rahul).
+     * Endpoint to approve or reject many prescriptions at once, each at the version the reviewer saw.
+     * Returns 200 when every item was updated, otherwise 207 with the error of each failed item
+     * (a version conflict means someone else changed or reviewed it first).
+     */
+    @PostMapping("/review")
+    public ResponseEntity<ReviewResponse> review(@RequestBody ReviewRequest request) {
+        if (request.decision() != ReviewStatus.APPROVED && request.decision() != ReviewStatus.REJECTED) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "decision must be APPROVED or REJECTED");
+        }
+        if (request.prescriptions() == null || request.prescriptions().isEmpty()
+                || request.prescriptions().size() > MAX_REVIEW_ITEMS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "prescriptions must list between 1 and " + MAX_REVIEW_ITEMS + " items");
+        }
+        ReviewResponse response = reviewService.review(request.decision(), request.prescriptions());
+        return ResponseEntity.status(response.failed() == 0 ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(response);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /**
+     * Endpoint to search history by patient name (e.g., /patient/Rahul), newest first.
+     * Returns summaries one page at a time; follow nextCursor (?cursor=...) for older entries.
+     * The page carries an ETag over its contents, so an unchanged page revalidates with a bodiless 304.
      */
     @GetMapping("/patient/{name}")
-    public ResponseEntity<List<Prescription>> getPatientHistory(@PathVariable String name) {
-        return ResponseEntity.ok(prescriptionService.getHistoryByPatient(name));
+    public ResponseEntity<HistoryPage> getPatientHistory(@PathVariable String name,
+                                                         @RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = "20") int size,
+                                                         WebRequest request) {
+        if (size < 1 || size > MAX_HISTORY_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "size must be between 1 and " + MAX_HISTORY_PAGE_SIZE);
+        }
+        HistoryCursor position;
+        try {
+            position = cursor != null ? HistoryCursor.decode(cursor) : null;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e);
+        }
+        HistoryPage page = prescriptionService.getHistoryByPatient(name, position, size);
+        if (request.checkNotModified(historyEtag(page))) {
+            return null;
+        }
+        // New prescriptions appear on the first page at any time, so always revalidate
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePrivate()).body(page);
+    }
+
+    private static String historyEtag(HistoryPage page) {
+        Object[] values = new Object[page.items().size() * 4 + 1];
+        int i = 0;
+        for (PrescriptionSummary summary : page.items()) {
+            values[i++] = summary.id();
+            values[i++] = summary.createdAt();
+            values[i++] = summary.diagnosis();
+            values[i++] = summary.doctorName();
+        }
+        values[i] = page.nextCursor();
+        return "\"" + PrescriptionFingerprint.hash(values) + "\"";
+    }
+
+    /**
+     * Endpoint to find prescriptions containing a drug (e.g., /medication/Paracetamol?from=2026-03-01&to=2026-03-31).
+     * Returns the total count and the most recent matches, newest first. Dates are inclusive.
+     */
+    @GetMapping("/medication/{name}")
+    public ResponseEntity<MedicationUsage> getMedicationUsage(@PathVariable String name,
+                                                              @RequestParam(required = false)
+                                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                              @RequestParam(required = false)
+                                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                              @RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > MAX_HISTORY_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + MAX_HISTORY_PAGE_SIZE);
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+        }
+        return ResponseEntity.ok(prescriptionService.getMedicationUsage(name, from, to, limit));
+    }
+
+    /**
+     * Endpoint for full-text search over diagnosis, clinical notes, advice and medication names
+     * (e.g., /search?q=tuberculosis&doctorRegNo=MD12345&from=2026-01-01). Best match first.
+     * Supports "quoted phrases", -exclusions, a|b alternatives and prefix* terms.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<SearchPage> search(@RequestParam String q,
+                                             @RequestParam(required = false) String doctorRegNo,
+                                             @RequestParam(required = false)
+                                             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                             @RequestParam(required = false)
+                                             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                             @RequestParam(defaultValue = "0") int page,
+                                             @RequestParam(defaultValue = "20") int size) {
+        if (q.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must not be blank");
+        }
+        if (size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "size must be between 1 and " + MAX_SEARCH_PAGE_SIZE);
+        }
+        if (page < 0 || ((long) page + 1) * size > PrescriptionSearchIndex.MAX_RESULT_WINDOW) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Only the first " + PrescriptionSearchIndex.MAX_RESULT_WINDOW + " results can be paged through");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+        }
+        return ResponseEntity.ok(searchService.search(new PrescriptionSearchQuery(q, doctorRegNo, from, to, page, size)));
+    }
+
+    @ExceptionHandler(EntityNotFoundException.class)
+    public ResponseEntity<Void> prescriptionNotFound(EntityNotFoundException e) {
+        return ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Renders are bounded (see RenderGate); when every slot stays busy past the wait
+     * limit, tell the client to come back instead of queueing without bound.
+     */
+    @ExceptionHandler(RenderCapacityExceededException.class)
+    public ResponseEntity<Void> renderCapacityExceeded(RenderCapacityExceededException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf((e.getRetryAfter().toMillis() + 999) / 1000))
+                .build();
+    }
+
+    /**
+     * The download would render a prescription past its rate limit; the client keeps its token.
+     */
+    @ExceptionHandler(DownloadRateLimitedException.class)
+    public ResponseEntity<Void> downloadRateLimited(DownloadRateLimitedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000)))
+                .build();
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<String> idempotencyKeyReused(IdempotencyKeyReusedException e) {
+        return ResponseEntity.unprocessableContent().body(e.getMessage());
+    }
+
+    /**
+     * The first request with this key is still being stored; the retry should come back shortly.
+     */
+    @ExceptionHandler(IdempotencyKeyInProgressException.class)
+    public ResponseEntity<String> idempotencyKeyInProgress(IdempotencyKeyInProgressException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).header(HttpHeaders.RETRY_AFTER, "1").body(e.getMessage());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,11 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.util.List;
+
+public record BulkIngestResponse(int received, int created, int failed, List<BulkItemResult> items) {
+
+    public static BulkIngestResponse of(List<BulkItemResult> items) {
+        int created = (int) items.stream().filter(BulkItemResult::isSuccess).count();
+        return new BulkIngestResponse(items.size(), created, items.size() - created, items);
+    }
+}
@@ -0,0 +1,23 @@
+package com.sankatmochan.prescription_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one item in a bulk request: the generated id on success, or the error.
+ * {@code index} is the zero-based position of the item in the request.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkItemResult(int index, String id, String error) {
+
+    public static BulkItemResult created(int index, String id) {
+        return new BulkItemResult(index, id, null);
+    }
+
+    public static BulkItemResult failed(int index, String error) {
+        return new BulkItemResult(index, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,9 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Prescriptions issued on one day. {@code pending} are those not yet approved by the doctor.
+ */
+public record DailyPrescriptionCount(LocalDate day, long total, long approved, long pending, long aiGenerated) {
+}
@@ -0,0 +1,7 @@
+package com.sankatmochan.prescription_service.dto;
+
+/**
+ * How many prescriptions carried a diagnosis (compared case-insensitively).
+ */
+public record DiagnosisCount(String diagnosis, long prescriptions) {
+}
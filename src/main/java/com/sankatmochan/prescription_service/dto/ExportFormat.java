@@ -0,0 +1,10 @@
+package com.sankatmochan.prescription_service.dto;
+
+/**
+ * Layout of a batch export: one PDF per prescription in a ZIP, or all of them merged
+ * into a single PDF.
+ */
+public enum ExportFormat {
+    ZIP,
+    PDF
+}
@@ -0,0 +1,20 @@
+package com.sankatmochan.prescription_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.sankatmochan.prescription_service.model.Medication;
+
+/**
+ * One line of the medication table as the API sends and receives it.
+ */
+// Older clients may still send extra keys in a medication entry
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record MedicationLine(String name, String dosage, String duration) {
+
+    public static MedicationLine from(Medication medication) {
+        return new MedicationLine(medication.getName(), medication.getDosage(), medication.getDuration());
+    }
+
+    public Medication toMedication() {
+        return new Medication(name, dosage, duration);
+    }
+}
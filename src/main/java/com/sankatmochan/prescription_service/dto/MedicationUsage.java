@@ -0,0 +1,12 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Prescriptions containing one drug within an optional inclusive date range:
+ * the total count plus the most recent {@code items}.
+ */
+public record MedicationUsage(String medication, LocalDate from, LocalDate to, long totalPrescriptions,
+                              List<PrescriptionSummary> items) {
+}
@@ -0,0 +1,13 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Dashboard figures for a doctor and/or clinic over an inclusive date range: totals,
+ * one entry per day that had prescriptions, and the most frequent diagnoses.
+ */
+public record PrescriptionDashboard(String doctorRegNo, String clinicName, LocalDate from, LocalDate to,
+                                    long total, long approved, long pending, long aiGenerated,
+                                    List<DailyPrescriptionCount> days, List<DiagnosisCount> topDiagnoses) {
+}
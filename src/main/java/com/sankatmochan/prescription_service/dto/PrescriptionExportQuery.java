@@ -0,0 +1,10 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Selects the prescriptions of a batch export: those of a doctor (by registration
+ * number) and/or a clinic, created between from and to (both inclusive).
+ */
+public record PrescriptionExportQuery(String doctorRegNo, String clinicName, LocalDate from, LocalDate to) {
+}
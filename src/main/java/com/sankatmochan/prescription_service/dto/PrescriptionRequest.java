@@ -0,0 +1,92 @@
+package com.sankatmochan.prescription_service.dto;
+
+import com.sankatmochan.prescription_service.cache.PrescriptionFingerprint;
+import com.sankatmochan.prescription_service.model.Medication;
+import com.sankatmochan.prescription_service.model.Prescription;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Body of a create request, single or bulk. Same properties as before; the id, version and
+ * update time are assigned by the service and cannot be sent.
+ */
+public record PrescriptionRequest(String patientName, String patientAddress, String patientPhone, Integer age,
+                                  String gender, String bp, String pulse, String spo2, String temp, String weight,
+                                  String height, String bmi, String clinicalNotes, String diagnosis,
+                                  List<MedicationLine> medicationData, Boolean approvedByDoctor,
+                                  Boolean isAiGenerated, String doctorName, String doctorRegNo,
+                                  String doctorQualification, String doctorSpecialization, String clinicName,
+                                  String clinicAddress, LocalDateTime nextVisitDate, String advice,
+                                  LocalDateTime createdAt) {
+
+    /**
+     * A new, unsaved prescription. Absent flags and creation time keep the entity defaults.
+     */
+    public Prescription toPrescription() {
+        Prescription p = new Prescription();
+        p.setPatientName(patientName);
+        p.setPatientAddress(patientAddress);
+        p.setPatientPhone(patientPhone);
+        p.setAge(age);
+        p.setGender(gender);
+        p.setBp(bp);
+        p.setPulse(pulse);
+        p.setSpo2(spo2);
+        p.setTemp(temp);
+        p.setWeight(weight);
+        p.setHeight(height);
+        p.setBmi(bmi);
+        p.setClinicalNotes(clinicalNotes);
+        p.setDiagnosis(diagnosis);
+        List<Medication> medications = new ArrayList<>();
+        if (medicationData != null) {
+            for (MedicationLine line : medicationData) {
+                if (line != null) {
+                    medications.add(line.toMedication());
+                }
+            }
+        }
+        p.setMedicationData(medications);
+        if (approvedByDoctor != null) {
+            p.setApprovedByDoctor(approvedByDoctor);
+        }
+        if (isAiGenerated != null) {
+            p.setIsAiGenerated(isAiGenerated);
+        }
+        p.setDoctorName(doctorName);
+        p.setDoctorRegNo(doctorRegNo);
+        p.setDoctorQualification(doctorQualification);
+        p.setDoctorSpecialization(doctorSpecialization);
+        p.setClinicName(clinicName);
+        p.setClinicAddress(clinicAddress);
+        p.setNextVisitDate(nextVisitDate);
+        p.setAdvice(advice);
+        if (createdAt != null) {
+            p.setCreatedAt(createdAt);
+        }
+        return p;
+    }
+
+    /**
+     * Hash over every property, to tell a retry of this request from a different request
+     * reusing its idempotency key.
+     */
+    public String fingerprint() {
+        List<Object> values = new ArrayList<>(Arrays.asList(patientName, patientAddress, patientPhone, age, gender,
+                bp, pulse, spo2, temp, weight, height, bmi, clinicalNotes, diagnosis, approvedByDoctor,
+                isAiGenerated, doctorName, doctorRegNo, doctorQualification, doctorSpecialization, clinicName,
+                clinicAddress, nextVisitDate, advice, createdAt));
+        values.add(medicationData != null ? medicationData.size() : null);
+        if (medicationData != null) {
+            for (MedicationLine line : medicationData) {
+                values.add(line != null ? line.name() : null);
+                values.add(line != null ? line.dosage() : null);
+                values.add(line != null ? line.duration() : null);
+            }
+        }
+        return PrescriptionFingerprint.hash(values.toArray());
+    }
+}
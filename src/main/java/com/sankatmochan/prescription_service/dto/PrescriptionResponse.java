@@ -0,0 +1,34 @@
+package com.sankatmochan.prescription_service.dto;
+
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.model.ReviewStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A stored prescription as the API returns it: the same properties the entity used to
+ * serialize to, copied out of the persistence context so no Hibernate collection or
+ * internal column reaches the JSON writer.
+ */
+public record PrescriptionResponse(String id, String patientName, String patientAddress, String patientPhone,
+                                   Integer age, String gender, String bp, String pulse, String spo2, String temp,
+                                   String weight, String height, String bmi, String clinicalNotes, String diagnosis,
+                                   List<MedicationLine> medicationData, Boolean approvedByDoctor,
+                                   ReviewStatus reviewStatus, Boolean isAiGenerated, String doctorName,
+                                   String doctorRegNo, String doctorQualification, String doctorSpecialization,
+                                   String clinicName, String clinicAddress, LocalDateTime nextVisitDate, String advice,
+                                   LocalDateTime createdAt, LocalDateTime updatedAt, Long version) {
+
+    public static PrescriptionResponse from(Prescription p) {
+        return new PrescriptionResponse(p.getId(), p.getPatientName(), p.getPatientAddress(), p.getPatientPhone(),
+                p.getAge(), p.getGender(), p.getBp(), p.getPulse(), p.getSpo2(), p.getTemp(), p.getWeight(),
+                p.getHeight(), p.getBmi(), p.getClinicalNotes(), p.getDiagnosis(),
+                p.getMedicationData() != null
+                        ? p.getMedicationData().stream().map(MedicationLine::from).toList()
+                        : List.of(),
+                p.getApprovedByDoctor(), p.getReviewStatus(), p.getIsAiGenerated(), p.getDoctorName(),
+                p.getDoctorRegNo(), p.getDoctorQualification(), p.getDoctorSpecialization(), p.getClinicName(),
+                p.getClinicAddress(), p.getNextVisitDate(), p.getAdvice(), p.getCreatedAt(), p.getUpdatedAt(), p.getVersion());
+    }
+}
@@ -0,0 +1,12 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * The columns of one prescription that the dashboard rollups count it under, and the row
+ * version they were read at.
+ */
+public record PrescriptionRollupSource(String id, String doctorRegNo, String clinicName, LocalDateTime createdAt,
+                                       Boolean approvedByDoctor, Boolean isAiGenerated, String diagnosis,
+                                       Long version) {
+}
@@ -0,0 +1,9 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lightweight row for history lists: only the columns the list shows are selected.
+ */
+public record PrescriptionSummary(String id, LocalDateTime createdAt, String diagnosis, String doctorName) {
+}
@@ -0,0 +1,32 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * The few columns needed to answer a conditional download (If-None-Match / If-Modified-Since)
+ * without loading the prescription or rendering it.
+ */
+public record PrescriptionValidator(String id, Long version, LocalDateTime createdAt, LocalDateTime updatedAt,
+                                    Boolean approvedByDoctor) {
+
+    /**
+     * Strong ETag of the rendered PDF. Renders are byte-for-byte reproducible for a given
+     * row version and layout, so the pair identifies the document exactly.
+     */
+    public String etag(String layoutTag) {
+        return "\"" + (version != null ? version : 0L) + "-" + layoutTag + "\"";
+    }
+
+    /**
+     * Last-Modified in epoch milliseconds, or -1 when the row carries no timestamp.
+     */
+    public long lastModified() {
+        LocalDateTime modified = updatedAt != null ? updatedAt : createdAt;
+        return modified != null ? modified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1L;
+    }
+
+    public boolean isApproved() {
+        return Boolean.TRUE.equals(approvedByDoctor);
+    }
+}
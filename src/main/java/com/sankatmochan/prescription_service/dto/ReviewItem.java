@@ -0,0 +1,8 @@
+package com.sankatmochan.prescription_service.dto;
+
+/**
+ * One prescription in a review request, with the version the reviewer saw.
+ * The decision is applied only if the prescription is still at that version.
+ */
+public record ReviewItem(String id, Long version) {
+}
@@ -0,0 +1,23 @@
+package com.sankatmochan.prescription_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one item in a review request: the new version on success, or the error.
+ * {@code index} is the zero-based position of the item in the request.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ReviewItemResult(int index, String id, Long version, String error) {
+
+    public static ReviewItemResult updated(int index, String id, long version) {
+        return new ReviewItemResult(index, id, version, null);
+    }
+
+    public static ReviewItemResult failed(int index, String id, String error) {
+        return new ReviewItemResult(index, id, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,10 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A prescription waiting for review, with the version to send back in the review request.
+ */
+public record ReviewQueueItem(String id, String patientName, String diagnosis, Boolean isAiGenerated,
+                              LocalDateTime createdAt, Long version) {
+}
@@ -0,0 +1,10 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.util.List;
+
+/**
+ * One page of a doctor's review queue, oldest first.
+ * Pass {@code nextCursor} back as {@code ?cursor=} to fetch the next page; it is null on the last page.
+ */
+public record ReviewQueuePage(List<ReviewQueueItem> items, String nextCursor) {
+}
@@ -0,0 +1,11 @@
+package com.sankatmochan.prescription_service.dto;
+
+import com.sankatmochan.prescription_service.model.ReviewStatus;
+
+import java.util.List;
+
+/**
+ * Approves or rejects every listed prescription. {@code decision} is APPROVED or REJECTED.
+ */
+public record ReviewRequest(ReviewStatus decision, List<ReviewItem> prescriptions) {
+}
@@ -0,0 +1,11 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.util.List;
+
+public record ReviewResponse(int received, int updated, int failed, List<ReviewItemResult> items) {
+
+    public static ReviewResponse of(List<ReviewItemResult> items) {
+        int updated = (int) items.stream().filter(ReviewItemResult::isSuccess).count();
+        return new ReviewResponse(items.size(), updated, items.size() - updated, items);
+    }
+}
@@ -0,0 +1,9 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One full-text search result. Fields come from the search index, so no database read is needed.
+ */
+public record SearchHit(String id, LocalDateTime createdAt, String diagnosis, String doctorName, float score) {
+}
@@ -0,0 +1,10 @@
+package com.sankatmochan.prescription_service.dto;
+
+import java.util.List;
+
+/**
+ * One page of full-text search results, best match first.
+ * {@code totalHits} is a lower bound when {@code totalHitsExact} is false.
+ */
+public record SearchPage(List<SearchHit> items, int page, int size, long totalHits, boolean totalHitsExact) {
+}
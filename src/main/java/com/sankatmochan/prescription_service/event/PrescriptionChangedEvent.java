@@ -0,0 +1,15 @@
+package com.sankatmochan.prescription_service.event;
+
+/**
+ * Published whenever a prescription row is written, so that derived state
+ * (rendered PDFs, caches, indexes) can be refreshed after the transaction commits.
+ */
+public record PrescriptionChangedEvent(String prescriptionId, Change change) {
+
+    public enum Change {
+        CREATED,
+        UPDATED,
+        // approvedByDoctor flipped to true
+        APPROVED
+    }
+}
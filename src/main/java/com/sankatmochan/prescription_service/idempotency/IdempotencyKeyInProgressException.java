@@ -0,0 +1,12 @@
+package com.sankatmochan.prescription_service.idempotency;
+
+/**
+ * Thrown when the request that first used an idempotency key is still running after the
+ * configured wait. The client should retry with the same key later.
+ */
+public class IdempotencyKeyInProgressException extends RuntimeException {
+
+    public IdempotencyKeyInProgressException(String key) {
+        super("A request with Idempotency-Key " + key + " is still in progress");
+    }
+}
@@ -0,0 +1,12 @@
+package com.sankatmochan.prescription_service.idempotency;
+
+/**
+ * Thrown when an idempotency key arrives with a different request body than the one it was
+ * first used with. The client has a bug; replaying the first response would hide it.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String key) {
+        super("Idempotency-Key " + key + " was already used with a different request");
+    }
+}
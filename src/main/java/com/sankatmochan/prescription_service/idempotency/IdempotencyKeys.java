@@ -0,0 +1,160 @@
+package com.sankatmochan.prescription_service.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.sankatmochan.prescription_service.model.Prescription;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs each create at most once per Idempotency-Key. The first request with a key creates
+ * the prescription; a retry with the same key and body gets that prescription back instead
+ * of a duplicate. A retry arriving while the first request is still running waits for its
+ * result rather than racing it.
+ *
+ * Keys live in a bounded, expiring in-memory map of in-flight and finished creates, backed
+ * by {@link IdempotencyRecords} for retries that land on another replica or after a restart.
+ */
+public class IdempotencyKeys {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyKeys.class);
+
+    private final Cache<String, Entry> entries;
+    private final IdempotencyRecords records;
+    private final Duration inFlightWait;
+    private final Counter created;
+    private final Counter replayed;
+    private final Counter reused;
+    private final Counter inProgress;
+
+    public IdempotencyKeys(MeterRegistry meterRegistry, IdempotencyRecords records, long maximumSize, Duration ttl,
+                           Duration inFlightWait) {
+        this(meterRegistry, records, maximumSize, ttl, inFlightWait, Ticker.systemTicker());
+    }
+
+    IdempotencyKeys(MeterRegistry meterRegistry, IdempotencyRecords records, long maximumSize, Duration ttl,
+                    Duration inFlightWait, Ticker ticker) {
+        this.records = records;
+        this.inFlightWait = inFlightWait;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .build();
+        this.created = outcome(meterRegistry, "created");
+        this.replayed = outcome(meterRegistry, "replayed");
+        this.reused = outcome(meterRegistry, "reused");
+        this.inProgress = outcome(meterRegistry, "in_progress");
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("prescription.idempotency.requests")
+                .description("Creates carrying an Idempotency-Key, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param create runs only if no earlier request with this key created a prescription
+     * @param lookup loads the prescription an earlier request created, by id
+     */
+    public Result createOnce(String key, String fingerprint, Supplier<Prescription> create,
+                             Function<String, Prescription> lookup) {
+        long deadline = System.nanoTime() + inFlightWait.toNanos();
+        while (true) {
+            Entry mine = new Entry(fingerprint);
+            Entry existing = entries.asMap().putIfAbsent(key, mine);
+            if (existing == null) {
+                return runFirst(key, mine, create, lookup);
+            }
+            if (!existing.fingerprint.equals(fingerprint)) {
+                reused.increment();
+                throw new IdempotencyKeyReusedException(key);
+            }
+            String prescriptionId;
+            try {
+                prescriptionId = existing.prescriptionId.get(
+                        Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                // The first request failed and gave the key back; try again ourselves
+                continue;
+            } catch (TimeoutException e) {
+                inProgress.increment();
+                throw new IdempotencyKeyInProgressException(key);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyKeyInProgressException(key);
+            }
+            replayed.increment();
+            return new Result(lookup.apply(prescriptionId), true);
+        }
+    }
+
+    private Result runFirst(String key, Entry mine, Supplier<Prescription> create,
+                            Function<String, Prescription> lookup) {
+        boolean claimed = false;
+        try {
+            String earlier = records.claim(key, mine.fingerprint);
+            if (earlier != null) {
+                mine.prescriptionId.complete(earlier);
+                replayed.increment();
+                return new Result(lookup.apply(earlier), true);
+            }
+            claimed = true;
+            Prescription prescription = create.get();
+            claimed = false;
+            mine.prescriptionId.complete(prescription.getId());
+            try {
+                records.complete(key, prescription.getId());
+            } catch (RuntimeException e) {
+                // The prescription is stored and this replica remembers the key; only other replicas miss it
+                log.warn("Could not record Idempotency-Key {}: {}", key, e.getMessage());
+            }
+            created.increment();
+            return new Result(prescription, false);
+        } catch (RuntimeException e) {
+            if (e instanceof IdempotencyKeyReusedException) {
+                reused.increment();
+            } else if (e instanceof IdempotencyKeyInProgressException) {
+                inProgress.increment();
+            }
+            entries.asMap().remove(key, mine);
+            if (claimed) {
+                try {
+                    records.release(key);
+                } catch (RuntimeException releaseFailure) {
+                    // The claim then times out and is taken over by a later retry
+                    e.addSuppressed(releaseFailure);
+                }
+            }
+            mine.prescriptionId.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * The prescription for the request, and whether an earlier request created it.
+     */
+    public record Result(Prescription prescription, boolean replayed) {
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<String> prescriptionId = new CompletableFuture<>();
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.sankatmochan.prescription_service.idempotency;
+
+/**
+ * Durable side of {@link IdempotencyKeys}: shares keys between replicas and across restarts.
+ * A key is first claimed, then completed with the id of the prescription it created, or
+ * released if the create failed so that a retry can try again.
+ */
+public interface IdempotencyRecords {
+
+    /**
+     * Claims the key for a new create.
+     *
+     * @return null if the caller now owns the key and must create, or the id of the
+     *         prescription an earlier request with this key created
+     * @throws IdempotencyKeyReusedException if the key was used with a different request
+     * @throws IdempotencyKeyInProgressException if another request still holds the key
+     */
+    String claim(String key, String fingerprint);
+
+    void complete(String key, String prescriptionId);
+
+    void release(String key);
+}
@@ -0,0 +1,170 @@
+package com.sankatmochan.prescription_service.idempotency;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency keys in the shared database, one row per key in prescription_idempotency_keys.
+ * The primary key makes the claim atomic across replicas: the insert succeeds for exactly one
+ * request. A row without a prescription id is a create still running; other replicas poll it
+ * until it completes, and take it over once it is older than the claim timeout (its replica
+ * died mid-request). Rows older than the TTL are pruned by whichever replica gets there first.
+ * The table is created in {@link #start()}, once the context is refreshed.
+ */
+public class JdbcIdempotencyRecords implements IdempotencyRecords, SmartLifecycle, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcIdempotencyRecords.class);
+
+    private static final long POLL_MILLIS = 50;
+    private static final long PRUNE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final JdbcTemplate jdbc;
+    private final Duration ttl;
+    private final Duration inFlightWait;
+    private final Duration claimTimeout;
+    private final ScheduledExecutorService pruner;
+    private volatile boolean running;
+
+    public JdbcIdempotencyRecords(JdbcTemplate jdbc, Duration ttl, Duration inFlightWait, Duration claimTimeout) {
+        this.jdbc = jdbc;
+        this.ttl = ttl;
+        this.inFlightWait = inFlightWait;
+        this.claimTimeout = claimTimeout;
+        this.pruner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "prescription-idempotency-prune");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void start() {
+        createTableIfMissing();
+        pruner.scheduleWithFixedDelay(this::pruneQuietly, PRUNE_INTERVAL_MILLIS, PRUNE_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        close();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Before the web server starts taking creates
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void createTableIfMissing() {
+        jdbc.execute("create table if not exists prescription_idempotency_keys ("
+                + "idempotency_key varchar(255) primary key, "
+                + "fingerprint varchar(64) not null, "
+                + "prescription_id varchar(50), "
+                + "created_at timestamp not null)");
+    }
+
+    @Override
+    public String claim(String key, String fingerprint) {
+        long deadline = System.nanoTime() + inFlightWait.toNanos();
+        while (true) {
+            try {
+                jdbc.update("insert into prescription_idempotency_keys "
+                        + "(idempotency_key, fingerprint, created_at) values (?, ?, ?)",
+                        key, fingerprint, Timestamp.from(Instant.now()));
+                return null;
+            } catch (DuplicateKeyException e) {
+                // Someone else has the key; see what they did with it below
+            }
+            List<Row> rows = jdbc.query("select fingerprint, prescription_id, created_at "
+                            + "from prescription_idempotency_keys where idempotency_key = ?",
+                    (rs, i) -> new Row(rs.getString(1), rs.getString(2), rs.getTimestamp(3)), key);
+            if (rows.isEmpty()) {
+                // Released between our insert and the read; claim it again
+                continue;
+            }
+            Row row = rows.get(0);
+            if (!row.fingerprint().equals(fingerprint)) {
+                throw new IdempotencyKeyReusedException(key);
+            }
+            if (row.prescriptionId() != null) {
+                return row.prescriptionId();
+            }
+            if (row.createdAt().toInstant().isBefore(Instant.now().minus(claimTimeout))
+                    && takeOver(key, row.createdAt())) {
+                return null;
+            }
+            if (System.nanoTime() >= deadline) {
+                throw new IdempotencyKeyInProgressException(key);
+            }
+            sleep(key);
+        }
+    }
+
+    // Only one replica can move created_at off the stale value, so only one takes the claim over
+    private boolean takeOver(String key, Timestamp staleCreatedAt) {
+        return jdbc.update("update prescription_idempotency_keys set created_at = ? "
+                        + "where idempotency_key = ? and prescription_id is null and created_at = ?",
+                Timestamp.from(Instant.now()), key, staleCreatedAt) == 1;
+    }
+
+    private static void sleep(String key) {
+        try {
+            Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException(key);
+        }
+    }
+
+    @Override
+    public void complete(String key, String prescriptionId) {
+        jdbc.update("update prescription_idempotency_keys set prescription_id = ? where idempotency_key = ?",
+                prescriptionId, key);
+    }
+
+    @Override
+    public void release(String key) {
+        jdbc.update("delete from prescription_idempotency_keys where idempotency_key = ? and prescription_id is null",
+                key);
+    }
+
+    void prune() {
+        jdbc.update("delete from prescription_idempotency_keys where created_at < ?",
+                Timestamp.from(Instant.now().minus(ttl)));
+    }
+
+    private void pruneQuietly() {
+        try {
+            prune();
+        } catch (DataAccessException e) {
+            log.warn("Could not prune idempotency keys: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        pruner.shutdownNow();
+    }
+
+    private record Row(String fingerprint, String prescriptionId, Timestamp createdAt) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.sankatmochan.prescription_service.idempotency;
+
+/**
+ * Single-replica records: the in-memory tier of {@link IdempotencyKeys} already sees every
+ * request, so every claim is granted and nothing is kept.
+ */
+public class LocalIdempotencyRecords implements IdempotencyRecords {
+
+    @Override
+    public String claim(String key, String fingerprint) {
+        return null;
+    }
+
+    @Override
+    public void complete(String key, String prescriptionId) {
+    }
+
+    @Override
+    public void release(String key) {
+    }
+}
@@ -0,0 +1,56 @@
+package com.sankatmochan.prescription_service.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Locale;
+
+/**
+ * One line of the medication table, stored as a row of prescription_medications.
+ * Serialized with the same keys the old JSON column used (name, dosage, duration).
+ */
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+// Older clients may still send extra keys in a medication entry
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Medication {
+
+    @Column(name = "name")
+    @Setter(AccessLevel.NONE)
+    private String name;
+
+    // Lower-cased, trimmed name so drug lookups are an indexed equality match
+    @JsonIgnore
+    @Column(name = "name_key")
+    @Setter(AccessLevel.NONE)
+    private String nameKey;
+
+    @Column(name = "dosage")
+    private String dosage;
+
+    @Column(name = "duration")
+    private String duration;
+
+    public Medication(String name, String dosage, String duration) {
+        setName(name);
+        this.dosage = dosage;
+        this.duration = duration;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+        this.nameKey = nameKey(name);
+    }
+
+    public static String nameKey(String name) {
+        return name != null ? name.trim().toLowerCase(Locale.ROOT) : null;
+    }
+}
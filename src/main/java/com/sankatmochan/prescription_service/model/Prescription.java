@@ -1,27 +1,50 @@
 package com.sankatmochan.prescription_service.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.ColumnDefault;
-import org.hibernate.annotations.JdbcTypeCode;
-import org.hibernate.type.SqlTypes;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.springframework.data.domain.Persistable;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
 
 @Entity
-@Table(name = "prescriptions")
+@Table(name = "prescriptions", indexes = {
+        // Patient history: equality on the normalized name, then keyset order on (created_at, id)
+        @Index(name = "idx_prescriptions_patient_history", columnList = "patient_name_key, created_at, id"),
+        // Batch exports per doctor or per clinic, walked in (created_at, id) order
+        @Index(name = "idx_prescriptions_doctor_export", columnList = "doctorRegNo, created_at, id"),
+        @Index(name = "idx_prescriptions_clinic_export", columnList = "clinicName, created_at, id"),
+        // Archiving walks the oldest rows first
+        @Index(name = "idx_prescriptions_created_at", columnList = "created_at, id"),
+        // A doctor's review queue, oldest first
+        @Index(name = "idx_prescriptions_review_queue",
+                columnList = "doctorRegNo, approved_by_doctor, review_status, created_at, id")
+})
 @Getter
 @Setter
-@NoArgsConstructor
+// Bind JSON through setters rather than the all-args constructor, so field defaults survive absent properties
+@NoArgsConstructor(onConstructor_ = @JsonCreator)
 @AllArgsConstructor
-public class Prescription {
+public class Prescription implements Persistable<String> {
 
     @Id
     @Column(length = 50)
     private String id;
 
     private String patientName;
+
+    // Lower-cased, trimmed patientName so history lookups are an indexed equality match
+    @JsonIgnore
+    @Column(name = "patient_name_key")
+    private String patientNameKey;
+
     private String patientAddress;
     private String patientPhone;
     private Integer age;
@@ -41,15 +64,27 @@ public class Prescription {
     @Column(columnDefinition = "TEXT")
     private String diagnosis;
 
-    @JdbcTypeCode(SqlTypes.JSON)
-    @Column(name = "medication_data", columnDefinition = "json")
-    private List<Map<String, String>> medicationData;
+    // Typed rows in prescription_medications; the JSON property keeps its old name for API compatibility.
+    // Subselect fetching loads the medications of a whole result list in one extra query.
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "prescription_medications",
+            joinColumns = @JoinColumn(name = "prescription_id"),
+            indexes = @Index(name = "idx_prescription_medications_name", columnList = "name_key, prescription_id"))
+    @OrderColumn(name = "line_no")
+    @Fetch(FetchMode.SUBSELECT)
+    private List<Medication> medicationData = new ArrayList<>();
 
     // Hard-coding the default at the JPA/Hibernate level
     @Column(name = "approved_by_doctor", nullable = false)
     @ColumnDefault("0")
     private Boolean approvedByDoctor = false;
 
+    // Changed only through the review endpoint, never by create requests
+    @Enumerated(EnumType.STRING)
+    @Column(name = "review_status", length = 16, nullable = false)
+    @ColumnDefault("'PENDING'")
+    private ReviewStatus reviewStatus = ReviewStatus.PENDING;
+
     @Column(name = "is_ai_generated", nullable = false)
     @ColumnDefault("1")
     private Boolean isAiGenerated = true;
@@ -71,12 +106,51 @@ public class Prescription {
     @Column(name = "created_at")
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    // Set on every update; null until the row is first changed
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Bumped by Hibernate on every update (including medication changes); the download ETag is built from it
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Long version = 0L;
+
+    // Ids are assigned before save, so tell Spring Data whether to persist or merge.
+    // A fresh prescription is always persisted: an id collision fails instead of overwriting a row.
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean newEntity = true;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() {
+        newEntity = false;
+    }
+
+    public static String patientNameKey(String patientName) {
+        return patientName != null ? patientName.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
     // Safety Pre-Persist hook to ensure values are never null during save
     @PrePersist
     protected void onCreate() {
+        patientNameKey = patientNameKey(patientName);
         if (approvedByDoctor == null) {
             approvedByDoctor = false;
         }
+        if (reviewStatus == null || reviewStatus == ReviewStatus.PENDING && approvedByDoctor) {
+            reviewStatus = approvedByDoctor ? ReviewStatus.APPROVED : ReviewStatus.PENDING;
+        }
         if (isAiGenerated == null) {
             isAiGenerated = true;
         }
@@ -84,4 +158,10 @@ public class Prescription {
             createdAt = LocalDateTime.now();
         }
     }
+
+    @PreUpdate
+    protected void onUpdate() {
+        patientNameKey = patientNameKey(patientName);
+        updatedAt = LocalDateTime.now();
+    }
 }
\ No newline at end of file
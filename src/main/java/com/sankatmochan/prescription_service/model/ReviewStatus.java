@@ -0,0 +1,11 @@
+package com.sankatmochan.prescription_service.model;
+
+/**
+ * Where a prescription stands in the doctor's review. Only PENDING prescriptions are in the
+ * review queue; APPROVED always goes with {@code approvedByDoctor = true}.
+ */
+public enum ReviewStatus {
+    PENDING,
+    APPROVED,
+    REJECTED
+}
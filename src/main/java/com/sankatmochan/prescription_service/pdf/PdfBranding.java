@@ -0,0 +1,19 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import java.awt.Color;
+
+/**
+ * Clinic-specific text and accent color printed on every prescription. The clinic
+ * name and address apply when a prescription does not carry its own.
+ */
+public record PdfBranding(String clinicName, String clinicAddress, String contactEmail, Color accentColor,
+                          String footerTitle, String footerNote) {
+
+    public static final PdfBranding DEFAULT = new PdfBranding(
+            "SANKAT MOCHAN HEALTH PROGRAM",
+            "3/045 Mahatma Gandhi Marg, Hazratganj, Lucknow",
+            "info@sankatmochan.co.in",
+            new Color(0, 128, 128),
+            "SANKAT MOCHAN NAGRIK",
+            "Generated by SMN Platform");
+}
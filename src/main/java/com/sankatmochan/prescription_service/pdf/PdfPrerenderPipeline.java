@@ -0,0 +1,225 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import com.sankatmochan.prescription_service.cache.PdfRenderCache;
+import com.sankatmochan.prescription_service.cache.PrescriptionFingerprint;
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders PDFs in the background when a prescription is created or approved, so the
+ * first download is served from {@link PdfRenderCache} instead of rendering in the
+ * request. Downloads that arrive before the artifact is ready still render inline.
+ *
+ * Work goes through a bounded queue. When it is full, producers wait up to the offer
+ * timeout (backpressure) and the task is then dropped; the document is rendered on its
+ * first download instead. Failed renders are retried with a growing delay. Workers
+ * take render slots from {@link RenderGate} like any request, and there are fewer of
+ * them than slots, so interactive downloads always find one free.
+ */
+@Component
+public class PdfPrerenderPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfPrerenderPipeline.class);
+
+    private final PrescriptionRepository repository;
+    private final PrescriptionPdfRenderer renderer;
+    private final PdfRenderCache renderCache;
+    private final RenderGate renderGate;
+
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration offerTimeout;
+
+    private final BlockingQueue<Runnable> queue;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService retryScheduler;
+
+    private final Timer lag;
+    private final Counter rendered;
+    private final Counter skipped;
+    private final Counter dropped;
+    private final Counter retries;
+    private final Counter failures;
+
+    public PdfPrerenderPipeline(PrescriptionRepository repository, PrescriptionPdfRenderer renderer,
+                                PdfRenderCache renderCache, RenderGate renderGate, MeterRegistry meterRegistry,
+                                @Value("${prescription.pdf.prerender.enabled:true}") boolean enabled,
+                                @Value("${prescription.pdf.prerender.workers:0}") int workers,
+                                @Value("${prescription.pdf.prerender.queue-capacity:1000}") int queueCapacity,
+                                @Value("${prescription.pdf.prerender.max-attempts:3}") int maxAttempts,
+                                @Value("${prescription.pdf.prerender.retry-backoff:500ms}") Duration retryBackoff,
+                                @Value("${prescription.pdf.prerender.offer-timeout:50ms}") Duration offerTimeout) {
+        this.repository = repository;
+        this.renderer = renderer;
+        this.renderCache = renderCache;
+        this.renderGate = renderGate;
+        // Pre-rendered documents only help if there is somewhere to keep them
+        this.enabled = enabled && renderCache.isEnabled();
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = retryBackoff;
+        this.offerTimeout = offerTimeout;
+
+        // Leave at least half the render slots to interactive downloads
+        int threads = workers > 0 ? workers : Math.max(1, renderGate.getPermits() / 2);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue,
+                daemonThreads("pdf-prerender"));
+        // Tasks are offered to the queue directly (to get the offer timeout), so the workers must already be polling it
+        this.workers.prestartAllCoreThreads();
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("pdf-prerender-retry"));
+
+        Gauge.builder("prescription.pdf.prerender.queue.depth", queue, BlockingQueue::size)
+                .description("Pre-render tasks waiting for a worker")
+                .register(meterRegistry);
+        this.lag = Timer.builder("prescription.pdf.prerender.lag")
+                .description("Time from the prescription change to its PDF being stored")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rendered = outcome(meterRegistry, "rendered");
+        this.skipped = outcome(meterRegistry, "skipped");
+        this.dropped = outcome(meterRegistry, "dropped");
+        this.failures = outcome(meterRegistry, "failed");
+        this.retries = Counter.builder("prescription.pdf.prerender.retries")
+                .description("Pre-render attempts that failed and were scheduled again")
+                .register(meterRegistry);
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("prescription.pdf.prerender.tasks")
+                .description("Finished pre-render tasks by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger sequence = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + sequence.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrescriptionChanged(PrescriptionChangedEvent event) {
+        if (event.change() == PrescriptionChangedEvent.Change.CREATED
+                || event.change() == PrescriptionChangedEvent.Change.APPROVED) {
+            submit(event.prescriptionId());
+        }
+    }
+
+    /**
+     * Queues a background render of the prescription's current content.
+     *
+     * @return false if the pipeline is disabled or the queue stayed full for the offer timeout
+     */
+    public boolean submit(String prescriptionId) {
+        if (!enabled) {
+            return false;
+        }
+        return enqueue(new Task(prescriptionId, System.nanoTime(), 1));
+    }
+
+    private boolean enqueue(Task task) {
+        try {
+            if (!workers.isShutdown() && queue.offer(task, offerTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dropped.increment();
+        log.debug("Pre-render queue full, {} will be rendered on first download", task.prescriptionId);
+        return false;
+    }
+
+    private void run(Task task) {
+        try {
+            Optional<Prescription> found = repository.findById(task.prescriptionId);
+            if (found.isEmpty()) {
+                skipped.increment();
+                return;
+            }
+            Prescription p = found.get();
+            String fingerprint = PrescriptionFingerprint.of(p, renderer.getLayoutTag());
+            if (renderCache.contains(p.getId(), fingerprint)) {
+                // Already downloaded (and rendered inline) before the worker got to it
+                skipped.increment();
+                return;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (RenderGate.Permit permit = renderGate.acquire()) {
+                renderer.render(p, out);
+            }
+            renderCache.put(p.getId(), fingerprint, out.toByteArray());
+            rendered.increment();
+            lag.record(System.nanoTime() - task.submittedAt, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            retryOrFail(task, e);
+        }
+    }
+
+    private void retryOrFail(Task task, RuntimeException e) {
+        if (task.attempt >= maxAttempts || workers.isShutdown()) {
+            failures.increment();
+            log.warn("Pre-render of {} failed after {} attempts: {}", task.prescriptionId, task.attempt,
+                    e.getMessage());
+            return;
+        }
+        retries.increment();
+        Task next = new Task(task.prescriptionId, task.submittedAt, task.attempt + 1);
+        long delayMillis = retryBackoff.toMillis() * task.attempt;
+        try {
+            retryScheduler.schedule(() -> enqueue(next), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException shuttingDown) {
+            failures.increment();
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        // Anything still queued is simply rendered on its first download
+        workers.shutdownNow();
+    }
+
+    private final class Task implements Runnable {
+
+        private final String prescriptionId;
+        private final long submittedAt;
+        private final int attempt;
+
+        private Task(String prescriptionId, long submittedAt, int attempt) {
+            this.prescriptionId = prescriptionId;
+            this.submittedAt = submittedAt;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            PdfPrerenderPipeline.this.run(this);
+        }
+    }
+}
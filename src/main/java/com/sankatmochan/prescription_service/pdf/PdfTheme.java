@@ -0,0 +1,63 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import com.lowagie.text.Font;
+import com.lowagie.text.FontFactory;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.awt.Color;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Fonts, colors and formats used by the prescription PDF, built once at startup.
+ *
+ * Every field is final and none of the objects are mutated while rendering, so a
+ * single instance is shared by all concurrent renders. This replaces a
+ * synchronized {@link FontFactory} lookup and a throwaway {@link Color} per cell.
+ */
+@Component
+@Getter
+public class PdfTheme {
+
+    private final PdfBranding branding;
+
+    // Accent color from the branding (teal in the Sankat Mochan samples), the rest fixed
+    private final Color teal;
+    private final Color stripeGray = new Color(248, 248, 248);
+    private final Color notesBackground = new Color(248, 255, 255);
+    private final Color cellBorder = new Color(230, 230, 230);
+
+    // Header
+    private final Font clinicTitle;
+    private final Font contact = FontFactory.getFont(FontFactory.HELVETICA, 10, Color.GRAY);
+    private final Font prescriptionId = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11, Color.BLACK);
+
+    // Labels and section headings
+    private final Font patientLabel = FontFactory.getFont(FontFactory.HELVETICA, 8, Color.GRAY);
+    private final Font vitalLabel = FontFactory.getFont(FontFactory.HELVETICA, 7, Color.GRAY);
+    private final Font sectionHeading;
+    private final Font tableHeader = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, Color.WHITE);
+    private final Font footerTitle = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 9, Color.GRAY);
+
+    // Values
+    private final Font body = FontFactory.getFont(FontFactory.HELVETICA, 11);
+    private final Font bodyBold = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11);
+    private final Font diagnosis = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 13);
+    // Blank lines between sections; the size of the default font, without falling back to an embedded one
+    private final Font spacer = FontFactory.getFont(FontFactory.HELVETICA, 12);
+
+    private final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("dd MMM yyyy");
+
+    public PdfTheme() {
+        this(PdfBranding.DEFAULT);
+    }
+
+    @Autowired
+    public PdfTheme(PdfBranding branding) {
+        this.branding = branding;
+        this.teal = branding.accentColor();
+        this.clinicTitle = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 20, teal);
+        this.sectionHeading = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, teal);
+    }
+}
@@ -0,0 +1,99 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import com.sankatmochan.prescription_service.model.Medication;
+import com.sankatmochan.prescription_service.model.Prescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders a synthetic prescription a few times while the context starts, so the first real
+ * download does not pay for loading OpenPDF, the fonts and the layout classes. Runs once all
+ * singletons exist and before the web server opens its port, so the replica only reports
+ * ready once it is warm. It is also what gets OpenPDF into the image's AOT cache, whose
+ * training run stops right after this point.
+ *
+ * The renders go to a discarding stream through a renderer of its own, so they show up in
+ * neither the render cache nor the render metrics.
+ */
+@Component
+public class PdfWarmup implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfWarmup.class);
+
+    private final PrescriptionPdfRenderer renderer;
+    private final int renders;
+
+    public PdfWarmup(PdfTheme theme, @Value("${prescription.pdf.warmup.renders:3}") int renders) {
+        this.renderer = new PrescriptionPdfRenderer(theme);
+        this.renders = renders;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        warmUp();
+    }
+
+    /**
+     * Returns how many renders ran; a failed one stops the warm-up without failing startup.
+     */
+    int warmUp() {
+        long started = System.nanoTime();
+        Prescription sample = sample();
+        int done = 0;
+        try {
+            for (; done < renders; done++) {
+                renderer.render(sample, OutputStream.nullOutputStream());
+            }
+        } catch (RuntimeException e) {
+            log.warn("PDF warm-up render failed, the first download will be slower: {}", e.getMessage());
+        }
+        if (done > 0) {
+            log.info("Warmed up the PDF renderer with {} renders in {} ms", done,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+        return done;
+    }
+
+    static Prescription sample() {
+        LocalDateTime now = LocalDateTime.now();
+        Prescription p = new Prescription();
+        p.setId("SNKTMOCH00000000");
+        p.setPatientName("Warm-up Patient");
+        p.setPatientAddress("123 Main St, Springfield");
+        p.setPatientPhone("555-1234");
+        p.setAge(30);
+        p.setGender("Male");
+        p.setBp("120/80");
+        p.setPulse("72");
+        p.setSpo2("98");
+        p.setTemp("98.6");
+        p.setWeight("70");
+        p.setHeight("175");
+        p.setBmi("22.9");
+        p.setClinicalNotes("Fever and cough for three days, no breathlessness.");
+        p.setDiagnosis("Viral Fever");
+        p.setAdvice("Drink plenty of water. Rest.");
+        p.setNextVisitDate(now.plusDays(7));
+        p.setMedicationData(new ArrayList<>(List.of(
+                new Medication("Paracetamol", "500mg", "5 days"),
+                new Medication("Cetirizine", "10mg", "3 days"),
+                new Medication("ORS", "1 sachet", "As needed"))));
+        p.setDoctorName("Dr. Smith");
+        p.setDoctorRegNo("MD12345");
+        p.setDoctorQualification("MBBS, MD");
+        p.setDoctorSpecialization("General Physician");
+        p.setClinicName("Sankat Mochan Health Clinic");
+        p.setClinicAddress("123 Temple Road, Varanasi");
+        p.setCreatedAt(now);
+        p.setUpdatedAt(now);
+        return p;
+    }
+}
@@ -0,0 +1,301 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import com.lowagie.text.*;
+import com.lowagie.text.pdf.PdfDate;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfEncryption;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfWriter;
+import com.sankatmochan.prescription_service.cache.PrescriptionFingerprint;
+import com.sankatmochan.prescription_service.model.Medication;
+import com.sankatmochan.prescription_service.model.Prescription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.GregorianCalendar;
+import java.util.HexFormat;
+
+/**
+ * Lays out a prescription as a styled A4 PDF.
+ * The fixed parts of the layout are compiled once into a {@link PrescriptionTemplate};
+ * a render only fills in the prescription's own values. Stateless apart from the
+ * shared theme and template, so one instance serves all requests.
+ *
+ * Output is reproducible: the document dates and file ID are taken from the row
+ * rather than the clock, so the same row version always renders to the same bytes.
+ */
+@Component
+public class PrescriptionPdfRenderer {
+
+    // Bump whenever the PDF layout changes so previously cached documents (and ETags) are not reused
+    static final String LAYOUT_VERSION = "4";
+
+    private final PdfTheme theme;
+    private final PrescriptionTemplate template;
+    private final RenderMetrics metrics;
+    private final String layoutTag;
+
+    public PrescriptionPdfRenderer(PdfTheme theme) {
+        this(theme, RenderMetrics.noop());
+    }
+
+    @Autowired
+    public PrescriptionPdfRenderer(PdfTheme theme, RenderMetrics metrics) {
+        this.theme = theme;
+        this.template = new PrescriptionTemplate(theme);
+        this.metrics = metrics;
+        this.layoutTag = PrescriptionFingerprint.hash(LAYOUT_VERSION, theme.getBranding());
+    }
+
+    /**
+     * Identifies the layout and branding documents are rendered with; changes when either does.
+     */
+    public String getLayoutTag() {
+        return layoutTag;
+    }
+
+    /**
+     * Renders the prescription into the given stream. The stream is left open.
+     */
+    public void render(Prescription p, OutputStream out) {
+        RenderMetrics.Trace trace = metrics.start();
+        CountingOutputStream counted = new CountingOutputStream(out);
+        boolean succeeded = false;
+        try {
+            layout(p, counted, trace);
+            succeeded = true;
+        } finally {
+            trace.finish(succeeded, counted.count, p.getMedicationData() != null ? p.getMedicationData().size() : 0);
+        }
+    }
+
+    private void layout(Prescription p, OutputStream out, RenderMetrics.Trace trace) {
+        // Setting margins for the professional spacious look
+        Document document = new Document(PageSize.A4, 36, 36, 36, 36);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        // The caller owns the stream (it may be the servlet response), so leave it open
+        writer.setCloseStream(false);
+        // Cross-reference and object streams; a noticeably smaller file for a one-page document
+        writer.setFullCompression();
+        document.open();
+        stampIdentity(writer, p);
+
+        addHeader(document, p);
+        trace.mark(RenderMetrics.Section.HEADER);
+        addPatientInfo(document, p);
+        trace.mark(RenderMetrics.Section.PATIENT);
+        addVitals(document, p);
+        trace.mark(RenderMetrics.Section.VITALS);
+        addClinicalNotes(document, p);
+        trace.mark(RenderMetrics.Section.NOTES);
+        addMedications(document, p);
+        trace.mark(RenderMetrics.Section.MEDICATIONS);
+        addAdvice(document, p);
+        trace.mark(RenderMetrics.Section.ADVICE);
+        addFooter(document, p);
+        trace.mark(RenderMetrics.Section.FOOTER);
+
+        // Pages are laid out and flushed here, so this is often the largest share of a render
+        document.close();
+        trace.mark(RenderMetrics.Section.CLOSE);
+    }
+
+    // Replaces the render-time dates and the random file ID OpenPDF would write
+    private void stampIdentity(PdfWriter writer, Prescription p) {
+        LocalDateTime modified = p.getUpdatedAt() != null ? p.getUpdatedAt() : p.getCreatedAt();
+        PdfDictionary info = writer.getInfo();
+        info.put(PdfName.CREATIONDATE, pdfDate(p.getCreatedAt()));
+        info.put(PdfName.MODDATE, pdfDate(modified));
+        // Same content, same ID, as PDF tools expect of an unchanged file
+        byte[] fileId = HexFormat.of().parseHex(PrescriptionFingerprint.of(p, layoutTag));
+        info.put(PdfName.FILEID, PdfEncryption.createInfoId(fileId, fileId));
+    }
+
+    private static PdfDate pdfDate(LocalDateTime time) {
+        return new PdfDate(GregorianCalendar.from(time.atZone(ZoneId.systemDefault())));
+    }
+
+    // --- Sections ---
+
+    private void addHeader(Document document, Prescription p) {
+        PdfBranding branding = theme.getBranding();
+        PdfPTable headerTable = new PdfPTable(PrescriptionTemplate.HEADER_WIDTHS);
+        headerTable.setWidthPercentage(100);
+
+        // Left Side: Clinic Name (Large)
+        String clinicName = p.getClinicName() != null ? p.getClinicName() : branding.clinicName();
+        PdfPCell leftHeader = template.leftHeader();
+        leftHeader.addElement(new Paragraph(clinicName.toUpperCase(), theme.getClinicTitle()));
+        headerTable.addCell(leftHeader);
+
+        // Right Side: Contact & Address
+        String clinicAddress = p.getClinicAddress() != null ? p.getClinicAddress() : branding.clinicAddress();
+        Paragraph infoP = new Paragraph();
+        infoP.setAlignment(Element.ALIGN_RIGHT);
+        infoP.add(new Chunk(branding.contactEmail() + "\n", theme.getContact()));
+        infoP.add(new Chunk(clinicAddress + "\n", theme.getContact()));
+        infoP.add(new Chunk("Prescription ID: " + p.getId(), theme.getPrescriptionId()));
+        PdfPCell rightHeader = template.rightHeader();
+        rightHeader.addElement(infoP);
+        headerTable.addCell(rightHeader);
+
+        document.add(headerTable);
+        document.add(template.separator());
+    }
+
+    private void addPatientInfo(Document document, Prescription p) {
+        PdfPTable patientInfo = new PdfPTable(PrescriptionTemplate.PATIENT_WIDTHS);
+        patientInfo.setWidthPercentage(100);
+        patientInfo.setSpacingBefore(10);
+        patientInfo.setSpacingAfter(10);
+
+        patientInfo.addCell(template.patientNameLabel());
+        patientInfo.addCell(template.patientValue(p.getPatientName()));
+        patientInfo.addCell(template.dateLabel());
+        patientInfo.addCell(template.patientValue(p.getCreatedAt().format(theme.getDateFormat())));
+        patientInfo.addCell(template.ageGenderLabel());
+        patientInfo.addCell(template.patientValue(p.getAge() + " Y / " + p.getGender()));
+        patientInfo.addCell(template.phoneLabel());
+        patientInfo.addCell(template.patientValue(p.getPatientPhone() != null ? p.getPatientPhone() : "-"));
+        patientInfo.addCell(template.addressLabel());
+        patientInfo.addCell(template.addressValue(p.getPatientAddress() != null ? p.getPatientAddress() : "-"));
+
+        document.add(patientInfo);
+        document.add(template.separator());
+    }
+
+    private void addVitals(Document document, Prescription p) {
+        // Split into 2 rows for spacing: BP, Pulse, SPO2, Temp / Weight, Height, BMI and a spacer
+        PdfPTable vitalsRow1 = new PdfPTable(4);
+        vitalsRow1.setWidthPercentage(100);
+        vitalsRow1.setSpacingBefore(10);
+        vitalsRow1.addCell(template.vital(0, p.getBp()));
+        vitalsRow1.addCell(template.vital(1, p.getPulse()));
+        vitalsRow1.addCell(template.vital(2, p.getSpo2()));
+        vitalsRow1.addCell(template.vital(3, p.getTemp()));
+        document.add(vitalsRow1);
+
+        PdfPTable vitalsRow2 = new PdfPTable(4);
+        vitalsRow2.setWidthPercentage(100);
+        vitalsRow2.setSpacingBefore(5);
+        vitalsRow2.setSpacingAfter(15);
+        vitalsRow2.addCell(template.vital(4, p.getWeight()));
+        vitalsRow2.addCell(template.vital(5, p.getHeight()));
+        vitalsRow2.addCell(template.vital(6, p.getBmi()));
+        vitalsRow2.addCell(template.vital(7, ""));
+        document.add(vitalsRow2);
+    }
+
+    private void addClinicalNotes(Document document, Prescription p) {
+        PdfPTable diagnosisTable = new PdfPTable(1);
+        diagnosisTable.setWidthPercentage(100);
+        diagnosisTable.setSpacingAfter(15);
+
+        PdfPCell diagCell = template.notes();
+        diagCell.addElement(new Paragraph(p.getClinicalNotes(), theme.getBody()));
+        diagCell.addElement(new Paragraph("\nDIAGNOSIS: " + p.getDiagnosis(), theme.getDiagnosis()));
+        diagnosisTable.addCell(diagCell);
+        document.add(diagnosisTable);
+    }
+
+    private void addMedications(Document document, Prescription p) {
+        PdfPTable meds = new PdfPTable(PrescriptionTemplate.MEDICATION_WIDTHS);
+        meds.setWidthPercentage(100);
+        meds.setSpacingBefore(10);
+        meds.setHeaderRows(1);
+        for (int column = 0; column < template.medicationColumns(); column++) {
+            meds.addCell(template.medicationHeader(column));
+        }
+
+        // Rows with Zebra Striping
+        int count = 1;
+        if (p.getMedicationData() != null) {
+            for (Medication med : p.getMedicationData()) {
+                boolean striped = count % 2 == 0;
+                meds.addCell(template.medicationCell(String.valueOf(count++), striped));
+                meds.addCell(template.medicationCell(med.getName(), striped));
+                meds.addCell(template.medicationCell(med.getDosage(), striped));
+                meds.addCell(template.medicationCell(med.getDuration(), striped));
+            }
+        }
+        document.add(meds);
+    }
+
+    private void addAdvice(Document document, Prescription p) {
+        if (p.getAdvice() == null || p.getAdvice().isEmpty()) {
+            return;
+        }
+        document.add(new Paragraph("\n", theme.getSpacer()));
+        PdfPTable adviceTable = new PdfPTable(1);
+        adviceTable.setWidthPercentage(100);
+
+        PdfPCell adviceCell = template.advice();
+        adviceCell.addElement(new Paragraph(p.getAdvice(), theme.getBody()));
+        adviceTable.addCell(adviceCell);
+        document.add(adviceTable);
+    }
+
+    private void addFooter(Document document, Prescription p) {
+        document.add(new Paragraph("\n\n", theme.getSpacer()));
+        document.add(template.separator());
+
+        PdfPTable footer = new PdfPTable(2);
+        footer.setWidthPercentage(100);
+
+        StringBuilder doctorDetails = new StringBuilder()
+                .append(p.getDoctorName().toUpperCase()).append('\n').append(p.getDoctorRegNo());
+        if (p.getDoctorQualification() != null) {
+            doctorDetails.append('\n').append(p.getDoctorQualification());
+        }
+        if (p.getDoctorSpecialization() != null) {
+            doctorDetails.append('\n').append(p.getDoctorSpecialization());
+        }
+        footer.addCell(signature(template.doctorSignature(), doctorDetails.toString(), Element.ALIGN_LEFT));
+
+        String nextVisit = p.getNextVisitDate() != null
+                ? "Next Visit: " + p.getNextVisitDate().format(theme.getDateFormat())
+                : "";
+        footer.addCell(signature(template.clinicSignature(), theme.getBranding().footerNote() + "\n" + nextVisit,
+                Element.ALIGN_RIGHT));
+
+        document.add(footer);
+    }
+
+    private PdfPCell signature(PdfPCell cell, String details, int align) {
+        Paragraph pDetails = new Paragraph(details, theme.getBody());
+        pDetails.setAlignment(align);
+        cell.addElement(pDetails);
+        return cell;
+    }
+
+    /**
+     * Counts the bytes of a render on their way to the caller's stream.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import com.lowagie.text.Chunk;
+import com.lowagie.text.Element;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Phrase;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.draw.LineSeparator;
+
+import java.awt.Color;
+
+/**
+ * The static part of the prescription layout, compiled once from the theme: column
+ * widths, the separator, and prototype cells that already carry their styling and
+ * fixed labels. A render copies a prototype and adds only the patient's values.
+ *
+ * Prototypes are never handed to a document themselves, only copies of them, so one
+ * template is shared by all concurrent renders.
+ */
+final class PrescriptionTemplate {
+
+    static final float[] HEADER_WIDTHS = { 1.8f, 1f };
+    static final float[] PATIENT_WIDTHS = { 1f, 2f, 0.8f, 2f };
+    static final float[] MEDICATION_WIDTHS = { 0.6f, 4, 1.5f, 1.5f };
+
+    // Vitals grid, two rows of four; the last slot is an empty spacer
+    static final String[] VITAL_LABELS = { "BP", "PULSE", "SPO2", "TEMP", "WEIGHT", "HEIGHT", "BMI", "" };
+
+    private static final String[] MEDICATION_HEADERS = { "#", "MEDICINE NAME", "DOSAGE", "DURATION" };
+
+    private final PdfTheme theme;
+    private final LineSeparator separator;
+
+    private final PdfPCell leftHeader;
+    private final PdfPCell rightHeader;
+    private final PdfPCell patientNameLabel;
+    private final PdfPCell dateLabel;
+    private final PdfPCell ageGenderLabel;
+    private final PdfPCell phoneLabel;
+    private final PdfPCell addressLabel;
+    private final PdfPCell patientValue;
+    private final PdfPCell addressValue;
+    private final PdfPCell[] vitals = new PdfPCell[VITAL_LABELS.length];
+    private final PdfPCell notes;
+    private final PdfPCell[] medicationHeaders = new PdfPCell[MEDICATION_HEADERS.length];
+    private final PdfPCell whiteRow;
+    private final PdfPCell stripedRow;
+    private final PdfPCell advice;
+    private final PdfPCell doctorSignature;
+    private final PdfPCell clinicSignature;
+
+    PrescriptionTemplate(PdfTheme theme) {
+        this.theme = theme;
+
+        separator = new LineSeparator();
+        separator.setLineColor(theme.getTeal());
+        separator.setLineWidth(2f);
+        separator.setPercentage(100);
+        separator.setOffset(-2);
+
+        leftHeader = borderless();
+        leftHeader.setVerticalAlignment(Element.ALIGN_MIDDLE);
+        rightHeader = borderless();
+        rightHeader.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        rightHeader.setVerticalAlignment(Element.ALIGN_MIDDLE);
+
+        patientNameLabel = patientLabel("PATIENT NAME");
+        dateLabel = patientLabel("DATE");
+        ageGenderLabel = patientLabel("AGE / GENDER");
+        phoneLabel = patientLabel("PHONE");
+        addressLabel = patientLabel("ADDRESS");
+        patientValue = borderless();
+        patientValue.setPaddingBottom(5);
+        addressValue = borderless();
+        addressValue.setColspan(3);
+
+        for (int i = 0; i < VITAL_LABELS.length; i++) {
+            PdfPCell cell = borderless();
+            cell.setBackgroundColor(Color.WHITE);
+            cell.setPadding(8);
+            Paragraph label = new Paragraph(VITAL_LABELS[i], theme.getVitalLabel());
+            label.setAlignment(Element.ALIGN_CENTER);
+            cell.addElement(label);
+            vitals[i] = cell;
+        }
+
+        notes = new PdfPCell();
+        notes.setBorder(Rectangle.LEFT | Rectangle.BOTTOM); // Minimalist L-bracket border look
+        notes.setBorderColor(theme.getTeal());
+        notes.setBorderWidth(3f);
+        notes.setPadding(12);
+        notes.setBackgroundColor(theme.getNotesBackground());
+        notes.addElement(new Paragraph("PROBLEM / DIAGNOSIS", theme.getSectionHeading()));
+
+        for (int i = 0; i < MEDICATION_HEADERS.length; i++) {
+            PdfPCell cell = new PdfPCell(new Phrase(MEDICATION_HEADERS[i], theme.getTableHeader()));
+            cell.setBackgroundColor(theme.getTeal());
+            cell.setPadding(8);
+            cell.setVerticalAlignment(Element.ALIGN_MIDDLE);
+            cell.setBorderColor(theme.getTeal());
+            medicationHeaders[i] = cell;
+        }
+        whiteRow = medicationRow(Color.WHITE);
+        stripedRow = medicationRow(theme.getStripeGray());
+
+        advice = borderless();
+        advice.setPadding(8);
+        advice.addElement(new Paragraph("ADVICE / INSTRUCTIONS", theme.getSectionHeading()));
+
+        doctorSignature = signature("CONSULTING DOCTOR", Element.ALIGN_LEFT);
+        clinicSignature = signature(theme.getBranding().footerTitle(), Element.ALIGN_RIGHT);
+    }
+
+    private static PdfPCell borderless() {
+        PdfPCell cell = new PdfPCell();
+        cell.setBorder(Rectangle.NO_BORDER);
+        return cell;
+    }
+
+    private PdfPCell patientLabel(String label) {
+        PdfPCell cell = new PdfPCell(new Phrase(label, theme.getPatientLabel()));
+        cell.setBorder(Rectangle.NO_BORDER);
+        cell.setPaddingBottom(5);
+        return cell;
+    }
+
+    private PdfPCell medicationRow(Color background) {
+        PdfPCell cell = new PdfPCell();
+        cell.setPadding(8);
+        cell.setBackgroundColor(background);
+        cell.setBorderColor(theme.getCellBorder());
+        return cell;
+    }
+
+    private PdfPCell signature(String title, int align) {
+        PdfPCell cell = borderless();
+        cell.setHorizontalAlignment(align);
+        cell.setPaddingTop(15);
+        Paragraph heading = new Paragraph(title, theme.getFooterTitle());
+        heading.setAlignment(align);
+        cell.addElement(heading);
+        return cell;
+    }
+
+    // --- Per-render copies ---
+
+    Chunk separator() {
+        Chunk chunk = new Chunk(separator);
+        // The chunk's placeholder character would otherwise pull an embedded TrueType font into every document
+        chunk.setFont(theme.getSpacer());
+        return chunk;
+    }
+
+    PdfPCell leftHeader() {
+        return new PdfPCell(leftHeader);
+    }
+
+    PdfPCell rightHeader() {
+        return new PdfPCell(rightHeader);
+    }
+
+    PdfPCell patientNameLabel() {
+        return new PdfPCell(patientNameLabel);
+    }
+
+    PdfPCell dateLabel() {
+        return new PdfPCell(dateLabel);
+    }
+
+    PdfPCell ageGenderLabel() {
+        return new PdfPCell(ageGenderLabel);
+    }
+
+    PdfPCell phoneLabel() {
+        return new PdfPCell(phoneLabel);
+    }
+
+    PdfPCell addressLabel() {
+        return new PdfPCell(addressLabel);
+    }
+
+    PdfPCell patientValue(String value) {
+        PdfPCell cell = new PdfPCell(patientValue);
+        cell.setPhrase(new Phrase(value, theme.getBodyBold()));
+        return cell;
+    }
+
+    PdfPCell addressValue(String value) {
+        PdfPCell cell = new PdfPCell(addressValue);
+        cell.setPhrase(new Phrase(value, theme.getBody()));
+        return cell;
+    }
+
+    PdfPCell vital(int index, String value) {
+        PdfPCell cell = new PdfPCell(vitals[index]);
+        Paragraph v = new Paragraph(value != null && !value.isEmpty() ? value : "-", theme.getBodyBold());
+        v.setAlignment(Element.ALIGN_CENTER);
+        cell.addElement(v);
+        return cell;
+    }
+
+    PdfPCell notes() {
+        return new PdfPCell(notes);
+    }
+
+    PdfPCell medicationHeader(int column) {
+        return new PdfPCell(medicationHeaders[column]);
+    }
+
+    int medicationColumns() {
+        return medicationHeaders.length;
+    }
+
+    PdfPCell medicationCell(String text, boolean striped) {
+        PdfPCell cell = new PdfPCell(striped ? stripedRow : whiteRow);
+        cell.setPhrase(new Phrase(text, theme.getBody()));
+        return cell;
+    }
+
+    PdfPCell advice() {
+        return new PdfPCell(advice);
+    }
+
+    PdfPCell doctorSignature() {
+        return new PdfPCell(doctorSignature);
+    }
+
+    PdfPCell clinicSignature() {
+        return new PdfPCell(clinicSignature);
+    }
+}
@@ -0,0 +1,21 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import java.time.Duration;
+
+/**
+ * Thrown when no render slot frees up within the configured wait. Callers should
+ * back off and retry; the suggested delay is carried with the exception.
+ */
+public class RenderCapacityExceededException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public RenderCapacityExceededException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
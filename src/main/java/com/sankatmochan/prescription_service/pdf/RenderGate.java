@@ -0,0 +1,150 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds how many PDF renders run at once.
+ *
+ * Rendering is CPU bound, so running more renders than there are cores only makes
+ * each of them slower and takes CPU away from the I/O-bound requests sharing the
+ * JVM. With virtual threads there is no request pool to do that limiting, so every
+ * render takes a permit here first. Waiters are served in arrival order and give up
+ * after the acquire timeout.
+ *
+ * Downloads can also be shed: while renders are queueing and recent ones have waited longer
+ * than the shed threshold, {@link #acquireOrShed()} refuses at once instead of adding another
+ * waiter that would most likely time out anyway.
+ */
+@Component
+public class RenderGate {
+
+    private final int permits;
+    private final Duration acquireTimeout;
+    private final long shedThresholdNanos;
+    private final Semaphore semaphore;
+    // Moving average of recent waits for a slot, each new wait weighted 1/8
+    private final AtomicLong recentWaitNanos = new AtomicLong();
+
+    private final Timer queueWait;
+    private final Counter rejected;
+    private final Counter shed;
+
+    public RenderGate(MeterRegistry meterRegistry, int maxConcurrent, Duration acquireTimeout) {
+        this(meterRegistry, maxConcurrent, acquireTimeout, Duration.ZERO);
+    }
+
+    @Autowired
+    public RenderGate(MeterRegistry meterRegistry,
+                      @Value("${prescription.pdf.render.max-concurrent:0}") int maxConcurrent,
+                      @Value("${prescription.pdf.render.acquire-timeout:2s}") Duration acquireTimeout,
+                      @Value("${prescription.pdf.render.shed-queue-latency:500ms}") Duration shedQueueLatency) {
+        this.permits = maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        this.acquireTimeout = acquireTimeout;
+        this.shedThresholdNanos = shedQueueLatency.toNanos();
+        this.semaphore = new Semaphore(permits, true);
+
+        this.queueWait = Timer.builder("prescription.pdf.render.queue.wait")
+                .description("Time a render waited for a free slot")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejected = Counter.builder("prescription.pdf.render.rejected")
+                .description("Renders turned away because no slot freed up in time")
+                .register(meterRegistry);
+        this.shed = Counter.builder("prescription.pdf.render.shed")
+                .description("Downloads turned away at once because renders were queueing too long")
+                .register(meterRegistry);
+        TimeGauge.builder("prescription.pdf.render.queue.latency", recentWaitNanos, TimeUnit.NANOSECONDS,
+                        AtomicLong::get)
+                .description("Moving average of recent waits for a render slot")
+                .register(meterRegistry);
+        Gauge.builder("prescription.pdf.render.active", this, g -> g.permits - g.semaphore.availablePermits())
+                .description("Renders currently running")
+                .register(meterRegistry);
+        Gauge.builder("prescription.pdf.render.waiting", semaphore, Semaphore::getQueueLength)
+                .description("Renders waiting for a slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Waits for a render slot. Close the returned permit when the render is done.
+     *
+     * @throws RenderCapacityExceededException if no slot frees up within the acquire timeout
+     */
+    public Permit acquire() {
+        long started = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RenderCapacityExceededException("Interrupted while waiting for a render slot", retryAfter());
+        } finally {
+            long waited = System.nanoTime() - started;
+            queueWait.record(waited, TimeUnit.NANOSECONDS);
+            recentWaitNanos.accumulateAndGet(waited, (average, sample) -> average + (sample - average) / 8);
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new RenderCapacityExceededException("All " + permits + " render slots are busy", retryAfter());
+        }
+        return new Permit(semaphore);
+    }
+
+    /**
+     * Like {@link #acquire()}, but for renders someone is waiting on: refuses at once while
+     * renders are queueing and have recently waited longer than the shed threshold. Once the
+     * queue empties, new renders are admitted again and their short waits pull the average down.
+     *
+     * @throws RenderCapacityExceededException if shed, or if no slot frees up within the acquire timeout
+     */
+    public Permit acquireOrShed() {
+        if (shedThresholdNanos > 0 && semaphore.hasQueuedThreads() && recentWaitNanos.get() > shedThresholdNanos) {
+            shed.increment();
+            throw new RenderCapacityExceededException("Renders are queueing for longer than "
+                    + Duration.ofNanos(shedThresholdNanos).toMillis() + " ms", retryAfter());
+        }
+        return acquire();
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    private Duration retryAfter() {
+        // A full queue drains in about one acquire timeout
+        return acquireTimeout.compareTo(Duration.ofSeconds(1)) > 0 ? acquireTimeout : Duration.ofSeconds(1);
+    }
+
+    /**
+     * A held render slot. Closing it more than once releases the slot only once.
+     */
+    public static final class Permit implements AutoCloseable {
+
+        private final Semaphore semaphore;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+    }
+}
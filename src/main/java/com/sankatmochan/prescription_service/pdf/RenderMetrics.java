@@ -0,0 +1,189 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Meters for the PDF render path, recorded once per render with the outcome
+ * (success or error) as a tag:
+ * <ul>
+ *   <li>prescription.pdf.render.duration: the whole render</li>
+ *   <li>prescription.pdf.render.section{section}: each layout section, and the final document close</li>
+ *   <li>prescription.pdf.render.size: bytes written</li>
+ *   <li>prescription.pdf.render.medications: medication rows laid out</li>
+ *   <li>prescription.pdf.render.allocated: bytes allocated by the rendering thread (opt-in)</li>
+ * </ul>
+ * The JVM only counts allocation per platform thread; on a virtual thread it reports nothing.
+ * Renders on virtual threads (requests with spring.threads.virtual.enabled, and exports) are
+ * left out of prescription.pdf.render.allocated and counted in
+ * prescription.pdf.render.allocated.unmeasured instead, with a warning the first time.
+ * Cache hits do not render and are not recorded here; see prescription.pdf.cache.*.
+ */
+@Component
+public class RenderMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(RenderMetrics.class);
+
+    public enum Section {
+        HEADER, PATIENT, VITALS, NOTES, MEDICATIONS, ADVICE, FOOTER, CLOSE
+    }
+
+    private static final String SUCCESS = "success";
+    private static final String ERROR = "error";
+
+    private final Meters success;
+    private final Meters error;
+    private final com.sun.management.ThreadMXBean allocationBean;
+    private final Counter unmeasured;
+    private final AtomicBoolean warnedUnmeasured = new AtomicBoolean();
+
+    public RenderMetrics(MeterRegistry meterRegistry,
+                         @Value("${prescription.pdf.metrics.allocated-bytes:false}") boolean recordAllocatedBytes) {
+        this.success = new Meters(meterRegistry, SUCCESS, recordAllocatedBytes);
+        this.error = new Meters(meterRegistry, ERROR, recordAllocatedBytes);
+        this.allocationBean = recordAllocatedBytes ? allocationBean() : null;
+        this.unmeasured = recordAllocatedBytes
+                ? Counter.builder("prescription.pdf.render.allocated.unmeasured")
+                        .description("Renders left out of prescription.pdf.render.allocated, such as those on virtual threads")
+                        .register(meterRegistry)
+                : null;
+    }
+
+    /**
+     * Metrics that go nowhere, for renderers built outside the application context.
+     */
+    public static RenderMetrics noop() {
+        return new RenderMetrics(new CompositeMeterRegistry(), false);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean hotspot && hotspot.isThreadAllocatedMemorySupported()) {
+            hotspot.setThreadAllocatedMemoryEnabled(true);
+            return hotspot;
+        }
+        return null;
+    }
+
+    /**
+     * Starts timing a render on the calling thread.
+     */
+    public Trace start() {
+        return new Trace(allocatedBytes());
+    }
+
+    private long allocatedBytes() {
+        // -1 where the JVM cannot measure the current thread
+        return allocationBean != null ? allocationBean.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private void unmeasured() {
+        unmeasured.increment();
+        if (warnedUnmeasured.compareAndSet(false, true)) {
+            log.warn("Render allocation cannot be measured on {}; prescription.pdf.render.allocated only covers "
+                    + "renders on platform threads", Thread.currentThread().isVirtual() ? "virtual threads" : "this JVM");
+        }
+    }
+
+    /**
+     * Timing of one render in progress. Not thread safe; it belongs to the rendering thread.
+     */
+    public final class Trace {
+
+        private final long startedAt = System.nanoTime();
+        private final long allocatedAtStart;
+        private final long[] sectionNanos = new long[Section.values().length];
+        private long lastMark = startedAt;
+
+        private Trace(long allocatedAtStart) {
+            this.allocatedAtStart = allocatedAtStart;
+        }
+
+        /**
+         * Charges the time since the previous mark (or the start) to the section that just ended.
+         */
+        public void mark(Section section) {
+            long now = System.nanoTime();
+            sectionNanos[section.ordinal()] += now - lastMark;
+            lastMark = now;
+        }
+
+        public void finish(boolean succeeded, long bytesWritten, int medicationRows) {
+            Meters meters = succeeded ? success : error;
+            meters.duration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            for (Section section : Section.values()) {
+                meters.sections.get(section).record(sectionNanos[section.ordinal()], TimeUnit.NANOSECONDS);
+            }
+            meters.size.record(bytesWritten);
+            meters.medications.record(medicationRows);
+            if (meters.allocated != null) {
+                long allocatedNow = allocatedAtStart >= 0 ? allocatedBytes() : -1;
+                if (allocatedNow >= 0) {
+                    meters.allocated.record(allocatedNow - allocatedAtStart);
+                } else {
+                    unmeasured();
+                }
+            }
+        }
+    }
+
+    private static final class Meters {
+
+        private final Timer duration;
+        private final Map<Section, Timer> sections = new EnumMap<>(Section.class);
+        private final DistributionSummary size;
+        private final DistributionSummary medications;
+        private final DistributionSummary allocated;
+
+        private Meters(MeterRegistry registry, String outcome, boolean recordAllocatedBytes) {
+            this.duration = Timer.builder("prescription.pdf.render.duration")
+                    .description("Time to render one prescription PDF")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            for (Section section : Section.values()) {
+                sections.put(section, Timer.builder("prescription.pdf.render.section")
+                        .description("Time spent in one section of a PDF render")
+                        .tag("section", section.name().toLowerCase(Locale.ROOT))
+                        .tag("outcome", outcome)
+                        .publishPercentileHistogram()
+                        .register(registry));
+            }
+            this.size = DistributionSummary.builder("prescription.pdf.render.size")
+                    .description("Size of rendered prescription PDFs")
+                    .baseUnit("bytes")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.medications = DistributionSummary.builder("prescription.pdf.render.medications")
+                    .description("Medication rows per rendered prescription")
+                    .baseUnit("rows")
+                    .tag("outcome", outcome)
+                    .serviceLevelObjectives(1, 2, 3, 5, 8, 13, 21)
+                    .register(registry);
+            this.allocated = recordAllocatedBytes
+                    ? DistributionSummary.builder("prescription.pdf.render.allocated")
+                            .description("Heap allocated by the rendering thread per render")
+                            .baseUnit("bytes")
+                            .tag("outcome", outcome)
+                            .publishPercentileHistogram()
+                            .register(registry)
+                    : null;
+        }
+    }
+}
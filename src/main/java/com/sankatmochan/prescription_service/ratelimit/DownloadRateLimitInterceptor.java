@@ -0,0 +1,41 @@
+package com.sankatmochan.prescription_service.ratelimit;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+
+/**
+ * Applies the client limit of {@link DownloadRateLimiter} before a download reaches the
+ * controller, so a client stuck in a retry loop cannot keep the service busy for everyone
+ * else. Over the limit it gets 429 with Retry-After and nothing is loaded or rendered. The
+ * prescription limit is applied by the controller, once it knows a render is needed.
+ */
+public class DownloadRateLimitInterceptor implements HandlerInterceptor {
+
+    private final DownloadRateLimiter limiter;
+
+    public DownloadRateLimitInterceptor(DownloadRateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // A streamed download comes back through here on its async dispatch; it paid on the way in
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        Duration wait = limiter.takeClient(request);
+        if (wait.isZero()) {
+            return true;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        // Whole seconds, rounded up, so a client that waits as told finds a token
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (wait.toMillis() + 999) / 1000)));
+        return false;
+    }
+}
@@ -0,0 +1,21 @@
+package com.sankatmochan.prescription_service.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a download would render a prescription that has used up its render budget.
+ * The suggested delay is carried with the exception.
+ */
+public class DownloadRateLimitedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public DownloadRateLimitedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
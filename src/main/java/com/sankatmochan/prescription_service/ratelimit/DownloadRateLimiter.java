@@ -0,0 +1,98 @@
+package com.sankatmochan.prescription_service.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.time.Duration;
+
+/**
+ * The two download limits. Every download takes a token from its client's bucket (by the
+ * client header, or by address for clients without one) on the way in, see
+ * {@link DownloadRateLimitInterceptor}. Only a download that is about to render takes one
+ * from the prescription's bucket: 304s, ranges of a stored rendering and render cache hits
+ * cost the prescription nothing. When the prescription's bucket is empty the client gets its
+ * token back, so a refused download does not count against it.
+ *
+ * The client header is taken at its word, so it must be one the gateway in front of the
+ * service authenticates; a client that can send any value can also send a new one each time
+ * and get a fresh budget. Without such a gateway, leave the header empty to limit by address.
+ */
+public class DownloadRateLimiter {
+
+    // Where the interceptor leaves the client key, for a refund later in the same request
+    private static final String CLIENT_KEY = DownloadRateLimiter.class.getName() + ".clientKey";
+
+    private final TokenBuckets clients;
+    private final TokenBuckets prescriptions;
+    private final String clientHeader;
+    private final Counter clientLimited;
+    private final Counter prescriptionLimited;
+
+    /**
+     * @param clients       per-client buckets, or null for no client limit
+     * @param prescriptions per-prescription buckets, or null for no prescription limit
+     * @param clientHeader  header naming the client, or empty to key clients by address alone
+     */
+    public DownloadRateLimiter(MeterRegistry meterRegistry, TokenBuckets clients, TokenBuckets prescriptions,
+                               String clientHeader) {
+        this.clients = clients;
+        this.prescriptions = prescriptions;
+        this.clientHeader = clientHeader;
+        this.clientLimited = limited(meterRegistry, "client");
+        this.prescriptionLimited = limited(meterRegistry, "prescription");
+    }
+
+    private static Counter limited(MeterRegistry meterRegistry, String limit) {
+        return Counter.builder("prescription.download.rate.limited")
+                .description("Downloads refused with 429, by the limit they ran into")
+                .tag("limit", limit)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a token from the client's bucket. Returns zero if there was one, otherwise how
+     * long until there will be.
+     */
+    public Duration takeClient(HttpServletRequest request) {
+        if (clients == null) {
+            return Duration.ZERO;
+        }
+        String key = clientKey(request);
+        Duration wait = clients.tryTake(key);
+        if (wait.isZero()) {
+            request.setAttribute(CLIENT_KEY, key);
+        } else {
+            clientLimited.increment();
+        }
+        return wait;
+    }
+
+    /**
+     * Takes a token from the prescription's bucket before a download renders it. If there is
+     * none, gives the client back the token this request took and throws.
+     *
+     * @throws DownloadRateLimitedException when the prescription is over its limit
+     */
+    public void takeRender(HttpServletRequest request, String prescriptionId) {
+        if (prescriptions == null) {
+            return;
+        }
+        Duration wait = prescriptions.tryTake(prescriptionId);
+        if (wait.isZero()) {
+            return;
+        }
+        prescriptionLimited.increment();
+        if (request.getAttribute(CLIENT_KEY) instanceof String key) {
+            request.removeAttribute(CLIENT_KEY);
+            clients.refund(key);
+        }
+        throw new DownloadRateLimitedException("Prescription " + prescriptionId + " is rendered too often", wait);
+    }
+
+    // Prefixed so an API key can never share a bucket with an address
+    private String clientKey(HttpServletRequest request) {
+        String apiKey = clientHeader.isEmpty() ? null : request.getHeader(clientHeader);
+        return apiKey != null && !apiKey.isBlank() ? "key:" + apiKey : "addr:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,84 @@
+package com.sankatmochan.prescription_service.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One token bucket per key: up to {@code burst} requests at once, refilled at
+ * {@code perMinute}. Each bucket is a single timestamp, the time at which it will be full
+ * again (the generic cell rate algorithm), updated with a compare-and-set, so taking a token
+ * never locks.
+ *
+ * Buckets live in a bounded Caffeine map. A bucket left alone long enough to refill
+ * completely is dropped, which changes nothing: a new bucket also starts full. Under a flood
+ * of new keys the least recently used buckets go first.
+ */
+public class TokenBuckets {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final Ticker ticker;
+    private final Cache<String, AtomicLong> fullAt;
+
+    public TokenBuckets(int perMinute, int burst, long maximumSize) {
+        this(perMinute, burst, maximumSize, Ticker.systemTicker());
+    }
+
+    TokenBuckets(int perMinute, int burst, long maximumSize, Ticker ticker) {
+        if (perMinute <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("perMinute and burst must be positive");
+        }
+        this.nanosPerToken = TimeUnit.MINUTES.toNanos(1) / perMinute;
+        this.burstNanos = nanosPerToken * burst;
+        this.ticker = ticker;
+        this.fullAt = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(Duration.ofNanos(burstNanos))
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Takes a token from the key's bucket. Returns zero if there was one, otherwise how long
+     * until there will be; an empty bucket is left as it is.
+     */
+    public Duration tryTake(String key) {
+        AtomicLong bucket = fullAt.get(key, k -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long now = ticker.read();
+            long current = bucket.get();
+            // A bucket full since some time in the past is just full
+            long full = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long next = full + nanosPerToken;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return Duration.ofNanos(wait);
+            }
+            if (bucket.compareAndSet(current, next)) {
+                return Duration.ZERO;
+            }
+        }
+    }
+
+    /**
+     * Puts back a token taken with {@link #tryTake}, for a request that was refused further on.
+     */
+    public void refund(String key) {
+        AtomicLong bucket = fullAt.getIfPresent(key);
+        if (bucket == null) {
+            return;
+        }
+        while (true) {
+            long current = bucket.get();
+            // A time already past means full, so this cannot overfill the bucket
+            if (current == Long.MIN_VALUE || bucket.compareAndSet(current, current - nanosPerToken)) {
+                return;
+            }
+        }
+    }
+}
@@ -1,8 +1,19 @@
 package com.sankatmochan.prescription_service.repository;
 
+import com.sankatmochan.prescription_service.dto.PrescriptionRollupSource;
+import com.sankatmochan.prescription_service.dto.PrescriptionSummary;
+import com.sankatmochan.prescription_service.dto.PrescriptionValidator;
+import com.sankatmochan.prescription_service.dto.ReviewQueueItem;
 import com.sankatmochan.prescription_service.model.Prescription;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,12 +26,218 @@ public interface PrescriptionRepository extends JpaRepository<Prescription, Stri
      */
     Optional<Prescription> findById(String id);
 
+    /**
+     * Version and timestamps of one prescription, for conditional downloads.
+     * A primary-key lookup of a handful of columns; medications are not touched.
+     */
+    @Query("""
+            select new com.sankatmochan.prescription_service.dto.PrescriptionValidator(
+                p.id, p.version, p.createdAt, p.updatedAt, p.approvedByDoctor)
+            from Prescription p
+            where p.id = :id
+            """)
+    Optional<PrescriptionValidator> findValidatorById(String id);
+
     /**
      * Finds all prescriptions for a specific patient name.
      * Useful for retrieving history for "Rahul".
      */
     List<Prescription> findByPatientNameIgnoreCase(String patientName);
 
+    /**
+     * First page of a patient's history, newest first.
+     * Served by idx_prescriptions_patient_history; only the summary columns are read.
+     */
+    @Query("""
+            select new com.sankatmochan.prescription_service.dto.PrescriptionSummary(
+                p.id, p.createdAt, p.diagnosis, p.doctorName)
+            from Prescription p
+            where p.patientNameKey = :patientNameKey
+            order by p.createdAt desc, p.id desc
+            """)
+    List<PrescriptionSummary> findHistory(String patientNameKey, Limit limit);
+
+    /**
+     * Next page of a patient's history: the rows that sort after (createdAt, id).
+     * Keyset pagination, so deep pages cost the same as the first one.
+     */
+    @Query("""
+            select new com.sankatmochan.prescription_service.dto.PrescriptionSummary(
+                p.id, p.createdAt, p.diagnosis, p.doctorName)
+            from Prescription p
+            where p.patientNameKey = :patientNameKey
+              and (p.createdAt < :createdAt or (p.createdAt = :createdAt and p.id < :id))
+            order by p.createdAt desc, p.id desc
+            """)
+    List<PrescriptionSummary> findHistoryAfter(String patientNameKey, LocalDateTime createdAt, String id,
+                                               Limit limit);
+
+    /**
+     * First page of a doctor's review queue: unapproved prescriptions not yet reviewed, oldest first.
+     * Served by idx_prescriptions_review_queue.
+     */
+    @Query("""
+            select new com.sankatmochan.prescription_service.dto.ReviewQueueItem(
+                p.id, p.patientName, p.diagnosis, p.isAiGenerated, p.createdAt, p.version)
+            from Prescription p
+            where p.doctorRegNo = :doctorRegNo
+              and p.approvedByDoctor = false
+              and p.reviewStatus = com.sankatmochan.prescription_service.model.ReviewStatus.PENDING
+            order by p.createdAt, p.id
+            """)
+    List<ReviewQueueItem> findReviewQueue(String doctorRegNo, Limit limit);
+
+    /**
+     * Next page of a doctor's review queue: the rows that sort after (createdAt, id).
+     */
+    @Query("""
+            select new com.sankatmochan.prescription_service.dto.ReviewQueueItem(
+                p.id, p.patientName, p.diagnosis, p.isAiGenerated, p.createdAt, p.version)
+            from Prescription p
+            where p.doctorRegNo = :doctorRegNo
+              and p.approvedByDoctor = false
+              and p.reviewStatus = com.sankatmochan.prescription_service.model.ReviewStatus.PENDING
+              and (p.createdAt > :createdAt or (p.createdAt = :createdAt and p.id > :id))
+            order by p.createdAt, p.id
+            """)
+    List<ReviewQueueItem> findReviewQueueAfter(String doctorRegNo, LocalDateTime createdAt, String id, Limit limit);
+
+    /**
+     * Fills the history key for rows written before the column existed.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Prescription p set p.patientNameKey = lower(trim(p.patientName)) "
+            + "where p.patientNameKey is null and p.patientName is not null")
+    int backfillPatientNameKeys();
+
+    /**
+     * Prescriptions containing the given drug, newest first, optionally limited to
+     * createdAt in [from, to). Served by idx_prescription_medications_name.
+     */
+    @Query("""
+            select distinct new com.sankatmochan.prescription_service.dto.PrescriptionSummary(
+                p.id, p.createdAt, p.diagnosis, p.doctorName)
+            from Prescription p join p.medicationData m
+            where m.nameKey = :medicationNameKey
+              and (:from is null or p.createdAt >= :from)
+              and (:to is null or p.createdAt < :to)
+            order by p.createdAt desc, p.id desc
+            """)
+    List<PrescriptionSummary> findByMedication(String medicationNameKey, LocalDateTime from, LocalDateTime to,
+                                               Limit limit);
+
+    /**
+     * Number of prescriptions containing the given drug, optionally limited to createdAt in [from, to).
+     */
+    @Query("""
+            select count(distinct p.id)
+            from Prescription p join p.medicationData m
+            where m.nameKey = :medicationNameKey
+              and (:from is null or p.createdAt >= :from)
+              and (:to is null or p.createdAt < :to)
+            """)
+    long countByMedication(String medicationNameKey, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Number of prescriptions a batch export would contain: those of the doctor and/or
+     * clinic (a null filter matches everything) with createdAt in [from, to).
+     */
+    @Query("""
+            select count(p)
+            from Prescription p
+            where (:doctorRegNo is null or p.doctorRegNo = :doctorRegNo)
+              and (:clinicName is null or p.clinicName = :clinicName)
+              and p.createdAt >= :from and p.createdAt < :to
+            """)
+    long countForExport(String doctorRegNo, String clinicName, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * First batch of an export, oldest first. Served by idx_prescriptions_doctor_export
+     * or idx_prescriptions_clinic_export.
+     */
+    @Query("""
+            select p
+            from Prescription p
+            where (:doctorRegNo is null or p.doctorRegNo = :doctorRegNo)
+              and (:clinicName is null or p.clinicName = :clinicName)
+              and p.createdAt >= :from and p.createdAt < :to
+            order by p.createdAt, p.id
+            """)
+    List<Prescription> findForExport(String doctorRegNo, String clinicName, LocalDateTime from, LocalDateTime to,
+                                     Limit limit);
+
+    /**
+     * Next batch of an export: the rows that sort after (afterCreatedAt, afterId).
+     */
+    @Query("""
+            select p
+            from Prescription p
+            where (:doctorRegNo is null or p.doctorRegNo = :doctorRegNo)
+              and (:clinicName is null or p.clinicName = :clinicName)
+              and p.createdAt < :to
+              and (p.createdAt > :afterCreatedAt or (p.createdAt = :afterCreatedAt and p.id > :afterId))
+            order by p.createdAt, p.id
+            """)
+    List<Prescription> findForExportAfter(String doctorRegNo, String clinicName, LocalDateTime to,
+                                          LocalDateTime afterCreatedAt, String afterId, Limit limit);
+
+    /**
+     * First batch of prescriptions created before the cutoff, oldest first, for archiving.
+     * Served by idx_prescriptions_created_at.
+     */
+    @Query("""
+            select p
+            from Prescription p
+            where p.createdAt < :cutoff
+            order by p.createdAt, p.id
+            """)
+    List<Prescription> findForArchive(LocalDateTime cutoff, Limit limit);
+
+    /**
+     * Next batch for archiving: the rows that sort after (afterCreatedAt, afterId).
+     */
+    @Query("""
+            select p
+            from Prescription p
+            where p.createdAt < :cutoff
+              and (p.createdAt > :afterCreatedAt or (p.createdAt = :afterCreatedAt and p.id > :afterId))
+            order by p.createdAt, p.id
+            """)
+    List<Prescription> findForArchiveAfter(LocalDateTime cutoff, LocalDateTime afterCreatedAt, String afterId,
+                                           Limit limit);
+
+    /**
+     * The columns the dashboard rollups are keyed on, for the given prescriptions.
+     */
+    @Query("""
+            select new com.sankatmochan.prescription_service.dto.PrescriptionRollupSource(
+                p.id, p.doctorRegNo, p.clinicName, p.createdAt, p.approvedByDoctor, p.isAiGenerated, p.diagnosis,
+                p.version)
+            from Prescription p
+            where p.id in :ids
+            """)
+    List<PrescriptionRollupSource> findRollupSources(Collection<String> ids);
+
+    /**
+     * Walks the whole table in id order, one batch at a time (keyset, no OFFSET).
+     * Used to rebuild the search index.
+     */
+    List<Prescription> findByIdGreaterThanOrderByIdAsc(String id, Limit limit);
+
+    /**
+     * Prescriptions created or updated after {@code since}, in id order after {@code afterId}.
+     * Used to catch the search index up at startup; a scan, but only once per start.
+     */
+    @Query("""
+            select p
+            from Prescription p
+            where (p.createdAt > :since or p.updatedAt > :since)
+              and p.id > :afterId
+            order by p.id
+            """)
+    List<Prescription> findChangedSince(LocalDateTime since, String afterId, Limit limit);
+
     /**
      * Finds prescriptions by diagnosis, such as "Pulmonary Tuberculosis".
      *
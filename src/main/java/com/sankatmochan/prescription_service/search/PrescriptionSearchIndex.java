@@ -0,0 +1,364 @@
+package com.sankatmochan.prescription_service.search;
+
+import com.sankatmochan.prescription_service.dto.SearchHit;
+import com.sankatmochan.prescription_service.dto.SearchPage;
+import com.sankatmochan.prescription_service.model.Medication;
+import com.sankatmochan.prescription_service.model.Prescription;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.*;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Embedded Lucene index over the free-text parts of a prescription: diagnosis,
+ * clinical notes, advice and medication names.
+ *
+ * Writes go to a single {@link IndexWriter} and become searchable on the next
+ * search after them (near-real-time reopen, no commit needed). Commits, which make
+ * the index durable, happen on a timer and on shutdown. Each commit records the latest
+ * change time (created or updated) of the prescriptions it holds, so the startup
+ * catch-up in {@link PrescriptionSearchIndexer} knows which rows to re-read.
+ */
+@Component
+public class PrescriptionSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PrescriptionSearchIndex.class);
+
+    // Deepest result searchable through page/size; past this, narrow the query instead
+    public static final int MAX_RESULT_WINDOW = 10_000;
+
+    static final String ID = "id";
+    static final String DIAGNOSIS = "diagnosis";
+    static final String CLINICAL_NOTES = "clinicalNotes";
+    static final String ADVICE = "advice";
+    static final String MEDICATIONS = "medications";
+    static final String DOCTOR_NAME = "doctorName";
+    static final String DOCTOR_REG_NO = "doctorRegNo";
+    static final String CREATED_AT = "createdAt";
+
+    // Commit user data: epoch millis of the latest change indexed
+    private static final String CHANGED_THROUGH = "changedThrough";
+
+    // Diagnosis and drug matches say more about a prescription than a passing mention in the notes
+    private static final Map<String, Float> FIELD_WEIGHTS = Map.of(
+            DIAGNOSIS, 3.0f,
+            MEDICATIONS, 2.0f,
+            CLINICAL_NOTES, 1.0f,
+            ADVICE, 1.0f);
+
+    // Best match first; equally relevant prescriptions newest first
+    private static final Sort RANKING = new Sort(SortField.FIELD_SCORE,
+            new SortField(CREATED_AT, SortField.Type.LONG, true));
+
+    private final Analyzer analyzer = new EnglishAnalyzer();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final ScheduledExecutorService committer;
+
+    // Set by writes, cleared by the reopen that makes them visible
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    // While a rebuild runs, searches keep using the last complete snapshot
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final LongAccumulator changedThrough = new LongAccumulator(Long::max, Long.MIN_VALUE);
+
+    public PrescriptionSearchIndex(MeterRegistry meterRegistry,
+                                   @Value("${prescription.search.index.directory:}") String indexDirectory,
+                                   @Value("${prescription.search.commit-interval:5s}") Duration commitInterval)
+            throws IOException {
+        this.directory = open(indexDirectory);
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+        Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> e : commitData) {
+                if (CHANGED_THROUGH.equals(e.getKey())) {
+                    changedThrough.accumulate(Long.parseLong(e.getValue()));
+                }
+            }
+        }
+
+        Gauge.builder("prescription.search.documents", this, PrescriptionSearchIndex::documentCount)
+                .description("Prescriptions in the full-text search index")
+                .register(meterRegistry);
+
+        this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "prescription-search-commit");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalMillis = commitInterval.toMillis();
+        committer.scheduleWithFixedDelay(this::commitQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static Directory open(String indexDirectory) throws IOException {
+        if (indexDirectory.isBlank()) {
+            log.info("No search index directory configured, keeping the index in memory");
+            return new ByteBuffersDirectory();
+        }
+        Path path = Path.of(indexDirectory);
+        Files.createDirectories(path);
+        return FSDirectory.open(path);
+    }
+
+    /**
+     * Adds the prescription to the index, replacing any previous version of it.
+     */
+    public void index(Prescription p) {
+        try {
+            writer.updateDocument(new Term(ID, p.getId()), toDocument(p));
+            changedThrough.accumulate(changedAt(p));
+            dirty.set(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not index prescription " + p.getId(), e);
+        }
+    }
+
+    public void delete(String prescriptionId) {
+        try {
+            writer.deleteDocuments(new Term(ID, prescriptionId));
+            dirty.set(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not remove prescription " + prescriptionId + " from the index", e);
+        }
+    }
+
+    /**
+     * Replaces the whole index with the given prescriptions. Searches keep seeing the
+     * previous contents until the rebuild has finished.
+     *
+     * @return the number of prescriptions indexed
+     */
+    public long rebuild(Iterable<List<Prescription>> batches) {
+        rebuilding.set(true);
+        try {
+            writer.deleteAll();
+            long count = 0;
+            for (List<Prescription> batch : batches) {
+                for (Prescription p : batch) {
+                    // Update rather than add: a change event may already have indexed this row
+                    writer.updateDocument(new Term(ID, p.getId()), toDocument(p));
+                    changedThrough.accumulate(changedAt(p));
+                }
+                count += batch.size();
+            }
+            commit();
+            dirty.set(true);
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not rebuild the search index", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Indexes the given prescriptions, replacing any previous versions, and commits.
+     *
+     * @return the number of prescriptions indexed
+     */
+    public long indexAll(Iterable<List<Prescription>> batches) {
+        long count = 0;
+        for (List<Prescription> batch : batches) {
+            batch.forEach(this::index);
+            count += batch.size();
+        }
+        try {
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not commit the search index", e);
+        }
+        return count;
+    }
+
+    /**
+     * The latest creation or update time among the prescriptions indexed, including
+     * those indexed before a restart. Empty for an index without that record.
+     */
+    public Optional<LocalDateTime> changedThrough() {
+        long millis = changedThrough.get();
+        return millis == Long.MIN_VALUE
+                ? Optional.empty()
+                : Optional.of(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+    }
+
+    public long documentCount() {
+        return writer.getDocStats().numDocs;
+    }
+
+    public SearchPage search(PrescriptionSearchQuery query) {
+        long window = ((long) query.page() + 1) * query.size();
+        if (query.page() < 0 || query.size() < 1 || window > MAX_RESULT_WINDOW) {
+            throw new IllegalArgumentException("page and size must stay within the first "
+                    + MAX_RESULT_WINDOW + " results");
+        }
+        try {
+            refreshIfDirty();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopFieldDocs top = searcher.search(toLuceneQuery(query), (int) window, RANKING, true);
+                StoredFields stored = searcher.storedFields();
+                List<SearchHit> items = new ArrayList<>(query.size());
+                for (int i = query.page() * query.size(); i < top.scoreDocs.length; i++) {
+                    ScoreDoc hit = top.scoreDocs[i];
+                    items.add(toHit(stored.document(hit.doc), hit.score));
+                }
+                return new SearchPage(items, query.page(), query.size(), top.totalHits.value(),
+                        top.totalHits.relation() == TotalHits.Relation.EQUAL_TO);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Search failed", e);
+        }
+    }
+
+    private void refreshIfDirty() throws IOException {
+        if (!rebuilding.get() && dirty.compareAndSet(true, false)) {
+            searcherManager.maybeRefreshBlocking();
+        }
+    }
+
+    private Query toLuceneQuery(PrescriptionSearchQuery query) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_WEIGHTS);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder()
+                .add(parser.parse(query.text()), BooleanClause.Occur.MUST);
+        if (query.doctorRegNo() != null && !query.doctorRegNo().isBlank()) {
+            builder.add(new TermQuery(new Term(DOCTOR_REG_NO, normalizeRegNo(query.doctorRegNo()))),
+                    BooleanClause.Occur.FILTER);
+        }
+        if (query.from() != null || query.to() != null) {
+            long lower = query.from() != null ? epochMillis(query.from().atStartOfDay()) : Long.MIN_VALUE;
+            long upper = query.to() != null ? epochMillis(query.to().plusDays(1).atStartOfDay()) - 1 : Long.MAX_VALUE;
+            builder.add(LongPoint.newRangeQuery(CREATED_AT, lower, upper), BooleanClause.Occur.FILTER);
+        }
+        return builder.build();
+    }
+
+    // --- Document mapping ---
+
+    private static Document toDocument(Prescription p) {
+        Document doc = new Document();
+        doc.add(new StringField(ID, p.getId(), Field.Store.YES));
+        addText(doc, DIAGNOSIS, p.getDiagnosis(), Field.Store.YES);
+        addText(doc, CLINICAL_NOTES, p.getClinicalNotes(), Field.Store.NO);
+        addText(doc, ADVICE, p.getAdvice(), Field.Store.NO);
+        if (p.getMedicationData() != null) {
+            for (Medication med : p.getMedicationData()) {
+                if (med != null) {
+                    addText(doc, MEDICATIONS, med.getName(), Field.Store.NO);
+                }
+            }
+        }
+        if (p.getDoctorName() != null) {
+            doc.add(new StoredField(DOCTOR_NAME, p.getDoctorName()));
+        }
+        if (p.getDoctorRegNo() != null) {
+            doc.add(new StringField(DOCTOR_REG_NO, normalizeRegNo(p.getDoctorRegNo()), Field.Store.NO));
+        }
+        if (p.getCreatedAt() != null) {
+            long millis = epochMillis(p.getCreatedAt());
+            doc.add(new LongPoint(CREATED_AT, millis));
+            doc.add(new NumericDocValuesField(CREATED_AT, millis));
+            doc.add(new StoredField(CREATED_AT, p.getCreatedAt().toString()));
+        }
+        return doc;
+    }
+
+    private static void addText(Document doc, String field, String value, Field.Store store) {
+        if (value != null && !value.isBlank()) {
+            doc.add(new TextField(field, value, store));
+        }
+    }
+
+    private static SearchHit toHit(Document doc, float score) {
+        String createdAt = doc.get(CREATED_AT);
+        return new SearchHit(doc.get(ID), createdAt != null ? LocalDateTime.parse(createdAt) : null,
+                doc.get(DIAGNOSIS), doc.get(DOCTOR_NAME), score);
+    }
+
+    private static String normalizeRegNo(String regNo) {
+        return regNo.trim().toUpperCase(Locale.ROOT);
+    }
+
+    // createdAt is a zone-less local time; UTC here is only a fixed mapping onto a number line
+    private static long epochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static long changedAt(Prescription p) {
+        LocalDateTime changed = p.getUpdatedAt() != null ? p.getUpdatedAt() : p.getCreatedAt();
+        return changed != null ? epochMillis(changed) : Long.MIN_VALUE;
+    }
+
+    // --- Lifecycle ---
+
+    private void commitQuietly() {
+        if (rebuilding.get() || !writer.hasUncommittedChanges()) {
+            return;
+        }
+        try {
+            commit();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not commit the search index: {}", e.getMessage());
+        }
+    }
+
+    private void commit() throws IOException {
+        setCommitData();
+        writer.commit();
+    }
+
+    // Marks the writer as changed, so only call it when a commit follows
+    private void setCommitData() {
+        long millis = changedThrough.get();
+        if (millis != Long.MIN_VALUE) {
+            writer.setLiveCommitData(Map.of(CHANGED_THROUGH, Long.toString(millis)).entrySet());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        committer.shutdownNow();
+        try {
+            searcherManager.close();
+            if (writer.hasUncommittedChanges()) {
+                setCommitData();
+            }
+            writer.close();
+        } finally {
+            directory.close();
+        }
+    }
+}
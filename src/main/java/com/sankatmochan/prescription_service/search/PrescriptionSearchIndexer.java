@@ -0,0 +1,161 @@
+package com.sankatmochan.prescription_service.search;
+
+import com.sankatmochan.prescription_service.cache.CacheInvalidationChannel;
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Keeps {@link PrescriptionSearchIndex} in step with the database: every committed
+ * change, on this replica or announced by another through the
+ * {@link CacheInvalidationChannel}, is re-read and indexed.
+ *
+ * At startup, in the background, rows changed since the index's last recorded change
+ * (less the catch-up overlap, for late commits and clock skew between replicas) are
+ * re-read. The whole index is rebuilt if it has no such record, or if it still does not
+ * hold the same number of prescriptions as the table afterwards (rows deleted meanwhile).
+ */
+@Component
+public class PrescriptionSearchIndexer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(PrescriptionSearchIndexer.class);
+
+    private final PrescriptionRepository repository;
+    private final PrescriptionSearchIndex index;
+    private final int batchSize;
+    private final Duration catchUpOverlap;
+
+    public PrescriptionSearchIndexer(PrescriptionRepository repository, PrescriptionSearchIndex index,
+                                     CacheInvalidationChannel channel,
+                                     @Value("${prescription.search.reindex-batch-size:500}") int batchSize,
+                                     @Value("${prescription.search.catch-up-overlap:10m}") Duration catchUpOverlap) {
+        this.repository = repository;
+        this.index = index;
+        this.batchSize = batchSize;
+        this.catchUpOverlap = catchUpOverlap;
+        channel.subscribe(this::reindex);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrescriptionChanged(PrescriptionChangedEvent event) {
+        reindex(event.prescriptionId());
+    }
+
+    /**
+     * Re-reads one prescription and indexes it, or removes it from the index if it is gone.
+     */
+    public void reindex(String prescriptionId) {
+        // Re-read the committed row so the index never holds uncommitted content
+        try {
+            repository.findById(prescriptionId)
+                    .ifPresentOrElse(index::index, () -> index.delete(prescriptionId));
+        } catch (RuntimeException e) {
+            // The row is stored; a failed index update must not fail the request. The next start repairs it.
+            log.warn("Could not update search index for prescription {}: {}", prescriptionId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Thread sync = new Thread(this::synchronize, "prescription-search-rebuild");
+        sync.setDaemon(true);
+        sync.start();
+    }
+
+    /**
+     * Brings the index up to date with the database on the calling thread: a catch-up
+     * of recently changed rows where possible, otherwise a full rebuild.
+     */
+    public void synchronize() {
+        try {
+            if (caughtUp()) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Search index catch-up failed, rebuilding: {}", e.getMessage());
+        }
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            // Logged by rebuild; searches keep using the index as it is until the next start
+        }
+    }
+
+    private boolean caughtUp() {
+        Optional<LocalDateTime> changedThrough = index.changedThrough();
+        if (changedThrough.isEmpty()) {
+            if (index.documentCount() == 0 && repository.count() == 0) {
+                return true;
+            }
+            log.info("Search index has no record of its last change, rebuilding in the background");
+            return false;
+        }
+        LocalDateTime since = changedThrough.get().minus(catchUpOverlap);
+        long updated = index.indexAll(batches(
+                afterId -> repository.findChangedSince(since, afterId, Limit.of(batchSize))));
+        long indexed = index.documentCount();
+        long stored = repository.count();
+        if (indexed != stored) {
+            log.info("Search index holds {} of {} prescriptions, rebuilding in the background", indexed, stored);
+            return false;
+        }
+        log.info("Search index caught up with {} prescriptions changed since {}", updated, since);
+        return true;
+    }
+
+    /**
+     * Rebuilds the whole index from the database on the calling thread.
+     */
+    public long rebuild() {
+        long started = System.nanoTime();
+        try {
+            long count = index.rebuild(batches(
+                    afterId -> repository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(batchSize))));
+            log.info("Search index rebuilt with {} prescriptions in {} ms", count,
+                    (System.nanoTime() - started) / 1_000_000);
+            return count;
+        } catch (RuntimeException e) {
+            log.error("Search index rebuild failed", e);
+            throw e;
+        }
+    }
+
+    // Keyset batches in id order: nextAfter returns up to batchSize rows with ids after the given one
+    private Iterable<List<Prescription>> batches(Function<String, List<Prescription>> nextAfter) {
+        return () -> new Iterator<>() {
+            private List<Prescription> next = nextAfter.apply("");
+
+            @Override
+            public boolean hasNext() {
+                return !next.isEmpty();
+            }
+
+            @Override
+            public List<Prescription> next() {
+                if (next.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                List<Prescription> current = next;
+                String lastId = current.get(current.size() - 1).getId();
+                next = current.size() < batchSize ? List.of() : nextAfter.apply(lastId);
+                return current;
+            }
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package com.sankatmochan.prescription_service.search;
+
+import java.time.LocalDate;
+
+/**
+ * Full-text query plus optional filters. {@code from} and {@code to} are inclusive dates;
+ * null filters are not applied.
+ */
+public record PrescriptionSearchQuery(String text, String doctorRegNo, LocalDate from, LocalDate to,
+                                      int page, int size) {
+}
@@ -0,0 +1,8 @@
+package com.sankatmochan.prescription_service.service;
+
+import com.sankatmochan.prescription_service.analytics.PrescriptionDashboardQuery;
+import com.sankatmochan.prescription_service.dto.PrescriptionDashboard;
+
+public interface PrescriptionAnalyticsService {
+    PrescriptionDashboard getDashboard(PrescriptionDashboardQuery query);
+}
@@ -0,0 +1,13 @@
+package com.sankatmochan.prescription_service.service;
+
+import com.sankatmochan.prescription_service.dto.BulkIngestResponse;
+import com.sankatmochan.prescription_service.model.Prescription;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+public interface PrescriptionBulkService {
+    BulkIngestResponse createPrescriptions(List<Prescription> prescriptions);
+    BulkIngestResponse createPrescriptionsFromNdjson(InputStream ndjson) throws IOException;
+}
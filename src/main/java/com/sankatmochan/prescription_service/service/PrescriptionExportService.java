@@ -0,0 +1,15 @@
+package com.sankatmochan.prescription_service.service;
+
+import com.sankatmochan.prescription_service.dto.ExportFormat;
+import com.sankatmochan.prescription_service.dto.PrescriptionExportQuery;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface PrescriptionExportService {
+    Optional<LocalDate> getEarliestExportableDate();
+    long countPrescriptions(PrescriptionExportQuery query);
+    void export(PrescriptionExportQuery query, ExportFormat format, OutputStream out) throws IOException;
+}
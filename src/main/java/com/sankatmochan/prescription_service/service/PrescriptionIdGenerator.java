@@ -0,0 +1,15 @@
+package com.sankatmochan.prescription_service.service;
+
+/**
+ * Source of unique SNKTMOCH prescription ids.
+ * Declare a bean of this type to replace the default generator.
+ */
+public interface PrescriptionIdGenerator {
+
+    String PREFIX = "SNKTMOCH";
+
+    /**
+     * Returns a new id that has never been handed out by any replica. Must be thread-safe.
+     */
+    String nextId();
+}
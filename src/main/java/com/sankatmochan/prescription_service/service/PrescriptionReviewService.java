@@ -0,0 +1,14 @@
+package com.sankatmochan.prescription_service.service;
+
+import com.sankatmochan.prescription_service.dto.HistoryCursor;
+import com.sankatmochan.prescription_service.dto.ReviewItem;
+import com.sankatmochan.prescription_service.dto.ReviewQueuePage;
+import com.sankatmochan.prescription_service.dto.ReviewResponse;
+import com.sankatmochan.prescription_service.model.ReviewStatus;
+
+import java.util.List;
+
+public interface PrescriptionReviewService {
+    ReviewQueuePage getReviewQueue(String doctorRegNo, HistoryCursor cursor, int size);
+    ReviewResponse review(ReviewStatus decision, List<ReviewItem> items);
+}
@@ -0,0 +1,8 @@
+package com.sankatmochan.prescription_service.service;
+
+import com.sankatmochan.prescription_service.dto.SearchPage;
+import com.sankatmochan.prescription_service.search.PrescriptionSearchQuery;
+
+public interface PrescriptionSearchService {
+    SearchPage search(PrescriptionSearchQuery query);
+}
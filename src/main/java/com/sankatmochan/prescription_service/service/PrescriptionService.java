@@ -1,11 +1,29 @@
 package com.sankatmochan.prescription_service.service;
 
+import com.sankatmochan.prescription_service.dto.HistoryCursor;
+import com.sankatmochan.prescription_service.dto.HistoryPage;
+import com.sankatmochan.prescription_service.dto.MedicationUsage;
+import com.sankatmochan.prescription_service.dto.PrescriptionValidator;
 import com.sankatmochan.prescription_service.model.Prescription;
-import java.util.List;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
 
 public interface PrescriptionService {
     Prescription createPrescription(Prescription prescription);
     Prescription getPrescriptionById(String id);
+    Prescription getPrescriptionById(String id, long minVersion);
+    PrescriptionValidator getPrescriptionValidator(String id);
+    String getPdfLayoutTag();
     byte[] generatePrescriptionPdf(String id);
-    List<Prescription> getHistoryByPatient(String patientName);
+    byte[] renderPrescriptionPdf(Prescription prescription);
+    byte[] renderPrescriptionPdfUncached(Prescription prescription);
+    void writePrescriptionPdf(String id, OutputStream out) throws IOException;
+    void writePrescriptionPdf(Prescription prescription, OutputStream out) throws IOException;
+    Resource getPrescriptionPdfResource(Prescription prescription);
+    boolean isPdfRendered(Prescription prescription);
+    HistoryPage getHistoryByPatient(String patientName, HistoryCursor cursor, int size);
+    MedicationUsage getMedicationUsage(String medicationName, LocalDate from, LocalDate to, int limit);
 }
\ No newline at end of file
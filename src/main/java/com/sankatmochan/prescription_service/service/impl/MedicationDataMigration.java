@@ -0,0 +1,136 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.model.Medication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves medications from the legacy prescriptions.medication_data JSON column into
+ * prescription_medications rows. Runs at startup before anything that reads
+ * medications, works in batches, and clears the JSON of each migrated row, so it is
+ * safe to interrupt and a no-op once done. Rows whose JSON cannot be parsed are left
+ * in place and logged. The column itself is not dropped; do that once it is empty.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MedicationDataMigration implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MedicationDataMigration.class);
+
+    private static final int BATCH_SIZE = 500;
+    private static final TypeReference<List<Map<String, Object>>> LEGACY_TYPE = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbc;
+    private final JsonMapper jsonMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public MedicationDataMigration(JdbcTemplate jdbc, JsonMapper jsonMapper,
+                                   PlatformTransactionManager transactionManager,
+                                   ApplicationEventPublisher eventPublisher) {
+        this.jdbc = jdbc;
+        this.jsonMapper = jsonMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!hasLegacyColumn()) {
+            return;
+        }
+        int migrated = 0;
+        String lastId = "";
+        while (true) {
+            List<LegacyRow> rows = jdbc.query(
+                    "select id, medication_data from prescriptions "
+                            + "where medication_data is not null and id > ? order by id limit " + BATCH_SIZE,
+                    (rs, i) -> new LegacyRow(rs.getString(1), rs.getString(2)), lastId);
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<String> done = transactionTemplate.execute(status -> migrate(rows));
+            // Cached PDFs and the search index were built from the JSON; let them refresh
+            done.forEach(id -> eventPublisher.publishEvent(
+                    new PrescriptionChangedEvent(id, PrescriptionChangedEvent.Change.UPDATED)));
+            migrated += done.size();
+            lastId = rows.get(rows.size() - 1).id();
+        }
+        if (migrated > 0) {
+            log.info("Moved medications of {} prescriptions out of the medication_data column", migrated);
+        }
+    }
+
+    private List<String> migrate(List<LegacyRow> rows) {
+        List<String> done = new ArrayList<>(rows.size());
+        List<Object[]> inserts = new ArrayList<>();
+        for (LegacyRow row : rows) {
+            List<Map<String, Object>> legacy;
+            try {
+                legacy = jsonMapper.readValue(row.json(), LEGACY_TYPE);
+            } catch (JacksonException e) {
+                log.warn("Could not migrate medications of prescription {}: {}", row.id(), e.getOriginalMessage());
+                continue;
+            }
+            if (legacy != null) {
+                int line = 0;
+                for (Map<String, Object> med : legacy) {
+                    if (med == null) {
+                        continue;
+                    }
+                    String name = text(med.get("name"));
+                    inserts.add(new Object[] { row.id(), line++, name, Medication.nameKey(name),
+                            text(med.get("dosage")), text(med.get("duration")) });
+                }
+            }
+            done.add(row.id());
+        }
+        // Replace rather than append, in case an earlier run stopped between insert and clear
+        jdbc.batchUpdate("delete from prescription_medications where prescription_id = ?",
+                done.stream().map(id -> new Object[] { id }).toList());
+        jdbc.batchUpdate("insert into prescription_medications "
+                + "(prescription_id, line_no, name, name_key, dosage, duration) values (?, ?, ?, ?, ?, ?)", inserts);
+        jdbc.batchUpdate("update prescriptions set medication_data = null where id = ?",
+                done.stream().map(id -> new Object[] { id }).toList());
+        return done;
+    }
+
+    private boolean hasLegacyColumn() {
+        Boolean present = jdbc.query("select * from prescriptions where 1 = 0", rs -> {
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                if ("medication_data".equalsIgnoreCase(meta.getColumnName(i))) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(present);
+    }
+
+    private static String text(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private record LegacyRow(String id, String json) {
+    }
+}
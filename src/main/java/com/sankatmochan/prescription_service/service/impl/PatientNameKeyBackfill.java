@@ -0,0 +1,32 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Populates patient_name_key for prescriptions stored before the history index
+ * existed. Runs at startup and is a no-op once every row has a key.
+ */
+@Component
+public class PatientNameKeyBackfill implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientNameKeyBackfill.class);
+
+    private final PrescriptionRepository repository;
+
+    public PatientNameKeyBackfill(PrescriptionRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int updated = repository.backfillPatientNameKeys();
+        if (updated > 0) {
+            log.info("Backfilled patient history keys for {} prescriptions", updated);
+        }
+    }
+}
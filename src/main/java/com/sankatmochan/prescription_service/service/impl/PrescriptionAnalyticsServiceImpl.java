@@ -0,0 +1,54 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import com.sankatmochan.prescription_service.analytics.PrescriptionDashboardQuery;
+import com.sankatmochan.prescription_service.analytics.PrescriptionRollupStore;
+import com.sankatmochan.prescription_service.dto.DailyPrescriptionCount;
+import com.sankatmochan.prescription_service.dto.DiagnosisCount;
+import com.sankatmochan.prescription_service.dto.PrescriptionDashboard;
+import com.sankatmochan.prescription_service.service.PrescriptionAnalyticsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Doctor and clinic dashboards, answered from the pre-computed rollups: the cost depends
+ * on the date range, not on how many prescriptions are stored.
+ */
+@Service
+public class PrescriptionAnalyticsServiceImpl implements PrescriptionAnalyticsService {
+
+    private final PrescriptionRollupStore rollups;
+    private final Timer dashboardTimer;
+
+    public PrescriptionAnalyticsServiceImpl(PrescriptionRollupStore rollups, MeterRegistry meterRegistry) {
+        this.rollups = rollups;
+        this.dashboardTimer = Timer.builder("prescription.analytics.dashboard.latency")
+                .description("Time to answer a dashboard query from the rollups")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public PrescriptionDashboard getDashboard(PrescriptionDashboardQuery query) {
+        return dashboardTimer.record(() -> {
+            List<DailyPrescriptionCount> days = rollups.daily(query.doctorRegNo(), query.clinicName(), query.from(),
+                    query.to());
+            List<DiagnosisCount> diagnoses = query.topDiagnoses() > 0
+                    ? rollups.topDiagnoses(query.doctorRegNo(), query.clinicName(), query.from(), query.to(),
+                            query.topDiagnoses())
+                    : List.of();
+            long total = 0;
+            long approved = 0;
+            long aiGenerated = 0;
+            for (DailyPrescriptionCount day : days) {
+                total += day.total();
+                approved += day.approved();
+                aiGenerated += day.aiGenerated();
+            }
+            return new PrescriptionDashboard(query.doctorRegNo(), query.clinicName(), query.from(), query.to(),
+                    total, approved, total - approved, aiGenerated, days, diagnoses);
+        });
+    }
+}
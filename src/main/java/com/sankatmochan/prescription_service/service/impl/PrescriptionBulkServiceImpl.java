@@ -0,0 +1,194 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import com.sankatmochan.prescription_service.dto.BulkIngestResponse;
+import com.sankatmochan.prescription_service.dto.BulkItemResult;
+import com.sankatmochan.prescription_service.dto.PrescriptionRequest;
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import com.sankatmochan.prescription_service.service.PrescriptionBulkService;
+import com.sankatmochan.prescription_service.service.PrescriptionIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists prescriptions in chunks, one transaction per chunk, so Hibernate can send
+ * the inserts as JDBC batches (see hibernate.jdbc.batch_size and order_inserts).
+ * If a chunk fails, its items are retried one at a time so the error is reported
+ * against the item that caused it and the rest of the chunk is still stored.
+ */
+@Service
+public class PrescriptionBulkServiceImpl implements PrescriptionBulkService {
+
+    private static final Logger log = LoggerFactory.getLogger(PrescriptionBulkServiceImpl.class);
+
+    private final PrescriptionRepository repository;
+    private final PrescriptionIdGenerator idGenerator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonMapper jsonMapper;
+    private final int chunkSize;
+
+    public PrescriptionBulkServiceImpl(PrescriptionRepository repository, PrescriptionIdGenerator idGenerator,
+                                       ApplicationEventPublisher eventPublisher,
+                                       PlatformTransactionManager transactionManager, JsonMapper jsonMapper,
+                                       @Value("${prescription.bulk.chunk-size:500}") int chunkSize) {
+        this.repository = repository;
+        this.idGenerator = idGenerator;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jsonMapper = jsonMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public BulkIngestResponse createPrescriptions(List<Prescription> prescriptions) {
+        List<BulkItemResult> results = new ArrayList<>(prescriptions.size());
+        Chunk chunk = new Chunk(chunkSize);
+        for (int i = 0; i < prescriptions.size(); i++) {
+            Prescription p = prescriptions.get(i);
+            if (p == null) {
+                results.add(BulkItemResult.failed(i, "Item is null"));
+                continue;
+            }
+            chunk.add(i, p);
+            if (chunk.isFull()) {
+                persist(chunk, results);
+            }
+        }
+        persist(chunk, results);
+        return BulkIngestResponse.of(sorted(results));
+    }
+
+    @Override
+    public BulkIngestResponse createPrescriptionsFromNdjson(InputStream ndjson) throws IOException {
+        // Read line by line so memory stays bounded by the chunk size, whatever the stream length
+        List<BulkItemResult> results = new ArrayList<>();
+        Chunk chunk = new Chunk(chunkSize);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        int index = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                PrescriptionRequest p = jsonMapper.readValue(line, PrescriptionRequest.class);
+                if (p != null) {
+                    chunk.add(index, p.toPrescription());
+                } else {
+                    results.add(BulkItemResult.failed(index, "Item is null"));
+                }
+            } catch (JacksonException e) {
+                results.add(BulkItemResult.failed(index, "Invalid JSON: " + e.getOriginalMessage()));
+            }
+            index++;
+            if (chunk.isFull()) {
+                persist(chunk, results);
+            }
+        }
+        persist(chunk, results);
+        return BulkIngestResponse.of(sorted(results));
+    }
+
+    private void persist(Chunk chunk, List<BulkItemResult> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        for (Prescription p : chunk.items) {
+            p.setId(idGenerator.nextId());
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                repository.saveAll(chunk.items);
+                chunk.items.forEach(p -> eventPublisher.publishEvent(new PrescriptionChangedEvent(p.getId(), PrescriptionChangedEvent.Change.CREATED)));
+            });
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(BulkItemResult.created(chunk.indexes.get(i), chunk.items.get(i).getId()));
+            }
+        } catch (RuntimeException batchFailure) {
+            log.warn("Bulk chunk of {} prescriptions failed, retrying items one by one: {}",
+                    chunk.size(), batchFailure.getMessage());
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(persistOne(chunk.indexes.get(i), chunk.items.get(i)));
+            }
+        }
+        chunk.clear();
+    }
+
+    private BulkItemResult persistOne(int index, Prescription p) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                repository.save(p);
+                eventPublisher.publishEvent(new PrescriptionChangedEvent(p.getId(), PrescriptionChangedEvent.Change.CREATED));
+            });
+            return BulkItemResult.created(index, p.getId());
+        } catch (RuntimeException e) {
+            return BulkItemResult.failed(index, rootMessage(e));
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+    }
+
+    private static List<BulkItemResult> sorted(List<BulkItemResult> results) {
+        // Parse failures are recorded as they are read, persisted items when their chunk is flushed
+        results.sort((a, b) -> Integer.compare(a.index(), b.index()));
+        return results;
+    }
+
+    private static final class Chunk {
+
+        private final int capacity;
+        private final List<Integer> indexes;
+        private final List<Prescription> items;
+
+        Chunk(int capacity) {
+            this.capacity = capacity;
+            this.indexes = new ArrayList<>(capacity);
+            this.items = new ArrayList<>(capacity);
+        }
+
+        void add(int index, Prescription p) {
+            indexes.add(index);
+            items.add(p);
+        }
+
+        int size() {
+            return items.size();
+        }
+
+        boolean isFull() {
+            return items.size() >= capacity;
+        }
+
+        boolean isEmpty() {
+            return items.isEmpty();
+        }
+
+        void clear() {
+            indexes.clear();
+            items.clear();
+        }
+    }
+}
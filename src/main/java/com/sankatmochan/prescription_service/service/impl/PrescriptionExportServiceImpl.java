@@ -0,0 +1,299 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfReader;
+import com.sankatmochan.prescription_service.archive.PrescriptionArchive;
+import com.sankatmochan.prescription_service.dto.ExportFormat;
+import com.sankatmochan.prescription_service.dto.PrescriptionExportQuery;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.pdf.RenderCapacityExceededException;
+import com.sankatmochan.prescription_service.pdf.RenderGate;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import com.sankatmochan.prescription_service.service.PrescriptionExportService;
+import com.sankatmochan.prescription_service.service.PrescriptionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams every prescription matching an export query as a ZIP of PDFs or one merged PDF.
+ *
+ * Prescriptions are read in keyset batches and rendered on a sliding window: up to
+ * {@code parallelism} renders run ahead of the writer, each through {@link RenderGate},
+ * and documents are written in order as soon as the head of the window is done. So
+ * memory holds one batch of rows and at most a window of documents, whatever the size
+ * of the export, and the response starts with the first document.
+ *
+ * The {@code parallelism} render slots are shared by all exports running at once, so
+ * concurrent exports still leave the rest of the render gate to downloads. Exports read
+ * the render cache but do not fill it.
+ *
+ * Exports read the live table only. With the archive on, rows older than the archive
+ * min-age may have moved out of it, so ranges reaching back that far are refused rather
+ * than answered incompletely.
+ */
+@Service
+public class PrescriptionExportServiceImpl implements PrescriptionExportService {
+
+    private final PrescriptionRepository repository;
+    private final PrescriptionService prescriptionService;
+    private final PrescriptionArchive archive;
+    private final Duration archiveMinAge;
+    private final int parallelism;
+    private final int batchSize;
+    private final Duration renderTimeout;
+    private final MeterRegistry meterRegistry;
+    // Renders in flight across all exports
+    private final Semaphore exportSlots;
+
+    public PrescriptionExportServiceImpl(PrescriptionRepository repository, PrescriptionService prescriptionService,
+                                         PrescriptionArchive archive, RenderGate renderGate,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${prescription.archive.min-age:365d}") Duration archiveMinAge,
+                                         @Value("${prescription.export.parallelism:0}") int parallelism,
+                                         @Value("${prescription.export.batch-size:50}") int batchSize,
+                                         @Value("${prescription.export.render-timeout:1m}") Duration renderTimeout) {
+        this.repository = repository;
+        this.prescriptionService = prescriptionService;
+        this.archive = archive;
+        this.archiveMinAge = archiveMinAge;
+        // Like pre-rendering, leave at least half the render slots to interactive downloads
+        this.parallelism = parallelism > 0 ? parallelism : Math.max(1, renderGate.getPermits() / 2);
+        this.batchSize = batchSize;
+        this.renderTimeout = renderTimeout;
+        this.meterRegistry = meterRegistry;
+        this.exportSlots = new Semaphore(this.parallelism, true);
+    }
+
+    /**
+     * The first day whose prescriptions are all still in the table, or empty without an archive.
+     * Checked against the shared archive directory, not this replica's archiver switch: the
+     * archiver usually runs on another replica.
+     */
+    @Override
+    public Optional<LocalDate> getEarliestExportableDate() {
+        if (!archive.isEnabled()) {
+            return Optional.empty();
+        }
+        // Rows created before now - minAge may be archived, including earlier ones on that same day
+        return Optional.of(LocalDateTime.now().minus(archiveMinAge).toLocalDate().plusDays(1));
+    }
+
+    @Override
+    public long countPrescriptions(PrescriptionExportQuery query) {
+        return repository.countForExport(query.doctorRegNo(), query.clinicName(), start(query), end(query));
+    }
+
+    @Override
+    public void export(PrescriptionExportQuery query, ExportFormat format, OutputStream out) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        ExportWriter writer = format == ExportFormat.ZIP ? new ZipWriter(out) : new MergedPdfWriter(out);
+        try (ExecutorService renderers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Deque<Future<Rendered>> window = new ArrayDeque<>(parallelism);
+            Iterator<Prescription> prescriptions = prescriptions(query);
+            try {
+                while (prescriptions.hasNext() || !window.isEmpty()) {
+                    while (prescriptions.hasNext() && window.size() < parallelism) {
+                        Prescription p = prescriptions.next();
+                        window.add(renderers.submit(() -> new Rendered(p.getId(), render(p))));
+                    }
+                    Rendered next = await(window.removeFirst());
+                    writer.write(next.id(), next.pdf());
+                }
+                writer.finish();
+            } finally {
+                // On a failure (usually the client going away) stop the renders still running
+                window.forEach(f -> f.cancel(true));
+            }
+        } finally {
+            sample.stop(Timer.builder("prescription.export.duration")
+                    .description("Time to stream a batch export")
+                    .tag("format", format.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Renders (or fetches from the render cache) one document. An export is not in a
+     * hurry, so unlike a download it keeps waiting for an export slot and then a render
+     * slot, up to the render timeout.
+     */
+    private byte[] render(Prescription p) throws InterruptedException {
+        long deadline = System.nanoTime() + renderTimeout.toNanos();
+        if (!exportSlots.tryAcquire(renderTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            throw new RenderCapacityExceededException("All " + parallelism + " export render slots are busy",
+                    Duration.ofSeconds(1));
+        }
+        try {
+            while (true) {
+                try {
+                    return prescriptionService.renderPrescriptionPdfUncached(p);
+                } catch (RenderCapacityExceededException e) {
+                    if (System.nanoTime() > deadline || Thread.currentThread().isInterrupted()) {
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            exportSlots.release();
+        }
+    }
+
+    private static Rendered await(Future<Rendered> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Export render failed", e.getCause());
+        }
+    }
+
+    private Iterator<Prescription> prescriptions(PrescriptionExportQuery query) {
+        LocalDateTime to = end(query);
+        return new Iterator<>() {
+            private List<Prescription> batch = repository.findForExport(query.doctorRegNo(), query.clinicName(),
+                    start(query), to, Limit.of(batchSize));
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                if (position < batch.size()) {
+                    return true;
+                }
+                if (batch.size() < batchSize) {
+                    return false;
+                }
+                Prescription last = batch.get(batch.size() - 1);
+                batch = repository.findForExportAfter(query.doctorRegNo(), query.clinicName(), to,
+                        last.getCreatedAt(), last.getId(), Limit.of(batchSize));
+                position = 0;
+                return !batch.isEmpty();
+            }
+
+            @Override
+            public Prescription next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.get(position++);
+            }
+        };
+    }
+
+    private static LocalDateTime start(PrescriptionExportQuery query) {
+        return query.from().atStartOfDay();
+    }
+
+    // "to" is inclusive for callers, the queries take an exclusive upper bound
+    private static LocalDateTime end(PrescriptionExportQuery query) {
+        return query.to().plusDays(1).atStartOfDay();
+    }
+
+    private record Rendered(String id, byte[] pdf) {
+    }
+
+    // --- Output formats ---
+
+    private interface ExportWriter {
+
+        void write(String id, byte[] pdf) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class ZipWriter implements ExportWriter {
+
+        private final ZipOutputStream zip;
+
+        private ZipWriter(OutputStream out) {
+            this.zip = new ZipOutputStream(out);
+            // PDF content streams are already compressed; spend as little CPU as possible on them again
+            this.zip.setLevel(Deflater.BEST_SPEED);
+        }
+
+        @Override
+        public void write(String id, byte[] pdf) throws IOException {
+            zip.putNextEntry(new ZipEntry(id + ".pdf"));
+            zip.write(pdf);
+            zip.closeEntry();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            zip.finish();
+        }
+    }
+
+    /**
+     * Appends each document's pages to one PDF. PdfCopy writes pages out as they are
+     * added, and each source reader is released right after its pages are copied.
+     */
+    private static final class MergedPdfWriter implements ExportWriter {
+
+        private final OutputStream out;
+        private Document document;
+        private PdfCopy copy;
+
+        private MergedPdfWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(String id, byte[] pdf) throws IOException {
+            PdfReader reader = new PdfReader(pdf);
+            try {
+                if (document == null) {
+                    document = new Document(reader.getPageSizeWithRotation(1));
+                    copy = new PdfCopy(document, out);
+                    // The response stream is closed by the container, not by the PDF writer
+                    copy.setCloseStream(false);
+                    document.open();
+                }
+                for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+                    copy.addPage(copy.getImportedPage(reader, page));
+                }
+                copy.freeReader(reader);
+            } finally {
+                reader.close();
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (document != null) {
+                document.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import com.sankatmochan.prescription_service.dto.HistoryCursor;
+import com.sankatmochan.prescription_service.dto.ReviewItem;
+import com.sankatmochan.prescription_service.dto.ReviewItemResult;
+import com.sankatmochan.prescription_service.dto.ReviewQueueItem;
+import com.sankatmochan.prescription_service.dto.ReviewQueuePage;
+import com.sankatmochan.prescription_service.dto.ReviewResponse;
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.model.ReviewStatus;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import com.sankatmochan.prescription_service.service.PrescriptionReviewService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Applies review decisions as JDBC batches of single-row UPDATEs, one transaction per batch,
+ * without loading the entities. Each UPDATE matches only the version the reviewer saw and
+ * bumps it, the same check Hibernate makes for {@code @Version}, so of two reviewers deciding
+ * on the same prescription the second one gets a conflict instead of overwriting the first.
+ * It also only matches prescriptions still pending review: a decision, once made, is not
+ * flipped by a later batch, even one holding the current version.
+ */
+@Service
+public class PrescriptionReviewServiceImpl implements PrescriptionReviewService {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String UPDATE_SQL = "update prescriptions set review_status = ?, approved_by_doctor = ?, "
+            + "version = version + 1, updated_at = ? where id = ? and version = ? and review_status = 'PENDING'";
+
+    private final PrescriptionRepository repository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate namedJdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Counter conflicts;
+
+    public PrescriptionReviewServiceImpl(PrescriptionRepository repository, ApplicationEventPublisher eventPublisher,
+                                         JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                                         MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.eventPublisher = eventPublisher;
+        this.jdbc = jdbc;
+        this.namedJdbc = new NamedParameterJdbcTemplate(jdbc);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.conflicts = Counter.builder("prescription.review.conflicts")
+                .description("Review decisions refused because the prescription had changed")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ReviewQueuePage getReviewQueue(String doctorRegNo, HistoryCursor cursor, int size) {
+        // Fetch one extra row to learn whether another page exists
+        Limit limit = Limit.of(size + 1);
+        List<ReviewQueueItem> rows = cursor == null
+                ? repository.findReviewQueue(doctorRegNo, limit)
+                : repository.findReviewQueueAfter(doctorRegNo, cursor.createdAt(), cursor.id(), limit);
+        if (rows.size() <= size) {
+            return new ReviewQueuePage(rows, null);
+        }
+        List<ReviewQueueItem> page = rows.subList(0, size);
+        ReviewQueueItem last = page.get(size - 1);
+        return new ReviewQueuePage(page, new HistoryCursor(last.createdAt(), last.id()).encode());
+    }
+
+    @Override
+    public ReviewResponse review(ReviewStatus decision, List<ReviewItem> items) {
+        if (decision != ReviewStatus.APPROVED && decision != ReviewStatus.REJECTED) {
+            throw new IllegalArgumentException("decision must be APPROVED or REJECTED");
+        }
+        List<ReviewItemResult> results = new ArrayList<>(items.size());
+        List<Integer> indexes = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < items.size(); i++) {
+            ReviewItem item = items.get(i);
+            if (item == null || item.id() == null || item.version() == null) {
+                results.add(ReviewItemResult.failed(i, item != null ? item.id() : null, "id and version are required"));
+                continue;
+            }
+            indexes.add(i);
+            if (indexes.size() == BATCH_SIZE) {
+                results.addAll(apply(decision, items, indexes));
+                indexes.clear();
+            }
+        }
+        if (!indexes.isEmpty()) {
+            results.addAll(apply(decision, items, indexes));
+        }
+        results.sort(Comparator.comparingInt(ReviewItemResult::index));
+
+        long updated = results.stream().filter(ReviewItemResult::isSuccess).count();
+        Counter.builder("prescription.review.decisions")
+                .description("Prescriptions approved or rejected by a reviewer")
+                .tag("decision", decision.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry)
+                .increment(updated);
+        return ReviewResponse.of(results);
+    }
+
+    private List<ReviewItemResult> apply(ReviewStatus decision, List<ReviewItem> items, List<Integer> indexes) {
+        boolean approved = decision == ReviewStatus.APPROVED;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            ReviewItem item = items.get(index);
+            args.add(new Object[] { decision.name(), approved, now, item.id(), item.version() });
+        }
+
+        return transactionTemplate.execute(status -> {
+            // MySQL Connector/J and H2 report a count per statement, also with rewriteBatchedStatements
+            int[] counts = jdbc.batchUpdate(UPDATE_SQL, args);
+            List<ReviewItemResult> results = new ArrayList<>(indexes.size());
+            List<Integer> missed = new ArrayList<>();
+            for (int i = 0; i < indexes.size(); i++) {
+                ReviewItem item = items.get(indexes.get(i));
+                if (counts[i] > 0) {
+                    results.add(ReviewItemResult.updated(indexes.get(i), item.id(), item.version() + 1));
+                    eventPublisher.publishEvent(new PrescriptionChangedEvent(item.id(), approved
+                            ? PrescriptionChangedEvent.Change.APPROVED
+                            : PrescriptionChangedEvent.Change.UPDATED));
+                } else {
+                    missed.add(indexes.get(i));
+                }
+            }
+            if (!missed.isEmpty()) {
+                results.addAll(explain(items, missed));
+            }
+            return results;
+        });
+    }
+
+    // A missed UPDATE means the row is gone (or archived, which is read-only), was already reviewed, or its version moved on
+    private List<ReviewItemResult> explain(List<ReviewItem> items, List<Integer> missed) {
+        List<String> ids = missed.stream().map(i -> items.get(i).id()).toList();
+        Map<String, Long> versions = new HashMap<>();
+        Map<String, String> statuses = new HashMap<>();
+        namedJdbc.query("select id, version, review_status from prescriptions where id in (:ids)", Map.of("ids", ids),
+                rs -> {
+                    versions.put(rs.getString(1), rs.getLong(2));
+                    statuses.put(rs.getString(1), rs.getString(3));
+                });
+        List<ReviewItemResult> results = new ArrayList<>(missed.size());
+        for (int index : missed) {
+            String id = items.get(index).id();
+            Long current = versions.get(id);
+            if (current == null) {
+                results.add(ReviewItemResult.failed(index, id, "Prescription not found"));
+            } else if (!ReviewStatus.PENDING.name().equals(statuses.get(id))) {
+                conflicts.increment();
+                results.add(ReviewItemResult.failed(index, id, "Already reviewed: " + statuses.get(id)));
+            } else {
+                conflicts.increment();
+                results.add(ReviewItemResult.failed(index, id, "Version conflict: current version is " + current));
+            }
+        }
+        return results;
+    }
+}
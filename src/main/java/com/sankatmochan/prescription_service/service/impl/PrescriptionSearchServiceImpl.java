@@ -0,0 +1,33 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import com.sankatmochan.prescription_service.dto.SearchPage;
+import com.sankatmochan.prescription_service.search.PrescriptionSearchIndex;
+import com.sankatmochan.prescription_service.search.PrescriptionSearchQuery;
+import com.sankatmochan.prescription_service.service.PrescriptionSearchService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+/**
+ * Full-text search over diagnosis, clinical notes, advice and medication names,
+ * answered from the embedded search index without touching the database.
+ */
+@Service
+public class PrescriptionSearchServiceImpl implements PrescriptionSearchService {
+
+    private final PrescriptionSearchIndex index;
+    private final Timer searchTimer;
+
+    public PrescriptionSearchServiceImpl(PrescriptionSearchIndex index, MeterRegistry meterRegistry) {
+        this.index = index;
+        this.searchTimer = Timer.builder("prescription.search.latency")
+                .description("Time to answer a full-text prescription search")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public SearchPage search(PrescriptionSearchQuery query) {
+        return searchTimer.record(() -> index.search(query));
+    }
+}
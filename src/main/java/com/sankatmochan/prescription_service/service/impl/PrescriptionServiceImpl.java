@@ -1,336 +1,255 @@
 package com.sankatmochan.prescription_service.service.impl;
 
-import com.lowagie.text.*;
-import com.lowagie.text.Font;
-import com.lowagie.text.Rectangle;
-import com.lowagie.text.pdf.*;
-import com.lowagie.text.pdf.draw.LineSeparator;
+import com.sankatmochan.prescription_service.archive.PrescriptionArchive;
+import com.sankatmochan.prescription_service.cache.PdfRenderCache;
+import com.sankatmochan.prescription_service.cache.PrescriptionEntityCache;
+import com.sankatmochan.prescription_service.cache.PrescriptionFingerprint;
+import com.sankatmochan.prescription_service.dto.HistoryCursor;
+import com.sankatmochan.prescription_service.dto.HistoryPage;
+import com.sankatmochan.prescription_service.dto.MedicationUsage;
+import com.sankatmochan.prescription_service.dto.PrescriptionSummary;
+import com.sankatmochan.prescription_service.dto.PrescriptionValidator;
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.model.Medication;
 import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.pdf.PrescriptionPdfRenderer;
+import com.sankatmochan.prescription_service.pdf.RenderGate;
 import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import com.sankatmochan.prescription_service.service.PrescriptionIdGenerator;
 import com.sankatmochan.prescription_service.service.PrescriptionService;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.awt.Color;
 import java.io.ByteArrayOutputStream;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Random;
+import java.util.Set;
 
 @Service
 public class PrescriptionServiceImpl implements PrescriptionService {
 
     private final PrescriptionRepository repository;
-
-    // Exact colors from the Sankat Mochan samples
-    private static final Color THEME_TEAL = new Color(0, 128, 128);
-    private static final Color LIGHT_GRAY = new Color(248, 248, 248);
-
-    public PrescriptionServiceImpl(PrescriptionRepository repository) {
+    private final PdfRenderCache renderCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PrescriptionPdfRenderer pdfRenderer;
+    private final PrescriptionIdGenerator idGenerator;
+    private final RenderGate renderGate;
+    private final PrescriptionEntityCache entityCache;
+    private final PrescriptionArchive archive;
+
+    public PrescriptionServiceImpl(PrescriptionRepository repository, PdfRenderCache renderCache,
+                                   ApplicationEventPublisher eventPublisher, PrescriptionPdfRenderer pdfRenderer,
+                                   PrescriptionIdGenerator idGenerator, RenderGate renderGate,
+                                   PrescriptionEntityCache entityCache, PrescriptionArchive archive) {
         this.repository = repository;
+        this.renderCache = renderCache;
+        this.eventPublisher = eventPublisher;
+        this.pdfRenderer = pdfRenderer;
+        this.idGenerator = idGenerator;
+        this.renderGate = renderGate;
+        this.entityCache = entityCache;
+        this.archive = archive;
     }
 
     @Override
     @Transactional
     public Prescription createPrescription(Prescription p) {
-        // Generate unique ID: SNKTMOCH + 8 random digits
-        String uniqueId = "SNKTMOCH" + String.format("%08d", new Random().nextInt(100000000));
-        p.setId(uniqueId);
-        return repository.save(p);
+        // Generate unique ID: SNKTMOCH + time-ordered, node-unique number
+        p.setId(idGenerator.nextId());
+        Prescription saved = repository.save(p);
+        eventPublisher.publishEvent(new PrescriptionChangedEvent(saved.getId(), PrescriptionChangedEvent.Change.CREATED));
+        return saved;
     }
 
     @Override
     public Prescription getPrescriptionById(String id) {
-        return repository.findById(id)
+        // Old prescriptions have moved from the table into the archive
+        return entityCache.get(id, key -> repository.findById(key).or(() -> archive.findById(key)))
                 .orElseThrow(() -> new EntityNotFoundException("Prescription " + id + " not found"));
     }
 
     @Override
-    public byte[] generatePrescriptionPdf(String id) {
+    public Prescription getPrescriptionById(String id, long minVersion) {
         Prescription p = getPrescriptionById(id);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-
-        // Setting margins for the professional spacious look
-        Document document = new Document(PageSize.A4, 36, 36, 36, 36);
-        PdfWriter.getInstance(document, out);
-        document.open();
-
-        // --- 1. Header ---
-        PdfPTable headerTable = new PdfPTable(2);
-        headerTable.setWidthPercentage(100);
-        try {
-            headerTable.setWidths(new float[] { 1.8f, 1f });
-        } catch (DocumentException e) {
-            e.printStackTrace();
+        if (p.getVersion() != null && p.getVersion() >= minVersion) {
+            return p;
         }
+        // The cached copy predates a change this node has not been told about yet
+        entityCache.invalidate(id);
+        return getPrescriptionById(id);
+    }
 
-        // Left Side: Clinic Name (Large)
-        PdfPCell leftHeader = new PdfPCell();
-        leftHeader.setBorder(Rectangle.NO_BORDER);
-        leftHeader.setVerticalAlignment(Element.ALIGN_MIDDLE);
-
-        String clinicName = p.getClinicName() != null ? p.getClinicName().toUpperCase()
-                : "SANKAT MOCHAN HEALTH PROGRAM";
-        Paragraph title = new Paragraph(clinicName, FontFactory.getFont(FontFactory.HELVETICA_BOLD, 20, THEME_TEAL)); // Size
-                                                                                                                      // 20
-        leftHeader.addElement(title);
-        headerTable.addCell(leftHeader);
-
-        // Right Side: Contact & Address
-        PdfPCell rightHeader = new PdfPCell();
-        rightHeader.setBorder(Rectangle.NO_BORDER);
-        rightHeader.setHorizontalAlignment(Element.ALIGN_RIGHT);
-        rightHeader.setVerticalAlignment(Element.ALIGN_MIDDLE);
-
-        String clinicAddress = p.getClinicAddress() != null ? p.getClinicAddress()
-                : "3/045 Mahatma Gandhi Marg, Hazratganj, Lucknow";
-        Paragraph infoP = new Paragraph();
-        infoP.setAlignment(Element.ALIGN_RIGHT);
-        infoP.add(new Chunk("info@sankatmochan.co.in\n", FontFactory.getFont(FontFactory.HELVETICA, 10, Color.GRAY)));
-        infoP.add(new Chunk(clinicAddress + "\n", FontFactory.getFont(FontFactory.HELVETICA, 10, Color.GRAY)));
-        infoP.add(new Chunk("Prescription ID: " + p.getId(),
-                FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11, Color.BLACK)));
-
-        rightHeader.addElement(infoP);
-
-        headerTable.addCell(rightHeader);
-        document.add(headerTable);
-
-        // Solid Teal Separator Line
-        addTealSeparator(document);
-
-        // --- 2. Patient Info ---
-        PdfPTable patientInfo = new PdfPTable(4);
-        patientInfo.setWidthPercentage(100);
-        patientInfo.setSpacingBefore(10);
-        patientInfo.setSpacingAfter(10);
+    @Override
+    public PrescriptionValidator getPrescriptionValidator(String id) {
         try {
-            patientInfo.setWidths(new float[] { 1f, 2f, 0.8f, 2f });
-        } catch (DocumentException e) {
-            e.printStackTrace();
+            return repository.findValidatorById(id)
+                    .or(() -> archive.findById(id).map(PrescriptionServiceImpl::validatorOf))
+                    .orElseThrow(() -> new EntityNotFoundException("Prescription " + id + " not found"));
+        } catch (DataAccessException | TransactionException e) {
+            // Database unavailable: a cached copy still lets the download go ahead, from the same copy
+            return entityCache.getIfCached(id).map(PrescriptionServiceImpl::validatorOf).orElseThrow(() -> e);
         }
+    }
 
-        addPatientLabel(patientInfo, "PATIENT NAME");
-        addPatientValue(patientInfo, p.getPatientName());
-
-        addPatientLabel(patientInfo, "DATE");
-        addPatientValue(patientInfo, p.getCreatedAt().format(DateTimeFormatter.ofPattern("dd MMM yyyy")));
-
-        addPatientLabel(patientInfo, "AGE / GENDER");
-        addPatientValue(patientInfo, p.getAge() + " Y / " + p.getGender());
-
-        addPatientLabel(patientInfo, "PHONE");
-        addPatientValue(patientInfo, p.getPatientPhone() != null ? p.getPatientPhone() : "-");
-
-        addPatientLabel(patientInfo, "ADDRESS");
-        PdfPCell addrCell = new PdfPCell(new Phrase(p.getPatientAddress() != null ? p.getPatientAddress() : "-",
-                FontFactory.getFont(FontFactory.HELVETICA, 11)));
-        addrCell.setBorder(Rectangle.NO_BORDER);
-        addrCell.setColspan(3);
-        patientInfo.addCell(addrCell);
-
-        document.add(patientInfo);
-
-        // Solid Teal Separator Line
-        addTealSeparator(document);
-
-        // --- 3. Vitals Grid (Split into 2 rows for spacing) ---
-        // Row 1: BP, Pulse, SPO2, Temp
-        PdfPTable vitalsRow1 = new PdfPTable(4);
-        vitalsRow1.setWidthPercentage(100);
-        vitalsRow1.setSpacingBefore(10);
-        addVitalCell(vitalsRow1, "BP", p.getBp());
-        addVitalCell(vitalsRow1, "PULSE", p.getPulse());
-        addVitalCell(vitalsRow1, "SPO2", p.getSpo2());
-        addVitalCell(vitalsRow1, "TEMP", p.getTemp());
-        document.add(vitalsRow1);
-
-        // Row 2: Weight, Height, BMI (and empty filler)
-        PdfPTable vitalsRow2 = new PdfPTable(4);
-        vitalsRow2.setWidthPercentage(100);
-        vitalsRow2.setSpacingBefore(5);
-        vitalsRow2.setSpacingAfter(15);
-        addVitalCell(vitalsRow2, "WEIGHT", p.getWeight());
-        addVitalCell(vitalsRow2, "HEIGHT", p.getHeight());
-        addVitalCell(vitalsRow2, "BMI", p.getBmi());
-        addVitalCell(vitalsRow2, "", ""); // Spacer
-        document.add(vitalsRow2);
-
-        // --- 4. Clinical Notes ---
-        PdfPTable diagnosisTable = new PdfPTable(1);
-        diagnosisTable.setWidthPercentage(100);
-        diagnosisTable.setSpacingAfter(15);
-
-        PdfPCell diagCell = new PdfPCell();
-        diagCell.setBorder(Rectangle.LEFT | Rectangle.BOTTOM); // Minimalist L-bracket border look
-        diagCell.setBorderColor(THEME_TEAL);
-        diagCell.setBorderWidth(3f); // Thicker border
-        diagCell.setPadding(12); // More padding
-        diagCell.setBackgroundColor(new Color(248, 255, 255));
-
-        diagCell.addElement(
-                new Paragraph("PROBLEM / DIAGNOSIS", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, THEME_TEAL)));
-        diagCell.addElement(new Paragraph(p.getClinicalNotes(), FontFactory.getFont(FontFactory.HELVETICA, 11)));
-        diagCell.addElement(
-                new Paragraph("\nDIAGNOSIS: " + p.getDiagnosis(), FontFactory.getFont(FontFactory.HELVETICA_BOLD, 13)));
-
-        diagnosisTable.addCell(diagCell);
-        document.add(diagnosisTable);
-
-        // --- 5. Medication Table ---
-        PdfPTable meds = new PdfPTable(4);
-        meds.setWidthPercentage(100);
-        meds.setSpacingBefore(10);
-        try {
-            meds.setWidths(new float[] { 0.6f, 4, 1.5f, 1.5f });
-        } catch (DocumentException e) {
-            e.printStackTrace();
-        }
-        meds.setHeaderRows(1);
+    private static PrescriptionValidator validatorOf(Prescription p) {
+        return new PrescriptionValidator(p.getId(), p.getVersion(), p.getCreatedAt(), p.getUpdatedAt(),
+                p.getApprovedByDoctor());
+    }
 
-        // Headers
-        String[] headers = { "#", "MEDICINE NAME", "DOSAGE", "DURATION" };
-        for (String h : headers) {
-            PdfPCell c = new PdfPCell(new Phrase(h, FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, Color.WHITE)));
-            c.setBackgroundColor(THEME_TEAL);
-            c.setPadding(8); // Increased padding
-            c.setVerticalAlignment(Element.ALIGN_MIDDLE);
-            c.setBorderColor(THEME_TEAL);
-            meds.addCell(c);
-        }
+    @Override
+    public String getPdfLayoutTag() {
+        return pdfRenderer.getLayoutTag();
+    }
 
-        // Rows with Zebra Striping
-        int count = 1;
-        if (p.getMedicationData() != null) {
-            for (Map<String, String> med : p.getMedicationData()) {
-                Color rowColor = (count % 2 == 0) ? LIGHT_GRAY : Color.WHITE;
+    @Override
+    public byte[] generatePrescriptionPdf(String id) {
+        return renderPrescriptionPdf(getPrescriptionById(id));
+    }
 
-                meds.addCell(createStripedCell(String.valueOf(count++), rowColor));
-                meds.addCell(createStripedCell(med.get("name"), rowColor));
-                meds.addCell(createStripedCell(med.get("dosage"), rowColor));
-                meds.addCell(createStripedCell(med.get("duration"), rowColor));
-            }
+    @Override
+    public byte[] renderPrescriptionPdf(Prescription p) {
+        // Approved prescriptions rarely change, so most downloads are served from the cache
+        String fingerprint = PrescriptionFingerprint.of(p, pdfRenderer.getLayoutTag());
+        byte[] cached = renderCache.get(p.getId(), fingerprint);
+        if (cached != null) {
+            return cached;
         }
-        document.add(meds);
-
-        // --- 6. Advice ---
-        if (p.getAdvice() != null && !p.getAdvice().isEmpty()) {
-            document.add(new Paragraph("\n"));
-            PdfPTable adviceTable = new PdfPTable(1);
-            adviceTable.setWidthPercentage(100);
-
-            PdfPCell adviceCell = new PdfPCell();
-            adviceCell.setBorder(Rectangle.NO_BORDER);
-            adviceCell.setPadding(8);
+        return render(p, fingerprint, renderGate.acquire());
+    }
 
-            adviceCell.addElement(new Paragraph("ADVICE / INSTRUCTIONS",
-                    FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, THEME_TEAL)));
-            adviceCell.addElement(new Paragraph(p.getAdvice(), FontFactory.getFont(FontFactory.HELVETICA, 11)));
+    private byte[] render(Prescription p, String fingerprint, RenderGate.Permit slot) {
+        byte[] pdf = render(p, slot);
+        renderCache.put(p.getId(), fingerprint, pdf);
+        return pdf;
+    }
 
-            adviceTable.addCell(adviceCell);
-            document.add(adviceTable);
+    private byte[] render(Prescription p, RenderGate.Permit slot) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (RenderGate.Permit permit = slot) {
+            pdfRenderer.render(p, out);
         }
-
-        // --- 7. Footer ---
-        document.add(new Paragraph("\n\n")); // Spacing
-        addTealSeparator(document);
-
-        PdfPTable footer = new PdfPTable(2);
-        footer.setWidthPercentage(100);
-
-        String doctorDetails = p.getDoctorName().toUpperCase() + "\n" + p.getDoctorRegNo();
-        if (p.getDoctorQualification() != null)
-            doctorDetails += "\n" + p.getDoctorQualification();
-        if (p.getDoctorSpecialization() != null)
-            doctorDetails += "\n" + p.getDoctorSpecialization();
-
-        addFooterSignature(footer, "CONSULTING DOCTOR", doctorDetails, Element.ALIGN_LEFT);
-
-        String nextVisit = p.getNextVisitDate() != null
-                ? "Next Visit: " + p.getNextVisitDate().format(DateTimeFormatter.ofPattern("dd MMM yyyy"))
-                : "";
-        addFooterSignature(footer, "SANKAT MOCHAN NAGRIK", "Generated by SMN Platform\n" + nextVisit,
-                Element.ALIGN_RIGHT);
-
-        document.add(footer);
-
-        document.close();
         return out.toByteArray();
     }
 
-    // --- Layout and Styling Helper Methods ---
-
-    private void addTealSeparator(Document doc) throws DocumentException {
-        LineSeparator ls = new LineSeparator();
-        ls.setLineColor(THEME_TEAL);
-        ls.setLineWidth(2f); // Thicker line
-        ls.setPercentage(100);
-        ls.setOffset(-2);
-        doc.add(new Chunk(ls));
-    }
-
-    private void addPatientLabel(PdfPTable table, String label) {
-        PdfPCell cell = new PdfPCell(new Phrase(label, FontFactory.getFont(FontFactory.HELVETICA, 8, Color.GRAY)));
-        cell.setBorder(Rectangle.NO_BORDER);
-        cell.setPaddingBottom(5);
-        table.addCell(cell);
+    @Override
+    public byte[] renderPrescriptionPdfUncached(Prescription p) {
+        // For bulk work such as exports: a document stored on disk is read without moving it into memory,
+        // and a fresh render is not stored, so one export cannot push out what downloads keep hitting
+        Resource cached = renderCache.getResource(p.getId(), PrescriptionFingerprint.of(p, pdfRenderer.getLayoutTag()));
+        if (cached != null) {
+            try {
+                return cached.getContentAsByteArray();
+            } catch (IOException e) {
+                // Evicted since it was looked up; render it instead
+            }
+        }
+        return render(p, renderGate.acquire());
     }
 
-    private void addPatientValue(PdfPTable table, String value) {
-        PdfPCell cell = new PdfPCell(new Phrase(value, FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11))); // Larger
-                                                                                                              // Value
-        cell.setBorder(Rectangle.NO_BORDER);
-        cell.setPaddingBottom(5);
-        table.addCell(cell);
+    @Override
+    public void writePrescriptionPdf(String id, OutputStream out) throws IOException {
+        writePrescriptionPdf(getPrescriptionById(id), out);
     }
 
-    private void addVitalCell(PdfPTable table, String label, String value) {
-        PdfPCell cell = new PdfPCell();
-        cell.setBackgroundColor(Color.WHITE);
-        cell.setBorder(Rectangle.NO_BORDER);
-        cell.setPadding(8); // More padding
-
-        Paragraph l = new Paragraph(label, FontFactory.getFont(FontFactory.HELVETICA, 7, Color.GRAY));
-        l.setAlignment(Element.ALIGN_CENTER);
-
-        Paragraph v = new Paragraph(value != null && !value.isEmpty() ? value : "-",
-                FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11));
-        v.setAlignment(Element.ALIGN_CENTER);
+    @Override
+    public void writePrescriptionPdf(Prescription p, OutputStream out) throws IOException {
+        String id = p.getId();
+        String fingerprint = PrescriptionFingerprint.of(p, pdfRenderer.getLayoutTag());
+        byte[] cached = renderCache.get(id, fingerprint);
+        if (cached != null) {
+            out.write(cached);
+            return;
+        }
 
-        cell.addElement(l);
-        cell.addElement(v);
-        table.addCell(cell);
+        // Render straight into the response; the cache keeps a copy only for documents it can hold.
+        // The slot is taken before anything is written, so a rejection can still become a 503.
+        try (RenderGate.Permit permit = renderGate.acquireOrShed()) {
+            OutputStream target = renderCache.writeThrough(id, fingerprint, out);
+            pdfRenderer.render(p, target);
+            target.close();
+        }
     }
 
-    private PdfPCell createStripedCell(String text, Color bgColor) {
-        PdfPCell cell = new PdfPCell(new Phrase(text, FontFactory.getFont(FontFactory.HELVETICA, 11))); // Larger text
-        cell.setPadding(8); // More padding
-        cell.setBackgroundColor(bgColor);
-        cell.setBorderColor(new Color(230, 230, 230));
-        return cell;
+    @Override
+    public Resource getPrescriptionPdfResource(Prescription p) {
+        String fingerprint = PrescriptionFingerprint.of(p, pdfRenderer.getLayoutTag());
+        Resource cached = renderCache.getResource(p.getId(), fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+        // Rendered once and stored, so the following ranges of the same download are plain reads
+        return new ByteArrayResource(render(p, fingerprint, renderGate.acquireOrShed()));
     }
 
-    private void addFooterSignature(PdfPTable table, String title, String details, int align) {
-        PdfPCell cell = new PdfPCell();
-        cell.setBorder(Rectangle.NO_BORDER);
-        cell.setHorizontalAlignment(align);
-        cell.setPaddingTop(15);
+    @Override
+    public boolean isPdfRendered(Prescription p) {
+        return renderCache.contains(p.getId(), PrescriptionFingerprint.of(p, pdfRenderer.getLayoutTag()));
+    }
 
-        Paragraph pTitle = new Paragraph(title, FontFactory.getFont(FontFactory.HELVETICA_BOLD, 9, Color.GRAY));
-        pTitle.setAlignment(align);
-        cell.addElement(pTitle);
+    @Override
+    public HistoryPage getHistoryByPatient(String name, HistoryCursor cursor, int size) {
+        String nameKey = Prescription.patientNameKey(name);
+        // Fetch one extra row to learn whether another page exists
+        Limit limit = Limit.of(size + 1);
+        List<PrescriptionSummary> rows = cursor == null
+                ? repository.findHistory(nameKey, limit)
+                : repository.findHistoryAfter(nameKey, cursor.createdAt(), cursor.id(), limit);
+
+        if (archive.isEnabled()) {
+            rows = mergeArchivedHistory(rows, archive.findHistory(nameKey, cursor, size + 1), size + 1);
+        }
 
-        Paragraph pDetails = new Paragraph(details, FontFactory.getFont(FontFactory.HELVETICA, 11));
-        pDetails.setAlignment(align);
-        cell.addElement(pDetails);
+        if (rows.size() <= size) {
+            return new HistoryPage(rows, null);
+        }
+        List<PrescriptionSummary> page = rows.subList(0, size);
+        return new HistoryPage(page, HistoryCursor.after(page.get(size - 1)).encode());
+    }
 
-        table.addCell(cell);
+    // Both inputs are newest first and start after the same cursor, so their merged head is the page
+    private static List<PrescriptionSummary> mergeArchivedHistory(List<PrescriptionSummary> live,
+                                                                  List<PrescriptionSummary> archived, int limit) {
+        if (archived.isEmpty()) {
+            return live;
+        }
+        List<PrescriptionSummary> merged = new ArrayList<>(live.size() + archived.size());
+        merged.addAll(live);
+        merged.addAll(archived);
+        // Stable sort: a row still in the table (archiving not finished yet) comes before its archived copy
+        merged.sort(PrescriptionArchive.NEWEST_FIRST);
+        Set<String> seen = new HashSet<>();
+        List<PrescriptionSummary> page = new ArrayList<>(limit);
+        for (PrescriptionSummary row : merged) {
+            if (page.size() == limit) {
+                break;
+            }
+            if (seen.add(row.id())) {
+                page.add(row);
+            }
+        }
+        return page;
     }
 
     @Override
-    public List<Prescription> getHistoryByPatient(String name) {
-        return repository.findByPatientNameIgnoreCase(name);
+    public MedicationUsage getMedicationUsage(String medicationName, LocalDate from, LocalDate to, int limit) {
+        String nameKey = Medication.nameKey(medicationName);
+        LocalDateTime start = from != null ? from.atStartOfDay() : null;
+        // "to" is inclusive for callers, the query takes an exclusive upper bound
+        LocalDateTime end = to != null ? to.plusDays(1).atStartOfDay() : null;
+        return new MedicationUsage(medicationName, from, to,
+                repository.countByMedication(nameKey, start, end),
+                repository.findByMedication(nameKey, start, end, Limit.of(limit)));
     }
-}
\ No newline at end of file
+}
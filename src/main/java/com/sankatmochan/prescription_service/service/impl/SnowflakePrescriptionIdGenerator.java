@@ -0,0 +1,62 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import com.sankatmochan.prescription_service.service.PrescriptionIdGenerator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style id generator: SNKTMOCH followed by a 63-bit number made of
+ * 41 bits of milliseconds since 2026-01-01, a 10-bit node id and a 12-bit sequence.
+ *
+ * The timestamp and sequence are packed into one {@link AtomicLong} and advanced
+ * with a CAS loop, so callers never block. When a millisecond runs out of sequence
+ * numbers, or the wall clock steps backwards, the generator keeps counting forward
+ * from the last id instead of waiting. Ids stay unique and monotonic per node, and
+ * distinct node ids make them unique across replicas.
+ */
+public class SnowflakePrescriptionIdGenerator implements PrescriptionIdGenerator {
+
+    static final long EPOCH_MILLIS = 1767225600000L; // 2026-01-01T00:00:00Z
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+
+    // (millis since epoch << SEQUENCE_BITS) | sequence, of the last id handed out
+    private final AtomicLong last = new AtomicLong();
+
+    public SnowflakePrescriptionIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    SnowflakePrescriptionIdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ", was " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        // Indy string concatenation sizes and fills the result directly: the String is the only allocation
+        return PREFIX + nextValue();
+    }
+
+    long nextValue() {
+        long now = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            next = Math.max(now, previous + 1);
+        } while (!last.compareAndSet(previous, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | sequence;
+    }
+}
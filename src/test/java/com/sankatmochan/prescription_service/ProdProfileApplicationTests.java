@@ -0,0 +1,26 @@
+package com.sankatmochan.prescription_service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// The in-memory database starts empty, so let Hibernate create the schema the profile would validate
+@SpringBootTest(properties = { "PRESCRIPTION_DDL_AUTO=update", "prescription.id.node-id=0" })
+@ActiveProfiles("prod")
+class ProdProfileApplicationTests {
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	void publishesPoolAndStatementMetrics() {
+		assertNotNull(meterRegistry.find("hikaricp.connections.pending").gauge());
+		assertNotNull(meterRegistry.find("hibernate.statements").tag("status", "prepared").functionCounter());
+		assertNotNull(meterRegistry.find("hibernate.query.plan.cache").tag("result", "miss").functionCounter());
+	}
+
+}
@@ -0,0 +1,171 @@
+package com.sankatmochan.prescription_service.analytics;
+
+import com.sankatmochan.prescription_service.dto.DailyPrescriptionCount;
+import com.sankatmochan.prescription_service.dto.DiagnosisCount;
+import com.sankatmochan.prescription_service.dto.PrescriptionRollupSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrescriptionRollupStoreTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 1);
+
+    private DriverManagerDataSource dataSource;
+    private PrescriptionRollupStore store;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:rollups_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        store = new PrescriptionRollupStore(new JdbcTemplate(dataSource), new DataSourceTransactionManager(dataSource));
+        store.start();
+    }
+
+    private static PrescriptionRollupSource source(String id, String doctor, String clinic, LocalDate day,
+                                                   boolean approved, String diagnosis) {
+        return new PrescriptionRollupSource(id, doctor, clinic, day.atTime(10, 30), approved, true, diagnosis, 0L);
+    }
+
+    @Test
+    void countsPrescriptionsPerDay() {
+        store.apply(List.of(
+                source("P1", "MD1", "City Clinic", DAY, false, "Viral Fever"),
+                source("P2", "MD1", "City Clinic", DAY, true, "Viral Fever"),
+                source("P3", "MD1", "Town Clinic", DAY.plusDays(1), false, "Migraine"),
+                source("P4", "MD2", "City Clinic", DAY, false, "Migraine")));
+
+        assertEquals(List.of(new DailyPrescriptionCount(DAY, 2, 1, 1, 2),
+                        new DailyPrescriptionCount(DAY.plusDays(1), 1, 0, 1, 1)),
+                store.daily("MD1", null, DAY, DAY.plusDays(7)));
+        assertEquals(List.of(new DailyPrescriptionCount(DAY, 3, 1, 2, 3)),
+                store.daily(null, "City Clinic", DAY, DAY.plusDays(7)));
+        assertEquals(List.of(new DailyPrescriptionCount(DAY, 3, 1, 2, 3)),
+                store.daily(null, null, DAY, DAY));
+        assertEquals(4, store.countedPrescriptions());
+    }
+
+    @Test
+    void movesCountsWhenAPrescriptionChanges() {
+        store.apply(List.of(source("P1", "MD1", "City Clinic", DAY, false, "Fever")));
+
+        assertEquals(1, store.apply(List.of(source("P1", "MD1", "City Clinic", DAY, true, "Dengue"))));
+
+        assertEquals(List.of(new DailyPrescriptionCount(DAY, 1, 1, 0, 1)), store.daily("MD1", null, DAY, DAY));
+        assertEquals(List.of(new DiagnosisCount("Dengue", 1)), store.topDiagnoses("MD1", null, DAY, DAY, 10));
+    }
+
+    @Test
+    void applyingTheSameStateAgainChangesNothing() {
+        PrescriptionRollupSource p = source("P1", "MD1", "City Clinic", DAY, false, "Fever");
+        store.apply(List.of(p));
+
+        assertEquals(0, store.apply(List.of(p, p)));
+
+        assertEquals(List.of(new DailyPrescriptionCount(DAY, 1, 0, 1, 1)), store.daily("MD1", null, DAY, DAY));
+    }
+
+    @Test
+    void ranksDiagnosesCaseInsensitively() {
+        store.apply(List.of(
+                source("P1", "MD1", "City Clinic", DAY, false, "Viral Fever"),
+                source("P2", "MD1", "City Clinic", DAY.plusDays(1), false, " viral fever"),
+                source("P3", "MD1", "City Clinic", DAY, false, "Migraine"),
+                source("P4", "MD1", "City Clinic", DAY, false, null),
+                source("P5", "MD2", "City Clinic", DAY, false, "Migraine")));
+
+        List<DiagnosisCount> top = store.topDiagnoses("MD1", null, DAY, DAY.plusDays(1), 10);
+
+        assertEquals(2, top.size());
+        assertEquals(2, top.get(0).prescriptions());
+        assertEquals("viral fever", top.get(0).diagnosis().toLowerCase());
+        assertEquals(new DiagnosisCount("Migraine", 1), top.get(1));
+        assertEquals(1, store.topDiagnoses("MD1", null, DAY, DAY.plusDays(1), 1).size());
+    }
+
+    @Test
+    void skipsPrescriptionsWithoutCreationTime() {
+        store.apply(List.of(new PrescriptionRollupSource("P1", "MD1", null, null, false, false, "Fever", 0L)));
+
+        assertEquals(List.of(), store.daily("MD1", null, DAY, DAY));
+        assertEquals(0, store.countedPrescriptions());
+    }
+
+    @Test
+    void reusesExistingTables() {
+        store.apply(List.of(source("P1", "MD1", "City Clinic", DAY, false, "Fever")));
+
+        PrescriptionRollupStore reopened = new PrescriptionRollupStore(new JdbcTemplate(dataSource),
+                new DataSourceTransactionManager(dataSource));
+        reopened.start();
+
+        assertEquals(1, reopened.countedPrescriptions());
+    }
+
+    @Test
+    void findsPrescriptionsWhoseLatestVersionWasNeverApplied() {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table prescriptions (id varchar(50) primary key, version bigint, created_at timestamp)");
+        for (String id : List.of("P1", "P2", "P3", "P4")) {
+            jdbc.update("insert into prescriptions (id, version, created_at) values (?, 0, ?)", id, DAY.atTime(10, 30));
+        }
+        jdbc.update("insert into prescriptions (id, version, created_at) values ('P5', 0, null)");
+        store.apply(List.of(
+                source("P1", "MD1", "City Clinic", DAY, false, "Fever"),
+                source("P2", "MD1", "City Clinic", DAY, false, "Fever")));
+        // P2 was approved, but the replica stopped before the change reached the rollups; P3 and P4 were never counted
+        jdbc.update("update prescriptions set version = 1 where id = 'P2'");
+
+        assertEquals(List.of("P2", "P3"), store.findUnapplied("", 2));
+        assertEquals(List.of("P4"), store.findUnapplied("P3", 2));
+
+        store.apply(List.of(new PrescriptionRollupSource("P2", "MD1", "City Clinic", DAY.atTime(10, 30), true, true,
+                "Fever", 1L)));
+        assertEquals(List.of("P3", "P4"), store.findUnapplied("", 10));
+    }
+
+    @Test
+    void recordsANewVersionThatMovesNoCounts() {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table prescriptions (id varchar(50) primary key, version bigint, created_at timestamp)");
+        jdbc.update("insert into prescriptions (id, version, created_at) values ('P1', 3, ?)", DAY.atTime(10, 30));
+        store.apply(List.of(source("P1", "MD1", "City Clinic", DAY, false, "Fever")));
+
+        // Only the advice changed at version 3: nothing moves, but the version is remembered
+        assertEquals(0, store.apply(List.of(new PrescriptionRollupSource("P1", "MD1", "City Clinic",
+                DAY.atTime(10, 30), false, true, "Fever", 3L))));
+        assertEquals(List.of(), store.findUnapplied("", 10));
+    }
+
+    @Test
+    void addsTheVersionColumnToAStateTableWithoutIt() {
+        DriverManagerDataSource older = new DriverManagerDataSource(
+                "jdbc:h2:mem:rollups_old_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new JdbcTemplate(older).execute("create table prescription_rollup_state ("
+                + "prescription_id varchar(50) not null primary key, doctor_reg_no varchar(255) not null, "
+                + "rollup_date date not null, clinic_name varchar(255) not null, approved boolean not null, "
+                + "ai_generated boolean not null, diagnosis_key varchar(100) not null, diagnosis varchar(255) not null)");
+        PrescriptionRollupStore upgraded = new PrescriptionRollupStore(new JdbcTemplate(older),
+                new DataSourceTransactionManager(older));
+        upgraded.start();
+
+        assertEquals(1, upgraded.apply(List.of(source("P1", "MD1", "City Clinic", DAY, false, "Fever"))));
+    }
+
+    @Test
+    void needsNoDatabaseUntilStarted() {
+        DriverManagerDataSource unreachable = new DriverManagerDataSource("jdbc:h2:tcp://localhost:1/none", "sa", "");
+
+        PrescriptionRollupStore unstarted = new PrescriptionRollupStore(new JdbcTemplate(unreachable),
+                new DataSourceTransactionManager(unreachable));
+
+        assertFalse(unstarted.isRunning());
+    }
+}
@@ -0,0 +1,77 @@
+package com.sankatmochan.prescription_service.analytics;
+
+import com.sankatmochan.prescription_service.dto.PrescriptionRollupSource;
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class PrescriptionRollupUpdaterTest {
+
+    private PrescriptionRepository repository;
+    private PrescriptionRollupStore store;
+    private PrescriptionRollupUpdater updater;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(PrescriptionRepository.class);
+        store = mock(PrescriptionRollupStore.class);
+        when(repository.findRollupSources(anyCollection())).thenAnswer(inv -> inv.<Collection<String>>getArgument(0)
+                .stream().map(PrescriptionRollupUpdaterTest::source).toList());
+        // Long interval: the tests flush by hand
+        updater = new PrescriptionRollupUpdater(repository, store, new SimpleMeterRegistry(), Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        updater.close();
+    }
+
+    private static PrescriptionRollupSource source(String id) {
+        return new PrescriptionRollupSource(id, "MD1", "City Clinic", LocalDateTime.now(), false, true, "Fever", 0L);
+    }
+
+    @Test
+    void collapsesRepeatedChangesIntoOneUpdate() {
+        updater.onPrescriptionChanged(new PrescriptionChangedEvent("P1", PrescriptionChangedEvent.Change.CREATED));
+        updater.onPrescriptionChanged(new PrescriptionChangedEvent("P1", PrescriptionChangedEvent.Change.APPROVED));
+        updater.onPrescriptionChanged(new PrescriptionChangedEvent("P2", PrescriptionChangedEvent.Change.CREATED));
+
+        updater.flush();
+        updater.flush();
+
+        verify(store, times(1)).apply(argThat(sources -> sources.size() == 2));
+    }
+
+    @Test
+    void keepsChangesQueuedWhenTheUpdateFails() {
+        when(store.apply(any())).thenThrow(new IllegalStateException("database down")).thenReturn(1);
+        updater.onPrescriptionChanged(new PrescriptionChangedEvent("P1", PrescriptionChangedEvent.Change.CREATED));
+
+        assertThrows(IllegalStateException.class, updater::flush);
+        updater.flush();
+
+        verify(store, times(2)).apply(argThat(sources -> sources.size() == 1));
+    }
+
+    @Test
+    void catchesUpOnPrescriptionsTheRollupsHaveNotSeen() {
+        when(store.findUnapplied("", 500)).thenReturn(List.of("P1", "P2"));
+        when(store.findUnapplied("P2", 500)).thenReturn(List.of());
+
+        assertEquals(2, updater.catchUp());
+        verify(store).apply(argThat(sources -> sources.size() == 2));
+    }
+}
@@ -0,0 +1,190 @@
+package com.sankatmochan.prescription_service.archive;
+
+import com.sankatmochan.prescription_service.dto.HistoryCursor;
+import com.sankatmochan.prescription_service.dto.PrescriptionSummary;
+import com.sankatmochan.prescription_service.model.Medication;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.model.ReviewStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrescriptionArchiveTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123_456_000);
+
+    @TempDir
+    Path directory;
+
+    private PrescriptionArchive archive;
+
+    @BeforeEach
+    void setUp() {
+        archive = new PrescriptionArchive(new SimpleMeterRegistry(), directory.toString(), Duration.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        archive.close();
+    }
+
+    private static Prescription prescription(String id, String patient, LocalDateTime createdAt) {
+        Prescription p = new Prescription();
+        p.setId(id);
+        p.setPatientName(patient);
+        p.setDiagnosis("Diagnosis " + id);
+        p.setDoctorName("Dr. Smith");
+        p.setCreatedAt(createdAt);
+        return p;
+    }
+
+    private void publish(Prescription... prescriptions) throws Exception {
+        Path file = archive.newSegmentFile();
+        try (ArchiveSegment.Writer writer = new ArchiveSegment.Writer(file)) {
+            for (Prescription p : prescriptions) {
+                writer.add(p);
+            }
+            writer.finish();
+        }
+        archive.publish(file);
+    }
+
+    private static List<String> ids(List<PrescriptionSummary> page) {
+        return page.stream().map(PrescriptionSummary::id).toList();
+    }
+
+    @Test
+    void roundTripsEveryField() throws Exception {
+        Prescription p = prescription("SNKTMOCH00000001", "Ravi Kumar", BASE);
+        p.setPatientAddress("12 Ghat Road");
+        p.setAge(42);
+        p.setGender("Male");
+        p.setBp("120/80");
+        p.setSpo2("98");
+        p.setClinicalNotes("Fever for three days");
+        p.setMedicationData(new ArrayList<>(List.of(new Medication("Paracetamol", "500mg", "5 days"),
+                new Medication("Cetirizine", null, "3 days"))));
+        p.setApprovedByDoctor(true);
+        p.setReviewStatus(ReviewStatus.APPROVED);
+        p.setIsAiGenerated(null);
+        p.setNextVisitDate(BASE.plusDays(7));
+        p.setUpdatedAt(BASE.plusHours(1));
+        p.setVersion(4L);
+        publish(p);
+
+        Prescription read = archive.findById("SNKTMOCH00000001").orElseThrow();
+
+        assertEquals("Ravi Kumar", read.getPatientName());
+        assertEquals("ravi kumar", read.getPatientNameKey());
+        assertEquals("12 Ghat Road", read.getPatientAddress());
+        assertEquals(42, read.getAge());
+        assertNull(read.getPulse());
+        assertEquals("Fever for three days", read.getClinicalNotes());
+        assertEquals(2, read.getMedicationData().size());
+        assertEquals("Cetirizine", read.getMedicationData().get(1).getName());
+        assertNull(read.getMedicationData().get(1).getDosage());
+        assertTrue(read.getApprovedByDoctor());
+        assertEquals(ReviewStatus.APPROVED, read.getReviewStatus());
+        assertNull(read.getIsAiGenerated());
+        assertEquals(BASE, read.getCreatedAt());
+        assertEquals(BASE.plusDays(7), read.getNextVisitDate());
+        assertEquals(BASE.plusHours(1), read.getUpdatedAt());
+        assertEquals(4L, read.getVersion());
+    }
+
+    @Test
+    void findsByIdAcrossSegments() throws Exception {
+        publish(prescription("SNKTMOCH00000001", "A", BASE), prescription("SNKTMOCH00000003", "B", BASE));
+        publish(prescription("SNKTMOCH00000002", "A", BASE.plusDays(1)));
+
+        assertTrue(archive.findById("SNKTMOCH00000001").isPresent());
+        assertTrue(archive.findById("SNKTMOCH00000002").isPresent());
+        assertTrue(archive.findById("SNKTMOCH00000003").isPresent());
+        assertTrue(archive.findById("SNKTMOCH00000004").isEmpty());
+        assertTrue(archive.findById("SNKTMOCH000000011").isEmpty());
+        assertEquals(3, archive.size());
+    }
+
+    @Test
+    void pagesHistoryNewestFirstAcrossSegments() throws Exception {
+        publish(prescription("P1", "Asha Devi", BASE),
+                prescription("P3", "Asha Devi", BASE.plusDays(2)),
+                prescription("Q1", "Other Patient", BASE.plusDays(3)));
+        publish(prescription("P2", " ASHA DEVI", BASE.plusDays(1)),
+                prescription("P4", "Asha Devi", BASE.plusDays(2)),
+                prescription("P5", "Asha Devi", BASE.plusDays(4)));
+
+        List<PrescriptionSummary> first = archive.findHistory("asha devi", null, 3);
+        assertEquals(List.of("P5", "P4", "P3"), ids(first));
+
+        List<PrescriptionSummary> second = archive.findHistory("asha devi", HistoryCursor.after(first.get(2)), 3);
+        assertEquals(List.of("P2", "P1"), ids(second));
+
+        assertEquals(List.of(), archive.findHistory("nobody", null, 3));
+    }
+
+    @Test
+    void prefersTheNewestCopyOfAPrescription() throws Exception {
+        Prescription old = prescription("P1", "Asha Devi", BASE);
+        old.setDiagnosis("First copy");
+        publish(old);
+        Prescription again = prescription("P1", "Asha Devi", BASE);
+        again.setDiagnosis("Second copy");
+        publish(again);
+
+        assertEquals("Second copy", archive.findById("P1").orElseThrow().getDiagnosis());
+        assertEquals(List.of("P1"), ids(archive.findHistory("asha devi", null, 10)));
+    }
+
+    @Test
+    void picksUpSegmentsWrittenByAnotherReplica() throws Exception {
+        try (PrescriptionArchive other = new PrescriptionArchive(new SimpleMeterRegistry(), directory.toString(),
+                Duration.ZERO)) {
+            Path file = other.newSegmentFile();
+            try (ArchiveSegment.Writer writer = new ArchiveSegment.Writer(file)) {
+                writer.add(prescription("P1", "Asha Devi", BASE));
+                writer.finish();
+            }
+            other.publish(file);
+        }
+
+        assertTrue(archive.findById("P1").isPresent());
+    }
+
+    @Test
+    void ignoresUnfinishedSegmentFiles() throws Exception {
+        Files.createTempFile(directory, "segment-", ".tmp");
+
+        assertFalse(archive.refresh());
+        assertEquals(0, archive.size());
+    }
+
+    @Test
+    void storesRecordsCompressed() throws Exception {
+        List<Prescription> batch = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Prescription p = prescription(String.format("SNKTMOCH%08d", i), "Patient " + (i % 20), BASE.plusMinutes(i));
+            p.setClinicalNotes("Presented with fever, cough and body ache; advised rest, fluids and review in a week.");
+            batch.add(p);
+        }
+        publish(batch.toArray(Prescription[]::new));
+
+        long raw = batch.stream().mapToLong(p -> PrescriptionCodec.encode(p).length).sum();
+        long stored;
+        try (var files = Files.list(directory)) {
+            stored = files.mapToLong(f -> f.toFile().length()).sum();
+        }
+        assertTrue(stored < raw, "segment of " + stored + " bytes should be smaller than " + raw + " raw");
+    }
+}
@@ -0,0 +1,157 @@
+package com.sankatmochan.prescription_service.archive;
+
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import com.sankatmochan.prescription_service.search.PrescriptionSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PrescriptionArchiverTest {
+
+    private static final LocalDateTime CUTOFF = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    private JdbcTemplate jdbc;
+    private PrescriptionRepository repository;
+    private PrescriptionSearchIndex searchIndex;
+    private PrescriptionArchive archive;
+    private PrescriptionArchiver archiver;
+    private final List<Prescription> table = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:archiver_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table prescriptions (id varchar(50) primary key, version bigint not null)");
+        jdbc.execute("create table prescription_medications (prescription_id varchar(50) not null, line_no int)");
+
+        // The repository reads the same rows the JDBC deletes act on
+        repository = mock(PrescriptionRepository.class);
+        when(repository.findForArchive(any(), any())).thenAnswer(inv ->
+                page(inv.getArgument(0), null, null, inv.getArgument(1)));
+        when(repository.findForArchiveAfter(any(), any(), anyString(), any())).thenAnswer(inv ->
+                page(inv.getArgument(0), inv.getArgument(1), inv.getArgument(2), inv.getArgument(3)));
+
+        searchIndex = mock(PrescriptionSearchIndex.class);
+        archive = new PrescriptionArchive(new SimpleMeterRegistry(), directory.toString(), Duration.ZERO);
+        archiver = new PrescriptionArchiver(archive, repository, searchIndex, jdbc,
+                new DataSourceTransactionManager(dataSource), new SimpleMeterRegistry(), false,
+                Duration.ofDays(365), Duration.ofHours(1), 3);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        archiver.close();
+        archive.close();
+    }
+
+    private List<Prescription> page(LocalDateTime cutoff, LocalDateTime afterCreatedAt, String afterId, Limit limit) {
+        Comparator<Prescription> order = Comparator.comparing(Prescription::getCreatedAt)
+                .thenComparing(Prescription::getId);
+        List<String> stored = jdbc.queryForList("select id from prescriptions", String.class);
+        Stream<Prescription> rows = table.stream()
+                .filter(p -> stored.contains(p.getId()))
+                .filter(p -> p.getCreatedAt().isBefore(cutoff))
+                .sorted(order);
+        if (afterId != null) {
+            rows = rows.filter(p -> p.getCreatedAt().isAfter(afterCreatedAt)
+                    || p.getCreatedAt().equals(afterCreatedAt) && p.getId().compareTo(afterId) > 0);
+        }
+        return rows.limit(limit.max()).toList();
+    }
+
+    private void store(String id, LocalDateTime createdAt) {
+        Prescription p = new Prescription();
+        p.setId(id);
+        p.setPatientName("Asha Devi");
+        p.setCreatedAt(createdAt);
+        p.setVersion(1L);
+        table.add(p);
+        jdbc.update("insert into prescriptions (id, version) values (?, 1)", id);
+        jdbc.update("insert into prescription_medications (prescription_id, line_no) values (?, 0)", id);
+    }
+
+    private List<String> storedIds() {
+        return jdbc.queryForList("select id from prescriptions order by id", String.class);
+    }
+
+    @Test
+    void movesOldPrescriptionsIntoSegments() throws Exception {
+        for (int i = 1; i <= 7; i++) {
+            store("P" + i, CUTOFF.minusDays(10 - i));
+        }
+        store("NEW", CUTOFF.plusDays(1));
+
+        assertEquals(7, archiver.archive(CUTOFF));
+
+        assertEquals(List.of("NEW"), storedIds());
+        assertEquals(1, jdbc.queryForObject("select count(*) from prescription_medications", Integer.class));
+        // Seven rows at three per segment
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(3, files.filter(f -> f.toString().endsWith(".seg")).count());
+        }
+        for (int i = 1; i <= 7; i++) {
+            assertTrue(archive.findById("P" + i).isPresent());
+        }
+        verify(searchIndex).delete("P1");
+        verify(searchIndex, never()).delete("NEW");
+    }
+
+    @Test
+    void keepsRowsChangedAfterTheyWereCopied() throws Exception {
+        store("P1", CUTOFF.minusDays(2));
+        store("P2", CUTOFF.minusDays(1));
+        // The copy in the segment is version 1; the row moved on to 2
+        jdbc.update("update prescriptions set version = 2 where id = 'P2'");
+
+        assertEquals(1, archiver.archive(CUTOFF));
+
+        assertEquals(List.of("P2"), storedIds());
+        verify(searchIndex, never()).delete("P2");
+    }
+
+    @Test
+    void writesNothingWhenNoRowIsOldEnough() throws Exception {
+        store("NEW", CUTOFF.plusDays(1));
+
+        assertEquals(0, archiver.archive(CUTOFF));
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void requiresADirectoryWhenEnabled() {
+        PrescriptionArchive disabled = new PrescriptionArchive(new SimpleMeterRegistry(), "", Duration.ZERO);
+
+        assertThrows(IllegalStateException.class, () -> new PrescriptionArchiver(disabled, repository, searchIndex,
+                jdbc, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(),
+                true, Duration.ofDays(365), Duration.ofHours(1), 3));
+    }
+}
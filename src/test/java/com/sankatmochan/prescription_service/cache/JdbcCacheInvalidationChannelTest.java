@@ -0,0 +1,155 @@
+package com.sankatmochan.prescription_service.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcCacheInvalidationChannelTest {
+
+    private JdbcTemplate jdbc;
+    private JdbcCacheInvalidationChannel first;
+    private JdbcCacheInvalidationChannel second;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:cache_invalidation_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        // Long poll interval: the tests poll by hand
+        first = channel(Duration.ofHours(1), Duration.ofMinutes(1));
+        second = channel(Duration.ofHours(1), Duration.ofMinutes(1));
+        first.start();
+        second.start();
+    }
+
+    private JdbcCacheInvalidationChannel channel(Duration retention, Duration grace) {
+        return new JdbcCacheInvalidationChannel(jdbc, Duration.ofHours(1), retention, grace);
+    }
+
+    // A notice from another replica under a given id, as if its insert committed only now
+    private void insertNotice(long id, String prescriptionId) {
+        jdbc.update("insert into prescription_cache_invalidations (id, prescription_id, origin, created_at) "
+                + "values (?, ?, 'elsewhere', current_timestamp)", id, prescriptionId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void deliversToOtherReplicasButNotToThePublisher() {
+        List<String> seenByFirst = new CopyOnWriteArrayList<>();
+        List<String> seenBySecond = new CopyOnWriteArrayList<>();
+        first.subscribe(seenByFirst::add);
+        second.subscribe(seenBySecond::add);
+
+        first.publish("A");
+        first.publish("B");
+        first.poll();
+        second.poll();
+
+        assertEquals(List.of(), seenByFirst);
+        assertEquals(List.of("A", "B"), seenBySecond);
+    }
+
+    @Test
+    void deliversEachNoticeOnce() {
+        List<String> seen = new CopyOnWriteArrayList<>();
+        second.subscribe(seen::add);
+
+        first.publish("A");
+        second.poll();
+        second.poll();
+
+        assertEquals(List.of("A"), seen);
+    }
+
+    @Test
+    void ignoresNoticesFromBeforeStartup() {
+        first.publish("A");
+        JdbcCacheInvalidationChannel late = channel(Duration.ofHours(1), Duration.ofMinutes(1));
+        late.start();
+        try {
+            List<String> seen = new CopyOnWriteArrayList<>();
+            late.subscribe(seen::add);
+
+            late.poll();
+
+            assertEquals(List.of(), seen);
+        } finally {
+            late.close();
+        }
+    }
+
+    @Test
+    void deliversANoticeThatCommitsAfterAHigherId() {
+        List<String> seen = new CopyOnWriteArrayList<>();
+        second.subscribe(seen::add);
+
+        insertNotice(11, "B");
+        second.poll();
+        insertNotice(10, "A");
+        second.poll();
+        second.poll();
+
+        assertEquals(List.of("B", "A"), seen);
+    }
+
+    @Test
+    void givesUpOnSkippedIdsAfterTheGracePeriod() {
+        JdbcCacheInvalidationChannel impatient = channel(Duration.ofHours(1), Duration.ZERO);
+        impatient.start();
+        try {
+            List<String> seen = new CopyOnWriteArrayList<>();
+            impatient.subscribe(seen::add);
+
+            insertNotice(11, "B");
+            impatient.poll();
+            insertNotice(10, "A");
+            impatient.poll();
+
+            assertEquals(List.of("B"), seen);
+        } finally {
+            impatient.close();
+        }
+    }
+
+    @Test
+    void prunesNoticesPastRetentionOnceForAllReplicas() {
+        JdbcCacheInvalidationChannel shortLived = channel(Duration.ZERO, Duration.ofMinutes(1));
+        JdbcCacheInvalidationChannel otherShortLived = channel(Duration.ZERO, Duration.ofMinutes(1));
+        shortLived.start();
+        otherShortLived.start();
+        try {
+            first.publish("A");
+
+            assertTrue(shortLived.prune());
+            assertEquals(0, jdbc.queryForObject("select count(*) from prescription_cache_invalidations",
+                    Integer.class));
+
+            // The turn is taken until a quarter of the retention has passed; with none, the next one can prune
+            first.publish("B");
+            assertTrue(otherShortLived.prune());
+        } finally {
+            shortLived.close();
+            otherShortLived.close();
+        }
+    }
+
+    @Test
+    void onlyOneReplicaPrunesPerTurn() {
+        first.publish("A");
+
+        assertTrue(first.prune());
+        assertFalse(second.prune());
+    }
+}
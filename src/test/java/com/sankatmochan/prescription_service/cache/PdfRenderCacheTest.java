@@ -0,0 +1,163 @@
+package com.sankatmochan.prescription_service.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfRenderCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private PdfRenderCache memoryOnly(int maxMemoryBytes) {
+        return new PdfRenderCache(registry, true, DataSize.ofBytes(maxMemoryBytes), DataSize.ofBytes(maxMemoryBytes),
+                "", DataSize.ofMegabytes(1));
+    }
+
+    private PdfRenderCache withDisk(int maxMemoryBytes, int maxDiskBytes) {
+        return new PdfRenderCache(registry, true, DataSize.ofBytes(maxMemoryBytes), DataSize.ofBytes(maxMemoryBytes),
+                tempDir.toString(), DataSize.ofBytes(maxDiskBytes));
+    }
+
+    @Test
+    void hitRequiresMatchingFingerprint() {
+        PdfRenderCache cache = memoryOnly(1024);
+        byte[] pdf = new byte[] { 1, 2, 3 };
+
+        cache.put("SNKTMOCH00000001", "aaaa", pdf);
+
+        assertSame(pdf, cache.get("SNKTMOCH00000001", "aaaa"));
+        assertNull(cache.get("SNKTMOCH00000001", "bbbb"));
+        assertEquals(1.0, registry.get("prescription.pdf.cache.hits").tag("tier", "memory").counter().count());
+        assertEquals(1.0, registry.get("prescription.pdf.cache.misses").counter().count());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenOverBudget() {
+        PdfRenderCache cache = memoryOnly(20);
+
+        cache.put("A", "f", new byte[8]);
+        cache.put("B", "f", new byte[8]);
+        cache.get("A", "f");
+        cache.put("C", "f", new byte[8]);
+
+        assertNotNull(cache.get("A", "f"));
+        assertNull(cache.get("B", "f"));
+        assertNotNull(cache.get("C", "f"));
+        assertEquals(1.0, registry.get("prescription.pdf.cache.evictions").tag("tier", "memory").counter().count());
+    }
+
+    @Test
+    void diskTierSurvivesRestart() {
+        withDisk(1024, 1024).put("SNKTMOCH00000001", "aaaa", new byte[] { 7, 8, 9 });
+
+        PdfRenderCache restarted = withDisk(1024, 1024);
+
+        assertArrayEquals(new byte[] { 7, 8, 9 }, restarted.get("SNKTMOCH00000001", "aaaa"));
+        assertEquals(1.0, registry.get("prescription.pdf.cache.hits").tag("tier", "disk").counter().count());
+    }
+
+    @Test
+    void restartRemovesTempFilesOfUnfinishedWrites() throws Exception {
+        withDisk(1024, 1024).put("SNKTMOCH00000001", "aaaa", new byte[] { 7, 8, 9 });
+        Path unfinished = Files.write(tempDir.resolve("SNKTMOCH000000021234567890.tmp"), new byte[512]);
+
+        PdfRenderCache restarted = withDisk(1024, 1024);
+
+        assertFalse(Files.exists(unfinished));
+        assertArrayEquals(new byte[] { 7, 8, 9 }, restarted.get("SNKTMOCH00000001", "aaaa"));
+    }
+
+    @Test
+    void invalidateRemovesEveryTier() throws Exception {
+        PdfRenderCache cache = withDisk(1024, 1024);
+        cache.put("SNKTMOCH00000001", "aaaa", new byte[] { 1 });
+
+        cache.invalidate("SNKTMOCH00000001");
+
+        assertNull(cache.get("SNKTMOCH00000001", "aaaa"));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void disabledCacheNeverStores() {
+        PdfRenderCache cache = new PdfRenderCache(registry, false, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1),
+                "", DataSize.ofMegabytes(1));
+
+        cache.put("SNKTMOCH00000001", "aaaa", new byte[] { 1 });
+
+        assertNull(cache.get("SNKTMOCH00000001", "aaaa"));
+    }
+
+    @Test
+    void writeThroughCachesSmallDocumentsOnClose() throws Exception {
+        PdfRenderCache cache = memoryOnly(16);
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+        OutputStream out = cache.writeThrough("SNKTMOCH00000001", "aaaa", response);
+        out.write(new byte[] { 1, 2, 3 });
+        assertNull(cache.get("SNKTMOCH00000001", "aaaa"));
+        out.close();
+
+        assertArrayEquals(new byte[] { 1, 2, 3 }, response.toByteArray());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, cache.get("SNKTMOCH00000001", "aaaa"));
+    }
+
+    @Test
+    void writeThroughSkipsDocumentsAboveEntryLimit() throws Exception {
+        PdfRenderCache cache = memoryOnly(4);
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+        OutputStream out = cache.writeThrough("SNKTMOCH00000001", "aaaa", response);
+        out.write(new byte[] { 1, 2, 3 });
+        out.write(new byte[] { 4, 5, 6 });
+        out.close();
+
+        assertEquals(6, response.size());
+        assertNull(cache.get("SNKTMOCH00000001", "aaaa"));
+    }
+
+    @Test
+    void resourceOfDiskEntryReadsTheFile() throws Exception {
+        withDisk(1024, 1024).put("SNKTMOCH00000001", "aaaa", new byte[] { 7, 8, 9 });
+        PdfRenderCache restarted = withDisk(1024, 1024);
+
+        Resource resource = restarted.getResource("SNKTMOCH00000001", "aaaa");
+
+        assertTrue(resource.isFile());
+        assertArrayEquals(new byte[] { 7, 8, 9 }, resource.getContentAsByteArray());
+        assertNull(restarted.getResource("SNKTMOCH00000001", "bbbb"));
+    }
+
+    @Test
+    void writeThroughFinishesCachingWhenTheClientDisconnects() throws Exception {
+        PdfRenderCache cache = memoryOnly(1024);
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        OutputStream out = cache.writeThrough("SNKTMOCH00000001", "aaaa", disconnected);
+        out.write(new byte[] { 1, 2, 3 });
+        out.write(new byte[] { 4, 5 });
+
+        assertThrows(IOException.class, out::close);
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, cache.get("SNKTMOCH00000001", "aaaa"));
+    }
+}
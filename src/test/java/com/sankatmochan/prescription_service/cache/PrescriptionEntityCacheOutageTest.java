@@ -0,0 +1,54 @@
+package com.sankatmochan.prescription_service.cache;
+
+import com.sankatmochan.prescription_service.dto.PrescriptionValidator;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.service.PrescriptionService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Closes the pool for real, so it gets a database and a context of its own
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:entity_cache_outage",
+		"prescription.cache.entity.ttl=0s"
+})
+@DirtiesContext
+class PrescriptionEntityCacheOutageTest {
+
+	@Autowired
+	private PrescriptionService prescriptionService;
+
+	@Autowired
+	private HikariDataSource dataSource;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	void keepsServingKnownPrescriptionsWhenNoConnectionCanBeHad() {
+		Prescription p = new Prescription();
+		p.setPatientName("John Doe");
+		p.setDiagnosis("Viral Fever");
+		String id = prescriptionService.createPrescription(p).getId();
+		prescriptionService.getPrescriptionById(id);
+
+		dataSource.close();
+
+		// What a download does: validator first, then the prescription at that version
+		PrescriptionValidator validator = prescriptionService.getPrescriptionValidator(id);
+		Prescription stale = prescriptionService.getPrescriptionById(id, validator.version());
+		assertEquals("Viral Fever", stale.getDiagnosis());
+		assertTrue(meterRegistry.get("prescription.entity.cache.stale").counter().count() >= 1.0);
+
+		// Nothing cached to fall back on: the outage shows
+		assertThrows(CannotCreateTransactionException.class,
+				() -> prescriptionService.getPrescriptionById("SNKTMOCH00000000"));
+	}
+
+}
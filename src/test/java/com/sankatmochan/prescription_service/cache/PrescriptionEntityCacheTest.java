@@ -0,0 +1,211 @@
+package com.sankatmochan.prescription_service.cache;
+
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.model.Prescription;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrescriptionEntityCacheTest {
+
+    private static final String ID = "SNKTMOCH12345678";
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+    private RecordingChannel channel;
+    private PrescriptionEntityCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        channel = new RecordingChannel();
+        cache = new PrescriptionEntityCache(meterRegistry, channel, true, 100, Duration.ofMinutes(10),
+                Duration.ofHours(1), nanos::get);
+    }
+
+    private Function<String, Optional<Prescription>> loader(Prescription result) {
+        return id -> {
+            loads.incrementAndGet();
+            return Optional.ofNullable(result);
+        };
+    }
+
+    private static Function<String, Optional<Prescription>> failingLoader() {
+        return id -> {
+            throw new DataAccessResourceFailureException("database down");
+        };
+    }
+
+    private static Prescription prescription(String diagnosis) {
+        Prescription p = new Prescription();
+        p.setId(ID);
+        p.setDiagnosis(diagnosis);
+        return p;
+    }
+
+    @Test
+    void loadsOnceThenServesFromCache() {
+        Prescription p = prescription("Fever");
+
+        cache.get(ID, loader(p));
+        Optional<Prescription> again = cache.get(ID, loader(p));
+
+        assertSame(p, again.orElseThrow());
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void doesNotCacheMissingPrescriptions() {
+        cache.get(ID, loader(null));
+        cache.get(ID, loader(null));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void reloadsAfterTtl() {
+        cache.get(ID, loader(prescription("Fever")));
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        Optional<Prescription> reloaded = cache.get(ID, loader(prescription("Migraine")));
+
+        assertEquals("Migraine", reloaded.orElseThrow().getDiagnosis());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void servesStaleEntryWhileDatabaseIsDown() {
+        cache.get(ID, loader(prescription("Fever")));
+        nanos.addAndGet(Duration.ofMinutes(30).toNanos());
+
+        Optional<Prescription> stale = cache.get(ID, failingLoader());
+
+        assertEquals("Fever", stale.orElseThrow().getDiagnosis());
+        assertEquals(1.0, meterRegistry.get("prescription.entity.cache.stale").counter().count());
+    }
+
+    @Test
+    void servesStaleEntryWhenNoTransactionCanBegin() {
+        cache.get(ID, loader(prescription("Fever")));
+        nanos.addAndGet(Duration.ofMinutes(30).toNanos());
+
+        Optional<Prescription> stale = cache.get(ID, id -> {
+            throw new CannotCreateTransactionException("Could not open JPA EntityManager for transaction");
+        });
+
+        assertEquals("Fever", stale.orElseThrow().getDiagnosis());
+        assertEquals("Fever", cache.getIfCached(ID).orElseThrow().getDiagnosis());
+    }
+
+    @Test
+    void failsWhenDatabaseIsDownAndNothingUsableIsCached() {
+        assertThrows(DataAccessResourceFailureException.class, () -> cache.get(ID, failingLoader()));
+
+        cache.get(ID, loader(prescription("Fever")));
+        nanos.addAndGet(Duration.ofHours(2).toNanos());
+
+        assertThrows(DataAccessResourceFailureException.class, () -> cache.get(ID, failingLoader()));
+    }
+
+    @Test
+    void changeInvalidatesLocallyAndNotifiesOtherReplicas() {
+        cache.get(ID, loader(prescription("Fever")));
+
+        cache.onPrescriptionChanged(new PrescriptionChangedEvent(ID, PrescriptionChangedEvent.Change.UPDATED));
+        cache.get(ID, loader(prescription("Migraine")));
+
+        assertEquals(2, loads.get());
+        assertEquals(1, channel.published.get());
+    }
+
+    @Test
+    void announcesCreatesForTheOtherReplicasSearchIndexes() {
+        cache.onPrescriptionChanged(new PrescriptionChangedEvent(ID, PrescriptionChangedEvent.Change.CREATED));
+
+        assertEquals(1, channel.published.get());
+    }
+
+    @Test
+    void notificationFromAnotherReplicaInvalidates() {
+        cache.get(ID, loader(prescription("Fever")));
+
+        channel.listener.accept(ID);
+        cache.get(ID, loader(prescription("Migraine")));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void doesNotCacheALoadOverlappingAnInvalidation() {
+        Prescription old = prescription("Fever");
+        old.setVersion(1L);
+
+        // A change commits and is invalidated while this read is still loading the old row
+        Optional<Prescription> read = cache.get(ID, id -> {
+            loads.incrementAndGet();
+            cache.onPrescriptionChanged(new PrescriptionChangedEvent(ID, PrescriptionChangedEvent.Change.UPDATED));
+            return Optional.of(old);
+        });
+        Prescription next = prescription("Migraine");
+        next.setVersion(2L);
+        Optional<Prescription> again = cache.get(ID, loader(next));
+
+        assertSame(old, read.orElseThrow());
+        assertEquals("Migraine", again.orElseThrow().getDiagnosis());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void keepsANewerVersionOverAnOlderLoad() {
+        Prescription newer = prescription("Migraine");
+        newer.setVersion(2L);
+        cache.get(ID, loader(newer));
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        Prescription older = prescription("Fever");
+        older.setVersion(1L);
+        cache.get(ID, loader(older));
+
+        assertEquals("Migraine", cache.getIfCached(ID).orElseThrow().getDiagnosis());
+    }
+
+    @Test
+    void disabledCacheAlwaysLoads() {
+        PrescriptionEntityCache disabled = new PrescriptionEntityCache(new SimpleMeterRegistry(), channel, false,
+                100, Duration.ofMinutes(10), Duration.ofHours(1));
+
+        disabled.get(ID, loader(prescription("Fever")));
+        disabled.get(ID, loader(prescription("Fever")));
+
+        assertEquals(2, loads.get());
+    }
+
+    private static final class RecordingChannel implements CacheInvalidationChannel {
+
+        private final AtomicInteger published = new AtomicInteger();
+        private Consumer<String> listener;
+
+        @Override
+        public void publish(String prescriptionId) {
+            published.incrementAndGet();
+        }
+
+        @Override
+        public void subscribe(Consumer<String> listener) {
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.sankatmochan.prescription_service.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HibernateStatisticsMetricsTest {
+
+    @Test
+    void readsTheCurrentStatistics() {
+        Statistics statistics = mock(Statistics.class);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new HibernateStatisticsMetrics(statistics).bindTo(registry);
+
+        when(statistics.getPrepareStatementCount()).thenReturn(42L);
+        when(statistics.getQueryPlanCacheHitCount()).thenReturn(7L);
+        when(statistics.getQueryPlanCacheMissCount()).thenReturn(3L);
+
+        assertEquals(42.0, registry.get("hibernate.statements").tag("status", "prepared").functionCounter().count());
+        assertEquals(7.0, registry.get("hibernate.query.plan.cache").tag("result", "hit").functionCounter().count());
+        assertEquals(3.0, registry.get("hibernate.query.plan.cache").tag("result", "miss").functionCounter().count());
+    }
+}
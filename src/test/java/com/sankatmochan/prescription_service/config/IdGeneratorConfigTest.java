@@ -0,0 +1,28 @@
+package com.sankatmochan.prescription_service.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdGeneratorConfigTest {
+
+    private final IdGeneratorConfig config = new IdGeneratorConfig();
+
+    @Test
+    void refusesToGuessANodeIdWhenOneIsRequired() {
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> config.prescriptionIdGenerator(-1, true));
+
+        assertTrue(e.getMessage().contains("PRESCRIPTION_ID_NODE_ID"));
+    }
+
+    @Test
+    void usesTheConfiguredNodeId() {
+        assertTrue(config.prescriptionIdGenerator(7, true).nextId().startsWith("SNKTMOCH"));
+    }
+
+    @Test
+    void fallsBackToTheHostNameWhenNotRequired() {
+        assertNotNull(config.prescriptionIdGenerator(-1, false).nextId());
+    }
+}
@@ -1,22 +1,79 @@
 package com.sankatmochan.prescription_service.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sankatmochan.prescription_service.analytics.PrescriptionDashboardQuery;
+import com.sankatmochan.prescription_service.dto.BulkIngestResponse;
+import com.sankatmochan.prescription_service.dto.BulkItemResult;
+import com.sankatmochan.prescription_service.dto.DailyPrescriptionCount;
+import com.sankatmochan.prescription_service.dto.DiagnosisCount;
+import com.sankatmochan.prescription_service.dto.ExportFormat;
+import com.sankatmochan.prescription_service.dto.HistoryPage;
+import com.sankatmochan.prescription_service.dto.MedicationUsage;
+import com.sankatmochan.prescription_service.dto.PrescriptionDashboard;
+import com.sankatmochan.prescription_service.dto.PrescriptionExportQuery;
+import com.sankatmochan.prescription_service.dto.PrescriptionSummary;
+import com.sankatmochan.prescription_service.dto.PrescriptionValidator;
+import com.sankatmochan.prescription_service.dto.ReviewItem;
+import com.sankatmochan.prescription_service.dto.ReviewItemResult;
+import com.sankatmochan.prescription_service.dto.ReviewQueueItem;
+import com.sankatmochan.prescription_service.dto.ReviewQueuePage;
+import com.sankatmochan.prescription_service.dto.ReviewRequest;
+import com.sankatmochan.prescription_service.dto.ReviewResponse;
+import com.sankatmochan.prescription_service.dto.SearchHit;
+import com.sankatmochan.prescription_service.dto.SearchPage;
+import com.sankatmochan.prescription_service.idempotency.IdempotencyKeys;
+import com.sankatmochan.prescription_service.idempotency.LocalIdempotencyRecords;
 import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.model.ReviewStatus;
+import com.sankatmochan.prescription_service.pdf.RenderCapacityExceededException;
+import com.sankatmochan.prescription_service.ratelimit.DownloadRateLimitInterceptor;
+import com.sankatmochan.prescription_service.ratelimit.DownloadRateLimiter;
+import com.sankatmochan.prescription_service.ratelimit.TokenBuckets;
+import com.sankatmochan.prescription_service.search.PrescriptionSearchQuery;
+import com.sankatmochan.prescription_service.service.PrescriptionAnalyticsService;
+import com.sankatmochan.prescription_service.service.PrescriptionBulkService;
+import com.sankatmochan.prescription_service.service.PrescriptionExportService;
+import com.sankatmochan.prescription_service.service.PrescriptionReviewService;
+import com.sankatmochan.prescription_service.service.PrescriptionSearchService;
 import com.sankatmochan.prescription_service.service.PrescriptionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
-import java.util.Collections;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -29,7 +86,21 @@ class PrescriptionControllerTest {
     @Mock
     private PrescriptionService prescriptionService;
 
-    @InjectMocks
+    @Mock
+    private PrescriptionBulkService bulkService;
+
+    @Mock
+    private PrescriptionSearchService searchService;
+
+    @Mock
+    private PrescriptionExportService exportService;
+
+    @Mock
+    private PrescriptionAnalyticsService analyticsService;
+
+    @Mock
+    private PrescriptionReviewService reviewService;
+
     private PrescriptionController prescriptionController;
 
     private ObjectMapper objectMapper = new ObjectMapper();
@@ -38,6 +109,7 @@ class PrescriptionControllerTest {
 
     @BeforeEach
     void setUp() {
+        prescriptionController = controller(new DownloadRateLimiter(new SimpleMeterRegistry(), null, null, ""));
         mockMvc = MockMvcBuilders.standaloneSetup(prescriptionController).build();
         objectMapper.registerModule(new com.fasterxml.jackson.datatype.jsr310.JavaTimeModule());
 
@@ -67,24 +139,553 @@ class PrescriptionControllerTest {
                 .andExpect(jsonPath("$.patientName").value("John Doe"));
     }
 
+    @Test
+    void createPrescription_MapsRequestAndOmitsInternalFields() throws Exception {
+        when(prescriptionService.createPrescription(any(Prescription.class))).thenAnswer(invocation -> {
+            Prescription p = invocation.getArgument(0);
+            p.setId("SNKTMOCH12345678");
+            return p;
+        });
+
+        mockMvc.perform(post("/api/v1/prescriptions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":\"CLIENT\",\"patientName\":\"John Doe\",\"isAiGenerated\":false,"
+                        + "\"medicationData\":[{\"name\":\"Paracetamol\",\"dosage\":\"500mg\",\"duration\":\"5 days\"}]}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value("SNKTMOCH12345678"))
+                .andExpect(jsonPath("$.isAiGenerated").value(false))
+                .andExpect(jsonPath("$.approvedByDoctor").value(false))
+                .andExpect(jsonPath("$.medicationData[0].name").value("Paracetamol"))
+                .andExpect(jsonPath("$.medicationData[0].nameKey").doesNotExist())
+                .andExpect(jsonPath("$.patientNameKey").doesNotExist())
+                .andExpect(jsonPath("$.new").doesNotExist());
+
+        ArgumentCaptor<Prescription> saved = ArgumentCaptor.forClass(Prescription.class);
+        verify(prescriptionService).createPrescription(saved.capture());
+        assertEquals("John Doe", saved.getValue().getPatientName());
+        assertEquals("5 days", saved.getValue().getMedicationData().get(0).getDuration());
+    }
+
+    @Test
+    void createPrescription_RetryWithIdempotencyKeyIsReplayed() throws Exception {
+        when(prescriptionService.createPrescription(any(Prescription.class))).thenReturn(prescription);
+        when(prescriptionService.getPrescriptionById("SNKTMOCH12345678")).thenReturn(prescription);
+        String body = "{\"patientName\":\"John Doe\"}";
+
+        mockMvc.perform(post("/api/v1/prescriptions")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "false"));
+        mockMvc.perform(post("/api/v1/prescriptions")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.id").value("SNKTMOCH12345678"));
+
+        verify(prescriptionService, times(1)).createPrescription(any(Prescription.class));
+    }
+
+    @Test
+    void createPrescription_IdempotencyKeyReusedForAnotherRequest() throws Exception {
+        when(prescriptionService.createPrescription(any(Prescription.class))).thenReturn(prescription);
+
+        mockMvc.perform(post("/api/v1/prescriptions")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"patientName\":\"John Doe\"}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/api/v1/prescriptions")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"patientName\":\"Jane Doe\"}"))
+                .andExpect(status().isUnprocessableContent());
+    }
+
+    @Test
+    void createPrescriptionsBulk() throws Exception {
+        when(bulkService.createPrescriptions(anyList())).thenReturn(
+                BulkIngestResponse.of(List.of(BulkItemResult.created(0, "SNKTMOCH12345678"))));
+
+        mockMvc.perform(post("/api/v1/prescriptions/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(prescription))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.items[0].id").value("SNKTMOCH12345678"));
+    }
+
+    @Test
+    void createPrescriptionsBulkNdjson_PartialFailure() throws Exception {
+        when(bulkService.createPrescriptionsFromNdjson(any(InputStream.class))).thenReturn(
+                BulkIngestResponse.of(List.of(BulkItemResult.created(0, "SNKTMOCH12345678"),
+                        BulkItemResult.failed(1, "Invalid JSON"))));
+
+        mockMvc.perform(post("/api/v1/prescriptions/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"patientName\":\"John Doe\"}\nnot json\n"))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.items[1].error").value("Invalid JSON"));
+    }
+
     @Test
     void downloadPrescription() throws Exception {
         byte[] pdfContent = new byte[] { 1, 2, 3 };
-        when(prescriptionService.generatePrescriptionPdf(anyString())).thenReturn(pdfContent);
+        givenDownloadable();
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(pdfContent);
+            return null;
+        }).when(prescriptionService).writePrescriptionPdf(eq(prescription), any(OutputStream.class));
 
-        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678"))
+        MvcResult result = mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_PDF))
                 .andExpect(header().string("Content-Disposition", "attachment; filename=\"SNKTMOCH12345678.pdf\""))
+                .andExpect(header().stringValues("ETag", "\"3-layout\""))
+                .andExpect(header().string("Last-Modified", "Sun, 01 Mar 2026 10:15:00 GMT"))
+                .andExpect(header().string("Cache-Control", "no-cache, private"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
                 .andExpect(content().bytes(pdfContent));
     }
 
+    @Test
+    void downloadPrescription_ApprovedIsCachedAsImmutable() throws Exception {
+        prescription.setApprovedByDoctor(true);
+        givenDownloadable();
+
+        MvcResult result = mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=86400, private, immutable"));
+    }
+
+    @Test
+    void downloadPrescription_NotModifiedForMatchingEtag() throws Exception {
+        givenDownloadable();
+
+        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678")
+                        .header("If-None-Match", "\"3-layout\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"3-layout\""))
+                .andExpect(content().bytes(new byte[0]));
+
+        // Answered from the validator alone
+        verify(prescriptionService, never()).getPrescriptionById(anyString(), anyLong());
+        verify(prescriptionService, never()).writePrescriptionPdf(any(Prescription.class), any(OutputStream.class));
+    }
+
+    @Test
+    void downloadPrescription_NotModifiedSinceLastModified() throws Exception {
+        givenDownloadable();
+
+        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678")
+                        .header("If-Modified-Since", "Sun, 01 Mar 2026 10:15:00 GMT"))
+                .andExpect(status().isNotModified());
+
+        verify(prescriptionService, never()).getPrescriptionById(anyString(), anyLong());
+    }
+
+    @Test
+    void downloadPrescription_ChangedVersionIsDownloadedAgain() throws Exception {
+        givenDownloadable();
+
+        MvcResult result = mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678")
+                        .header("If-None-Match", "\"2-layout\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3-layout\""));
+    }
+
+    @Test
+    void downloadPrescription_RangeIsServedFromStoredRendering() throws Exception {
+        givenDownloadable();
+        when(prescriptionService.getPrescriptionPdfResource(prescription))
+                .thenReturn(new ByteArrayResource(new byte[] { 1, 2, 3, 4, 5, 6 }));
+
+        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678")
+                        .header("Range", "bytes=2-")
+                        .header("If-Range", "\"3-layout\""))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 2-5/6"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().string("ETag", "\"3-layout\""))
+                .andExpect(content().bytes(new byte[] { 3, 4, 5, 6 }));
+
+        verify(prescriptionService, never()).writePrescriptionPdf(any(Prescription.class), any(OutputStream.class));
+    }
+
+    @Test
+    void downloadPrescription_StaleIfRangeGetsWholeDocument() throws Exception {
+        givenDownloadable();
+        when(prescriptionService.getPrescriptionPdfResource(prescription))
+                .thenReturn(new ByteArrayResource(new byte[] { 1, 2, 3, 4, 5, 6 }));
+
+        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678")
+                        .header("Range", "bytes=2-")
+                        .header("If-Range", "\"2-layout\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Range"))
+                .andExpect(content().bytes(new byte[] { 1, 2, 3, 4, 5, 6 }));
+    }
+
+    @Test
+    void downloadPrescription_UnknownIdIsNotFound() throws Exception {
+        when(prescriptionService.getPrescriptionValidator("SNKTMOCH00000000"))
+                .thenThrow(new EntityNotFoundException("Prescription SNKTMOCH00000000 not found"));
+
+        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH00000000"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void downloadPrescription_RenderCapacityExceeded() throws Exception {
+        givenDownloadable();
+        doThrow(new RenderCapacityExceededException("All 2 render slots are busy", Duration.ofMillis(1500)))
+                .when(prescriptionService).writePrescriptionPdf(eq(prescription), any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"));
+    }
+
+    @Test
+    void downloadPrescription_RateLimitedBeforeAnythingIsLoaded() throws Exception {
+        givenDownloadable();
+        rateLimited(new DownloadRateLimiter(new SimpleMeterRegistry(), new TokenBuckets(1, 1, 100), null, ""));
+
+        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678")
+                        .header("If-None-Match", "\"3-layout\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678")
+                        .header("If-None-Match", "\"3-layout\""))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "60"));
+
+        verify(prescriptionService, times(1)).getPrescriptionValidator("SNKTMOCH12345678");
+    }
+
+    @Test
+    void downloadPrescription_StreamedDownloadTakesOneToken() throws Exception {
+        givenDownloadable();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        rateLimited(new DownloadRateLimiter(meterRegistry, new TokenBuckets(1, 2, 100), new TokenBuckets(1, 1, 100),
+                ""));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // The async re-dispatch that streams the body is the same download, not another one
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        assertEquals(0.0, meterRegistry.get("prescription.download.rate.limited").counters().stream()
+                .mapToDouble(Counter::count).sum());
+
+        // The client's second token is still there; the prescription's only one went on the render
+        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "60"));
+        assertEquals(1.0, meterRegistry.get("prescription.download.rate.limited").tag("limit", "prescription")
+                .counter().count());
+        verify(prescriptionService, times(1)).writePrescriptionPdf(eq(prescription), any(OutputStream.class));
+    }
+
+    @Test
+    void downloadPrescription_OnlyRendersCostThePrescription() throws Exception {
+        givenDownloadable();
+        rateLimited(new DownloadRateLimiter(new SimpleMeterRegistry(), null, new TokenBuckets(1, 1, 100), ""));
+        when(prescriptionService.isPdfRendered(prescription)).thenReturn(true);
+        when(prescriptionService.getPrescriptionPdfResource(prescription))
+                .thenReturn(new ByteArrayResource(new byte[] { 1, 2, 3, 4, 5, 6 }));
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678")
+                            .header("If-None-Match", "\"3-layout\""))
+                    .andExpect(status().isNotModified());
+            mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678")
+                            .header("Range", "bytes=2-"))
+                    .andExpect(status().isPartialContent());
+            mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678"))
+                    .andExpect(request().asyncStarted());
+        }
+    }
+
+    @Test
+    void downloadPrescription_RefusedRenderGivesTheClientItsTokenBack() throws Exception {
+        givenDownloadable();
+        rateLimited(new DownloadRateLimiter(new SimpleMeterRegistry(), new TokenBuckets(1, 2, 100),
+                new TokenBuckets(1, 1, 100), ""));
+
+        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678"))
+                .andExpect(request().asyncStarted());
+        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678"))
+                .andExpect(status().isTooManyRequests());
+
+        // Had the refused render kept the client's token, this would be over the client limit
+        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678")
+                        .header("If-None-Match", "\"3-layout\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/v1/prescriptions/{id}/download", "SNKTMOCH12345678")
+                        .header("If-None-Match", "\"3-layout\""))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    private PrescriptionController controller(DownloadRateLimiter downloadRateLimiter) {
+        return new PrescriptionController(prescriptionService, bulkService, searchService,
+                exportService, analyticsService, reviewService,
+                new IdempotencyKeys(new SimpleMeterRegistry(), new LocalIdempotencyRecords(), 100, Duration.ofHours(1),
+                        Duration.ofSeconds(1)),
+                downloadRateLimiter, 100, Duration.ofDays(1));
+    }
+
+    private void rateLimited(DownloadRateLimiter limiter) {
+        mockMvc = MockMvcBuilders.standaloneSetup(controller(limiter))
+                .addMappedInterceptors(new String[] { "/api/v1/prescriptions/{id}/download" },
+                        new DownloadRateLimitInterceptor(limiter))
+                .build();
+    }
+
+    private void givenDownloadable() {
+        prescription.setVersion(3L);
+        prescription.setCreatedAt(LocalDateTime.of(2026, 3, 1, 10, 15).atZone(ZoneOffset.UTC)
+                .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime());
+        when(prescriptionService.getPdfLayoutTag()).thenReturn("layout");
+        when(prescriptionService.getPrescriptionValidator("SNKTMOCH12345678"))
+                .thenReturn(new PrescriptionValidator(prescription.getId(), prescription.getVersion(),
+                        prescription.getCreatedAt(), null, prescription.getApprovedByDoctor()));
+        lenient().when(prescriptionService.getPrescriptionById("SNKTMOCH12345678", 3L)).thenReturn(prescription);
+    }
+
     @Test
     void getPatientHistory() throws Exception {
-        when(prescriptionService.getHistoryByPatient(anyString())).thenReturn(Collections.singletonList(prescription));
+        PrescriptionSummary summary = new PrescriptionSummary("SNKTMOCH12345678", LocalDateTime.now(),
+                "Viral Fever", "Dr. Smith");
+        when(prescriptionService.getHistoryByPatient(eq("John Doe"), isNull(), eq(20)))
+                .thenReturn(new HistoryPage(List.of(summary), "next-token"));
 
         mockMvc.perform(get("/api/v1/prescriptions/patient/{name}", "John Doe"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].id").value("SNKTMOCH12345678"));
+                .andExpect(jsonPath("$.items[0].id").value("SNKTMOCH12345678"))
+                .andExpect(jsonPath("$.items[0].diagnosis").value("Viral Fever"))
+                .andExpect(jsonPath("$.nextCursor").value("next-token"));
+    }
+
+    @Test
+    void getPatientHistory_NotModifiedForMatchingEtag() throws Exception {
+        PrescriptionSummary summary = new PrescriptionSummary("SNKTMOCH12345678", LocalDateTime.now(),
+                "Viral Fever", "Dr. Smith");
+        when(prescriptionService.getHistoryByPatient(eq("John Doe"), isNull(), eq(20)))
+                .thenReturn(new HistoryPage(List.of(summary), null));
+
+        String etag = mockMvc.perform(get("/api/v1/prescriptions/patient/{name}", "John Doe"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache, private"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/v1/prescriptions/patient/{name}", "John Doe").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getPatientHistory_RejectsMalformedCursor() throws Exception {
+        mockMvc.perform(get("/api/v1/prescriptions/patient/{name}", "John Doe").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getMedicationUsage() throws Exception {
+        PrescriptionSummary summary = new PrescriptionSummary("SNKTMOCH12345678", LocalDateTime.now(),
+                "Viral Fever", "Dr. Smith");
+        LocalDate from = LocalDate.of(2026, 3, 1);
+        LocalDate to = LocalDate.of(2026, 3, 31);
+        when(prescriptionService.getMedicationUsage("Paracetamol", from, to, 20))
+                .thenReturn(new MedicationUsage("Paracetamol", from, to, 1, List.of(summary)));
+
+        mockMvc.perform(get("/api/v1/prescriptions/medication/{name}", "Paracetamol")
+                        .param("from", "2026-03-01")
+                        .param("to", "2026-03-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalPrescriptions").value(1))
+                .andExpect(jsonPath("$.items[0].id").value("SNKTMOCH12345678"));
+    }
+
+    @Test
+    void searchPrescriptions() throws Exception {
+        PrescriptionSearchQuery query = new PrescriptionSearchQuery("tuberculosis", "MD12345",
+                LocalDate.of(2026, 1, 1), null, 0, 20);
+        SearchHit hit = new SearchHit("SNKTMOCH12345678", LocalDateTime.now(), "Pulmonary Tuberculosis", "Dr. Smith", 2.5f);
+        when(searchService.search(query)).thenReturn(new SearchPage(List.of(hit), 0, 20, 1, true));
+
+        mockMvc.perform(get("/api/v1/prescriptions/search")
+                        .param("q", "tuberculosis")
+                        .param("doctorRegNo", "MD12345")
+                        .param("from", "2026-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value("SNKTMOCH12345678"))
+                .andExpect(jsonPath("$.totalHits").value(1));
+    }
+
+    @Test
+    void searchPrescriptions_RejectsPagesBeyondResultWindow() throws Exception {
+        mockMvc.perform(get("/api/v1/prescriptions/search").param("q", "fever").param("page", "500"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getDashboard() throws Exception {
+        LocalDate day = LocalDate.of(2026, 3, 1);
+        PrescriptionDashboardQuery query = new PrescriptionDashboardQuery("MD12345", null, day, day.plusDays(30), 5);
+        when(analyticsService.getDashboard(query)).thenReturn(new PrescriptionDashboard("MD12345", null, day,
+                day.plusDays(30), 3, 2, 1, 3, List.of(new DailyPrescriptionCount(day, 3, 2, 1, 3)),
+                List.of(new DiagnosisCount("Viral Fever", 2))));
+
+        mockMvc.perform(get("/api/v1/prescriptions/analytics")
+                        .param("doctorRegNo", " MD12345 ")
+                        .param("from", "2026-03-01")
+                        .param("to", "2026-03-31")
+                        .param("topDiagnoses", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.pending").value(1))
+                .andExpect(jsonPath("$.days[0].day").value("2026-03-01"))
+                .andExpect(jsonPath("$.topDiagnoses[0].diagnosis").value("Viral Fever"));
+    }
+
+    @Test
+    void getDashboard_RejectsRangesBeyondAYear() throws Exception {
+        mockMvc.perform(get("/api/v1/prescriptions/analytics")
+                        .param("clinicName", "City Clinic")
+                        .param("from", "2025-01-01")
+                        .param("to", "2026-03-01"))
+                .andExpect(status().isBadRequest());
+        verify(analyticsService, never()).getDashboard(any());
+    }
+
+    @Test
+    void getReviewQueue() throws Exception {
+        when(reviewService.getReviewQueue("MD12345", null, 50)).thenReturn(new ReviewQueuePage(List.of(
+                new ReviewQueueItem("SNKTMOCH12345678", "John Doe", "Test Diagnosis", true,
+                        LocalDateTime.of(2026, 3, 1, 10, 15), 2L)), null));
+
+        mockMvc.perform(get("/api/v1/prescriptions/review-queue").param("doctorRegNo", "MD12345"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value("SNKTMOCH12345678"))
+                .andExpect(jsonPath("$.items[0].version").value(2));
+    }
+
+    @Test
+    void review_PartialFailure() throws Exception {
+        List<ReviewItem> items = List.of(new ReviewItem("SNKTMOCH12345678", 2L), new ReviewItem("SNKTMOCH87654321", 0L));
+        when(reviewService.review(ReviewStatus.APPROVED, items)).thenReturn(ReviewResponse.of(List.of(
+                ReviewItemResult.updated(0, "SNKTMOCH12345678", 3L),
+                ReviewItemResult.failed(1, "SNKTMOCH87654321", "Version conflict: current version is 1"))));
+
+        mockMvc.perform(post("/api/v1/prescriptions/review")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ReviewRequest(ReviewStatus.APPROVED, items))))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.items[0].version").value(3))
+                .andExpect(jsonPath("$.items[1].error").value("Version conflict: current version is 1"));
+    }
+
+    @Test
+    void review_RejectsPendingAsADecision() throws Exception {
+        mockMvc.perform(post("/api/v1/prescriptions/review")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"decision\":\"PENDING\",\"prescriptions\":[{\"id\":\"P1\",\"version\":0}]}"))
+                .andExpect(status().isBadRequest());
+        verify(reviewService, never()).review(any(), anyList());
+    }
+
+    @Test
+    void exportPrescriptions() throws Exception {
+        PrescriptionExportQuery query = new PrescriptionExportQuery("MD12345", null,
+                LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 2));
+        byte[] zip = new byte[] { 'P', 'K', 3, 4 };
+        when(exportService.countPrescriptions(query)).thenReturn(2L);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(2).write(zip);
+            return null;
+        }).when(exportService).export(eq(query), eq(ExportFormat.ZIP), any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/prescriptions/export")
+                        .param("doctorRegNo", " MD12345 ")
+                        .param("from", "2026-03-01")
+                        .param("to", "2026-03-02"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/zip"))
+                .andExpect(header().string("Content-Disposition",
+                        "attachment; filename=\"prescriptions-2026-03-01-2026-03-02.zip\""))
+                .andExpect(content().bytes(zip));
+    }
+
+    @Test
+    void exportPrescriptions_NothingMatches() throws Exception {
+        when(exportService.countPrescriptions(any())).thenReturn(0L);
+
+        mockMvc.perform(get("/api/v1/prescriptions/export")
+                        .param("clinicName", "City Clinic")
+                        .param("from", "2026-03-01")
+                        .param("to", "2026-03-01")
+                        .param("format", "pdf"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void exportPrescriptions_RejectsOversizedOrUnscopedExports() throws Exception {
+        when(exportService.countPrescriptions(any())).thenReturn(101L);
+
+        mockMvc.perform(get("/api/v1/prescriptions/export")
+                        .param("doctorRegNo", "MD12345")
+                        .param("from", "2026-01-01")
+                        .param("to", "2026-12-31"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/prescriptions/export")
+                        .param("from", "2026-03-01")
+                        .param("to", "2026-03-01"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/prescriptions/export")
+                        .param("doctorRegNo", "MD12345")
+                        .param("from", "2026-03-01")
+                        .param("to", "2026-03-01")
+                        .param("format", "tar"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportPrescriptions_RejectsRangesThatMayBeArchived() throws Exception {
+        when(exportService.getEarliestExportableDate()).thenReturn(Optional.of(LocalDate.of(2025, 3, 2)));
+
+        mockMvc.perform(get("/api/v1/prescriptions/export")
+                        .param("doctorRegNo", "MD12345")
+                        .param("from", "2025-03-01")
+                        .param("to", "2026-03-01"))
+                .andExpect(status().isBadRequest())
+                .andExpect(status().reason("Prescriptions created before 2025-03-02 may have been archived and "
+                        + "cannot be exported; start the range on or after 2025-03-02"));
+
+        verify(exportService, never()).countPrescriptions(any());
     }
 }
@@ -0,0 +1,175 @@
+package com.sankatmochan.prescription_service.idempotency;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.sankatmochan.prescription_service.model.Prescription;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IdempotencyKeysTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger creates = new AtomicInteger();
+    private final Map<String, Prescription> table = new ConcurrentHashMap<>();
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotencyKeys keys;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        keys = keys(new LocalIdempotencyRecords(), Duration.ofSeconds(5));
+    }
+
+    private IdempotencyKeys keys(IdempotencyRecords records, Duration inFlightWait) {
+        Ticker ticker = nanos::get;
+        return new IdempotencyKeys(meterRegistry, records, 100, Duration.ofHours(24), inFlightWait, ticker);
+    }
+
+    private Prescription create() {
+        Prescription p = new Prescription();
+        p.setId("SNKTMOCH" + String.format("%08d", creates.incrementAndGet()));
+        table.put(p.getId(), p);
+        return p;
+    }
+
+    private IdempotencyKeys.Result send(String key, String fingerprint) {
+        return keys.createOnce(key, fingerprint, this::create, table::get);
+    }
+
+    private double outcome(String outcome) {
+        return meterRegistry.get("prescription.idempotency.requests").tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    void replaysTheFirstCreateForARetry() {
+        IdempotencyKeys.Result first = send("K1", "F1");
+        IdempotencyKeys.Result retry = send("K1", "F1");
+
+        assertFalse(first.replayed());
+        assertTrue(retry.replayed());
+        assertEquals(first.prescription().getId(), retry.prescription().getId());
+        assertEquals(1, creates.get());
+        assertEquals(1.0, outcome("replayed"));
+    }
+
+    @Test
+    void refusesAKeyReusedForADifferentRequest() {
+        send("K1", "F1");
+
+        assertThrows(IdempotencyKeyReusedException.class, () -> send("K1", "F2"));
+        assertEquals(1, creates.get());
+        assertEquals(1.0, outcome("reused"));
+    }
+
+    @Test
+    void concurrentRequestsWithTheSameKeyCreateOnce() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Prescription> slowCreate = () -> {
+            creating.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return create();
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<IdempotencyKeys.Result> first = executor.submit(
+                    () -> keys.createOnce("K1", "F1", slowCreate, table::get));
+            assertTrue(creating.await(5, TimeUnit.SECONDS));
+            Future<IdempotencyKeys.Result> second = executor.submit(() -> send("K1", "F1"));
+            Future<IdempotencyKeys.Result> third = executor.submit(() -> send("K1", "F1"));
+            release.countDown();
+
+            String id = first.get(5, TimeUnit.SECONDS).prescription().getId();
+            assertEquals(id, second.get(5, TimeUnit.SECONDS).prescription().getId());
+            assertEquals(id, third.get(5, TimeUnit.SECONDS).prescription().getId());
+            assertEquals(1, creates.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void givesUpWaitingOnALongRunningFirstRequest() throws Exception {
+        keys = keys(new LocalIdempotencyRecords(), Duration.ofMillis(50));
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<IdempotencyKeys.Result> first = executor.submit(() -> keys.createOnce("K1", "F1", () -> {
+                creating.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return create();
+            }, table::get));
+            assertTrue(creating.await(5, TimeUnit.SECONDS));
+
+            assertThrows(IdempotencyKeyInProgressException.class, () -> send("K1", "F1"));
+
+            release.countDown();
+            assertFalse(first.get(5, TimeUnit.SECONDS).replayed());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void aFailedCreateLeavesTheKeyFreeForTheRetry() {
+        IdempotencyRecords records = mock(IdempotencyRecords.class);
+        keys = keys(records, Duration.ofSeconds(5));
+
+        assertThrows(IllegalStateException.class, () -> keys.createOnce("K1", "F1", () -> {
+            throw new IllegalStateException("database down");
+        }, table::get));
+        verify(records).release("K1");
+
+        assertFalse(send("K1", "F1").replayed());
+        verify(records).complete(eq("K1"), any());
+    }
+
+    @Test
+    void replaysACreateRecordedByAnotherReplica() {
+        create();
+        IdempotencyRecords records = mock(IdempotencyRecords.class);
+        when(records.claim("K1", "F1")).thenReturn("SNKTMOCH00000001");
+        keys = keys(records, Duration.ofSeconds(5));
+
+        IdempotencyKeys.Result result = send("K1", "F1");
+
+        assertTrue(result.replayed());
+        assertEquals("SNKTMOCH00000001", result.prescription().getId());
+        assertEquals(1, creates.get());
+    }
+
+    @Test
+    void forgetsKeysAfterTheTtl() {
+        send("K1", "F1");
+        nanos.addAndGet(Duration.ofHours(25).toNanos());
+
+        assertFalse(send("K1", "F1").replayed());
+        assertEquals(2, creates.get());
+    }
+}
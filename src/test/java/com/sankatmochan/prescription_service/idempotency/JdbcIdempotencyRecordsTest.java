@@ -0,0 +1,93 @@
+package com.sankatmochan.prescription_service.idempotency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcIdempotencyRecordsTest {
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private JdbcIdempotencyRecords records;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:idempotency_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        records = records();
+    }
+
+    // A second replica over the same table
+    private JdbcIdempotencyRecords records() {
+        JdbcIdempotencyRecords replica = new JdbcIdempotencyRecords(jdbc, Duration.ofHours(24), Duration.ofMillis(200),
+                Duration.ofMinutes(1));
+        replica.start();
+        return replica;
+    }
+
+    @AfterEach
+    void tearDown() {
+        records.close();
+    }
+
+    @Test
+    void anotherReplicaGetsTheCompletedCreate() {
+        assertNull(records.claim("K1", "F1"));
+        records.complete("K1", "SNKTMOCH00000001");
+
+        try (JdbcIdempotencyRecords other = records()) {
+            assertEquals("SNKTMOCH00000001", other.claim("K1", "F1"));
+            assertThrows(IdempotencyKeyReusedException.class, () -> other.claim("K1", "F2"));
+        }
+    }
+
+    @Test
+    void anUnfinishedClaimIsInProgress() {
+        assertNull(records.claim("K1", "F1"));
+
+        assertThrows(IdempotencyKeyInProgressException.class, () -> records.claim("K1", "F1"));
+    }
+
+    @Test
+    void aReleasedKeyCanBeClaimedAgain() {
+        assertNull(records.claim("K1", "F1"));
+        records.release("K1");
+
+        assertNull(records.claim("K1", "F1"));
+    }
+
+    @Test
+    void takesOverAClaimLeftByADeadReplica() {
+        assertNull(records.claim("K1", "F1"));
+        jdbc.update("update prescription_idempotency_keys set created_at = ?",
+                Timestamp.from(Instant.now().minus(Duration.ofMinutes(5))));
+
+        assertNull(records.claim("K1", "F1"));
+        // The takeover renewed the claim, so the next caller waits again
+        assertThrows(IdempotencyKeyInProgressException.class, () -> records.claim("K1", "F1"));
+    }
+
+    @Test
+    void prunesExpiredKeys() {
+        assertNull(records.claim("K1", "F1"));
+        records.complete("K1", "SNKTMOCH00000001");
+        assertNull(records.claim("K2", "F2"));
+        records.complete("K2", "SNKTMOCH00000002");
+        jdbc.update("update prescription_idempotency_keys set created_at = ? where idempotency_key = 'K1'",
+                Timestamp.from(Instant.now().minus(Duration.ofHours(25))));
+
+        records.prune();
+
+        assertEquals(1, jdbc.queryForObject("select count(*) from prescription_idempotency_keys", Integer.class));
+        assertNull(records.claim("K1", "F3"));
+    }
+}
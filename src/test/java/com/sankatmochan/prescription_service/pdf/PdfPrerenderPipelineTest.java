@@ -0,0 +1,160 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import com.sankatmochan.prescription_service.cache.PdfRenderCache;
+import com.sankatmochan.prescription_service.cache.PrescriptionFingerprint;
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PdfPrerenderPipelineTest {
+
+    @Mock
+    private PrescriptionRepository repository;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PrescriptionPdfRenderer renderer = spy(new PrescriptionPdfRenderer(new PdfTheme()));
+    private PdfRenderCache cache;
+    private PdfPrerenderPipeline pipeline;
+    private Prescription prescription;
+
+    @BeforeEach
+    void setUp() {
+        cache = new PdfRenderCache(registry, true, DataSize.ofMegabytes(4), DataSize.ofMegabytes(1), "",
+                DataSize.ofMegabytes(1));
+        prescription = new Prescription();
+        prescription.setId("SNKTMOCH12345678");
+        prescription.setPatientName("John Doe");
+        prescription.setDiagnosis("Viral Fever");
+        prescription.setDoctorName("Dr. Smith");
+        prescription.setClinicName("City Clinic");
+        prescription.setCreatedAt(LocalDateTime.now());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    private PdfPrerenderPipeline pipeline(int queueCapacity, int maxAttempts) {
+        return new PdfPrerenderPipeline(repository, renderer, cache,
+                new RenderGate(registry, 2, Duration.ofSeconds(1)), registry,
+                true, 1, queueCapacity, maxAttempts, Duration.ofMillis(10), Duration.ofMillis(10));
+    }
+
+    private double tasks(String outcome) {
+        return registry.get("prescription.pdf.prerender.tasks").tag("outcome", outcome).counter().count();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void rendersCreatedPrescriptionIntoCache() throws Exception {
+        when(repository.findById("SNKTMOCH12345678")).thenReturn(Optional.of(prescription));
+        pipeline = pipeline(10, 3);
+
+        pipeline.onPrescriptionChanged(
+                new PrescriptionChangedEvent("SNKTMOCH12345678", PrescriptionChangedEvent.Change.CREATED));
+
+        await(() -> tasks("rendered") == 1.0);
+        assertTrue(cache.contains("SNKTMOCH12345678", PrescriptionFingerprint.of(prescription, renderer.getLayoutTag())));
+        assertEquals(1, registry.get("prescription.pdf.prerender.lag").timer().count());
+    }
+
+    @Test
+    void ignoresPlainUpdates() {
+        pipeline = pipeline(10, 3);
+
+        pipeline.onPrescriptionChanged(
+                new PrescriptionChangedEvent("SNKTMOCH12345678", PrescriptionChangedEvent.Change.UPDATED));
+
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void skipsWhenAlreadyCached() throws Exception {
+        when(repository.findById("SNKTMOCH12345678")).thenReturn(Optional.of(prescription));
+        cache.put("SNKTMOCH12345678", PrescriptionFingerprint.of(prescription, renderer.getLayoutTag()), new byte[] { 1 });
+        pipeline = pipeline(10, 3);
+
+        pipeline.submit("SNKTMOCH12345678");
+
+        await(() -> tasks("skipped") == 1.0);
+        verify(renderer, never()).render(any(), any());
+    }
+
+    @Test
+    void retriesFailedRenders() throws Exception {
+        when(repository.findById("SNKTMOCH12345678")).thenReturn(Optional.of(prescription));
+        doThrow(new IllegalStateException("boom")).doCallRealMethod()
+                .when(renderer).render(any(Prescription.class), any(OutputStream.class));
+        pipeline = pipeline(10, 3);
+
+        pipeline.submit("SNKTMOCH12345678");
+
+        await(() -> tasks("rendered") == 1.0);
+        assertEquals(1.0, registry.get("prescription.pdf.prerender.retries").counter().count());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws Exception {
+        when(repository.findById("SNKTMOCH12345678")).thenReturn(Optional.of(prescription));
+        doThrow(new IllegalStateException("boom")).when(renderer).render(any(Prescription.class), any(OutputStream.class));
+        pipeline = pipeline(10, 2);
+
+        pipeline.submit("SNKTMOCH12345678");
+
+        await(() -> tasks("failed") == 1.0);
+        assertEquals(1.0, registry.get("prescription.pdf.prerender.retries").counter().count());
+        assertFalse(cache.contains("SNKTMOCH12345678", PrescriptionFingerprint.of(prescription, renderer.getLayoutTag())));
+    }
+
+    @Test
+    void dropsTasksWhenQueueStaysFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        when(repository.findById(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return Optional.empty();
+        });
+        pipeline = pipeline(1, 3);
+
+        assertTrue(pipeline.submit("A"));
+        started.await();
+        assertTrue(pipeline.submit("B"));
+        assertFalse(pipeline.submit("C"));
+
+        assertEquals(1.0, tasks("dropped"));
+        assertEquals(1, pipeline.getQueueDepth());
+        release.countDown();
+    }
+}
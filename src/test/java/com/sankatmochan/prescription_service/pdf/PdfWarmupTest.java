@@ -0,0 +1,26 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfWarmupTest {
+
+    @Test
+    void rendersTheConfiguredNumberOfTimes() {
+        assertEquals(2, new PdfWarmup(new PdfTheme(), 2).warmUp());
+        assertEquals(0, new PdfWarmup(new PdfTheme(), 0).warmUp());
+    }
+
+    @Test
+    void sampleIsACompletePrescription() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new PrescriptionPdfRenderer(new PdfTheme()).render(PdfWarmup.sample(), out);
+
+        assertTrue(out.size() > 0);
+        assertEquals("%PDF", out.toString().substring(0, 4));
+    }
+}
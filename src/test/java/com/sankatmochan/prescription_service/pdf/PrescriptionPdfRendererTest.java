@@ -0,0 +1,149 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfObject;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+import com.sankatmochan.prescription_service.model.Medication;
+import com.sankatmochan.prescription_service.model.Prescription;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrescriptionPdfRendererTest {
+
+    private Prescription prescription;
+
+    @BeforeEach
+    void setUp() {
+        prescription = new Prescription();
+        prescription.setId("SNKTMOCH12345678");
+        prescription.setPatientName("John Doe");
+        prescription.setAge(30);
+        prescription.setGender("Male");
+        prescription.setBp("120/80");
+        prescription.setDiagnosis("Viral Fever");
+        prescription.setAdvice("Rest");
+        prescription.setDoctorName("Dr. Smith");
+        prescription.setDoctorRegNo("MD12345");
+        prescription.setCreatedAt(LocalDateTime.of(2026, 3, 1, 10, 0));
+        prescription.setMedicationData(List.of(new Medication("Paracetamol", "500mg", "5 days")));
+    }
+
+    private static byte[] render(PrescriptionPdfRenderer renderer, Prescription p) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.render(p, out);
+        return out.toByteArray();
+    }
+
+    private static String text(byte[] pdf) throws Exception {
+        PdfReader reader = new PdfReader(pdf);
+        try {
+            StringBuilder text = new StringBuilder();
+            PdfTextExtractor extractor = new PdfTextExtractor(reader);
+            for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+                text.append(extractor.getTextFromPage(page)).append('\n');
+            }
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void fillsPrescriptionValuesIntoTheTemplate() throws Exception {
+        String text = text(render(new PrescriptionPdfRenderer(new PdfTheme()), prescription));
+
+        assertTrue(text.contains("SANKAT MOCHAN HEALTH"));
+        assertTrue(text.contains("John Doe"));
+        assertTrue(text.contains("120/80"));
+        assertTrue(text.contains("DIAGNOSIS: Viral Fever"));
+        assertTrue(text.contains("Paracetamol"));
+        assertTrue(text.contains("ADVICE / INSTRUCTIONS"));
+        assertTrue(text.contains("Generated by SMN Platform"));
+    }
+
+    @Test
+    void usesConfiguredBranding() throws Exception {
+        PdfBranding branding = new PdfBranding("CITY CARE CLINIC", "1 Park Street, Kolkata", "desk@citycare.example",
+                Color.decode("#1F4E79"), "CITY CARE", "Issued by City Care");
+
+        String text = text(render(new PrescriptionPdfRenderer(new PdfTheme(branding)), prescription));
+
+        assertTrue(text.contains("CITY CARE CLINIC"));
+        assertTrue(text.contains("desk@citycare.example"));
+        assertTrue(text.contains("Issued by City Care"));
+        assertFalse(text.contains("SANKAT MOCHAN"));
+    }
+
+    @Test
+    void rendersTheSameVersionToTheSameBytes() {
+        PrescriptionPdfRenderer renderer = new PrescriptionPdfRenderer(new PdfTheme());
+        prescription.setVersion(2L);
+        byte[] first = render(renderer, prescription);
+
+        assertArrayEquals(first, render(new PrescriptionPdfRenderer(new PdfTheme()), prescription));
+
+        prescription.setVersion(3L);
+        prescription.setUpdatedAt(LocalDateTime.of(2026, 3, 2, 9, 30));
+        assertFalse(Arrays.equals(first, render(renderer, prescription)));
+    }
+
+    @Test
+    void layoutTagFollowsBranding() {
+        PdfBranding branding = new PdfBranding("CITY CARE CLINIC", "1 Park Street, Kolkata", "desk@citycare.example",
+                Color.decode("#1F4E79"), "CITY CARE", "Issued by City Care");
+
+        assertEquals(new PrescriptionPdfRenderer(new PdfTheme()).getLayoutTag(),
+                new PrescriptionPdfRenderer(new PdfTheme()).getLayoutTag());
+        assertNotEquals(new PrescriptionPdfRenderer(new PdfTheme()).getLayoutTag(),
+                new PrescriptionPdfRenderer(new PdfTheme(branding)).getLayoutTag());
+    }
+
+    @Test
+    void embedsNoFonts() throws Exception {
+        PdfReader reader = new PdfReader(render(new PrescriptionPdfRenderer(new PdfTheme()), prescription));
+        try {
+            for (int i = 1; i < reader.getXrefSize(); i++) {
+                PdfObject object = reader.getPdfObject(i);
+                if (object != null && object.isDictionary()) {
+                    PdfDictionary dictionary = (PdfDictionary) object;
+                    assertNull(dictionary.get(PdfName.FONTFILE2), "embedded font " + dictionary.get(PdfName.FONTNAME));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void sharedTemplateRendersConcurrently() throws Exception {
+        PrescriptionPdfRenderer renderer = new PrescriptionPdfRenderer(new PdfTheme());
+        String expected = text(render(renderer, prescription));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> renders = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                renders.add(pool.submit(() -> render(renderer, prescription)));
+            }
+            for (Future<byte[]> render : renders) {
+                assertEquals(expected, text(render.get()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
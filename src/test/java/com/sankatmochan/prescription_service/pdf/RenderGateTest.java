@@ -0,0 +1,116 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderGateTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void rejectsWhenAllSlotsStayBusy() {
+        RenderGate gate = new RenderGate(registry, 1, Duration.ofMillis(20));
+
+        try (RenderGate.Permit held = gate.acquire()) {
+            RenderCapacityExceededException e = assertThrows(RenderCapacityExceededException.class, gate::acquire);
+            assertEquals(Duration.ofSeconds(1), e.getRetryAfter());
+            assertEquals(1.0, registry.get("prescription.pdf.render.active").gauge().value());
+        }
+
+        assertEquals(1.0, registry.get("prescription.pdf.render.rejected").counter().count());
+        assertEquals(2, registry.get("prescription.pdf.render.queue.wait").timer().count());
+    }
+
+    @Test
+    void closingPermitTwiceReleasesOnce() {
+        RenderGate gate = new RenderGate(registry, 1, Duration.ofMillis(20));
+
+        RenderGate.Permit permit = gate.acquire();
+        permit.close();
+        permit.close();
+
+        try (RenderGate.Permit first = gate.acquire()) {
+            assertThrows(RenderCapacityExceededException.class, gate::acquire);
+        }
+    }
+
+    @Test
+    void waiterGetsSlotWhenReleased() throws Exception {
+        RenderGate gate = new RenderGate(registry, 1, Duration.ofSeconds(5));
+        RenderGate.Permit held = gate.acquire();
+
+        Thread waiter = Thread.ofVirtual().start(() -> gate.acquire().close());
+        while (registry.get("prescription.pdf.render.waiting").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+        held.close();
+        waiter.join(5_000);
+
+        assertFalse(waiter.isAlive());
+        assertEquals(0.0, registry.get("prescription.pdf.render.rejected").counter().count());
+    }
+
+    @Test
+    void defaultsToOneSlotPerProcessor() {
+        RenderGate gate = new RenderGate(registry, 0, Duration.ofSeconds(1));
+
+        assertEquals(Runtime.getRuntime().availableProcessors(), gate.getPermits());
+    }
+
+    @Test
+    void shedsDownloadsWhileRendersQueueTooLong() throws Exception {
+        RenderGate gate = new RenderGate(registry, 1, Duration.ofSeconds(5), Duration.ofMillis(1));
+
+        // One render that waited 50 ms for its slot
+        RenderGate.Permit held = gate.acquire();
+        Thread slow = Thread.ofVirtual().start(() -> gate.acquire().close());
+        awaitWaiters(1);
+        Thread.sleep(50);
+        held.close();
+        slow.join(5_000);
+
+        // Renders are queueing again: downloads are shed, other renders still wait their turn
+        held = gate.acquire();
+        Thread queued = Thread.ofVirtual().start(() -> gate.acquire().close());
+        awaitWaiters(1);
+        RenderCapacityExceededException e = assertThrows(RenderCapacityExceededException.class, gate::acquireOrShed);
+        assertEquals(Duration.ofSeconds(5), e.getRetryAfter());
+        held.close();
+        queued.join(5_000);
+
+        // Nobody queueing any more
+        gate.acquireOrShed().close();
+        assertEquals(1.0, registry.get("prescription.pdf.render.shed").counter().count());
+        assertEquals(0.0, registry.get("prescription.pdf.render.rejected").counter().count());
+    }
+
+    @Test
+    void doesNotShedWithoutAThreshold() throws Exception {
+        RenderGate gate = new RenderGate(registry, 1, Duration.ofSeconds(5));
+        RenderGate.Permit held = gate.acquire();
+        Thread slow = Thread.ofVirtual().start(() -> gate.acquire().close());
+        awaitWaiters(1);
+        Thread.sleep(20);
+        held.close();
+        slow.join(5_000);
+
+        held = gate.acquire();
+        Thread waiter = Thread.ofVirtual().start(() -> gate.acquireOrShed().close());
+        awaitWaiters(1);
+        held.close();
+        waiter.join(5_000);
+
+        assertFalse(waiter.isAlive());
+        assertEquals(0.0, registry.get("prescription.pdf.render.shed").counter().count());
+    }
+
+    private void awaitWaiters(int waiters) {
+        while (registry.get("prescription.pdf.render.waiting").gauge().value() < waiters) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.sankatmochan.prescription_service.pdf;
+
+import com.sankatmochan.prescription_service.model.Medication;
+import com.sankatmochan.prescription_service.model.Prescription;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PrescriptionPdfRenderer renderer;
+    private Prescription prescription;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        renderer = new PrescriptionPdfRenderer(new PdfTheme(), new RenderMetrics(meterRegistry, true));
+        prescription = new Prescription();
+        prescription.setId("SNKTMOCH12345678");
+        prescription.setPatientName("John Doe");
+        prescription.setDoctorName("Dr. Smith");
+        prescription.setDoctorRegNo("MD12345");
+        prescription.setCreatedAt(LocalDateTime.of(2026, 3, 1, 10, 0));
+        prescription.setMedicationData(List.of(
+                new Medication("Paracetamol", "500mg", "5 days"),
+                new Medication("ORS", "1 sachet", "3 days")));
+    }
+
+    @Test
+    void recordsEverySectionSizeAndRowsOfASuccessfulRender() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        renderer.render(prescription, out);
+
+        assertEquals(1, meterRegistry.get("prescription.pdf.render.duration").tag("outcome", "success").timer().count());
+        for (RenderMetrics.Section section : RenderMetrics.Section.values()) {
+            assertEquals(1, meterRegistry.get("prescription.pdf.render.section")
+                    .tag("section", section.name().toLowerCase())
+                    .tag("outcome", "success")
+                    .timer().count());
+        }
+        assertEquals(out.size(), meterRegistry.get("prescription.pdf.render.size")
+                .tag("outcome", "success").summary().totalAmount());
+        assertEquals(2, meterRegistry.get("prescription.pdf.render.medications")
+                .tag("outcome", "success").summary().totalAmount());
+        assertTrue(meterRegistry.get("prescription.pdf.render.allocated")
+                .tag("outcome", "success").summary().totalAmount() > 0);
+    }
+
+    @Test
+    void failedRenderIsTaggedAsError() {
+        prescription.setDoctorName(null);
+
+        assertThrows(NullPointerException.class, () -> renderer.render(prescription, new ByteArrayOutputStream()));
+
+        assertEquals(1, meterRegistry.get("prescription.pdf.render.duration").tag("outcome", "error").timer().count());
+        assertEquals(0, meterRegistry.get("prescription.pdf.render.duration").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void rendersOnVirtualThreadsAreCountedAsUnmeasured() throws InterruptedException {
+        Thread.ofVirtual().start(() -> renderer.render(prescription, new ByteArrayOutputStream())).join();
+
+        assertEquals(1, meterRegistry.get("prescription.pdf.render.duration").tag("outcome", "success").timer().count());
+        assertEquals(0, meterRegistry.get("prescription.pdf.render.allocated").tag("outcome", "success").summary().count());
+        assertEquals(1.0, meterRegistry.get("prescription.pdf.render.allocated.unmeasured").counter().count());
+    }
+
+    @Test
+    void allocationIsNotMeasuredUnlessEnabled() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new PrescriptionPdfRenderer(new PdfTheme(), new RenderMetrics(registry, false))
+                .render(prescription, new ByteArrayOutputStream());
+
+        assertNull(registry.find("prescription.pdf.render.allocated").summary());
+    }
+}
@@ -0,0 +1,106 @@
+package com.sankatmochan.prescription_service.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadRateLimitInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // One download a second per client, burst of 2
+    private final DownloadRateLimitInterceptor interceptor = new DownloadRateLimitInterceptor(
+            new DownloadRateLimiter(meterRegistry, new TokenBuckets(60, 2, 100), new TokenBuckets(20, 1, 100),
+                    "X-API-Key"));
+
+    private static MockHttpServletRequest request(String id, String apiKey, String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/prescriptions/" + id + "/download");
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("id", id));
+        request.setRemoteAddr(address);
+        if (apiKey != null) {
+            request.addHeader("X-API-Key", apiKey);
+        }
+        return request;
+    }
+
+    private MockHttpServletResponse download(String id, String apiKey, String address) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean proceed = interceptor.preHandle(request(id, apiKey, address), response, new Object());
+        assertEquals(proceed, response.getStatus() == 200);
+        return response;
+    }
+
+    private double limited(String limit) {
+        return meterRegistry.get("prescription.download.rate.limited").tag("limit", limit).counter().count();
+    }
+
+    @Test
+    void leavesThePrescriptionLimitToTheRender() {
+        assertEquals(200, download("P1", "pharmacy", "10.0.0.1").getStatus());
+        assertEquals(200, download("P1", "pharmacy", "10.0.0.1").getStatus());
+
+        assertEquals(0.0, limited("prescription"));
+    }
+
+    @Test
+    void limitsAClientAcrossPrescriptions() {
+        assertEquals(200, download("P1", "pharmacy", "10.0.0.1").getStatus());
+        assertEquals(200, download("P2", "pharmacy", "10.0.0.1").getStatus());
+
+        MockHttpServletResponse refused = download("P3", "pharmacy", "10.0.0.1");
+        assertEquals(429, refused.getStatus());
+        assertEquals("1", refused.getHeader("Retry-After"));
+        assertEquals(1.0, limited("client"));
+
+        // Another key behind the same address has its own budget
+        assertEquals(200, download("P4", "clinic", "10.0.0.1").getStatus());
+    }
+
+    @Test
+    void clientsWithoutAKeyAreLimitedByAddress() {
+        download("P1", null, "10.0.0.1");
+        download("P2", null, "10.0.0.1");
+
+        assertEquals(429, download("P3", null, "10.0.0.1").getStatus());
+        assertEquals(200, download("P4", null, "10.0.0.2").getStatus());
+    }
+
+    @Test
+    void anEmptyClientHeaderLimitsByAddressAlone() {
+        DownloadRateLimitInterceptor byAddress = new DownloadRateLimitInterceptor(
+                new DownloadRateLimiter(meterRegistry, new TokenBuckets(60, 1, 100), null, ""));
+        assertTrue(byAddress.preHandle(request("P1", "first", "10.0.0.1"), new MockHttpServletResponse(),
+                new Object()));
+
+        // A new key from the same address does not buy a new budget
+        assertFalse(byAddress.preHandle(request("P2", "second", "10.0.0.1"), new MockHttpServletResponse(),
+                new Object()));
+    }
+
+    @Test
+    void theAsyncDispatchOfADownloadIsNotChargedAgain() {
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = request("P1", "pharmacy", "10.0.0.1");
+            request.setDispatcherType(DispatcherType.ASYNC);
+            assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), new Object()));
+        }
+        assertEquals(200, download("P1", "pharmacy", "10.0.0.1").getStatus());
+    }
+
+    @Test
+    void aDisabledLimitLetsEverythingThrough() {
+        DownloadRateLimitInterceptor unlimited = new DownloadRateLimitInterceptor(
+                new DownloadRateLimiter(meterRegistry, null, null, "X-API-Key"));
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(unlimited.preHandle(request("P1", null, "10.0.0.1"), new MockHttpServletResponse(),
+                    new Object()));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.sankatmochan.prescription_service.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // One download a second per client, burst of 2; one render every 3 seconds per prescription, burst of 1
+    private final DownloadRateLimiter limiter = new DownloadRateLimiter(meterRegistry, new TokenBuckets(60, 2, 100),
+            new TokenBuckets(20, 1, 100), "");
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/prescriptions/P1/download");
+        request.setRemoteAddr("10.0.0.1");
+        return request;
+    }
+
+    @Test
+    void limitsRepeatedRendersOfOnePrescription() {
+        MockHttpServletRequest first = request();
+        assertEquals(Duration.ZERO, limiter.takeClient(first));
+        limiter.takeRender(first, "P1");
+
+        MockHttpServletRequest second = request();
+        assertEquals(Duration.ZERO, limiter.takeClient(second));
+        DownloadRateLimitedException refused = assertThrows(DownloadRateLimitedException.class,
+                () -> limiter.takeRender(second, "P1"));
+        assertTrue(refused.getRetryAfter().compareTo(Duration.ofSeconds(2)) > 0);
+        assertEquals(1.0, meterRegistry.get("prescription.download.rate.limited").tag("limit", "prescription")
+                .counter().count());
+
+        // Other prescriptions have their own budget
+        limiter.takeRender(second, "P2");
+    }
+
+    @Test
+    void aRefusedRenderGivesTheClientItsTokenBack() {
+        MockHttpServletRequest first = request();
+        limiter.takeClient(first);
+        limiter.takeRender(first, "P1");
+
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest again = request();
+            assertEquals(Duration.ZERO, limiter.takeClient(again));
+            assertThrows(DownloadRateLimitedException.class, () -> limiter.takeRender(again, "P1"));
+        }
+
+        // Only the download that rendered is on the client's account
+        assertEquals(Duration.ZERO, limiter.takeClient(request()));
+        assertFalse(limiter.takeClient(request()).isZero());
+    }
+}
@@ -0,0 +1,89 @@
+package com.sankatmochan.prescription_service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketsTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    // 60 per minute: one token a second, three at once
+    private final TokenBuckets buckets = new TokenBuckets(60, 3, 100, nanos::get);
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    void allowsABurstThenRefillsAtTheRate() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Duration.ZERO, buckets.tryTake("A"));
+        }
+        assertEquals(Duration.ofSeconds(1), buckets.tryTake("A"));
+
+        advance(Duration.ofMillis(400));
+        assertEquals(Duration.ofMillis(600), buckets.tryTake("A"));
+
+        advance(Duration.ofMillis(600));
+        assertEquals(Duration.ZERO, buckets.tryTake("A"));
+        assertEquals(Duration.ofSeconds(1), buckets.tryTake("A"));
+    }
+
+    @Test
+    void refusedRequestsDoNotDrainTheBucketFurther() {
+        for (int i = 0; i < 3; i++) {
+            buckets.tryTake("A");
+        }
+        for (int i = 0; i < 10; i++) {
+            assertFalse(buckets.tryTake("A").isZero());
+        }
+
+        advance(Duration.ofSeconds(1));
+        assertEquals(Duration.ZERO, buckets.tryTake("A"));
+    }
+
+    @Test
+    void aRefundedTokenCanBeTakenAgainButDoesNotOverfill() {
+        for (int i = 0; i < 3; i++) {
+            buckets.tryTake("A");
+        }
+        buckets.refund("A");
+        assertEquals(Duration.ZERO, buckets.tryTake("A"));
+        assertFalse(buckets.tryTake("A").isZero());
+
+        buckets.refund("B");
+        advance(Duration.ofSeconds(3));
+        buckets.refund("A");
+        buckets.refund("A");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Duration.ZERO, buckets.tryTake("A"));
+        }
+        assertFalse(buckets.tryTake("A").isZero());
+    }
+
+    @Test
+    void keysHaveTheirOwnBuckets() {
+        for (int i = 0; i < 3; i++) {
+            buckets.tryTake("A");
+        }
+
+        assertFalse(buckets.tryTake("A").isZero());
+        assertEquals(Duration.ZERO, buckets.tryTake("B"));
+    }
+
+    @Test
+    void anIdleBucketIsFullAgain() {
+        for (int i = 0; i < 3; i++) {
+            buckets.tryTake("A");
+        }
+
+        advance(Duration.ofMinutes(5));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Duration.ZERO, buckets.tryTake("A"));
+        }
+        assertFalse(buckets.tryTake("A").isZero());
+    }
+}
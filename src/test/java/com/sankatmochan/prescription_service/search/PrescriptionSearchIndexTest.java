@@ -0,0 +1,153 @@
+package com.sankatmochan.prescription_service.search;
+
+import com.sankatmochan.prescription_service.dto.SearchHit;
+import com.sankatmochan.prescription_service.dto.SearchPage;
+import com.sankatmochan.prescription_service.model.Medication;
+import com.sankatmochan.prescription_service.model.Prescription;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrescriptionSearchIndexTest {
+
+    private PrescriptionSearchIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        index = new PrescriptionSearchIndex(new SimpleMeterRegistry(), "", Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        index.close();
+    }
+
+    private static Prescription prescription(String id, String diagnosis, String notes, String regNo,
+                                             LocalDateTime createdAt) {
+        Prescription p = new Prescription();
+        p.setId(id);
+        p.setDiagnosis(diagnosis);
+        p.setClinicalNotes(notes);
+        p.setDoctorName("Dr. Smith");
+        p.setDoctorRegNo(regNo);
+        p.setCreatedAt(createdAt);
+        return p;
+    }
+
+    private SearchPage search(String text) {
+        return index.search(new PrescriptionSearchQuery(text, null, null, null, 0, 20));
+    }
+
+    private static List<String> ids(SearchPage page) {
+        return page.items().stream().map(SearchHit::id).toList();
+    }
+
+    @Test
+    void ranksDiagnosisMatchesAboveNoteMentions() {
+        LocalDateTime now = LocalDateTime.now();
+        index.index(prescription("A", "Viral Fever", "Rule out tuberculosis next visit", "MD1", now));
+        index.index(prescription("B", "Pulmonary Tuberculosis", "Persistent cough", "MD1", now.minusDays(1)));
+        index.index(prescription("C", "Migraine", "Headache", "MD1", now));
+
+        SearchPage page = search("tuberculosis");
+
+        assertEquals(List.of("B", "A"), ids(page));
+        assertEquals(2, page.totalHits());
+        assertTrue(page.totalHitsExact());
+        assertEquals("Pulmonary Tuberculosis", page.items().get(0).diagnosis());
+        assertEquals(now.minusDays(1), page.items().get(0).createdAt());
+    }
+
+    @Test
+    void matchesMedicationNamesAndStemmedTerms() {
+        Prescription p = prescription("A", "Viral Fevers", null, "MD1", LocalDateTime.now());
+        p.setMedicationData(List.of(new Medication("Paracetamol", "500mg", "5 days")));
+        index.index(p);
+
+        assertEquals(List.of("A"), ids(search("paracetamol")));
+        assertEquals(List.of("A"), ids(search("fever")));
+        assertEquals(List.of(), ids(search("500mg")));
+    }
+
+    @Test
+    void filtersByDoctorAndDateRange() {
+        index.index(prescription("A", "Fever", null, "MD1", LocalDateTime.of(2026, 3, 1, 10, 0)));
+        index.index(prescription("B", "Fever", null, "md2", LocalDateTime.of(2026, 3, 2, 23, 59)));
+        index.index(prescription("C", "Fever", null, "MD2", LocalDateTime.of(2026, 3, 3, 0, 0)));
+
+        SearchPage byDoctor = index.search(new PrescriptionSearchQuery("fever", " MD2 ", null, null, 0, 20));
+        SearchPage byDate = index.search(new PrescriptionSearchQuery("fever", null,
+                LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 2), 0, 20));
+
+        assertEquals(List.of("C", "B"), ids(byDoctor));
+        assertEquals(List.of("B", "A"), ids(byDate));
+    }
+
+    @Test
+    void reindexReplacesPreviousVersionAndDeleteRemovesIt() {
+        Prescription p = prescription("A", "Fever", null, "MD1", LocalDateTime.now());
+        index.index(p);
+        p.setDiagnosis("Migraine");
+        index.index(p);
+
+        assertEquals(List.of(), ids(search("fever")));
+        assertEquals(List.of("A"), ids(search("migraine")));
+        assertEquals(1, index.documentCount());
+
+        index.delete("A");
+
+        assertEquals(List.of(), ids(search("migraine")));
+    }
+
+    @Test
+    void pagesThroughResults() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 5; i++) {
+            index.index(prescription("P" + i, "Fever", null, "MD1", now.minusDays(i)));
+        }
+
+        SearchPage second = index.search(new PrescriptionSearchQuery("fever", null, null, null, 1, 2));
+
+        assertEquals(List.of("P2", "P3"), ids(second));
+        assertEquals(5, second.totalHits());
+    }
+
+    @Test
+    void rebuildReplacesIndexContents() {
+        index.index(prescription("STALE", "Fever", null, "MD1", LocalDateTime.now()));
+
+        long count = index.rebuild(List.of(
+                List.of(prescription("A", "Fever", null, "MD1", LocalDateTime.now())),
+                List.of(prescription("B", "Fever", null, "MD1", LocalDateTime.now()))));
+
+        assertEquals(2, count);
+        assertEquals(List.of("A", "B"), ids(search("fever")).stream().sorted().toList());
+    }
+
+    @Test
+    void diskIndexSurvivesRestart(@TempDir Path tempDir) throws Exception {
+        PrescriptionSearchIndex onDisk = new PrescriptionSearchIndex(new SimpleMeterRegistry(), tempDir.toString(),
+                Duration.ofMinutes(1));
+        onDisk.index(prescription("A", "Fever", null, "MD1", LocalDateTime.now()));
+        onDisk.close();
+
+        PrescriptionSearchIndex reopened = new PrescriptionSearchIndex(new SimpleMeterRegistry(), tempDir.toString(),
+                Duration.ofMinutes(1));
+        try {
+            assertEquals(1, reopened.documentCount());
+            assertEquals(List.of("A"), ids(reopened.search(new PrescriptionSearchQuery("fever", null, null, null, 0, 20))));
+        } finally {
+            reopened.close();
+        }
+    }
+}
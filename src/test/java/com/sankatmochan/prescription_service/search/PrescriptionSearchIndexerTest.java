@@ -0,0 +1,137 @@
+package com.sankatmochan.prescription_service.search;
+
+import com.sankatmochan.prescription_service.cache.CacheInvalidationChannel;
+import com.sankatmochan.prescription_service.dto.SearchHit;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PrescriptionSearchIndexerTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 9, 0);
+
+    @Mock
+    private PrescriptionRepository repository;
+
+    @TempDir
+    private Path indexDirectory;
+
+    private final RecordingChannel channel = new RecordingChannel();
+
+    private PrescriptionSearchIndex openIndex() throws Exception {
+        return new PrescriptionSearchIndex(new SimpleMeterRegistry(), indexDirectory.toString(), Duration.ofMinutes(1));
+    }
+
+    private PrescriptionSearchIndexer indexer(PrescriptionSearchIndex index) {
+        return new PrescriptionSearchIndexer(repository, index, channel, 500, Duration.ofMinutes(10));
+    }
+
+    private static Prescription prescription(String id, String diagnosis, LocalDateTime createdAt) {
+        Prescription p = new Prescription();
+        p.setId(id);
+        p.setDiagnosis(diagnosis);
+        p.setCreatedAt(createdAt);
+        return p;
+    }
+
+    private static List<String> search(PrescriptionSearchIndex index, String text) {
+        return index.search(new PrescriptionSearchQuery(text, null, null, null, 0, 20)).items().stream()
+                .map(SearchHit::id).sorted().toList();
+    }
+
+    @Test
+    void reindexesChangesAnnouncedByOtherReplicas() throws Exception {
+        PrescriptionSearchIndex index = openIndex();
+        try {
+            indexer(index);
+            when(repository.findById("A")).thenReturn(Optional.of(prescription("A", "Fever", T0)));
+
+            channel.listener.accept("A");
+
+            assertEquals(List.of("A"), search(index, "fever"));
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    void catchesUpOnRowsChangedSinceTheLastCommitInsteadOfRebuilding() throws Exception {
+        PrescriptionSearchIndex before = openIndex();
+        before.index(prescription("A", "Fever", T0));
+        before.close();
+        // Changed on another replica while this one was down; the count alone would not show it
+        Prescription changed = prescription("A", "Migraine", T0);
+        changed.setUpdatedAt(T0.plusHours(1));
+
+        PrescriptionSearchIndex index = openIndex();
+        try {
+            assertEquals(Optional.of(T0), index.changedThrough());
+            when(repository.findChangedSince(eq(T0.minusMinutes(10)), eq(""), any())).thenReturn(List.of(changed));
+            when(repository.count()).thenReturn(1L);
+
+            indexer(index).synchronize();
+
+            assertEquals(List.of("A"), search(index, "migraine"));
+            assertEquals(List.of(), search(index, "fever"));
+            assertEquals(Optional.of(T0.plusHours(1)), index.changedThrough());
+            verify(repository, never()).findByIdGreaterThanOrderByIdAsc(any(), any());
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    void rebuildsWhenRowsWereDeletedMeanwhile() throws Exception {
+        PrescriptionSearchIndex before = openIndex();
+        before.index(prescription("A", "Fever", T0));
+        before.index(prescription("B", "Fever", T0));
+        before.close();
+
+        PrescriptionSearchIndex index = openIndex();
+        try {
+            when(repository.findChangedSince(any(), eq(""), any())).thenReturn(List.of());
+            when(repository.count()).thenReturn(1L);
+            when(repository.findByIdGreaterThanOrderByIdAsc(eq(""), any()))
+                    .thenReturn(List.of(prescription("B", "Fever", T0)));
+
+            indexer(index).synchronize();
+
+            assertEquals(List.of("B"), search(index, "fever"));
+        } finally {
+            index.close();
+        }
+    }
+
+    private static final class RecordingChannel implements CacheInvalidationChannel {
+        private Consumer<String> listener;
+
+        @Override
+        public void publish(String prescriptionId) {
+        }
+
+        @Override
+        public void subscribe(Consumer<String> listener) {
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MedicationDataMigrationTest {
+
+    private JdbcTemplate jdbc;
+    private ApplicationEventPublisher eventPublisher;
+    private MedicationDataMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:medication_migration_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table prescriptions (id varchar(50) primary key, medication_data varchar(4000))");
+        jdbc.execute("create table prescription_medications (prescription_id varchar(50), line_no int, "
+                + "name varchar(255), name_key varchar(255), dosage varchar(255), duration varchar(255))");
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        migration = new MedicationDataMigration(jdbc, JsonMapper.builder().build(),
+                new DataSourceTransactionManager(dataSource), eventPublisher);
+    }
+
+    @Test
+    void movesJsonMedicationsIntoRows() {
+        jdbc.update("insert into prescriptions values (?, ?)", "A",
+                "[{\"name\":\" Paracetamol\",\"dosage\":\"500mg\",\"duration\":\"5 days\"},{\"name\":\"ORS\",\"dosage\":1}]");
+        jdbc.update("insert into prescriptions values (?, ?)", "B", null);
+
+        migration.run(null);
+
+        List<Map<String, Object>> rows = jdbc.queryForList(
+                "select line_no, name, name_key, dosage, duration from prescription_medications "
+                        + "where prescription_id = 'A' order by line_no");
+        assertEquals(2, rows.size());
+        assertEquals(" Paracetamol", rows.get(0).get("NAME"));
+        assertEquals("paracetamol", rows.get(0).get("NAME_KEY"));
+        assertEquals("5 days", rows.get(0).get("DURATION"));
+        assertEquals("1", rows.get(1).get("DOSAGE"));
+        assertNull(jdbc.queryForObject("select medication_data from prescriptions where id = 'A'", String.class));
+        verify(eventPublisher).publishEvent(new PrescriptionChangedEvent("A", PrescriptionChangedEvent.Change.UPDATED));
+        verifyNoMoreInteractions(eventPublisher);
+    }
+
+    @Test
+    void isIdempotentAndSkipsMalformedJson() {
+        jdbc.update("insert into prescriptions values (?, ?)", "A", "[{\"name\":\"Paracetamol\"}]");
+        jdbc.update("insert into prescriptions values (?, ?)", "B", "not json");
+        // Left behind by a run that stopped before clearing the JSON
+        jdbc.update("insert into prescription_medications values ('A', 0, 'Paracetamol', 'paracetamol', null, null)");
+
+        migration.run(null);
+        migration.run(null);
+
+        assertEquals(1, jdbc.queryForObject("select count(*) from prescription_medications", Integer.class));
+        assertEquals("not json", jdbc.queryForObject("select medication_data from prescriptions where id = 'B'",
+                String.class));
+    }
+
+    @Test
+    void doesNothingWithoutLegacyColumn() {
+        jdbc.execute("alter table prescriptions drop column medication_data");
+
+        migration.run(null);
+
+        verifyNoInteractions(eventPublisher);
+    }
+}
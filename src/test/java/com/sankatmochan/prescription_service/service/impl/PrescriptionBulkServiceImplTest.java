@@ -0,0 +1,112 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import com.sankatmochan.prescription_service.dto.BulkIngestResponse;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PrescriptionBulkServiceImplTest {
+
+    @Mock
+    private PrescriptionRepository repository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PrescriptionBulkServiceImpl bulkService;
+
+    @BeforeEach
+    void setUp() {
+        bulkService = new PrescriptionBulkServiceImpl(repository, new SnowflakePrescriptionIdGenerator(1),
+                eventPublisher, transactionManager, JsonMapper.builder().build(), 2);
+    }
+
+    private static Prescription prescription(String patientName) {
+        Prescription p = new Prescription();
+        p.setPatientName(patientName);
+        return p;
+    }
+
+    @Test
+    void createPrescriptions_PersistsInChunks() {
+        List<Prescription> items = List.of(prescription("A"), prescription("B"), prescription("C"));
+
+        BulkIngestResponse response = bulkService.createPrescriptions(items);
+
+        assertEquals(3, response.received());
+        assertEquals(3, response.created());
+        assertEquals(0, response.failed());
+        assertTrue(response.items().stream().allMatch(r -> r.id().startsWith("SNKTMOCH")));
+        verify(repository, times(2)).saveAll(anyList());
+        verify(eventPublisher, times(3)).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void createPrescriptions_FailedChunkIsRetriedItemByItem() {
+        Prescription bad = prescription("Bad");
+        when(repository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("batch failed"));
+        when(repository.save(any(Prescription.class))).thenAnswer(invocation -> {
+            if (invocation.getArgument(0) == bad) {
+                throw new DataIntegrityViolationException("too long");
+            }
+            return invocation.getArgument(0);
+        });
+
+        BulkIngestResponse response = bulkService.createPrescriptions(Arrays.asList(prescription("A"), bad, null));
+
+        assertEquals(3, response.received());
+        assertEquals(1, response.created());
+        assertEquals(2, response.failed());
+        assertNotNull(response.items().get(0).id());
+        assertEquals("too long", response.items().get(1).error());
+        assertEquals("Item is null", response.items().get(2).error());
+    }
+
+    @Test
+    void createPrescriptionsFromNdjson_ReportsUnparseableLines() throws Exception {
+        String ndjson = """
+                {"patientName":"A"}
+                not json
+
+                {"patientName":"B"}
+                """;
+        List<String> saved = new ArrayList<>();
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Prescription> chunk = invocation.getArgument(0);
+            chunk.forEach(p -> saved.add(p.getPatientName()));
+            return chunk;
+        });
+
+        BulkIngestResponse response = bulkService.createPrescriptionsFromNdjson(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(3, response.received());
+        assertEquals(2, response.created());
+        assertEquals(1, response.items().get(1).index());
+        assertTrue(response.items().get(1).error().startsWith("Invalid JSON"));
+        assertEquals(List.of("A", "B"), saved);
+    }
+}
@@ -0,0 +1,181 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.sankatmochan.prescription_service.archive.PrescriptionArchive;
+import com.sankatmochan.prescription_service.dto.ExportFormat;
+import com.sankatmochan.prescription_service.dto.PrescriptionExportQuery;
+import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.pdf.PdfTheme;
+import com.sankatmochan.prescription_service.pdf.PrescriptionPdfRenderer;
+import com.sankatmochan.prescription_service.pdf.RenderCapacityExceededException;
+import com.sankatmochan.prescription_service.pdf.RenderGate;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import com.sankatmochan.prescription_service.service.PrescriptionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PrescriptionExportServiceImplTest {
+
+    private static final PrescriptionExportQuery QUERY = new PrescriptionExportQuery("MD12345", null,
+            LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 1));
+    private static final LocalDateTime FROM = LocalDateTime.of(2026, 3, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2026, 3, 2, 0, 0);
+
+    private final PrescriptionPdfRenderer renderer = new PrescriptionPdfRenderer(new PdfTheme());
+
+    @Mock
+    private PrescriptionRepository repository;
+
+    @Mock
+    private PrescriptionService prescriptionService;
+
+    @Mock
+    private PrescriptionArchive archive;
+
+    private PrescriptionExportServiceImpl exportService;
+    private List<Prescription> prescriptions;
+
+    @BeforeEach
+    void setUp() {
+        // Batches of two, so three prescriptions take a keyset follow-up query
+        exportService = new PrescriptionExportServiceImpl(repository, prescriptionService, archive,
+                new RenderGate(new SimpleMeterRegistry(), 2, Duration.ofMillis(10)), new SimpleMeterRegistry(),
+                Duration.ofDays(365), 2, 2, Duration.ofSeconds(5));
+        prescriptions = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            Prescription p = new Prescription();
+            p.setId("SNKTMOCH0000000" + i);
+            p.setPatientName("Patient " + i);
+            p.setDoctorName("Dr. Smith");
+            p.setDoctorRegNo("MD12345");
+            p.setClinicName("City Clinic");
+            p.setCreatedAt(FROM.plusHours(i));
+            prescriptions.add(p);
+        }
+        // Lenient: not every test runs an export
+        lenient().when(repository.findForExport(eq("MD12345"), eq(null), eq(FROM), eq(TO), any(Limit.class)))
+                .thenReturn(prescriptions.subList(0, 2));
+        lenient().when(repository.findForExportAfter(eq("MD12345"), eq(null), eq(TO), eq(FROM.plusHours(2)),
+                eq("SNKTMOCH00000002"), any(Limit.class)))
+                .thenReturn(prescriptions.subList(2, 3));
+    }
+
+    private void renderForReal() {
+        when(prescriptionService.renderPrescriptionPdfUncached(any(Prescription.class))).thenAnswer(invocation -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            renderer.render(invocation.getArgument(0), out);
+            return out.toByteArray();
+        });
+    }
+
+    @Test
+    void zipHoldsOnePdfPerPrescriptionInOrder() throws Exception {
+        renderForReal();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.export(QUERY, ExportFormat.ZIP, out);
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                names.add(entry.getName());
+                assertEquals("%PDF", new String(zip.readNBytes(4)));
+            }
+        }
+        assertEquals(List.of("SNKTMOCH00000001.pdf", "SNKTMOCH00000002.pdf", "SNKTMOCH00000003.pdf"), names);
+    }
+
+    @Test
+    void mergedPdfHoldsEveryPage() throws Exception {
+        renderForReal();
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        renderer.render(prescriptions.get(0), single);
+        int pagesPerDocument = new PdfReader(single.toByteArray()).getNumberOfPages();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.export(QUERY, ExportFormat.PDF, out);
+
+        PdfReader merged = new PdfReader(out.toByteArray());
+        assertEquals(3 * pagesPerDocument, merged.getNumberOfPages());
+        merged.close();
+    }
+
+    @Test
+    void rangesBeforeTheArchiveCutoffAreNotExportable() {
+        assertEquals(Optional.empty(), exportService.getEarliestExportableDate());
+
+        when(archive.isEnabled()).thenReturn(true);
+        assertEquals(Optional.of(LocalDate.now().minusDays(364)), exportService.getEarliestExportableDate());
+    }
+
+    @Test
+    void keepsWaitingForRenderSlots() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        when(prescriptionService.renderPrescriptionPdfUncached(any(Prescription.class))).thenAnswer(invocation -> {
+            if (attempts.incrementAndGet() % 2 == 1) {
+                throw new RenderCapacityExceededException("All 2 render slots are busy", Duration.ofSeconds(1));
+            }
+            return new byte[] { 1 };
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.export(QUERY, ExportFormat.ZIP, out);
+
+        assertEquals(6, attempts.get());
+    }
+
+    @Test
+    void concurrentExportsShareTheExportRenderSlots() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostAtOnce = new AtomicInteger();
+        when(prescriptionService.renderPrescriptionPdfUncached(any(Prescription.class))).thenAnswer(invocation -> {
+            mostAtOnce.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            return new byte[] { 1 };
+        });
+
+        // Each export alone may use both slots; together they still get two between them
+        try (ExecutorService exports = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> done = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                done.add(exports.submit(() -> {
+                    exportService.export(QUERY, ExportFormat.ZIP, new ByteArrayOutputStream());
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        }
+
+        assertTrue(mostAtOnce.get() <= 2, "renders at once: " + mostAtOnce.get());
+    }
+}
@@ -0,0 +1,179 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import com.sankatmochan.prescription_service.dto.HistoryCursor;
+import com.sankatmochan.prescription_service.dto.ReviewItem;
+import com.sankatmochan.prescription_service.dto.ReviewItemResult;
+import com.sankatmochan.prescription_service.dto.ReviewQueueItem;
+import com.sankatmochan.prescription_service.dto.ReviewQueuePage;
+import com.sankatmochan.prescription_service.dto.ReviewResponse;
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.model.ReviewStatus;
+import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PrescriptionReviewServiceImplTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 3, 1, 10, 0);
+
+    private JdbcTemplate jdbc;
+    private PrescriptionRepository repository;
+    private ApplicationEventPublisher eventPublisher;
+    private SimpleMeterRegistry meterRegistry;
+    private PrescriptionReviewServiceImpl reviewService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:review_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table prescriptions (id varchar(50) primary key, version bigint not null, "
+                + "review_status varchar(16) not null, approved_by_doctor boolean not null, updated_at timestamp)");
+
+        repository = mock(PrescriptionRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        meterRegistry = new SimpleMeterRegistry();
+        reviewService = new PrescriptionReviewServiceImpl(repository, eventPublisher, jdbc,
+                new DataSourceTransactionManager(dataSource), meterRegistry);
+    }
+
+    private void store(String id, long version) {
+        jdbc.update("insert into prescriptions (id, version, review_status, approved_by_doctor) values (?, ?, 'PENDING', false)",
+                id, version);
+    }
+
+    @Test
+    void approvesAndBumpsTheVersion() {
+        store("P1", 0);
+        store("P2", 3);
+
+        ReviewResponse response = reviewService.review(ReviewStatus.APPROVED,
+                List.of(new ReviewItem("P1", 0L), new ReviewItem("P2", 3L)));
+
+        assertEquals(2, response.updated());
+        assertEquals(4L, response.items().get(1).version());
+        assertEquals(List.of("APPROVED", "APPROVED"),
+                jdbc.queryForList("select review_status from prescriptions order by id", String.class));
+        assertEquals(Boolean.TRUE, jdbc.queryForObject(
+                "select approved_by_doctor from prescriptions where id = 'P1'", Boolean.class));
+        assertNotNull(jdbc.queryForObject("select updated_at from prescriptions where id = 'P1'", Object.class));
+        verify(eventPublisher).publishEvent(new PrescriptionChangedEvent("P1", PrescriptionChangedEvent.Change.APPROVED));
+        assertEquals(2.0, meterRegistry.get("prescription.review.decisions").tag("decision", "approved")
+                .counter().count());
+    }
+
+    @Test
+    void rejectsWithoutApproving() {
+        store("P1", 0);
+
+        reviewService.review(ReviewStatus.REJECTED, List.of(new ReviewItem("P1", 0L)));
+
+        assertEquals("REJECTED", jdbc.queryForObject("select review_status from prescriptions", String.class));
+        assertEquals(Boolean.FALSE, jdbc.queryForObject("select approved_by_doctor from prescriptions", Boolean.class));
+        verify(eventPublisher).publishEvent(new PrescriptionChangedEvent("P1", PrescriptionChangedEvent.Change.UPDATED));
+    }
+
+    @Test
+    void refusesStaleVersionsAndReportsEachFailure() {
+        store("P1", 0);
+        store("P2", 2);
+
+        ReviewResponse response = reviewService.review(ReviewStatus.APPROVED, Arrays.asList(
+                new ReviewItem("P1", 0L), new ReviewItem("P2", 1L), new ReviewItem("GONE", 0L),
+                new ReviewItem("P3", null), null));
+
+        assertEquals(5, response.received());
+        assertEquals(1, response.updated());
+        assertEquals(List.of(0, 1, 2, 3, 4), response.items().stream().map(ReviewItemResult::index).toList());
+        assertEquals("Version conflict: current version is 2", response.items().get(1).error());
+        assertEquals("Prescription not found", response.items().get(2).error());
+        assertEquals("id and version are required", response.items().get(3).error());
+        assertEquals("PENDING", jdbc.queryForObject("select review_status from prescriptions where id = 'P2'",
+                String.class));
+        verify(eventPublisher, never()).publishEvent(new PrescriptionChangedEvent("P2",
+                PrescriptionChangedEvent.Change.APPROVED));
+        assertEquals(1.0, meterRegistry.get("prescription.review.conflicts").counter().count());
+    }
+
+    @Test
+    void secondReviewerOfTheSameVersionGetsAConflict() {
+        store("P1", 0);
+
+        reviewService.review(ReviewStatus.APPROVED, List.of(new ReviewItem("P1", 0L)));
+        ReviewResponse second = reviewService.review(ReviewStatus.REJECTED, List.of(new ReviewItem("P1", 0L)));
+
+        assertEquals(1, second.failed());
+        assertEquals("APPROVED", jdbc.queryForObject("select review_status from prescriptions", String.class));
+    }
+
+    @Test
+    void doesNotRedecideAReviewedPrescriptionEvenAtItsCurrentVersion() {
+        store("P1", 0);
+        reviewService.review(ReviewStatus.APPROVED, List.of(new ReviewItem("P1", 0L)));
+
+        ReviewResponse again = reviewService.review(ReviewStatus.REJECTED, List.of(new ReviewItem("P1", 1L)));
+
+        assertEquals(0, again.updated());
+        assertEquals("Already reviewed: APPROVED", again.items().get(0).error());
+        assertEquals("APPROVED", jdbc.queryForObject("select review_status from prescriptions", String.class));
+        assertEquals(1L, jdbc.queryForObject("select version from prescriptions", Long.class));
+    }
+
+    @Test
+    void handlesMoreItemsThanOneBatch() {
+        List<ReviewItem> items = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            store("P" + i, 0);
+            items.add(new ReviewItem("P" + i, 0L));
+        }
+
+        ReviewResponse response = reviewService.review(ReviewStatus.APPROVED, items);
+
+        assertEquals(1200, response.updated());
+        assertEquals(IntStream.range(0, 1200).boxed().toList(),
+                response.items().stream().map(ReviewItemResult::index).toList());
+        assertEquals(0, jdbc.queryForObject("select count(*) from prescriptions where version <> 1", Integer.class));
+    }
+
+    @Test
+    void refusesPendingAsADecision() {
+        assertThrows(IllegalArgumentException.class,
+                () -> reviewService.review(ReviewStatus.PENDING, List.of(new ReviewItem("P1", 0L))));
+    }
+
+    @Test
+    void pagesTheQueueWithACursor() {
+        List<ReviewQueueItem> rows = List.of(
+                new ReviewQueueItem("P1", "Asha Devi", "Fever", true, BASE, 0L),
+                new ReviewQueueItem("P2", "Ravi Kumar", "Migraine", true, BASE.plusMinutes(1), 0L),
+                new ReviewQueueItem("P3", "Asha Devi", "Cough", false, BASE.plusMinutes(2), 1L));
+        when(repository.findReviewQueue(eq("MD1"), any(Limit.class))).thenReturn(rows);
+        when(repository.findReviewQueueAfter(eq("MD1"), eq(BASE.plusMinutes(1)), eq("P2"), any(Limit.class)))
+                .thenReturn(rows.subList(2, 3));
+
+        ReviewQueuePage first = reviewService.getReviewQueue("MD1", null, 2);
+        ReviewQueuePage second = reviewService.getReviewQueue("MD1", HistoryCursor.decode(first.nextCursor()), 2);
+
+        assertEquals(rows.subList(0, 2), first.items());
+        assertEquals(rows.subList(2, 3), second.items());
+        assertNull(second.nextCursor());
+        verify(repository).findReviewQueue("MD1", Limit.of(3));
+    }
+}
@@ -1,20 +1,50 @@
 package com.sankatmochan.prescription_service.service.impl;
 
+import com.sankatmochan.prescription_service.archive.PrescriptionArchive;
+import com.sankatmochan.prescription_service.cache.LocalCacheInvalidationChannel;
+import com.sankatmochan.prescription_service.cache.PdfRenderCache;
+import com.sankatmochan.prescription_service.cache.PrescriptionEntityCache;
+import com.sankatmochan.prescription_service.dto.HistoryCursor;
+import com.sankatmochan.prescription_service.dto.HistoryPage;
+import com.sankatmochan.prescription_service.dto.PrescriptionSummary;
+import com.sankatmochan.prescription_service.dto.PrescriptionValidator;
+import com.sankatmochan.prescription_service.event.PrescriptionChangedEvent;
+import com.sankatmochan.prescription_service.dto.MedicationUsage;
+import com.sankatmochan.prescription_service.model.Medication;
 import com.sankatmochan.prescription_service.model.Prescription;
+import com.sankatmochan.prescription_service.pdf.PdfTheme;
+import com.sankatmochan.prescription_service.pdf.PrescriptionPdfRenderer;
+import com.sankatmochan.prescription_service.pdf.RenderGate;
 import com.sankatmochan.prescription_service.repository.PrescriptionRepository;
+import com.sankatmochan.prescription_service.service.PrescriptionIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,6 +53,28 @@ class PrescriptionServiceImplTest {
     @Mock
     private PrescriptionRepository repository;
 
+    @Mock
+    private PdfRenderCache renderCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private PrescriptionPdfRenderer pdfRenderer = new PrescriptionPdfRenderer(new PdfTheme());
+
+    @Spy
+    private PrescriptionIdGenerator idGenerator = new SnowflakePrescriptionIdGenerator(1);
+
+    @Spy
+    private RenderGate renderGate = new RenderGate(new SimpleMeterRegistry(), 2, Duration.ofSeconds(1));
+
+    @Spy
+    private PrescriptionEntityCache entityCache = new PrescriptionEntityCache(new SimpleMeterRegistry(),
+            new LocalCacheInvalidationChannel(), true, 100, Duration.ofMinutes(10), Duration.ofHours(1));
+
+    @Mock
+    private PrescriptionArchive archive;
+
     @InjectMocks
     private PrescriptionServiceImpl prescriptionService;
 
@@ -49,13 +101,7 @@ class PrescriptionServiceImplTest {
         prescription.setAdvice("Drink plenty of water. Rest.");
         prescription.setNextVisitDate(LocalDateTime.now().plusDays(7));
 
-        List<Map<String, String>> meds = new ArrayList<>();
-        Map<String, String> med = new HashMap<>();
-        med.put("name", "Paracetamol");
-        med.put("dosage", "500mg");
-        med.put("duration", "5 days");
-        meds.add(med);
-        prescription.setMedicationData(meds);
+        prescription.setMedicationData(new ArrayList<>(List.of(new Medication("Paracetamol", "500mg", "5 days"))));
 
         prescription.setDoctorName("Dr. Smith");
         prescription.setDoctorRegNo("MD12345");
@@ -78,6 +124,7 @@ class PrescriptionServiceImplTest {
         assertNotNull(created.getId());
         assertTrue(created.getId().startsWith("SNKTMOCH"));
         verify(repository, times(1)).save(any(Prescription.class));
+        verify(eventPublisher).publishEvent(new PrescriptionChangedEvent(created.getId(), PrescriptionChangedEvent.Change.CREATED));
     }
 
     @Test
@@ -90,6 +137,31 @@ class PrescriptionServiceImplTest {
         assertEquals("SNKTMOCH12345678", found.getId());
     }
 
+    @Test
+    void getPrescriptionById_ServesRepeatLookupsFromCache() {
+        when(repository.findById("SNKTMOCH12345678")).thenReturn(Optional.of(prescription));
+
+        prescriptionService.getPrescriptionById("SNKTMOCH12345678");
+        Prescription again = prescriptionService.getPrescriptionById("SNKTMOCH12345678");
+
+        assertSame(prescription, again);
+        verify(repository, times(1)).findById("SNKTMOCH12345678");
+    }
+
+    @Test
+    void getPrescriptionById_ReloadsCopyOlderThanRequestedVersion() {
+        Prescription updated = new Prescription();
+        updated.setId("SNKTMOCH12345678");
+        updated.setVersion(2L);
+        prescription.setVersion(1L);
+        when(repository.findById("SNKTMOCH12345678")).thenReturn(Optional.of(prescription), Optional.of(updated));
+        prescriptionService.getPrescriptionById("SNKTMOCH12345678");
+
+        assertSame(updated, prescriptionService.getPrescriptionById("SNKTMOCH12345678", 2L));
+        assertSame(updated, prescriptionService.getPrescriptionById("SNKTMOCH12345678", 2L));
+        verify(repository, times(2)).findById("SNKTMOCH12345678");
+    }
+
     @Test
     void getPrescriptionById_NotFound() {
         when(repository.findById("INVALID")).thenReturn(Optional.empty());
@@ -99,15 +171,102 @@ class PrescriptionServiceImplTest {
         });
     }
 
+    @Test
+    void getPrescriptionById_FallsBackToArchive() {
+        when(repository.findById("SNKTMOCH12345678")).thenReturn(Optional.empty());
+        when(archive.findById("SNKTMOCH12345678")).thenReturn(Optional.of(prescription));
+
+        assertSame(prescription, prescriptionService.getPrescriptionById("SNKTMOCH12345678"));
+    }
+
+    @Test
+    void getPrescriptionValidator_FallsBackToArchive() {
+        prescription.setVersion(3L);
+        when(repository.findValidatorById("SNKTMOCH12345678")).thenReturn(Optional.empty());
+        when(archive.findById("SNKTMOCH12345678")).thenReturn(Optional.of(prescription));
+
+        PrescriptionValidator validator = prescriptionService.getPrescriptionValidator("SNKTMOCH12345678");
+
+        assertEquals(3L, validator.version());
+        assertEquals(prescription.getCreatedAt(), validator.createdAt());
+    }
+
     @Test
     void getHistoryByPatient() {
-        when(repository.findByPatientNameIgnoreCase("John Doe")).thenReturn(Collections.singletonList(prescription));
+        PrescriptionSummary summary = new PrescriptionSummary("SNKTMOCH12345678", LocalDateTime.now(),
+                "Viral Fever", "Dr. Smith");
+        when(repository.findHistory(eq("john doe"), any(Limit.class))).thenReturn(List.of(summary));
+
+        HistoryPage history = prescriptionService.getHistoryByPatient(" John Doe ", null, 20);
+
+        assertEquals(List.of(summary), history.items());
+        assertNull(history.nextCursor());
+    }
+
+    @Test
+    void getHistoryByPatient_ReturnsCursorWhenMoreRowsExist() {
+        LocalDateTime now = LocalDateTime.now();
+        PrescriptionSummary newest = new PrescriptionSummary("SNKTMOCH00000003", now, "Viral Fever", "Dr. Smith");
+        PrescriptionSummary middle = new PrescriptionSummary("SNKTMOCH00000002", now.minusDays(1), "Cold", "Dr. Smith");
+        PrescriptionSummary oldest = new PrescriptionSummary("SNKTMOCH00000001", now.minusDays(2), "Cough", "Dr. Smith");
+        when(repository.findHistory("john doe", Limit.of(3))).thenReturn(List.of(newest, middle, oldest));
+
+        HistoryPage first = prescriptionService.getHistoryByPatient("John Doe", null, 2);
+
+        assertEquals(List.of(newest, middle), first.items());
+        HistoryCursor cursor = HistoryCursor.decode(first.nextCursor());
+        assertEquals(middle.createdAt(), cursor.createdAt());
+        assertEquals(middle.id(), cursor.id());
+
+        when(repository.findHistoryAfter("john doe", middle.createdAt(), middle.id(), Limit.of(3)))
+                .thenReturn(List.of(oldest));
+
+        HistoryPage second = prescriptionService.getHistoryByPatient("John Doe", cursor, 2);
+
+        assertEquals(List.of(oldest), second.items());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void getHistoryByPatient_MergesArchivedRows() {
+        LocalDateTime now = LocalDateTime.now();
+        PrescriptionSummary live = new PrescriptionSummary("SNKTMOCH00000004", now, "Viral Fever", "Dr. Smith");
+        PrescriptionSummary both = new PrescriptionSummary("SNKTMOCH00000003", now.minusYears(1), "Cold", "Dr. Smith");
+        PrescriptionSummary archived = new PrescriptionSummary("SNKTMOCH00000002", now.minusYears(2), "Cough", "Dr. Smith");
+        PrescriptionSummary older = new PrescriptionSummary("SNKTMOCH00000001", now.minusYears(3), "Flu", "Dr. Smith");
+        when(archive.isEnabled()).thenReturn(true);
+        when(repository.findHistory("john doe", Limit.of(3))).thenReturn(List.of(live, both));
+        when(archive.findHistory("john doe", null, 3)).thenReturn(List.of(both, archived, older));
+
+        HistoryPage page = prescriptionService.getHistoryByPatient("John Doe", null, 2);
+
+        assertEquals(List.of(live, both), page.items());
+        HistoryCursor cursor = HistoryCursor.decode(page.nextCursor());
+        assertEquals(both.id(), cursor.id());
 
-        List<Prescription> history = prescriptionService.getHistoryByPatient("John Doe");
+        when(repository.findHistoryAfter("john doe", both.createdAt(), both.id(), Limit.of(3))).thenReturn(List.of());
+        when(archive.findHistory("john doe", cursor, 3)).thenReturn(List.of(archived, older));
 
-        assertNotNull(history);
-        assertEquals(1, history.size());
-        assertEquals("John Doe", history.get(0).getPatientName());
+        HistoryPage next = prescriptionService.getHistoryByPatient("John Doe", cursor, 2);
+
+        assertEquals(List.of(archived, older), next.items());
+        assertNull(next.nextCursor());
+    }
+
+    @Test
+    void getMedicationUsage() {
+        PrescriptionSummary summary = new PrescriptionSummary("SNKTMOCH12345678", LocalDateTime.now(),
+                "Viral Fever", "Dr. Smith");
+        LocalDateTime from = LocalDate.of(2026, 3, 1).atStartOfDay();
+        LocalDateTime toExclusive = LocalDate.of(2026, 4, 1).atStartOfDay();
+        when(repository.countByMedication("paracetamol", from, toExclusive)).thenReturn(42L);
+        when(repository.findByMedication("paracetamol", from, toExclusive, Limit.of(20))).thenReturn(List.of(summary));
+
+        MedicationUsage usage = prescriptionService.getMedicationUsage(" Paracetamol",
+                LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 31), 20);
+
+        assertEquals(42L, usage.totalPrescriptions());
+        assertEquals(List.of(summary), usage.items());
     }
 
     @Test
@@ -118,5 +277,82 @@ class PrescriptionServiceImplTest {
 
         assertNotNull(pdf);
         assertTrue(pdf.length > 0);
+        verify(renderCache).put(eq("SNKTMOCH12345678"), anyString(), eq(pdf));
+    }
+
+    @Test
+    void generatePrescriptionPdf_ServedFromCache() {
+        byte[] cached = new byte[] { 1, 2, 3 };
+        when(repository.findById("SNKTMOCH12345678")).thenReturn(Optional.of(prescription));
+        when(renderCache.get(eq("SNKTMOCH12345678"), anyString())).thenReturn(cached);
+
+        byte[] pdf = prescriptionService.generatePrescriptionPdf("SNKTMOCH12345678");
+
+        assertSame(cached, pdf);
+        verify(renderCache, never()).put(anyString(), anyString(), any());
+    }
+
+    @Test
+    void renderPrescriptionPdfUncached_ReadsTheCacheButDoesNotFillIt() throws Exception {
+        byte[] pdf = prescriptionService.renderPrescriptionPdfUncached(prescription);
+
+        assertEquals("%PDF", new String(pdf, 0, 4, StandardCharsets.ISO_8859_1));
+        verify(renderCache, never()).put(anyString(), anyString(), any());
+
+        byte[] cached = new byte[] { 1, 2, 3 };
+        when(renderCache.getResource(eq("SNKTMOCH12345678"), anyString())).thenReturn(new ByteArrayResource(cached));
+        assertArrayEquals(cached, prescriptionService.renderPrescriptionPdfUncached(prescription));
+        verify(renderCache, never()).get(anyString(), anyString());
+    }
+
+    @Test
+    void writePrescriptionPdf_StreamsAndCaches() throws Exception {
+        when(repository.findById("SNKTMOCH12345678")).thenReturn(Optional.of(prescription));
+        OutputStream cacheStream = mock(OutputStream.class);
+        when(renderCache.writeThrough(eq("SNKTMOCH12345678"), anyString(), any(OutputStream.class)))
+                .thenAnswer(invocation -> new FilterOutputStream(invocation.getArgument(2)) {
+                    @Override
+                    public void close() throws IOException {
+                        cacheStream.close();
+                    }
+                });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        prescriptionService.writePrescriptionPdf("SNKTMOCH12345678", out);
+
+        assertTrue(out.size() > 0);
+        assertEquals("%PDF", out.toString(StandardCharsets.ISO_8859_1).substring(0, 4));
+        verify(cacheStream).close();
+    }
+
+    @Test
+    void writePrescriptionPdf_ServedFromCache() throws Exception {
+        byte[] cached = new byte[] { 1, 2, 3 };
+        when(repository.findById("SNKTMOCH12345678")).thenReturn(Optional.of(prescription));
+        when(renderCache.get(eq("SNKTMOCH12345678"), anyString())).thenReturn(cached);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        prescriptionService.writePrescriptionPdf("SNKTMOCH12345678", out);
+
+        assertArrayEquals(cached, out.toByteArray());
+        verify(renderCache, never()).writeThrough(anyString(), anyString(), any());
+    }
+
+    @Test
+    void getPrescriptionPdfResource_RendersOnceIntoCache() throws Exception {
+        Resource resource = prescriptionService.getPrescriptionPdfResource(prescription);
+
+        byte[] pdf = resource.getContentAsByteArray();
+        assertEquals("%PDF", new String(pdf, 0, 4, StandardCharsets.ISO_8859_1));
+        verify(renderCache).put(eq("SNKTMOCH12345678"), anyString(), eq(pdf));
+    }
+
+    @Test
+    void getPrescriptionPdfResource_ServedFromCache() {
+        Resource cached = new ByteArrayResource(new byte[] { 1, 2, 3 });
+        when(renderCache.getResource(eq("SNKTMOCH12345678"), anyString())).thenReturn(cached);
+
+        assertSame(cached, prescriptionService.getPrescriptionPdfResource(prescription));
+        verify(pdfRenderer, never()).render(any(), any());
     }
 }
@@ -0,0 +1,93 @@
+package com.sankatmochan.prescription_service.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakePrescriptionIdGeneratorTest {
+
+    private static final long NOW = SnowflakePrescriptionIdGenerator.EPOCH_MILLIS + 1_000_000L;
+
+    @Test
+    void idsKeepThePrefix() {
+        String id = new SnowflakePrescriptionIdGenerator(1).nextId();
+
+        assertTrue(id.startsWith("SNKTMOCH"));
+        assertTrue(id.length() <= 50);
+        assertDoesNotThrow(() -> Long.parseLong(id.substring(8)));
+    }
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws Exception {
+        SnowflakePrescriptionIdGenerator generator = new SnowflakePrescriptionIdGenerator(7);
+        int threads = 8;
+        int perThread = 20_000;
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                futures[t] = pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        ids.add(generator.nextId());
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, ids.size());
+    }
+
+    @Test
+    void sequenceOverflowBorrowsTheNextMillisecond() {
+        SnowflakePrescriptionIdGenerator generator = new SnowflakePrescriptionIdGenerator(1, () -> NOW);
+
+        long previous = generator.nextValue();
+        for (int i = 0; i < 10_000; i++) {
+            long next = generator.nextValue();
+            assertTrue(next > previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void clockGoingBackwardsStaysMonotonic() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakePrescriptionIdGenerator generator = new SnowflakePrescriptionIdGenerator(1, clock::get);
+
+        long before = generator.nextValue();
+        clock.set(NOW - 5_000);
+        long after = generator.nextValue();
+
+        assertTrue(after > before);
+    }
+
+    @Test
+    void nodesNeverCollideInTheSameMillisecond() {
+        long a = new SnowflakePrescriptionIdGenerator(1, () -> NOW).nextValue();
+        long b = new SnowflakePrescriptionIdGenerator(2, () -> NOW).nextValue();
+
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    void rejectsNodeIdsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakePrescriptionIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SnowflakePrescriptionIdGenerator(SnowflakePrescriptionIdGenerator.MAX_NODE_ID + 1));
+    }
+}